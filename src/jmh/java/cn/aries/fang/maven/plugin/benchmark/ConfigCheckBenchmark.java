@@ -0,0 +1,123 @@
+package cn.aries.fang.maven.plugin.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import cn.aries.fang.maven.plugin.diff.KeyDiffEngine;
+import cn.aries.fang.maven.plugin.diff.KeyDiffResult;
+import cn.aries.fang.maven.plugin.diff.KeyIndex;
+import cn.aries.fang.maven.plugin.diff.YamlKeyExtractor;
+import org.openjdk.jmh.annotations.*;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * Description: 门禁检查热点路径的基准测试
+ * <p>
+ * 覆盖本地文件加载、远程内容解析、key展开和比对，以及完整的单配置检查；
+ * flattenMapTree为改造前加载完整Map树再递归展开的实现，作为对照。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class ConfigCheckBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    private int keys;
+
+    @Param({"2", "5"})
+    private int depth;
+
+    private String remoteContent;
+
+    private File localFile;
+
+    private KeyIndex remoteIndex;
+
+    private KeyIndex localIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        remoteContent = YamlFixtures.remote(keys, depth);
+        localFile = File.createTempFile("nacos-benchmark-", ".yaml");
+        Files.write(localFile.toPath(), YamlFixtures.local(keys, depth, 100).getBytes(StandardCharsets.UTF_8));
+        remoteIndex = YamlKeyExtractor.extract(remoteContent);
+        localIndex = YamlKeyExtractor.extract(localFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (localFile != null) {
+            localFile.delete();
+        }
+    }
+
+    /**
+     * 本地文件加载
+     */
+    @Benchmark
+    public KeyIndex localLoad() throws IOException {
+        return YamlKeyExtractor.extract(localFile);
+    }
+
+    /**
+     * 远程内容解析
+     */
+    @Benchmark
+    public KeyIndex remoteParse() {
+        return YamlKeyExtractor.extract(remoteContent);
+    }
+
+    /**
+     * 改造前的实现：加载完整Map树后递归展开key
+     */
+    @Benchmark
+    public List<String> flattenMapTree() {
+        LoaderOptions loaderOptions = new LoaderOptions();
+        loaderOptions.setCodePointLimit(Integer.MAX_VALUE);
+        Map<String, Object> map = new Yaml(loaderOptions).load(remoteContent);
+        List<String> result = new ArrayList<>();
+        flatten(map, result, "");
+        return result;
+    }
+
+    /**
+     * key比对
+     */
+    @Benchmark
+    public KeyDiffResult diff() {
+        return KeyDiffEngine.diff(remoteIndex, localIndex);
+    }
+
+    /**
+     * 单个配置的完整检查：解析远程内容、加载本地文件并比对
+     */
+    @Benchmark
+    public KeyDiffResult check() throws IOException {
+        return KeyDiffEngine.diff(YamlKeyExtractor.extract(remoteContent), YamlKeyExtractor.extract(localFile));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void flatten(Map<String, Object> map, List<String> keys, String parentKey) {
+        if (map == null || map.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            String currentKey = parentKey.isEmpty() ? entry.getKey() : parentKey + "." + entry.getKey();
+            if (entry.getValue() instanceof Map) {
+                flatten((Map<String, Object>) entry.getValue(), keys, currentKey);
+            } else {
+                keys.add(currentKey);
+            }
+        }
+    }
+}
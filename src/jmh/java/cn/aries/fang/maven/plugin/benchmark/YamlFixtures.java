@@ -0,0 +1,79 @@
+package cn.aries.fang.maven.plugin.benchmark;
+
+/**
+ * Description: 基准测试用的yaml生成器
+ * <p>
+ * 生成指定叶子数量与嵌套深度的yaml，每层映射的分支数取 keys^(1/depth) 向上取整；
+ * 每10个叶子有一个列表，其余为字符串或数字。相同参数生成的内容完全一致。
+ */
+public class YamlFixtures {
+
+    private YamlFixtures() {
+    }
+
+    /**
+     * 生成远程配置
+     *
+     * @param keys  叶子数量
+     * @param depth 嵌套深度
+     * @return yaml文本
+     */
+    public static String remote(int keys, int depth) {
+        return generate(keys, depth, 0);
+    }
+
+    /**
+     * 生成本地配置：每missingEvery个叶子缺失一个，同时多出相同数量的key
+     *
+     * @param keys         叶子数量
+     * @param depth        嵌套深度
+     * @param missingEvery 缺失间隔
+     * @return yaml文本
+     */
+    public static String local(int keys, int depth, int missingEvery) {
+        return generate(keys, depth, missingEvery);
+    }
+
+    private static String generate(int keys, int depth, int missingEvery) {
+        int fanout = Math.max(2, (int) Math.ceil(Math.pow(keys, 1.0 / depth)));
+        StringBuilder yaml = new StringBuilder(keys * (depth * 8 + 16));
+        int[] previous = null;
+        int[] digits = new int[depth];
+        for (int i = 0; i < keys; i++) {
+            int n = i;
+            for (int d = depth - 1; d >= 0; d--) {
+                digits[d] = n % fanout;
+                n /= fanout;
+            }
+            boolean missing = missingEvery > 0 && i % missingEvery == 0;
+            // 与上一个叶子的公共前缀之后的映射需要重新输出
+            int common = 0;
+            if (previous != null) {
+                while (common < depth - 1 && previous[common] == digits[common]) {
+                    common++;
+                }
+            }
+            for (int d = common; d < depth - 1; d++) {
+                indent(yaml, d).append("node").append(digits[d]).append(":\n");
+            }
+            indent(yaml, depth - 1).append(missing ? "extra" : "key").append(digits[depth - 1]).append(": ");
+            if (i % 10 == 0) {
+                yaml.append("[a, b, c]");
+            } else if (i % 2 == 0) {
+                yaml.append(i);
+            } else {
+                yaml.append("value-").append(i);
+            }
+            yaml.append('\n');
+            previous = digits.clone();
+        }
+        return yaml.toString();
+    }
+
+    private static StringBuilder indent(StringBuilder yaml, int level) {
+        for (int i = 0; i < level; i++) {
+            yaml.append("  ");
+        }
+        return yaml;
+    }
+}
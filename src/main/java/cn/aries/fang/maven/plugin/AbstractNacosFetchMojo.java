@@ -0,0 +1,453 @@
+package cn.aries.fang.maven.plugin;
+
+
+import cn.aries.fang.maven.plugin.cache.DiskConfigCache;
+import cn.aries.fang.maven.plugin.cache.NacosClientLocalCache;
+import cn.aries.fang.maven.plugin.cache.RemoteConfigCache;
+import cn.aries.fang.maven.plugin.diff.KeyIndex;
+import cn.aries.fang.maven.plugin.diff.YamlKeyExtractor;
+import cn.aries.fang.maven.plugin.dto.ConfigKey;
+import cn.aries.fang.maven.plugin.dto.MappingConfig;
+import cn.aries.fang.maven.plugin.dto.RemoteConfig;
+import cn.aries.fang.maven.plugin.report.CheckReport;
+import cn.aries.fang.maven.plugin.report.ConfigMetrics;
+import cn.aries.fang.maven.plugin.utils.BoundedDigestInputStream;
+import cn.aries.fang.maven.plugin.utils.CancellationScope;
+import cn.aries.fang.maven.plugin.utils.NacosBulkConfigUtils;
+import cn.aries.fang.maven.plugin.utils.NacosListenerUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Parameter;
+
+
+/**
+ * 批量读取远程配置的插件基类
+ * <p>
+ * 远程配置依次从模块间共享的缓存、本机nacos客户端文件、磁盘缓存读取，都没有时下载，可以先按命名空间批量拉取；
+ * 完成后输出性能报告。
+ */
+public abstract class AbstractNacosFetchMojo extends AbstractNacosMojo {
+
+    /**
+     * 是否在同一次构建的模块间共享已下载的远程配置
+     */
+    @Parameter(property = "nacos.sharedCache", defaultValue = "true")
+    private boolean sharedCache;
+
+    /**
+     * 是否先从本机nacos客户端的配置快照和容灾文件读取远程配置
+     */
+    @Parameter(property = "nacos.clientCache", defaultValue = "false")
+    private boolean clientCache;
+
+    /**
+     * nacos客户端的配置目录
+     */
+    @Parameter(property = "nacos.clientCache.dir", defaultValue = "${user.home}/nacos/config")
+    private File clientCacheDir;
+
+    /**
+     * 是否通过监听接口比对MD5确认本地文件与nacos一致；关闭时直接信任地址对应目录中的文件，不登录、不发请求
+     */
+    @Parameter(property = "nacos.clientCache.validate", defaultValue = "true")
+    private boolean clientCacheValidate;
+
+    /**
+     * 是否把下载的远程配置(MD5和key索引)缓存到磁盘，供同一台机器上的其他构建使用
+     */
+    @Parameter(property = "nacos.configCache.disk", defaultValue = "false")
+    private boolean configCacheOnDisk;
+
+    /**
+     * 远程配置磁盘缓存目录
+     */
+    @Parameter(property = "nacos.configCache.dir", defaultValue = "${settings.localRepository}/.cache/nacos-maven-plugin/config")
+    private File configCacheDir;
+
+    /**
+     * 远程配置磁盘缓存的有效期，单位秒
+     */
+    @Parameter(property = "nacos.configCache.ttlSeconds", defaultValue = "60")
+    private long configCacheTtlSeconds;
+
+    /**
+     * 远程配置磁盘缓存的总大小上限，单位MB，超过时淘汰最久未访问的条目
+     */
+    @Parameter(property = "nacos.configCache.maxMegabytes", defaultValue = "64")
+    private long configCacheMaxMegabytes;
+
+    /**
+     * 构建会话开始时间，用于区分构建会话
+     */
+    @Parameter(defaultValue = "${session.request.startTime}", readonly = true)
+    private Date sessionStartTime;
+
+    /**
+     * 批量拉取：按命名空间分页查询或导出一次拉取所有需要的远程配置，服务端不支持时逐个下载
+     */
+    @Parameter(property = "nacos.bulkFetch", defaultValue = "false")
+    private boolean bulkFetch;
+
+    /**
+     * 批量拉取时每页的配置条数
+     */
+    @Parameter(property = "nacos.bulkFetch.pageSize", defaultValue = "200")
+    private int bulkFetchPageSize;
+
+    /**
+     * 是否输出性能报告：JSON报告和Prometheus textfile格式的指标
+     */
+    @Parameter(property = "nacos.report", defaultValue = "true")
+    private boolean report;
+
+    /**
+     * 性能报告的输出目录
+     */
+    @Parameter(property = "nacos.report.dir", defaultValue = "${project.build.directory}/nacos-config-check")
+    private File reportDir;
+
+    protected DiskConfigCache configCache;
+
+
+    /**
+     * 初始化连接池和限流，读取本机nacos客户端文件，打开磁盘缓存
+     *
+     * @param envs 环境列表
+     * @return 并发数
+     * @throws MojoExecutionException 连接池配置错误
+     */
+    protected int connect(List<EnvironmentContext> envs) throws MojoExecutionException {
+        int threads = configureClient(envs);
+
+        // token在第一次访问nacos时获取，所有配置都由本地文件提供时不登录
+        if (clientCache) {
+            NacosClientLocalCache localCache = new NacosClientLocalCache(clientCacheDir);
+            for (EnvironmentContext env : envs) {
+                env.clientConfigs = loadClientConfigs(env, localCache);
+            }
+        }
+        if (configCacheOnDisk) {
+            configCache = new DiskConfigCache(configCacheDir, TimeUnit.SECONDS.toMillis(configCacheTtlSeconds),
+                    configCacheMaxMegabytes * 1024 * 1024);
+        }
+        return threads;
+    }
+
+    /**
+     * 开启批量拉取时，按环境批量拉取需要下载的远程配置
+     *
+     * @param envs 环境列表
+     */
+    protected void fetchBulkConfigs(List<EnvironmentContext> envs) {
+        if (!bulkFetch) {
+            return;
+        }
+        for (EnvironmentContext env : envs) {
+            long start = System.nanoTime();
+            env.bulkConfigs = fetchBulkConfigs(env);
+            env.metrics.setBulkNanos(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 远程配置相对上次执行是否未变化，未变化的配置不下载
+     *
+     * @param env    环境
+     * @param config 配置文件信息
+     * @return 是否可以沿用上次的结果
+     */
+    protected boolean isRemoteUnchanged(EnvironmentContext env, MappingConfig config) {
+        return false;
+    }
+
+    protected void writeReport(String status) {
+        checkReport.finish(status);
+        if (!report) {
+            return;
+        }
+        try {
+            checkReport.write(reportDir);
+            getLog().info("=========性能报告：" + new File(reportDir, CheckReport.JSON_FILE) + "=========");
+        } catch (IOException e) {
+            getLog().warn("写入性能报告失败：" + reportDir, e);
+        }
+    }
+
+    /**
+     * 获取远程配置，开启共享缓存时同一次构建中相同的配置只下载一次
+     *
+     * @param env    环境
+     * @param config 配置文件信息
+     * @return 远程配置
+     * @throws MojoExecutionException 执行异常
+     */
+    protected RemoteConfig loadRemoteConfig(EnvironmentContext env, MappingConfig config) throws MojoExecutionException {
+        RemoteConfig clientConfig = clientConfig(env, config);
+        if (clientConfig != null) {
+            return clientConfig;
+        }
+        if (!sharedCache) {
+            return loadThroughDiskCache(env, config, inFlight);
+        }
+        ConfigKey key = configKey(env, config);
+        boolean[] fetched = {false};
+        try {
+            // 共享的加载使用缓存的取消范围，本模块快速失败只结束自己的等待
+            RemoteConfig remoteConfig = RemoteConfigCache.forSession(sessionStartTime).get(key, inFlight, scope -> {
+                fetched[0] = true;
+                return loadThroughDiskCache(env, config, scope);
+            });
+            if (!fetched[0]) {
+                if (lacksValueHashes(remoteConfig)) {
+                    return loadThroughDiskCache(env, config, inFlight);
+                }
+                getLog().info("=========使用已加载的远程文件：namespace：" + env.namespace + " dataId：" + config.getDataId() + "=========");
+                env.configMetrics.get(config).setSource(ConfigMetrics.SOURCE_SHARED_CACHE);
+            }
+            return remoteConfig;
+        } catch (MojoExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MojoExecutionException("下载nacos文件失败，dataId:" + config.getDataId(), e);
+        }
+    }
+
+    /**
+     * 异步获取远程配置，开启共享缓存时同一次构建中相同的配置只下载一次
+     *
+     * @param env    环境
+     * @param config 配置文件信息
+     * @param parser 解析远程配置的线程池
+     * @return 远程配置
+     */
+    protected CompletableFuture<RemoteConfig> loadRemoteConfigAsync(EnvironmentContext env, MappingConfig config, Executor parser) {
+        RemoteConfig clientConfig = clientConfig(env, config);
+        if (clientConfig != null) {
+            return CompletableFuture.completedFuture(clientConfig);
+        }
+        if (!sharedCache) {
+            return loadThroughDiskCacheAsync(env, config, parser, inFlight);
+        }
+        boolean[] fetched = {false};
+        CompletableFuture<RemoteConfig> remoteConfig = RemoteConfigCache.forSession(sessionStartTime).getAsync(configKey(env, config), scope -> {
+            fetched[0] = true;
+            return loadThroughDiskCacheAsync(env, config, parser, scope);
+        });
+        if (!fetched[0]) {
+            return remoteConfig.thenCompose(shared -> {
+                if (lacksValueHashes(shared)) {
+                    return loadThroughDiskCacheAsync(env, config, parser, inFlight);
+                }
+                getLog().info("=========使用已加载的远程文件：namespace：" + env.namespace + " dataId：" + config.getDataId() + "=========");
+                env.configMetrics.get(config).setSource(ConfigMetrics.SOURCE_SHARED_CACHE);
+                return CompletableFuture.completedFuture(shared);
+            });
+        }
+        return remoteConfig;
+    }
+
+    /**
+     * 其他模块共享的远程配置没有值的哈希，而本模块需要比对值
+     */
+    private boolean lacksValueHashes(RemoteConfig remoteConfig) {
+        return hashValues() && !remoteConfig.getKeys().hasValueHashes();
+    }
+
+    /**
+     * 本机nacos客户端文件中与nacos一致的配置
+     *
+     * @param env    环境
+     * @param config 配置文件信息
+     * @return 远程配置，没有可用的本地文件时返回null
+     */
+    private RemoteConfig clientConfig(EnvironmentContext env, MappingConfig config) {
+        RemoteConfig remoteConfig = env.clientConfigs == null ? null : env.clientConfigs.get(configKey(env, config));
+        if (remoteConfig != null) {
+            getLog().info("=========使用nacos客户端本地文件：namespace：" + env.namespace + " dataId：" + config.getDataId() + "=========");
+            env.configMetrics.get(config).setSource(ConfigMetrics.SOURCE_CLIENT_CACHE);
+        }
+        return remoteConfig;
+    }
+
+    /**
+     * 读取本机nacos客户端的配置快照和容灾文件，按配置确认MD5与nacos一致
+     *
+     * @param env        环境
+     * @param localCache nacos客户端的本地文件
+     * @return 可以直接使用的配置
+     */
+    private Map<ConfigKey, RemoteConfig> loadClientConfigs(EnvironmentContext env, NacosClientLocalCache localCache) {
+        long start = System.nanoTime();
+        Map<ConfigKey, RemoteConfig> clientConfigs = new HashMap<>();
+        for (MappingConfig config : configs) {
+            // 不确认MD5时只信任地址对应目录中的文件
+            File file = localCache.find(env.serverUrl, env.namespace, config.getGroup(), config.getDataId(), clientCacheValidate);
+            if (file == null) {
+                continue;
+            }
+            try (BoundedDigestInputStream in = new BoundedDigestInputStream(new FileInputStream(file), maxConfigBytes)) {
+                KeyIndex keys = YamlKeyExtractor.extract(in, hashValues());
+                in.drain();
+                clientConfigs.put(configKey(env, config), new RemoteConfig(in.md5Hex(), keys));
+            } catch (Exception e) {
+                getLog().debug("读取nacos客户端本地文件失败：" + file, e);
+            }
+        }
+        if (clientConfigs.isEmpty()) {
+            return null;
+        }
+        if (clientCacheValidate) {
+            try {
+                String server = env.router.primary();
+                Map<ConfigKey, String> serverMd5s = new LinkedHashMap<>();
+                clientConfigs.forEach((key, remoteConfig) -> serverMd5s.put(withServer(key, server), remoteConfig.getMd5()));
+                for (ConfigKey key : NacosListenerUtils.probe(server, token(env), serverMd5s)) {
+                    clientConfigs.remove(withServer(key, env.serverUrl));
+                }
+            } catch (Exception e) {
+                getLog().warn("确认nacos客户端本地文件的MD5失败，重新下载所有配置：" + e.getMessage());
+                return null;
+            }
+        }
+        env.metrics.setProbeNanos(env.metrics.getProbeNanos() + System.nanoTime() - start);
+        getLog().info("=========" + env.logPrefix + "nacos客户端本地文件可用：" + clientConfigs.size() + "/" + configs.size() + "=========");
+        return clientConfigs;
+    }
+
+    /**
+     * 开启磁盘缓存时先读磁盘缓存，未命中时下载并写入；增量探测到远程已变化的配置直接下载，
+     * 比对值时也直接下载，磁盘缓存不保存值的哈希
+     *
+     * @param env    环境
+     * @param config 配置文件信息
+     * @param scope  请求登记的取消范围
+     * @return 远程配置
+     * @throws MojoExecutionException 执行异常
+     */
+    private RemoteConfig loadThroughDiskCache(EnvironmentContext env, MappingConfig config, CancellationScope scope) throws MojoExecutionException {
+        if (configCache == null) {
+            return fetchRemoteConfig(env, config, scope);
+        }
+        ConfigKey key = configKey(env, config);
+        if (isRemoteChanged(env, config) || hashValues()) {
+            RemoteConfig remoteConfig = fetchRemoteConfig(env, config, scope);
+            configCache.put(key, remoteConfig);
+            return remoteConfig;
+        }
+        boolean[] fetched = {false};
+        try {
+            RemoteConfig remoteConfig = configCache.get(key, () -> {
+                fetched[0] = true;
+                return fetchRemoteConfig(env, config, scope);
+            });
+            if (!fetched[0]) {
+                logDiskCacheHit(env, config);
+            }
+            return remoteConfig;
+        } catch (MojoExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MojoExecutionException("下载nacos文件失败，dataId:" + config.getDataId(), e);
+        }
+    }
+
+    /**
+     * 异步获取远程配置，开启磁盘缓存时先读磁盘缓存
+     *
+     * @param env    环境
+     * @param config 配置文件信息
+     * @param parser 解析远程配置的线程池
+     * @param scope  请求登记的取消范围
+     * @return 远程配置
+     */
+    private CompletableFuture<RemoteConfig> loadThroughDiskCacheAsync(EnvironmentContext env, MappingConfig config, Executor parser,
+                                                                      CancellationScope scope) {
+        if (configCache == null) {
+            return fetchRemoteConfigAsync(env, config, parser, scope);
+        }
+        ConfigKey key = configKey(env, config);
+        if (isRemoteChanged(env, config) || hashValues()) {
+            CompletableFuture<RemoteConfig> remoteConfig = fetchRemoteConfigAsync(env, config, parser, scope);
+            remoteConfig.thenAccept(loaded -> configCache.put(key, loaded));
+            return remoteConfig;
+        }
+        boolean[] fetched = {false};
+        CompletableFuture<RemoteConfig> remoteConfig = configCache.getAsync(key, () -> {
+            fetched[0] = true;
+            return fetchRemoteConfigAsync(env, config, parser, scope);
+        });
+        if (!fetched[0]) {
+            logDiskCacheHit(env, config);
+        }
+        return remoteConfig;
+    }
+
+    private void logDiskCacheHit(EnvironmentContext env, MappingConfig config) {
+        getLog().info("=========使用磁盘缓存的远程文件：namespace：" + env.namespace + " dataId：" + config.getDataId() + "=========");
+        env.configMetrics.get(config).setSource(ConfigMetrics.SOURCE_DISK_CACHE);
+    }
+
+    /**
+     * 增量探测是否发现远程配置已变化，已变化时磁盘缓存可能过期
+     */
+    private static boolean isRemoteChanged(EnvironmentContext env, MappingConfig config) {
+        return env.changedRemoteConfigs != null && env.changedRemoteConfigs.contains(configKey(env, config));
+    }
+
+    /**
+     * 批量拉取一个环境需要下载的远程配置：先分页查询，查询接口不可用时导出命名空间
+     *
+     * @param env 环境
+     * @return 拉取到的配置内容，服务端不支持时返回null，逐个下载
+     */
+    private Map<ConfigKey, String> fetchBulkConfigs(EnvironmentContext env) {
+        Set<ConfigKey> wanted = new HashSet<>();
+        Set<String> groups = new HashSet<>();
+        RemoteConfigCache cache = sharedCache ? RemoteConfigCache.forSession(sessionStartTime) : null;
+        for (MappingConfig config : configs) {
+            ConfigKey key = configKey(env, config);
+            if (!isRemoteUnchanged(env, config) && (cache == null || !cache.contains(key))
+                    && (env.clientConfigs == null || !env.clientConfigs.containsKey(key))
+                    && (configCache == null || isRemoteChanged(env, config) || hashValues() || configCache.get(key) == null)) {
+                wanted.add(key);
+                groups.add(config.getGroup());
+            }
+        }
+        if (wanted.size() <= 1) {
+            return null;
+        }
+        // 只涉及一个分组时按分组过滤，否则拉取命名空间下的所有分组
+        String group = groups.size() == 1 ? groups.iterator().next() : "";
+        String tenant = StringUtils.defaultString(env.namespace);
+        getLog().info("=========批量拉取远程配置：namespace：" + env.namespace + " 配置数：" + wanted.size() + "=========");
+        // 批量拉取已有降级方案，只请求当前最优的节点，不重试
+        String server = env.router.primary();
+        Set<ConfigKey> serverWanted = new HashSet<>();
+        wanted.forEach(key -> serverWanted.add(withServer(key, server)));
+        Map<ConfigKey, String> serverContents;
+        try {
+            serverContents = NacosBulkConfigUtils.search(server, token(env), tenant, group, bulkFetchPageSize, maxConfigBytes, serverWanted);
+        } catch (Exception e) {
+            getLog().warn("分页查询远程配置失败，改用导出接口：" + e.getMessage());
+            try {
+                serverContents = NacosBulkConfigUtils.export(server, token(env), tenant, group, maxConfigBytes, serverWanted);
+            } catch (Exception ex) {
+                getLog().warn("批量拉取远程配置失败，逐个下载：" + ex.getMessage());
+                return null;
+            }
+        }
+        Map<ConfigKey, String> contents = new HashMap<>();
+        serverContents.forEach((key, content) -> contents.put(withServer(key, env.serverUrl), content));
+        getLog().info("=========批量拉取到远程配置：" + contents.size() + "/" + wanted.size() + "=========");
+        return contents;
+    }
+}
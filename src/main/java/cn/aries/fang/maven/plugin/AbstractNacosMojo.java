@@ -0,0 +1,922 @@
+package cn.aries.fang.maven.plugin;
+
+
+import cn.aries.fang.maven.plugin.diff.KeyDiffEngine;
+import cn.aries.fang.maven.plugin.diff.KeyDiffResult;
+import cn.aries.fang.maven.plugin.diff.KeyIndex;
+import cn.aries.fang.maven.plugin.diff.YamlKeyExtractor;
+import cn.aries.fang.maven.plugin.dto.ConfigKey;
+import cn.aries.fang.maven.plugin.dto.GovernorConfig;
+import cn.aries.fang.maven.plugin.dto.HttpClientConfig;
+import cn.aries.fang.maven.plugin.dto.MappingConfig;
+import cn.aries.fang.maven.plugin.dto.NacosEnvironment;
+import cn.aries.fang.maven.plugin.dto.NacosLoginResp;
+import cn.aries.fang.maven.plugin.dto.RemoteConfig;
+import cn.aries.fang.maven.plugin.report.CheckReport;
+import cn.aries.fang.maven.plugin.report.ConfigMetrics;
+import cn.aries.fang.maven.plugin.report.EnvironmentMetrics;
+import cn.aries.fang.maven.plugin.utils.BoundedDigestInputStream;
+import cn.aries.fang.maven.plugin.utils.CancellationScope;
+import cn.aries.fang.maven.plugin.utils.ExecutorUtils;
+import cn.aries.fang.maven.plugin.utils.HttpClientResult;
+import cn.aries.fang.maven.plugin.utils.HttpClientUtils;
+import cn.aries.fang.maven.plugin.utils.JasyptUtils;
+import cn.aries.fang.maven.plugin.utils.NacosConfigDiscovery;
+import cn.aries.fang.maven.plugin.utils.NacosServerRouter;
+import cn.aries.fang.maven.plugin.utils.NacosTokenCache;
+import cn.aries.fang.maven.plugin.utils.PooledHttpClient;
+import cn.aries.fang.maven.plugin.utils.RequestGovernor;
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONUtil;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Parameter;
+
+
+/**
+ * nacos配置插件的基类
+ * <p>
+ * 各个goal共用的连接、环境和configs配置：解析环境和配置，初始化连接池和限流，登录，下载并展开远程配置，
+ * 以及单个配置比对结果的输出。
+ */
+public abstract class AbstractNacosMojo extends AbstractMojo {
+
+    /**
+     * 输出值的差异时单个值的最大长度
+     */
+    private static final int MAX_VALUE_LENGTH = 200;
+
+    @Parameter(property = "jasypt.encryptor.password", defaultValue = "4df98cad061444e6adb3a703876ec01b")
+    private String encryptPassword;
+
+    /**
+     * nacos地址，集群的多个节点用逗号分隔，请求优先发往响应最快的健康节点
+     */
+    @Parameter(property = "nacos.serverUrl")
+    private String serverUrl;
+
+    @Parameter(property = "nacos.username")
+    private String username;
+
+    @Parameter(property = "nacos.password")
+    private String password;
+
+    @Parameter(property = "nacos.namespace", defaultValue = "")
+    private String namespace;
+
+    /**
+     * 要处理的配置；开启自动发现时可以不配置，自动发现的配置追加在后面
+     */
+    @Parameter(property = "configs")
+    protected List<MappingConfig> configs;
+
+    /**
+     * 自动发现：从资源目录的bootstrap、application文件中按spring-cloud-alibaba的规则推导要处理的配置，
+     * 本地文件为扫描目录中与dataId同名的yaml文件
+     */
+    @Parameter(property = "nacos.discover", defaultValue = "false")
+    private boolean discover;
+
+    /**
+     * 自动发现扫描的资源目录，多个目录并行扫描，不配置时为当前模块的src/main/resources；
+     * 在聚合工程中可列出各模块的资源目录，各模块共用的配置只处理一次
+     */
+    @Parameter(property = "nacos.discover.dirs")
+    private List<File> discoverDirs;
+
+    /**
+     * 自动发现时激活的profile，多个用逗号分隔，不配置时使用配置文件中的spring.profiles.active
+     */
+    @Parameter(property = "nacos.discover.profiles")
+    private List<String> discoverProfiles;
+
+    @Parameter(defaultValue = "${project.basedir}", readonly = true)
+    private File projectBaseDir;
+
+    /**
+     * 多环境：每个环境单独配置serverUrl、namespace和账号，一次执行处理所有环境；
+     * 本地文件只解析一次，所有环境的配置共用连接池。不配置时只处理上面的serverUrl、namespace
+     */
+    @Parameter
+    private List<NacosEnvironment> environments;
+
+    /**
+     * 并发处理的配置数；多环境时不小于环境数
+     */
+    @Parameter(property = "nacos.parallelism", defaultValue = "1")
+    protected int parallelism;
+
+    /**
+     * token过期前多少秒重新登录
+     */
+    @Parameter(property = "nacos.tokenCache.refreshAheadSeconds", defaultValue = "300")
+    private long tokenRefreshAheadSeconds;
+
+    /**
+     * 是否把token缓存到磁盘，供同一台机器上的其他构建使用
+     */
+    @Parameter(property = "nacos.tokenCache.disk", defaultValue = "false")
+    private boolean tokenCacheOnDisk;
+
+    /**
+     * token磁盘缓存目录
+     */
+    @Parameter(property = "nacos.tokenCache.dir", defaultValue = "${settings.localRepository}/.cache/nacos-maven-plugin/token")
+    private File tokenCacheDir;
+
+    /**
+     * http连接池配置，不配置时使用默认值
+     */
+    @Parameter
+    private HttpClientConfig httpClient;
+
+    /**
+     * 请求限流配置，不配置时不限流；配置后同一次构建的所有模块共用
+     */
+    @Parameter
+    private GovernorConfig governor;
+
+    /**
+     * 请求失败(连接失败、超时、5xx或429)时的重试次数，配置多个地址时依次换节点重试
+     */
+    @Parameter(property = "nacos.retries", defaultValue = "2")
+    private int retries;
+
+    /**
+     * 重试的基础退避时间，单位毫秒，实际等待时间在0到基础时间×2^(重试次数-1)之间随机
+     */
+    @Parameter(property = "nacos.retryBackoffMillis", defaultValue = "200")
+    private long retryBackoffMillis;
+
+    /**
+     * 对冲请求：配置多个地址时，下载配置超过近期响应时间的该分位数(如95)仍未返回，向另一个节点再发一次，先返回的生效；为0时不对冲
+     */
+    @Parameter(property = "nacos.hedgePercentile", defaultValue = "0")
+    private int hedgePercentile;
+
+    /**
+     * 单个远程配置的字节数上限，超过时失败，不大于0时不限制；远程配置边下载边解析，不在内存中保留完整内容
+     */
+    @Parameter(property = "nacos.maxConfigBytes", defaultValue = "10485760")
+    protected long maxConfigBytes;
+
+    @Parameter(defaultValue = "${project.artifactId}", readonly = true)
+    private String projectArtifactId;
+
+    protected CheckReport checkReport;
+
+    /**
+     * 正在进行的远程请求，快速失败时一起中止
+     */
+    protected final CancellationScope inFlight = new CancellationScope();
+
+    /**
+     * 是否已登记为连接池的使用者
+     */
+    private boolean clientConfigured;
+
+    /**
+     * 本地文件的key索引，多个环境共用，每个文件只解析一次
+     */
+    protected final ConcurrentMap<String, CompletableFuture<KeyIndex>> localKeys = new ConcurrentHashMap<>();
+
+
+    /**
+     * 合并configs与自动发现的配置：configs中完全相同的配置只保留一个，
+     * 自动发现的配置与configs或彼此之间group、dataId相同时只保留第一个，同一个dataId不会重复拉取
+     *
+     * @throws MojoExecutionException 自动发现失败或没有要处理的配置
+     */
+    private void resolveConfigs() throws MojoExecutionException {
+        List<MappingConfig> resolved = new ArrayList<>();
+        Set<String> explicit = new HashSet<>();
+        Set<String> pairs = new HashSet<>();
+        if (configs != null) {
+            for (MappingConfig config : configs) {
+                String pair = config.getGroup() + "/" + config.getDataId();
+                if (explicit.add(pair + "|" + config.getConfigPath())) {
+                    pairs.add(pair);
+                    resolved.add(config);
+                } else {
+                    getLog().warn("重复的配置，只检查一次：" + pair + " -> " + config.getConfigPath());
+                }
+            }
+        }
+        if (discover) {
+            List<File> dirs = CollectionUtil.isEmpty(discoverDirs)
+                    ? Collections.singletonList(new File(projectBaseDir, "src/main/resources")) : discoverDirs;
+            long start = System.currentTimeMillis();
+            ExecutorService executor = ExecutorUtils.newBoundedExecutor(
+                    Math.min(dirs.size(), Runtime.getRuntime().availableProcessors()), "nacos-config-discover-");
+            try {
+                NacosConfigDiscovery discovery = new NacosConfigDiscovery(discoverProfiles);
+                int found = 0;
+                for (MappingConfig config : discovery.discover(dirs, executor)) {
+                    if (pairs.add(config.getGroup() + "/" + config.getDataId())) {
+                        found++;
+                        resolved.add(config);
+                        getLog().info("自动发现配置：group：" + config.getGroup() + " dataId：" + config.getDataId()
+                                + " -> " + config.getConfigPath());
+                    }
+                }
+                // 不带扩展名、没有对应profile的dataId通常本来就不存在，只汇总输出
+                List<String> unmatched = new ArrayList<>(discovery.getUnmatched());
+                unmatched.removeAll(pairs);
+                if (!unmatched.isEmpty()) {
+                    getLog().info("以下自动发现的配置没有同名的本地yaml文件，不检查：" + String.join(",", unmatched));
+                }
+                getLog().info("=========自动发现配置：" + found + "个，扫描目录：" + dirs.size() + "个，耗时："
+                        + (System.currentTimeMillis() - start) + "ms=========");
+            } catch (IOException e) {
+                throw new MojoExecutionException("自动发现配置失败", e);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        if (resolved.isEmpty()) {
+            throw new MojoExecutionException("没有要检查的配置：请配置configs或开启nacos.discover");
+        }
+        configs = resolved;
+    }
+
+    /**
+     * 解析要处理的环境：未配置environments时只处理全局的serverUrl、namespace
+     *
+     * @param online 是否访问nacos，离线检查时不要求serverUrl和账号
+     * @return 环境列表
+     * @throws MojoExecutionException 环境配置不完整
+     */
+    protected List<EnvironmentContext> resolveEnvironments(boolean online) throws MojoExecutionException {
+        resolveConfigs();
+        List<EnvironmentContext> envs = new ArrayList<>();
+        if (CollectionUtil.isEmpty(environments)) {
+            envs.add(new EnvironmentContext(StringUtils.defaultIfEmpty(namespace, "default"),
+                    serverUrl, namespace, username, password, encryptPassword));
+        } else {
+            Set<String> names = new HashSet<>();
+            for (NacosEnvironment environment : environments) {
+                String name = StringUtils.defaultIfEmpty(environment.getName(),
+                        StringUtils.defaultIfEmpty(environment.getNamespace(), "default"));
+                if (!names.add(name)) {
+                    throw new MojoExecutionException("环境名称重复：" + name);
+                }
+                envs.add(new EnvironmentContext(name,
+                        StringUtils.defaultIfEmpty(environment.getServerUrl(), serverUrl),
+                        environment.getNamespace(),
+                        StringUtils.defaultIfEmpty(environment.getUsername(), username),
+                        StringUtils.defaultIfEmpty(environment.getPassword(), password),
+                        StringUtils.defaultIfEmpty(environment.getEncryptPassword(), encryptPassword)));
+            }
+        }
+        checkReport = new CheckReport(projectArtifactId);
+        for (EnvironmentContext env : envs) {
+            env.logPrefix = envs.size() > 1 ? "[" + env.name + "]" : "";
+            env.metrics = checkReport.addEnvironment(env.name, env.serverUrl, env.namespace);
+            for (MappingConfig config : configs) {
+                env.configMetrics.put(config, env.metrics.addConfig(config.getDataId(), config.getGroup(), config.getConfigPath()));
+            }
+            if (!online) {
+                continue;
+            }
+            if (StringUtils.isAnyEmpty(env.serverUrl, env.username, env.password)) {
+                throw new MojoExecutionException("环境" + env.name + "未配置serverUrl、username或password");
+            }
+            env.router = new NacosServerRouter(env.serverUrl, retries, retryBackoffMillis, hedgePercentile);
+        }
+        return envs;
+    }
+
+    /**
+     * 初始化连接池和限流，执行结束时调用 {@link #releaseClient()}
+     *
+     * @param envs 环境列表
+     * @return 并发数
+     * @throws MojoExecutionException 连接池配置错误
+     */
+    protected int configureClient(List<EnvironmentContext> envs) throws MojoExecutionException {
+        if (httpClient != null) {
+            try {
+                PooledHttpClient.versionPolicyOf(httpClient.getHttpVersionPolicy());
+            } catch (IllegalArgumentException e) {
+                throw new MojoExecutionException("httpClient配置错误：" + e.getMessage(), e);
+            }
+        }
+        PooledHttpClient pooledClient = HttpClientUtils.configure(httpClient);
+        clientConfigured = true;
+        RequestGovernor requestGovernor = HttpClientUtils.configureGovernor(governor);
+        if (requestGovernor != null) {
+            getLog().info("请求限流：当前并发上限" + requestGovernor.currentLimit()
+                    + (requestGovernor.getConfig().getRatePerSecond() > 0
+                    ? "，每秒最多" + requestGovernor.getConfig().getRatePerSecond() + "个请求" : ""));
+        }
+        int threads = envs.size() > 1 ? Math.max(parallelism, envs.size()) : parallelism;
+        if (threads > pooledClient.getConfig().getMaxPerRoute()) {
+            getLog().warn("并发数" + threads + "大于每个路由的最大连接数" + pooledClient.getConfig().getMaxPerRoute() + "，多出的请求会等待连接");
+        }
+        return threads;
+    }
+
+    /**
+     * 释放 {@link #configureClient(List)} 登记的连接池，其他模块仍在使用时不关闭
+     */
+    protected void releaseClient() {
+        if (clientConfigured) {
+            clientConfigured = false;
+            HttpClientUtils.release();
+        }
+    }
+
+    protected MojoExecutionException toMojoExecutionException(Throwable cause) {
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof MojoExecutionException) {
+            return (MojoExecutionException) cause;
+        }
+        return new MojoExecutionException("检查配置失败", cause);
+    }
+
+    /**
+     * 是否计算叶子值的哈希；只在比对值时需要，哈希只保存在内存中
+     *
+     * @return 默认不计算
+     */
+    protected boolean hashValues() {
+        return false;
+    }
+
+    /**
+     * 加载本地文件的key，多个环境引用同一个文件时只解析一次
+     *
+     * @param config  配置文件信息
+     * @param metrics 实际解析时记录耗时
+     * @return key索引
+     * @throws Exception 读取或解析失败
+     */
+    protected KeyIndex loadLocalKeys(MappingConfig config, ConfigMetrics metrics) throws Exception {
+        CompletableFuture<KeyIndex> created = new CompletableFuture<>();
+        CompletableFuture<KeyIndex> existing = localKeys.putIfAbsent(config.getConfigPath(), created);
+        if (existing != null) {
+            try {
+                return existing.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+        getLog().info("=========加载本地文件：" + config.getConfigPath() + "=========");
+        try {
+            long start = System.nanoTime();
+            KeyIndex keys = YamlKeyExtractor.extract(new File(config.getConfigPath()), hashValues());
+            metrics.setLocalLoadNanos(System.nanoTime() - start);
+            created.complete(keys);
+            return keys;
+        } catch (Exception e) {
+            created.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 比对远程与本地的key，输出类型与远程不一致的key
+     *
+     * @param env        环境
+     * @param config     配置文件信息
+     * @param remoteKeys 远程配置的key
+     * @param localKeys  本地文件的key
+     * @param valueDiff  是否比对叶子的值
+     * @return 比对结果
+     */
+    protected KeyDiffResult diff(EnvironmentContext env, MappingConfig config, KeyIndex remoteKeys, KeyIndex localKeys,
+                                 boolean valueDiff) {
+        ConfigMetrics metrics = env.configMetrics.get(config);
+        long start = System.nanoTime();
+        KeyDiffResult diffResult = KeyDiffEngine.diff(remoteKeys, localKeys, valueDiff);
+        metrics.setDiffNanos(System.nanoTime() - start);
+        metrics.setRemoteKeys(remoteKeys.getLeafCount());
+        if (CollectionUtil.isNotEmpty(diffResult.getTypeChanges())) {
+            getLog().warn(config.getDataId() + "以下key类型与远程不一致(远程->本地)：\n"
+                    + CollectionUtil.join(diffResult.getTypeChanges(), ","));
+        }
+        if (getLog().isDebugEnabled() && CollectionUtil.isNotEmpty(diffResult.getExtraKeys())) {
+            getLog().debug(config.getDataId() + "以下key远程不存在：\n" + String.join(",", diffResult.getExtraKeys()));
+        }
+        return diffResult;
+    }
+
+    /**
+     * 记录并立即输出单个配置的比对结果
+     *
+     * @param env        环境
+     * @param config     配置文件信息
+     * @param diffResult 比对结果
+     * @param valueDiff  是否比对了叶子的值
+     */
+    protected void recordDiff(EnvironmentContext env, MappingConfig config, KeyDiffResult diffResult, boolean valueDiff) {
+        ConfigMetrics metrics = env.configMetrics.get(config);
+        metrics.setStatus(diffResult.isPassed() ? CheckReport.STATUS_PASSED : CheckReport.STATUS_FAILED);
+        metrics.setMissingKeys(diffResult.getMissingKeys().size());
+        metrics.setExtraKeys(diffResult.getExtraKeys().size());
+        metrics.setTypeChanges(diffResult.getTypeChanges().size());
+        if (valueDiff) {
+            metrics.setValueChanges(diffResult.getValueChanges().size());
+            logValueChanges(env, config, diffResult.getValueChanges());
+        }
+        if (diffResult.isPassed()) {
+            getLog().info("=========" + env.logPrefix + config.getDataId() + "检查通过=========");
+            return;
+        }
+        getLog().error(env.logPrefix + config.getDataId() + "以下key缺失：\n" + String.join(",", diffResult.getMissingKeys()));
+    }
+
+    /**
+     * 输出值的差异；比对时只有哈希，这里才从本地文件中取出有差异的key的值
+     */
+    private void logValueChanges(EnvironmentContext env, MappingConfig config, List<KeyDiffResult.ValueChange> valueChanges) {
+        if (valueChanges.isEmpty()) {
+            return;
+        }
+        List<String> paths = new ArrayList<>(valueChanges.size());
+        for (KeyDiffResult.ValueChange change : valueChanges) {
+            paths.add(change.getPath());
+        }
+        try {
+            Map<String, String> localValues = YamlKeyExtractor.extractValues(new File(config.getConfigPath()), paths);
+            for (KeyDiffResult.ValueChange change : valueChanges) {
+                change.setLocalValue(StringUtils.abbreviate(localValues.get(change.getPath()), MAX_VALUE_LENGTH));
+            }
+        } catch (Exception e) {
+            getLog().warn("读取" + config.getConfigPath() + "中的值失败，只输出key", e);
+        }
+        Map<KeyDiffResult.ValueChange.Kind, List<KeyDiffResult.ValueChange>> byKind = new EnumMap<>(KeyDiffResult.ValueChange.Kind.class);
+        for (KeyDiffResult.ValueChange change : valueChanges) {
+            byKind.computeIfAbsent(change.getKind(), kind -> new ArrayList<>()).add(change);
+        }
+        byKind.forEach((kind, changes) -> {
+            String title;
+            switch (kind) {
+                case CHANGED:
+                    title = "以下key的值与远程不同(key=本地值)";
+                    break;
+                case TYPE_MISMATCH:
+                    title = "以下key的值类型与远程不一致(远程->本地)";
+                    break;
+                default:
+                    title = "以下key的本地值只有占位符(key=本地值)";
+                    break;
+            }
+            getLog().warn(env.logPrefix + config.getDataId() + title + "：\n" + CollectionUtil.join(changes, ","));
+        });
+    }
+
+    protected static ConfigKey configKey(EnvironmentContext env, MappingConfig config) {
+        return new ConfigKey(env.serverUrl, env.namespace, config.getGroup(), config.getDataId());
+    }
+
+    /**
+     * 配置按集群地址标识，批量接口按实际请求的节点标识，两者之间转换
+     */
+    protected static ConfigKey withServer(ConfigKey key, String serverUrl) {
+        return new ConfigKey(serverUrl, key.getTenant(), key.getGroup(), key.getDataId());
+    }
+
+    protected static String stateKey(EnvironmentContext env, MappingConfig config) {
+        return configKey(env, config) + "|" + config.getConfigPath();
+    }
+
+    /**
+     * 下载并展开远程配置，请求登记到本插件的取消范围
+     *
+     * @param env    环境
+     * @param config 配置文件信息
+     * @return 远程配置
+     * @throws MojoExecutionException 执行异常
+     */
+    protected RemoteConfig fetchRemoteConfig(EnvironmentContext env, MappingConfig config) throws MojoExecutionException {
+        return fetchRemoteConfig(env, config, inFlight);
+    }
+
+    /**
+     * 下载并展开远程配置
+     *
+     * @param env    环境
+     * @param config 配置文件信息
+     * @param scope  请求登记的取消范围，模块间共享的加载使用共享的取消范围
+     * @return 远程配置
+     * @throws MojoExecutionException 执行异常
+     */
+    protected RemoteConfig fetchRemoteConfig(EnvironmentContext env, MappingConfig config, CancellationScope scope) throws MojoExecutionException {
+        String bulkContent = bulkContent(env, config);
+        if (bulkContent != null) {
+            return toRemoteConfig(env, config, bulkResult(env, config, bulkContent), scope);
+        }
+        getLog().info("=========加载远程文件：namespace：" + env.namespace + " dataId：" + config.getDataId() + "=========");
+        for (boolean retried = false; ; retried = true) {
+            String token = token(env);
+            try {
+                return downloadRemoteConfig(env, config, scope, remoteConfigPath(env, config, token));
+            } catch (MojoExecutionException e) {
+                throw e;
+            } catch (ExecutionException e) {
+                if (!scope.isCancelled()) {
+                    getLog().error("=========门禁检查不通过=========");
+                }
+                throw new MojoExecutionException("下载nacos文件失败，dataId:" + config.getDataId(), e.getCause());
+            } catch (HttpResponseException e) {
+                if (!retried && isAuthFailure(e.getStatusCode()) && !scope.isCancelled()) {
+                    getLog().warn("nacos拒绝了token，重新登录后再次下载，dataId:" + config.getDataId() + "，HTTP Status: " + e.getStatusCode());
+                    invalidateToken(env, token);
+                    continue;
+                }
+                getLog().error("=========门禁检查不通过=========");
+                throw new MojoExecutionException("下载nacos文件失败，dataId:" + config.getDataId() + "，HTTP Status: " + e.getStatusCode(), e);
+            } catch (Exception e) {
+                if (!scope.isCancelled()) {
+                    getLog().error("=========门禁检查不通过=========");
+                }
+                throw new MojoExecutionException("下载nacos文件失败，dataId:" + config.getDataId(), e);
+            }
+        }
+    }
+
+    /**
+     * 请求一次远程配置，失败时换节点重试
+     *
+     * @throws HttpResponseException 状态码不为200
+     */
+    private RemoteConfig downloadRemoteConfig(EnvironmentContext env, MappingConfig config, CancellationScope scope,
+                                              String path) throws Exception {
+        ConfigMetrics metrics = env.configMetrics.get(config);
+        long start = System.nanoTime();
+        if (env.router.isHedging()) {
+            // 对冲请求走异步客户端，按字节接收后解析
+            HttpClientResult response = awaitCancellable(env.router.getAsync(path, maxConfigBytes), scope);
+            if (response.getCode() != HttpStatus.SC_SUCCESS) {
+                throw new HttpResponseException(response.getCode(), StringUtils.defaultString(response.getContent()));
+            }
+            metrics.setSource(ConfigMetrics.SOURCE_HTTP);
+            metrics.setFetchNanos(System.nanoTime() - start);
+            return toRemoteConfig(env, config, response, scope);
+        }
+        // 发送 GET 请求，响应体边下载边解析，不在内存中保留完整内容；失败时换节点重试
+        RemoteConfig remoteConfig = env.router.execute(server -> HttpClientUtils.doGetStream(server + path, scope, body -> {
+            BoundedDigestInputStream in = new BoundedDigestInputStream(body, maxConfigBytes);
+            KeyIndex keys = YamlKeyExtractor.extract(in, hashValues());
+            in.drain();
+            metrics.setRemoteBytes(in.getCount());
+            return new RemoteConfig(in.md5Hex(), keys);
+        }), scope);
+        metrics.setSource(ConfigMetrics.SOURCE_HTTP);
+        metrics.setFetchNanos(System.nanoTime() - start);
+        metrics.setLeaseNanos(PooledHttpClient.leaseNanos());
+        return remoteConfig;
+    }
+
+    /**
+     * 等待异步请求，期间登记到取消范围
+     */
+    private HttpClientResult awaitCancellable(CompletableFuture<HttpClientResult> request, CancellationScope scope) throws ExecutionException, InterruptedException {
+        Cancellable cancellable = () -> request.cancel(true);
+        scope.register(cancellable);
+        try {
+            return request.get();
+        } finally {
+            scope.unregister(cancellable);
+        }
+    }
+
+    /**
+     * 异步下载远程配置，响应到达后在解析线程上展开
+     *
+     * @param env    环境
+     * @param config 配置文件信息
+     * @param parser 解析远程配置的线程池
+     * @param scope  请求登记的取消范围
+     * @return 远程配置
+     */
+    protected CompletableFuture<RemoteConfig> fetchRemoteConfigAsync(EnvironmentContext env, MappingConfig config, Executor parser,
+                                                                     CancellationScope scope) {
+        String bulkContent = bulkContent(env, config);
+        if (bulkContent != null) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return toRemoteConfig(env, config, bulkResult(env, config, bulkContent), scope);
+                } catch (MojoExecutionException e) {
+                    throw new CompletionException(e);
+                }
+            }, parser);
+        }
+        getLog().info("=========加载远程文件：namespace：" + env.namespace + " dataId：" + config.getDataId() + "=========");
+        return downloadRemoteConfigAsync(env, config, parser, scope, false);
+    }
+
+    /**
+     * 异步请求一次远程配置；token被拒绝(401/403)时丢弃token，重新登录后再请求一次
+     */
+    private CompletableFuture<RemoteConfig> downloadRemoteConfigAsync(EnvironmentContext env, MappingConfig config, Executor parser,
+                                                                      CancellationScope scope, boolean retried) {
+        String token;
+        try {
+            token = token(env);
+        } catch (MojoExecutionException e) {
+            CompletableFuture<RemoteConfig> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        CompletableFuture<HttpClientResult> request = env.router.getAsync(remoteConfigPath(env, config, token), maxConfigBytes);
+        Cancellable cancellable = () -> request.cancel(true);
+        scope.register(cancellable);
+        return request.handleAsync((response, error) -> {
+            scope.unregister(cancellable);
+            if (error == null && !retried && isAuthFailure(response.getCode()) && !scope.isCancelled()) {
+                getLog().warn("nacos拒绝了token，重新登录后再次下载，dataId:" + config.getDataId() + "，HTTP Status: " + response.getCode());
+                invalidateToken(env, token);
+                return downloadRemoteConfigAsync(env, config, parser, scope, true);
+            }
+            try {
+                if (error != null) {
+                    if (!scope.isCancelled()) {
+                        getLog().error("=========门禁检查不通过=========");
+                    }
+                    throw new MojoExecutionException("下载nacos文件失败，dataId:" + config.getDataId(),
+                            error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                }
+                ConfigMetrics metrics = env.configMetrics.get(config);
+                metrics.setSource(ConfigMetrics.SOURCE_HTTP);
+                metrics.setFetchNanos(response.getElapsedNanos());
+                return CompletableFuture.completedFuture(toRemoteConfig(env, config, response, scope));
+            } catch (MojoExecutionException e) {
+                throw new CompletionException(e);
+            }
+        }, parser).thenCompose(Function.identity());
+    }
+
+    /**
+     * 批量拉取到的远程配置内容，取出后即释放
+     *
+     * @param env    环境
+     * @param config 配置文件信息
+     * @return 配置内容，未拉取到时返回null
+     */
+    private String bulkContent(EnvironmentContext env, MappingConfig config) {
+        if (env.bulkConfigs == null) {
+            return null;
+        }
+        String content;
+        synchronized (env.bulkConfigs) {
+            content = env.bulkConfigs.remove(configKey(env, config));
+        }
+        if (content != null) {
+            getLog().info("=========使用批量拉取的远程文件：namespace：" + env.namespace + " dataId：" + config.getDataId() + "=========");
+        }
+        return content;
+    }
+
+    private static String remoteConfigPath(EnvironmentContext env, MappingConfig config, String token) {
+        return String.format("/nacos/v1/cs/configs?dataId=%s&group=%s&tenant=%s&accessToken=%s", config.getDataId(), config.getGroup(), env.namespace, token);
+    }
+
+    private static HttpClientResult bulkResult(EnvironmentContext env, MappingConfig config, String content) {
+        env.configMetrics.get(config).setSource(ConfigMetrics.SOURCE_BULK);
+        HttpClientResult result = new HttpClientResult(200, content);
+        result.setBytes(content.getBytes(StandardCharsets.UTF_8).length);
+        return result;
+    }
+
+    private RemoteConfig toRemoteConfig(EnvironmentContext env, MappingConfig config, HttpClientResult response,
+                                        CancellationScope scope) throws MojoExecutionException {
+        if (scope.isCancelled()) {
+            throw new MojoExecutionException("快速失败，跳过解析远程文件，dataId:" + config.getDataId());
+        }
+        if (response.getCode() == 200) {
+            ConfigMetrics metrics = env.configMetrics.get(config);
+            metrics.setRemoteBytes(response.getBytes());
+            long start = System.nanoTime();
+            RemoteConfig remoteConfig;
+            if (response.getBody() != null) {
+                // 直接解析接收缓冲区，不转成字符串
+                BoundedDigestInputStream in = new BoundedDigestInputStream(
+                        new ByteArrayInputStream(response.getBody(), 0, (int) response.getBytes()), 0);
+                KeyIndex keys = YamlKeyExtractor.extract(in, hashValues());
+                try {
+                    in.drain();
+                } catch (IOException e) {
+                    throw new MojoExecutionException("解析nacos文件失败，dataId:" + config.getDataId(), e);
+                }
+                remoteConfig = new RemoteConfig(in.md5Hex(), keys);
+            } else {
+                remoteConfig = new RemoteConfig(SecureUtil.md5(response.getContent()), YamlKeyExtractor.extract(response.getContent(), hashValues()));
+            }
+            metrics.setRemoteParseNanos(System.nanoTime() - start);
+            return remoteConfig;
+        } else {
+            getLog().error("=========门禁检查不通过=========");
+            throw new MojoExecutionException("下载nacos文件失败，dataId:" + config.getDataId() + "，HTTP Status: " + response.getCode() + "，content:" + response.getContent());
+        }
+    }
+
+    /**
+     * 环境的nacos token，第一次调用时获取
+     *
+     * @param env 环境
+     * @return token
+     * @throws MojoExecutionException 登录失败
+     */
+    protected String token(EnvironmentContext env) throws MojoExecutionException {
+        synchronized (env) {
+            if (env.token == null) {
+                long start = System.nanoTime();
+                env.token = getNacosToken(env);
+                env.metrics.setTokenNanos(System.nanoTime() - start);
+            }
+            return env.token;
+        }
+    }
+
+    /**
+     * 获取token，即将过期时重新登录，长期运行时保持token有效
+     */
+    protected String refreshToken(EnvironmentContext env) throws MojoExecutionException {
+        synchronized (env) {
+            env.token = getNacosToken(env);
+            return env.token;
+        }
+    }
+
+    /**
+     * 丢弃环境的token及其缓存，下次请求前重新登录
+     */
+    protected void invalidateToken(EnvironmentContext env) {
+        synchronized (env) {
+            NacosTokenCache.invalidate(env.serverUrl, env.username, tokenCacheOnDisk ? tokenCacheDir : null);
+            env.token = null;
+        }
+    }
+
+    /**
+     * 丢弃被服务端拒绝的token；其他线程或模块已经重新登录时保留新token，避免并发请求反复登录
+     *
+     * @param env   环境
+     * @param token 被拒绝的token
+     */
+    protected void invalidateToken(EnvironmentContext env, String token) {
+        synchronized (env) {
+            if (env.token != null && !env.token.equals(token)) {
+                return;
+            }
+            NacosTokenCache.invalidate(env.serverUrl, env.username, tokenCacheOnDisk ? tokenCacheDir : null, token);
+            env.token = null;
+        }
+    }
+
+    /**
+     * token被拒绝：已被服务端吊销或提前失效
+     *
+     * @param code HTTP状态码
+     * @return 是否为401或403
+     */
+    protected static boolean isAuthFailure(int code) {
+        return code == HttpStatus.SC_UNAUTHORIZED || code == HttpStatus.SC_FORBIDDEN;
+    }
+
+    /**
+     * 获取nacos token，优先使用缓存
+     *
+     * @param env 环境
+     * @return token
+     * @throws MojoExecutionException 异常
+     */
+    private String getNacosToken(EnvironmentContext env) throws MojoExecutionException {
+        return NacosTokenCache.getToken(env.serverUrl, env.username, tokenCacheOnDisk ? tokenCacheDir : null,
+                TimeUnit.SECONDS.toMillis(tokenRefreshAheadSeconds), () -> login(env));
+    }
+
+    /**
+     * 登录nacos
+     *
+     * @param env 环境
+     * @return 登录响应
+     * @throws MojoExecutionException 异常
+     */
+    private NacosLoginResp login(EnvironmentContext env) throws MojoExecutionException {
+        // 登录nacos
+        String nacosPwd = decryptPassword(env.encryptPassword, env.password);
+
+        // 设置form-data的请求体
+        Map<String, String> body = new HashMap<>();
+        body.put("username", env.username);
+        body.put("password", nacosPwd);
+
+        try {
+            // 非200时抛出HttpResponseException：5xx、429及连接失败换节点重试，其他状态直接失败
+            HttpClientResult loginResp = env.router.execute(
+                    server -> HttpClientUtils.doPostForm(server + "/nacos/v1/auth/users/login", body), null);
+            env.metrics.recordLogin(loginResp.getElapsedNanos(), loginResp.getLeaseNanos());
+            return JSONUtil.toBean(loginResp.getContent(), NacosLoginResp.class);
+        } catch (HttpResponseException e) {
+            getLog().error("=========门禁检查不通过=========");
+            throw new MojoExecutionException("登录nacos失败. HTTP Status: " + e.getStatusCode());
+        } catch (MojoExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            getLog().error("=========门禁检查不通过=========");
+            throw new MojoExecutionException("登录nacos失败：", e);
+        }
+    }
+
+    /**
+     * 解密密码
+     *
+     * @param encryptedPassword 加盐值
+     * @param jasyptPassword    加密密码
+     * @return 明文密码
+     */
+    private String decryptPassword(String encryptedPassword, String jasyptPassword) {
+        return JasyptUtils.decrypt(encryptedPassword, jasyptPassword);
+    }
+
+    /**
+     * 一个环境的连接信息和处理过程中的状态
+     */
+    protected static class EnvironmentContext {
+
+        final String name;
+
+        final String serverUrl;
+
+        final String namespace;
+
+        final String username;
+
+        final String password;
+
+        final String encryptPassword;
+
+        /**
+         * 日志前缀，多环境时为环境名称
+         */
+        String logPrefix;
+
+        NacosServerRouter router;
+
+        String token;
+
+        EnvironmentMetrics metrics;
+
+        /**
+         * 每个配置的性能指标
+         */
+        final Map<MappingConfig, ConfigMetrics> configMetrics = new IdentityHashMap<>();
+
+        /**
+         * 批量拉取到的远程配置内容，未开启批量拉取或拉取失败时为null
+         */
+        Map<ConfigKey, String> bulkConfigs;
+
+        /**
+         * 本机nacos客户端文件中与nacos一致的配置，未开启或没有可用文件时为null
+         */
+        Map<ConfigKey, RemoteConfig> clientConfigs;
+
+        /**
+         * 相对上次检查内容已变化的远程配置，为null时视为全部变化
+         */
+        Set<ConfigKey> changedRemoteConfigs;
+
+        private EnvironmentContext(String name, String serverUrl, String namespace, String username,
+                                   String password, String encryptPassword) {
+            this.name = name;
+            this.serverUrl = serverUrl;
+            this.namespace = namespace;
+            this.username = username;
+            this.password = password;
+            this.encryptPassword = encryptPassword;
+        }
+    }
+
+    /**
+     * 一个环境中的一个配置
+     */
+    protected static class CheckTask {
+
+        final EnvironmentContext env;
+
+        final MappingConfig config;
+
+        CheckTask(EnvironmentContext env, MappingConfig config) {
+            this.env = env;
+            this.config = config;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package cn.aries.fang.maven.plugin;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+
+import cn.aries.fang.maven.plugin.utils.ExecutorUtils;
+import cn.aries.fang.maven.plugin.utils.JasyptFileProcessor;
+import cn.aries.fang.maven.plugin.utils.JasyptUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.jasypt.encryption.pbe.PooledPBEStringEncryptor;
+
+
+/**
+ * 批量加解密插件
+ * <p>
+ * 对yaml或properties文件中的ENC(...)、DEC(...)或指定key的值批量加解密，多个值并行处理，用于批量加密和更换密钥
+ */
+@Mojo(name = "jasypt-bulk")
+public class JasyptBulkMojo extends AbstractMojo {
+
+    /**
+     * 每个加密器线程同时处理中的行数，限制内存占用
+     */
+    private static final int LINES_PER_THREAD = 256;
+
+    @Parameter(property = "jasypt.encryptor.password", defaultValue = "4df98cad061444e6adb3a703876ec01b")
+    private String encryptPassword;
+
+    /**
+     * 更换密钥时的新密钥，只在reencrypt时使用
+     */
+    @Parameter(property = "jasypt.encryptor.newPassword")
+    private String newEncryptPassword;
+
+    /**
+     * 要处理的yaml或properties文件，按扩展名区分
+     */
+    @Parameter(property = "jasypt.input", required = true)
+    private File inputFile;
+
+    /**
+     * 输出文件，默认覆盖输入文件；写完后才替换，失败时输入文件保持不变
+     */
+    @Parameter(property = "jasypt.output")
+    private File outputFile;
+
+    /**
+     * 处理方式：encrypt把DEC(...)及指定key的明文加密为ENC(...)；decrypt把ENC(...)解密为DEC(...)；
+     * reencrypt把ENC(...)用原密钥解密后用新密钥重新加密
+     */
+    @Parameter(property = "jasypt.mode", defaultValue = "encrypt")
+    private String mode;
+
+    /**
+     * 只处理这些key的值，多个用逗号分隔，yaml为展开后的路径，如 spring.datasource.password；不配置时处理所有的ENC(...)或DEC(...)
+     */
+    @Parameter(property = "jasypt.keys")
+    private List<String> keys;
+
+    /**
+     * 加密器池大小，即并行加解密的线程数，默认为CPU核数
+     */
+    @Parameter(property = "jasypt.poolSize", defaultValue = "0")
+    private int poolSize;
+
+    /**
+     * 文件编码
+     */
+    @Parameter(property = "jasypt.encoding", defaultValue = "UTF-8")
+    private String encoding;
+
+
+    public void execute() throws MojoExecutionException {
+        JasyptFileProcessor.Mode processMode;
+        try {
+            processMode = JasyptFileProcessor.Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("不支持的处理方式：" + mode + "，可选encrypt、decrypt、reencrypt");
+        }
+        if (processMode == JasyptFileProcessor.Mode.REENCRYPT && StringUtils.isBlank(newEncryptPassword)) {
+            throw new MojoExecutionException("更换密钥需要配置jasypt.encryptor.newPassword");
+        }
+        if (!inputFile.isFile()) {
+            throw new MojoExecutionException("文件不存在：" + inputFile);
+        }
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        File output = outputFile == null ? inputFile : outputFile;
+        boolean properties = inputFile.getName().endsWith(".properties");
+        PooledPBEStringEncryptor encryptor = JasyptUtils.newEncryptor(encryptPassword, threads);
+        PooledPBEStringEncryptor newEncryptor = processMode == JasyptFileProcessor.Mode.REENCRYPT
+                ? JasyptUtils.newEncryptor(newEncryptPassword, threads) : null;
+        ExecutorService executor = ExecutorUtils.newBoundedExecutor(threads, "jasypt-bulk-");
+        try {
+            long start = System.currentTimeMillis();
+            JasyptFileProcessor processor = new JasyptFileProcessor(processMode, encryptor, newEncryptor, keys,
+                    executor, threads * LINES_PER_THREAD);
+            // 解密后的文件含明文，只允许当前用户读写
+            int count = processor.process(inputFile, output, Charset.forName(encoding), properties,
+                    processMode == JasyptFileProcessor.Mode.DECRYPT);
+            getLog().info("=========处理" + count + "个值，线程数：" + threads + "，耗时："
+                    + (System.currentTimeMillis() - start) + "ms，输出文件：" + output + "=========");
+        } catch (Exception e) {
+            throw new MojoExecutionException("处理" + inputFile + "失败", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -3,7 +3,7 @@ package cn.aries.fang.maven.plugin;
 import org.apache.maven.plugin.*;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.*;
-import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
+import cn.aries.fang.maven.plugin.utils.JasyptUtils;
 
 
 /**
@@ -31,10 +31,7 @@ public class JasyptEnCryptorMojo extends AbstractMojo {
      * @return 加密密码
      */
     private static String encryptPassword(String encryptedPassword, String password) {
-        StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
-        encryptor.setPassword(encryptedPassword);
-        encryptor.setAlgorithm("PBEWithMD5AndDES");
-        return encryptor.encrypt(password);
+        return JasyptUtils.encrypt(encryptedPassword, password);
     }
 }
 
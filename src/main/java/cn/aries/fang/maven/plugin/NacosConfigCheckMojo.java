@@ -1,187 +1,556 @@
 package cn.aries.fang.maven.plugin;
 
 
+import cn.aries.fang.maven.plugin.cache.ConfigSnapshot;
+import cn.aries.fang.maven.plugin.cache.IncrementalState;
+import cn.aries.fang.maven.plugin.diff.KeyDiffResult;
+import cn.aries.fang.maven.plugin.diff.KeyIndex;
+import cn.aries.fang.maven.plugin.dto.ConfigKey;
 import cn.aries.fang.maven.plugin.dto.MappingConfig;
-import cn.aries.fang.maven.plugin.utils.HttpClientResult;
-import cn.aries.fang.maven.plugin.utils.HttpClientUtils;
-import cn.hutool.core.collection.CollectionUtil;
-import cn.hutool.core.io.FileUtil;
-import cn.hutool.json.JSONUtil;
-import cn.aries.fang.maven.plugin.dto.NacosLoginResp;
+import cn.aries.fang.maven.plugin.dto.RemoteConfig;
+import cn.aries.fang.maven.plugin.report.CheckReport;
+import cn.aries.fang.maven.plugin.report.ConfigMetrics;
+import cn.aries.fang.maven.plugin.utils.ExecutorUtils;
+import cn.aries.fang.maven.plugin.utils.NacosListenerUtils;
+import cn.hutool.crypto.SecureUtil;
 
 import java.io.*;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
 
-import org.apache.maven.plugin.AbstractMojo;
+import org.apache.hc.core5.concurrent.Cancellable;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
-import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
-import org.yaml.snakeyaml.Yaml;
 
 
 @Mojo(name = "nacos-config-check")
-public class NacosConfigCheckMojo extends AbstractMojo {
+public class NacosConfigCheckMojo extends AbstractNacosFetchMojo {
 
-    @Parameter(property = "jasypt.encryptor.password", defaultValue = "4df98cad061444e6adb3a703876ec01b")
-    private String encryptPassword;
+    /**
+     * 快速失败：第一个配置检查不通过时中止其余配置正在进行的请求，跳过尚未开始的解析，只报告已发现的问题
+     */
+    @Parameter(property = "nacos.failFast", defaultValue = "false")
+    private boolean failFast;
+
+    /**
+     * 增量检查：本地文件和远程配置都没有变化时沿用上次的检查结果
+     */
+    @Parameter(property = "nacos.incremental", defaultValue = "false")
+    private boolean incremental;
+
+    /**
+     * 增量检查的状态文件
+     */
+    @Parameter(property = "nacos.incremental.stateFile", defaultValue = "${project.build.directory}/nacos-config-check/state.json")
+    private File stateFile;
+
+    /**
+     * 异步拉取：一次发出所有远程配置的请求，响应到达后立即解析比对；解析线程数取parallelism
+     */
+    @Parameter(property = "nacos.asyncHttp", defaultValue = "false")
+    private boolean asyncHttp;
 
-    @Parameter(property = "nacos.serverUrl", required = true)
-    private String serverUrl;
+    /**
+     * 离线检查：配置后与nacos-config-snapshot导出的快照文件比对，不访问nacos，不需要配置serverUrl和账号
+     */
+    @Parameter(property = "nacos.snapshot")
+    private File snapshotFile;
 
-    @Parameter(property = "nacos.username", required = true)
-    private String username;
+    /**
+     * 比对叶子的值：报告值不同、值类型不同以及本地值只有占位符的key，只输出警告，不影响检查结果；
+     * 比对只用展开时记录的值类型和哈希，只为有差异的key从本地文件中取出值，远程的值不输出
+     */
+    @Parameter(property = "nacos.valueDiff", defaultValue = "false")
+    private boolean valueDiff;
 
-    @Parameter(property = "nacos.password", required = true)
-    private String password;
+    private IncrementalState incrementalState;
 
-    @Parameter(property = "nacos.namespace", defaultValue = "")
-    private String namespace;
+    private ConfigSnapshot snapshot;
 
-    @Parameter(property = "configs", required = true)
-    private List<MappingConfig> configs;
+    /**
+     * 本地文件的哈希，多个环境共用
+     */
+    private final ConcurrentMap<String, String> localHashes = new ConcurrentHashMap<>();
 
 
     public void execute() throws MojoExecutionException, MojoFailureException {
 
         getLog().info("=========门禁检查启动=========");
 
-        // 获取Nacos的token
-        String nacosToken = getNacosToken();
-        // 检查配置
-        Map<String, List<String>> result = new HashMap<>();
-        for (MappingConfig config : configs) {
-            List<String> errorKeys = handleMappingConfig(config, nacosToken);
-            if (CollectionUtil.isNotEmpty(errorKeys)) {
-                result.put(config.getDataId(), errorKeys);
+        List<EnvironmentContext> envs = resolveEnvironments(snapshotFile == null);
+        String status = CheckReport.STATUS_ERROR;
+        try {
+            Map<EnvironmentContext, Map<String, List<String>>> results = check(envs);
+            boolean passed = results.values().stream().allMatch(Map::isEmpty);
+            status = passed ? CheckReport.STATUS_PASSED : CheckReport.STATUS_FAILED;
+            if (envs.size() > 1) {
+                logMatrix(envs);
+            }
+            // 输出结果，每个配置的结果已在检查完成时输出
+            if (passed) {
+                getLog().info("=========门禁检查通过=========");
+            } else {
+                getLog().error("=========门禁检查不通过=========");
+                StringBuilder sb = new StringBuilder();
+                results.forEach((env, result) -> result.forEach((key, value) ->
+                        sb.append(env.logPrefix).append(key).append("以下key缺失：\n").append(String.join(",", value))));
+                throw new MojoExecutionException(sb.toString());
             }
+        } finally {
+            releaseClient();
+            writeReport(status);
         }
-        // 输出结果
-        if (CollectionUtil.isEmpty(result.keySet())) {
-            getLog().info("=========门禁检查通过=========");
+    }
+
+    /**
+     * 检查所有环境的所有配置
+     *
+     * @param envs 环境列表
+     * @return 每个环境中每个dataId缺失的key，全部通过时均为空
+     * @throws MojoExecutionException 执行异常
+     */
+    private Map<EnvironmentContext, Map<String, List<String>>> check(List<EnvironmentContext> envs) throws MojoExecutionException {
+        int threads;
+        if (snapshotFile != null) {
+            // 离线检查不登录、不探测，所有远程配置从快照读取
+            try {
+                snapshot = ConfigSnapshot.open(snapshotFile);
+            } catch (IOException e) {
+                throw new MojoExecutionException("读取配置快照失败：" + snapshotFile, e);
+            }
+            getLog().info("=========离线检查，配置快照：" + snapshotFile + " 配置数：" + snapshot.size()
+                    + " 导出时间：" + new Date(snapshot.getCreatedAt()) + "=========");
+            if (valueDiff) {
+                getLog().warn("配置快照不保存值的哈希，离线检查只比对值类型");
+            }
+            threads = parallelism;
         } else {
-            getLog().error("=========门禁检查不通过=========");
-            StringBuilder sb = new StringBuilder();
-            result.forEach((key, value) -> {
-                String errorMessage = key + "以下key缺失：\n" + String.join(",", value);
-                sb.append(errorMessage);
-                getLog().error(errorMessage);
-            });
-            throw new MojoExecutionException(sb.toString());
+            threads = connect(envs);
+            if (incremental) {
+                incrementalState = IncrementalState.load(stateFile);
+                for (EnvironmentContext env : envs) {
+                    long start = System.nanoTime();
+                    env.changedRemoteConfigs = probeRemoteChanges(env);
+                    env.metrics.setProbeNanos(env.metrics.getProbeNanos() + System.nanoTime() - start);
+                }
+            }
+            fetchBulkConfigs(envs);
+        }
+        // 检查配置，结果按环境、configs顺序合并
+        List<CheckTask> tasks = new ArrayList<>(envs.size() * configs.size());
+        for (EnvironmentContext env : envs) {
+            for (MappingConfig config : configs) {
+                tasks.add(new CheckTask(env, config));
+            }
+        }
+        List<KeyDiffResult> diffResults;
+        try {
+            if (asyncHttp) {
+                diffResults = handleMappingConfigsAsync(tasks, threads);
+            } else if (threads > 1 && tasks.size() > 1) {
+                diffResults = handleMappingConfigsConcurrently(tasks, threads);
+            } else {
+                diffResults = handleMappingConfigs(tasks);
+            }
+        } finally {
+            saveIncrementalState();
+            if (configCache != null) {
+                configCache.evict();
+            }
+        }
+        Map<EnvironmentContext, Map<String, List<String>>> results = new LinkedHashMap<>();
+        for (EnvironmentContext env : envs) {
+            results.put(env, new LinkedHashMap<>());
+        }
+        int skipped = 0;
+        for (int i = 0; i < tasks.size(); i++) {
+            KeyDiffResult diffResult = diffResults.get(i);
+            CheckTask task = tasks.get(i);
+            if (diffResult == null) {
+                task.env.configMetrics.get(task.config).setStatus(CheckReport.STATUS_SKIPPED);
+                skipped++;
+            } else if (!diffResult.isPassed()) {
+                results.get(task.env).put(task.config.getDataId(), diffResult.getMissingKeys());
+            }
+        }
+        if (skipped > 0) {
+            getLog().warn("=========快速失败，跳过" + skipped + "个配置的检查=========");
+        }
+        return results;
+    }
+
+    /**
+     * 输出配置×环境的检查结果矩阵
+     */
+    private void logMatrix(List<EnvironmentContext> envs) {
+        getLog().info("=========检查结果矩阵=========");
+        for (MappingConfig config : configs) {
+            StringBuilder row = new StringBuilder(config.getDataId());
+            for (EnvironmentContext env : envs) {
+                ConfigMetrics metrics = env.configMetrics.get(config);
+                row.append(" | ").append(env.name).append("：");
+                if (CheckReport.STATUS_SKIPPED.equals(metrics.getStatus())) {
+                    row.append("跳过");
+                } else {
+                    row.append(metrics.getMissingKeys() == 0 ? "通过" : "缺失" + metrics.getMissingKeys());
+                }
+            }
+            getLog().info(row.toString());
+        }
+    }
+
+    /**
+     * 顺序处理所有配置文件
+     *
+     * @param tasks 所有环境的配置
+     * @return 每个配置的比对结果，与tasks顺序一致
+     * @throws MojoExecutionException 执行异常
+     */
+    private List<KeyDiffResult> handleMappingConfigs(List<CheckTask> tasks) throws MojoExecutionException {
+        List<KeyDiffResult> diffResults = new ArrayList<>(tasks.size());
+        for (CheckTask task : tasks) {
+            diffResults.add(handleMappingConfig(task.env, task.config));
+        }
+        return diffResults;
+    }
+
+    /**
+     * 并发处理所有配置文件，共用HttpClientUtils的连接池
+     *
+     * @param tasks       所有环境的配置
+     * @param parallelism 并发数
+     * @return 每个配置的比对结果，与tasks顺序一致
+     * @throws MojoExecutionException 执行异常
+     */
+    private List<KeyDiffResult> handleMappingConfigsConcurrently(List<CheckTask> tasks, int parallelism) throws MojoExecutionException {
+        int threads = Math.min(parallelism, tasks.size());
+        getLog().info("=========并发检查配置，并发数：" + threads + "=========");
+        ExecutorService executor = ExecutorUtils.newBoundedExecutor(threads, "nacos-config-check-");
+        try {
+            List<Future<KeyDiffResult>> futures = new ArrayList<>(tasks.size());
+            for (CheckTask task : tasks) {
+                futures.add(executor.submit(() -> handleMappingConfig(task.env, task.config)));
+            }
+            List<KeyDiffResult> diffResults = new ArrayList<>(tasks.size());
+            for (Future<KeyDiffResult> future : futures) {
+                diffResults.add(awaitResult(future));
+            }
+            return diffResults;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("检查配置被中断", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 异步处理所有配置文件：一次发出所有远程配置的请求，每个响应到达后立即在解析线程上解析比对
+     *
+     * @param tasks       所有环境的配置
+     * @param parallelism 解析线程数
+     * @return 每个配置的比对结果，与tasks顺序一致
+     * @throws MojoExecutionException 执行异常
+     */
+    private List<KeyDiffResult> handleMappingConfigsAsync(List<CheckTask> tasks, int parallelism) throws MojoExecutionException {
+        getLog().info("=========异步拉取远程配置，配置数：" + tasks.size() + "=========");
+        ExecutorService executor = ExecutorUtils.newBoundedExecutor(Math.max(1, parallelism), "nacos-config-check-");
+        List<CompletableFuture<KeyDiffResult>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (CheckTask task : tasks) {
+                CompletableFuture<RemoteConfig> remote = previousWithUnchangedRemote(task.env, task.config) != null
+                        ? CompletableFuture.completedFuture(null)
+                        : loadRemoteConfigAsync(task.env, task.config, executor);
+                Cancellable cancellable = () -> remote.cancel(true);
+                inFlight.register(cancellable);
+                remote.whenComplete((remoteConfig, error) -> inFlight.unregister(cancellable));
+                futures.add(remote.thenApplyAsync(remoteConfig -> {
+                    try {
+                        return handleMappingConfig(task.env, task.config, () -> remoteConfig);
+                    } catch (MojoExecutionException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor));
+            }
+            List<KeyDiffResult> diffResults = new ArrayList<>(tasks.size());
+            for (CompletableFuture<KeyDiffResult> future : futures) {
+                diffResults.add(awaitResult(future));
+            }
+            return diffResults;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("检查配置被中断", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 等待单个配置的检查结果；快速失败中止后的失败视为跳过
+     *
+     * @param future 检查结果
+     * @return 比对结果，跳过时返回null
+     * @throws MojoExecutionException 执行异常
+     * @throws InterruptedException   等待被中断
+     */
+    private KeyDiffResult awaitResult(Future<KeyDiffResult> future) throws MojoExecutionException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException | CancellationException e) {
+            if (inFlight.isCancelled()) {
+                getLog().debug("快速失败中止的检查：" + e.getMessage());
+                return null;
+            }
+            throw toMojoExecutionException(e instanceof ExecutionException ? e.getCause() : e);
         }
     }
 
     /**
      * 处理单个配置文件
      *
+     * @param env    环境
      * @param config 配置文件信息
+     * @return 比对结果
      * @throws MojoExecutionException 执行异常
      */
-    private List<String> handleMappingConfig(MappingConfig config, String nacosToken) throws MojoExecutionException {
-        Yaml yaml = new Yaml();
-        Map<String, Object> localYaml = null;
-        List<String> localYamlKeys = new ArrayList<>();
-        getLog().info("=========加载本地文件：" + config.getConfigPath() + "=========");
-        try (InputStream inputStream = FileUtil.getInputStream(new File(config.getConfigPath()))) {
-            localYaml = yaml.load(inputStream);
-            extractKeys(localYaml, localYamlKeys, "");
-        } catch (Exception e) {
-            getLog().error("=========门禁检查不通过=========");
-            throw new MojoExecutionException("加载" + config.getConfigPath() + "失败", e);
+    private KeyDiffResult handleMappingConfig(EnvironmentContext env, MappingConfig config) throws MojoExecutionException {
+        return handleMappingConfig(env, config, () -> loadRemoteConfig(env, config));
+    }
+
+    /**
+     * 处理单个配置文件
+     *
+     * @param env          环境
+     * @param config       配置文件信息
+     * @param remoteLoader 获取远程配置，远程配置未变化时不会调用
+     * @return 比对结果，快速失败跳过时返回null
+     * @throws MojoExecutionException 执行异常
+     */
+    private KeyDiffResult handleMappingConfig(EnvironmentContext env, MappingConfig config, RemoteConfigLoader remoteLoader) throws MojoExecutionException {
+        if (inFlight.isCancelled()) {
+            return null;
         }
+        String stateKey = stateKey(env, config);
+        String localHash = null;
+        IncrementalState.Entry previous = previousWithUnchangedRemote(env, config);
+        ConfigMetrics metrics = env.configMetrics.get(config);
 
-        String url = String.format("%s/nacos/v1/cs/configs?dataId=%s&group=%s&tenant=%s&accessToken=%s", serverUrl, config.getDataId(), config.getGroup(), namespace, nacosToken);
-        Map<String, Object> nacosYaml = null;
-        List<String> nacosYamlKeys = new ArrayList<>();
-        getLog().info("=========加载远程文件：namespace：" + namespace + " dataId：" + config.getDataId() + "=========");
+        KeyIndex localYamlKeys;
         try {
-            // 发送 GET 请求并获取响应
-            HttpClientResult response = HttpClientUtils.doGet(url);
-            if (response.getCode() == 200) {
-                nacosYaml = yaml.load(response.getContent());
-                extractKeys(nacosYaml, nacosYamlKeys, "");
-            } else {
-                getLog().error("=========门禁检查不通过=========");
-                throw new MojoExecutionException("下载nacos文件失败，dataId:" + config.getDataId() + "，HTTP Status: " + response.getCode() + "，content:" + response.getContent());
+            File localFile = new File(config.getConfigPath());
+            metrics.setLocalBytes(localFile.length());
+            if (incrementalState != null) {
+                localHash = localHash(config);
+                if (previous != null && localHash.equals(previous.getLocalHash())
+                        && (!valueDiff || previous.isValuesCompared())) {
+                    getLog().info("=========本地与远程文件均未变化，沿用上次检查结果：dataId：" + config.getDataId() + "=========");
+                    incrementalState.put(stateKey, previous);
+                    KeyDiffResult diffResult = previous.toDiffResult();
+                    metrics.setSource(ConfigMetrics.SOURCE_INCREMENTAL);
+                    metrics.setRemoteKeys(previous.getRemoteKeys().getLeafCount());
+                    recordDiff(env, config, diffResult, valueDiff);
+                    return diffResult;
+                }
             }
-        } catch (MojoExecutionException e) {
-            throw e;
+            localYamlKeys = loadLocalKeys(config, metrics);
+            metrics.setLocalKeys(localYamlKeys.getLeafCount());
         } catch (Exception e) {
             getLog().error("=========门禁检查不通过=========");
-            throw new MojoExecutionException("下载nacos文件失败，dataId:" + config.getDataId(), e);
+            throw new MojoExecutionException("加载" + config.getConfigPath() + "失败", e);
         }
-        return nacosYamlKeys.stream().filter(key -> !localYamlKeys.contains(key)).collect(Collectors.toList());
+
+        KeyIndex nacosYamlKeys;
+        String remoteMd5;
+        if (previous != null) {
+            getLog().info("=========远程文件未变化，使用上次记录的key：dataId：" + config.getDataId() + "=========");
+            nacosYamlKeys = previous.getRemoteKeys();
+            remoteMd5 = previous.getRemoteMd5();
+            metrics.setSource(ConfigMetrics.SOURCE_INCREMENTAL);
+        } else {
+            RemoteConfig remoteConfig = remoteLoader.load();
+            if (inFlight.isCancelled()) {
+                return null;
+            }
+            nacosYamlKeys = remoteConfig.getKeys();
+            remoteMd5 = remoteConfig.getMd5();
+        }
+        KeyDiffResult diffResult = diff(env, config, nacosYamlKeys, localYamlKeys, valueDiff);
+        if (incrementalState != null) {
+            incrementalState.put(stateKey, new IncrementalState.Entry(localHash, remoteMd5, nacosYamlKeys, diffResult, valueDiff));
+        }
+        recordDiff(env, config, diffResult, valueDiff);
+        return diffResult;
     }
 
     /**
-     * 获取nacos token
+     * 开启值比对时才计算叶子值的哈希
+     */
+    @Override
+    protected boolean hashValues() {
+        return valueDiff;
+    }
+
+    /**
+     * 记录并立即输出单个配置的检查结果；快速失败时第一个不通过的配置中止其余配置的检查
+     */
+    @Override
+    protected void recordDiff(EnvironmentContext env, MappingConfig config, KeyDiffResult diffResult, boolean valueDiff) {
+        super.recordDiff(env, config, diffResult, valueDiff);
+        if (!diffResult.isPassed() && failFast && inFlight.cancel()) {
+            getLog().error("=========快速失败：中止其余配置的检查=========");
+        }
+    }
+
+    /**
+     * 增量检查时，远程配置相对上次检查未变化的记录
      *
-     * @return token
-     * @throws MojoExecutionException 异常
+     * @param env    环境
+     * @param config 配置文件信息
+     * @return 上次检查的记录，未开启增量检查、没有记录或远程已变化时返回null；
+     * 比对值时记录的远程key没有值的哈希，只有本地文件也未变化、可以整体沿用时才返回
      */
-    private String getNacosToken() throws MojoExecutionException {
-        // 登录nacos
-        String nacosPwd = decryptPassword(encryptPassword, password);
-        String loginUrl = String.format("%s/nacos/v1/auth/users/login", serverUrl);
+    private IncrementalState.Entry previousWithUnchangedRemote(EnvironmentContext env, MappingConfig config) {
+        if (incrementalState == null || env.changedRemoteConfigs == null
+                || env.changedRemoteConfigs.contains(configKey(env, config))) {
+            return null;
+        }
+        IncrementalState.Entry previous = incrementalState.getPrevious(stateKey(env, config));
+        if (previous != null && valueDiff && !(previous.isValuesCompared() && isLocalUnchanged(config, previous))) {
+            return null;
+        }
+        return previous;
+    }
+
+    private boolean isLocalUnchanged(MappingConfig config, IncrementalState.Entry previous) {
+        try {
+            return localHash(config).equals(previous.getLocalHash());
+        } catch (RuntimeException e) {
+            // 本地文件读取失败，留给检查时报错
+            return false;
+        }
+    }
 
-        // 设置form-data的请求体
-        HashMap<String, Object> body = new HashMap<>();
-        body.put("username", username);
-        body.put("password", nacosPwd);
+    /**
+     * 本地文件的MD5，多个环境引用同一个文件时只计算一次
+     */
+    private String localHash(MappingConfig config) {
+        return localHashes.computeIfAbsent(config.getConfigPath(), path -> SecureUtil.md5(new File(path)));
+    }
 
-        // 将请求头和请求体封装到HttpEntity中
-        String accessToken = "";
+    /**
+     * 用上次记录的远程MD5探测哪些远程配置已变化，一次请求完成一个环境所有配置的比对
+     *
+     * @param env 环境
+     * @return 已变化的远程配置，探测失败时返回null
+     */
+    private Set<ConfigKey> probeRemoteChanges(EnvironmentContext env) {
+        Map<ConfigKey, String> md5s = new LinkedHashMap<>();
+        for (MappingConfig config : configs) {
+            IncrementalState.Entry previous = incrementalState.getPrevious(stateKey(env, config));
+            if (previous != null) {
+                md5s.put(configKey(env, config), previous.getRemoteMd5());
+            }
+        }
+        if (md5s.isEmpty()) {
+            return null;
+        }
         try {
-            HttpClientResult loginResp = HttpClientUtils.postFormBody(loginUrl, body);
-            if (loginResp.getCode() == 200) {
-                accessToken = JSONUtil.toBean(loginResp.getContent(), NacosLoginResp.class).getAccessToken();
-            } else {
-                getLog().error("=========门禁检查不通过=========");
-                throw new MojoExecutionException("登录nacos失败. HTTP Status: " + loginResp.getCode());
+            String server = env.router.primary();
+            Map<ConfigKey, String> serverMd5s = new LinkedHashMap<>();
+            md5s.forEach((key, md5) -> serverMd5s.put(withServer(key, server), md5));
+            Set<ConfigKey> changed = new HashSet<>();
+            for (ConfigKey key : NacosListenerUtils.probe(server, token(env), serverMd5s)) {
+                changed.add(withServer(key, env.serverUrl));
             }
+            getLog().info("=========远程配置MD5探测完成，已变化：" + changed.size() + "/" + md5s.size() + "=========");
+            return changed;
         } catch (Exception e) {
-            getLog().error("=========门禁检查不通过=========");
-            throw new MojoExecutionException("登录nacos失败：", e);
+            getLog().warn("远程配置MD5探测失败，重新下载所有配置", e);
+            return null;
+        }
+    }
+
+    private void saveIncrementalState() {
+        if (incrementalState == null) {
+            return;
+        }
+        try {
+            incrementalState.save();
+        } catch (IOException e) {
+            getLog().warn("保存增量检查状态失败：" + stateFile, e);
         }
-        return accessToken;
     }
 
     /**
-     * 递归方法，提取所有的key
-     *
-     * @param map       nacos的yaml
-     * @param keys      提取的key集合
-     * @param parentKey 父key
+     * 获取远程配置，离线检查时从快照读取
      */
-    private void extractKeys(Map<String, Object> map, List<String> keys, String parentKey) {
-        if (CollectionUtil.isEmpty(map)) {
-            return;
+    @Override
+    protected RemoteConfig loadRemoteConfig(EnvironmentContext env, MappingConfig config) throws MojoExecutionException {
+        if (snapshot != null) {
+            return loadFromSnapshot(env, config);
         }
-        for (Map.Entry<String, Object> entry : map.entrySet()) {
-            String currentKey = parentKey.isEmpty() ? entry.getKey() : parentKey + "." + entry.getKey();
-            if (entry.getValue() instanceof Map) {
-                extractKeys((Map<String, Object>) entry.getValue(), keys, currentKey);
-            } else {
-                keys.add(currentKey);
+        return super.loadRemoteConfig(env, config);
+    }
+
+    /**
+     * 异步获取远程配置，离线检查时从快照读取
+     */
+    @Override
+    protected CompletableFuture<RemoteConfig> loadRemoteConfigAsync(EnvironmentContext env, MappingConfig config, Executor parser) {
+        if (snapshot != null) {
+            CompletableFuture<RemoteConfig> remoteConfig = new CompletableFuture<>();
+            try {
+                remoteConfig.complete(loadFromSnapshot(env, config));
+            } catch (MojoExecutionException e) {
+                remoteConfig.completeExceptionally(e);
             }
+            return remoteConfig;
         }
+        return super.loadRemoteConfigAsync(env, config, parser);
+    }
+
+    @Override
+    protected boolean isRemoteUnchanged(EnvironmentContext env, MappingConfig config) {
+        return previousWithUnchangedRemote(env, config) != null;
     }
 
     /**
-     * 解密密码
+     * 从快照读取远程配置
      *
-     * @param encryptedPassword 加盐值
-     * @param jasyptPassword    加密密码
-     * @return 明文密码
+     * @param env    环境
+     * @param config 配置文件信息
+     * @return 远程配置
+     * @throws MojoExecutionException 快照中没有该配置
      */
-    private String decryptPassword(String encryptedPassword, String jasyptPassword) {
-        StandardPBEStringEncryptor encryptor = new StandardPBEStringEncryptor();
-        encryptor.setPassword(encryptedPassword);
-        encryptor.setAlgorithm("PBEWithMD5AndDES");
-        return encryptor.decrypt(jasyptPassword);
+    private RemoteConfig loadFromSnapshot(EnvironmentContext env, MappingConfig config) throws MojoExecutionException {
+        long start = System.nanoTime();
+        RemoteConfig remoteConfig = snapshot.get(env.name, env.namespace, config.getGroup(), config.getDataId());
+        if (remoteConfig == null) {
+            throw new MojoExecutionException(env.logPrefix + "配置快照中没有该配置，环境：" + env.name + " namespace：" + env.namespace
+                    + " group：" + config.getGroup() + " dataId：" + config.getDataId());
+        }
+        ConfigMetrics metrics = env.configMetrics.get(config);
+        metrics.setSource(ConfigMetrics.SOURCE_SNAPSHOT);
+        metrics.setFetchNanos(System.nanoTime() - start);
+        return remoteConfig;
     }
-}
 
+    /**
+     * 获取远程配置
+     */
+    @FunctionalInterface
+    private interface RemoteConfigLoader {
+
+        /**
+         * 获取远程配置
+         *
+         * @return 远程配置
+         * @throws MojoExecutionException 执行异常
+         */
+        RemoteConfig load() throws MojoExecutionException;
+    }
+}
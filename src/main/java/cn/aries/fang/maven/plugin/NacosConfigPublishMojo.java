@@ -0,0 +1,227 @@
+package cn.aries.fang.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import cn.aries.fang.maven.plugin.dto.ConfigKey;
+import cn.aries.fang.maven.plugin.dto.MappingConfig;
+import cn.aries.fang.maven.plugin.utils.BoundedDigestInputStream;
+import cn.aries.fang.maven.plugin.utils.ExecutorUtils;
+import cn.aries.fang.maven.plugin.utils.HttpClientResult;
+import cn.aries.fang.maven.plugin.utils.HttpClientUtils;
+import cn.aries.fang.maven.plugin.utils.NacosListenerUtils;
+import cn.hutool.crypto.SecureUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+
+/**
+ * 发布配置插件
+ * <p>
+ * 与nacos-config-check使用相同的连接、环境和configs配置，把本地文件发布到nacos；
+ * 本地内容的MD5与远程相同的配置不发布，避免无意义的改写触发客户端刷新。
+ */
+@Mojo(name = "nacos-config-publish")
+public class NacosConfigPublishMojo extends AbstractNacosMojo {
+
+    /**
+     * 试运行：只输出需要发布的配置，不实际发布
+     */
+    @Parameter(property = "nacos.publish.dryRun", defaultValue = "false")
+    private boolean dryRun;
+
+
+    /**
+     * 把configs引用的本地文件发布到nacos；按环境一次探测所有配置的远程MD5，只发布内容有变化的配置
+     *
+     * @throws MojoExecutionException 执行异常
+     */
+    @Override
+    public void execute() throws MojoExecutionException {
+        getLog().info("=========发布配置" + (dryRun ? "(试运行)" : "") + "=========");
+        List<EnvironmentContext> envs = resolveEnvironments(true);
+        int threads = configureClient(envs);
+        try {
+            publish(envs, threads);
+        } finally {
+            releaseClient();
+        }
+    }
+
+    /**
+     * 发布内容有变化的配置
+     *
+     * @param envs    环境列表
+     * @param threads 并发数
+     * @throws MojoExecutionException 执行异常
+     */
+    private void publish(List<EnvironmentContext> envs, int threads) throws MojoExecutionException {
+        // 多个环境引用同一个文件时只读取一次
+        Map<String, String> contents = new HashMap<>();
+        for (MappingConfig config : configs) {
+            if (!contents.containsKey(config.getConfigPath())) {
+                String content;
+                try {
+                    content = new String(Files.readAllBytes(new File(config.getConfigPath()).toPath()), StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    throw new MojoExecutionException("读取" + config.getConfigPath() + "失败", e);
+                }
+                if (StringUtils.isBlank(content)) {
+                    throw new MojoExecutionException("nacos不允许发布空配置：" + config.getConfigPath());
+                }
+                contents.put(config.getConfigPath(), content);
+            }
+        }
+        List<CheckTask> changed = new ArrayList<>();
+        int unchanged = 0;
+        for (EnvironmentContext env : envs) {
+            Map<ConfigKey, String> localMd5s = new LinkedHashMap<>();
+            for (MappingConfig config : configs) {
+                localMd5s.put(configKey(env, config), SecureUtil.md5(contents.get(config.getConfigPath())));
+            }
+            Set<ConfigKey> changedKeys = remoteChanges(env, localMd5s);
+            for (MappingConfig config : configs) {
+                if (changedKeys.contains(configKey(env, config))) {
+                    changed.add(new CheckTask(env, config));
+                } else {
+                    unchanged++;
+                }
+            }
+        }
+        getLog().info("=========需要发布：" + changed.size() + "，未变化：" + unchanged + "=========");
+        if (dryRun) {
+            for (CheckTask task : changed) {
+                getLog().info(task.env.logPrefix + "需要发布：group：" + task.config.getGroup() + " dataId：" + task.config.getDataId());
+            }
+            return;
+        }
+        ExecutorService executor = ExecutorUtils.newBoundedExecutor(threads, "nacos-config-publish-");
+        try {
+            List<Future<?>> futures = new ArrayList<>(changed.size());
+            for (CheckTask task : changed) {
+                futures.add(executor.submit(() -> {
+                    publishConfig(task.env, task.config, contents.get(task.config.getConfigPath()));
+                    return null;
+                }));
+            }
+            // 单个配置失败不影响其余配置的发布，最后汇总
+            List<String> failures = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                CheckTask task = changed.get(i);
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    getLog().error(task.env.logPrefix + task.config.getDataId() + "发布失败", e.getCause());
+                    failures.add(task.env.logPrefix + task.config.getDataId());
+                }
+            }
+            if (!failures.isEmpty()) {
+                throw new MojoExecutionException("以下配置发布失败：" + String.join(",", failures));
+            }
+            getLog().info("=========配置发布完成，已发布：" + changed.size() + "=========");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("发布配置被中断", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 远程内容与本地MD5不同的配置，包括远程不存在的配置；监听接口不可用时逐个下载比对
+     *
+     * @param env       环境
+     * @param localMd5s 配置及本地内容的MD5
+     * @return 需要发布的配置
+     * @throws MojoExecutionException 登录或下载失败
+     */
+    private Set<ConfigKey> remoteChanges(EnvironmentContext env, Map<ConfigKey, String> localMd5s) throws MojoExecutionException {
+        String token = token(env);
+        try {
+            String server = env.router.primary();
+            Map<ConfigKey, String> serverMd5s = new LinkedHashMap<>();
+            localMd5s.forEach((key, md5) -> serverMd5s.put(withServer(key, server), md5));
+            Set<ConfigKey> changed = new HashSet<>();
+            for (ConfigKey key : NacosListenerUtils.probe(server, token, serverMd5s)) {
+                changed.add(withServer(key, env.serverUrl));
+            }
+            return changed;
+        } catch (Exception e) {
+            getLog().warn("远程配置MD5探测失败，逐个下载比对", e);
+        }
+        Set<ConfigKey> changed = new HashSet<>();
+        for (Map.Entry<ConfigKey, String> entry : localMd5s.entrySet()) {
+            ConfigKey key = entry.getKey();
+            String path = String.format("/nacos/v1/cs/configs?dataId=%s&group=%s&tenant=%s&accessToken=%s",
+                    key.getDataId(), key.getGroup(), StringUtils.defaultString(key.getTenant()), token);
+            String remoteMd5;
+            try {
+                remoteMd5 = env.router.execute(server -> HttpClientUtils.doGetStream(server + path, body -> {
+                    BoundedDigestInputStream in = new BoundedDigestInputStream(body, 0);
+                    in.drain();
+                    return in.md5Hex();
+                }), null);
+            } catch (HttpResponseException e) {
+                if (e.getStatusCode() != HttpStatus.SC_NOT_FOUND) {
+                    throw new MojoExecutionException("下载nacos文件失败，dataId:" + key.getDataId() + "，HTTP Status: " + e.getStatusCode());
+                }
+                remoteMd5 = null;
+            } catch (Exception e) {
+                throw new MojoExecutionException("下载nacos文件失败，dataId:" + key.getDataId(), e);
+            }
+            if (!entry.getValue().equals(remoteMd5)) {
+                changed.add(key);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 发布单个配置，失败时换节点重试；nacos发布接口对相同内容是幂等的
+     */
+    private void publishConfig(EnvironmentContext env, MappingConfig config, String content) throws Exception {
+        Map<String, String> form = new HashMap<>();
+        form.put("dataId", config.getDataId());
+        form.put("group", config.getGroup());
+        form.put("content", content);
+        form.put("type", configType(config.getConfigPath()));
+        if (StringUtils.isNotEmpty(env.namespace)) {
+            form.put("tenant", env.namespace);
+        }
+        String path = "/nacos/v1/cs/configs?accessToken=" + token(env);
+        HttpClientResult result = env.router.execute(server -> HttpClientUtils.doPostForm(server + path, form), null);
+        if (!"true".equals(StringUtils.trim(result.getContent()))) {
+            throw new MojoExecutionException("nacos未接受发布，dataId:" + config.getDataId() + "，content:" + result.getContent());
+        }
+        getLog().info("=========" + env.logPrefix + "已发布：namespace：" + env.namespace + " dataId：" + config.getDataId() + "=========");
+    }
+
+    /**
+     * 按扩展名得到nacos的配置格式
+     */
+    private static String configType(String configPath) {
+        String extension = StringUtils.substringAfterLast(configPath, ".").toLowerCase(Locale.ROOT);
+        switch (extension) {
+            case "yml":
+            case "yaml":
+                return "yaml";
+            case "properties":
+            case "json":
+            case "xml":
+            case "html":
+                return extension;
+            default:
+                return "text";
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package cn.aries.fang.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import cn.aries.fang.maven.plugin.cache.ConfigSnapshot;
+import cn.aries.fang.maven.plugin.dto.MappingConfig;
+import cn.aries.fang.maven.plugin.report.CheckReport;
+import cn.aries.fang.maven.plugin.utils.ExecutorUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+
+/**
+ * 导出配置快照插件
+ * <p>
+ * 与nacos-config-check使用相同的连接、环境、configs和缓存配置，把引用的远程配置展开后写入一个快照文件；
+ * nacos-config-check配置snapshotFile后与快照比对，不访问nacos。
+ */
+@Mojo(name = "nacos-config-snapshot")
+public class NacosConfigSnapshotMojo extends AbstractNacosFetchMojo {
+
+    /**
+     * 快照文件
+     */
+    @Parameter(property = "nacos.snapshot.output", defaultValue = "${project.build.directory}/nacos-config-check/snapshot.bin")
+    private File outputFile;
+
+
+    /**
+     * 导出configs引用的所有远程配置到快照文件，供离线检查使用
+     *
+     * @throws MojoExecutionException 执行异常
+     */
+    @Override
+    public void execute() throws MojoExecutionException {
+        getLog().info("=========导出配置快照：" + outputFile + "=========");
+        List<EnvironmentContext> envs = resolveEnvironments(true);
+        String status = CheckReport.STATUS_ERROR;
+        ExecutorService executor = null;
+        try {
+            int threads = connect(envs);
+            fetchBulkConfigs(envs);
+            ConfigSnapshot.Writer writer = new ConfigSnapshot.Writer();
+            List<Future<?>> futures = new ArrayList<>(envs.size() * configs.size());
+            executor = ExecutorUtils.newBoundedExecutor(threads, "nacos-config-snapshot-");
+            for (EnvironmentContext env : envs) {
+                for (MappingConfig config : configs) {
+                    futures.add(executor.submit(() -> {
+                        writer.put(env.name, env.namespace, config.getGroup(), config.getDataId(), loadRemoteConfig(env, config));
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            int count = writer.write(outputFile);
+            status = CheckReport.STATUS_PASSED;
+            getLog().info("=========配置快照导出完成，配置数：" + count + "=========");
+        } catch (ExecutionException e) {
+            throw toMojoExecutionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("导出配置快照被中断", e);
+        } catch (IOException e) {
+            throw new MojoExecutionException("写入配置快照失败：" + outputFile, e);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            if (configCache != null) {
+                configCache.evict();
+            }
+            releaseClient();
+            writeReport(status);
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package cn.aries.fang.maven.plugin;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.*;
+import java.util.concurrent.*;
+
+import cn.aries.fang.maven.plugin.diff.KeyDiffResult;
+import cn.aries.fang.maven.plugin.diff.KeyIndex;
+import cn.aries.fang.maven.plugin.dto.ConfigKey;
+import cn.aries.fang.maven.plugin.dto.MappingConfig;
+import cn.aries.fang.maven.plugin.dto.RemoteConfig;
+import cn.aries.fang.maven.plugin.utils.ExecutorUtils;
+import cn.aries.fang.maven.plugin.utils.HttpClientUtils;
+import cn.aries.fang.maven.plugin.utils.NacosListenerUtils;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+
+/**
+ * 监听配置插件
+ * <p>
+ * 与nacos-config-check使用相同的连接、环境和configs配置；首次检查后持续运行，
+ * 远程配置通过nacos长轮询监听，本地文件通过文件系统监听，哪个配置变化就只重新比对哪个配置。
+ * 单个配置检查不通过只输出日志，不中止其余配置的检查。
+ */
+@Mojo(name = "nacos-config-watch")
+public class NacosConfigWatchMojo extends AbstractNacosMojo {
+
+    /**
+     * 监听模式下本地文件的防抖时间：编辑器保存时往往连续产生多个事件，安静这段时间后再比对
+     */
+    private static final long WATCH_DEBOUNCE_MILLIS = 300;
+
+    /**
+     * 监听模式下长轮询失败后的最大退避时间
+     */
+    private static final long WATCH_MAX_BACKOFF_MILLIS = 30000;
+
+    /**
+     * 长轮询挂起时间与响应超时之间至少保留的余量
+     */
+    private static final long LONG_POLL_MARGIN_MILLIS = 1000;
+
+    /**
+     * 长轮询挂起时间，单位毫秒，需小于httpClient.responseTimeout
+     */
+    @Parameter(property = "nacos.watch.pollTimeoutMillis", defaultValue = "29000")
+    private long pollTimeoutMillis;
+
+    /**
+     * 监听时长，单位秒，0表示一直监听直到进程退出
+     */
+    @Parameter(property = "nacos.watch.durationSeconds", defaultValue = "0")
+    private long durationSeconds;
+
+    /**
+     * 比对叶子的值：报告值不同、值类型不同以及本地值只有占位符的key，只输出警告
+     */
+    @Parameter(property = "nacos.valueDiff", defaultValue = "false")
+    private boolean valueDiff;
+
+
+    /**
+     * 开启值比对时才计算叶子值的哈希
+     */
+    @Override
+    protected boolean hashValues() {
+        return valueDiff;
+    }
+
+    /**
+     * 首次检查所有配置后保持连接池和token，通过nacos长轮询监听远程配置、通过文件系统监听本地文件，
+     * 只重新比对发生变化的配置
+     *
+     * @throws MojoExecutionException 执行异常
+     */
+    @Override
+    public void execute() throws MojoExecutionException {
+        getLog().info("=========监听配置变化=========");
+        long durationMillis = TimeUnit.SECONDS.toMillis(durationSeconds);
+        List<EnvironmentContext> envs = resolveEnvironments(true);
+        int threads = configureClient(envs);
+        long pollTimeout = longPollTimeout(pollTimeoutMillis);
+        try {
+            watch(envs, threads, pollTimeout, durationMillis);
+        } finally {
+            releaseClient();
+        }
+        getLog().info("=========监听结束=========");
+    }
+
+    /**
+     * 初次比对后监听本地文件和远程配置的变化，到达监听时长后返回
+     *
+     * @param envs           环境列表
+     * @param threads        初次比对的并发数
+     * @param pollTimeout    长轮询超时时间，单位毫秒
+     * @param durationMillis 监听时长，不大于0时一直监听
+     * @throws MojoExecutionException 执行异常
+     */
+    private void watch(List<EnvironmentContext> envs, int threads, long pollTimeout, long durationMillis) throws MojoExecutionException {
+        for (EnvironmentContext env : envs) {
+            token(env);
+        }
+        // 每个配置最近一次下载的远程配置，本地文件变化时与它比对，不重新下载
+        Map<String, RemoteConfig> remotes = new ConcurrentHashMap<>();
+        ExecutorService pollers = ExecutorUtils.newBoundedExecutor(envs.size(), "nacos-config-watch-");
+        // 重新比对在单线程上依次执行，同一配置的结果按变化的顺序输出
+        ExecutorService differ = ExecutorUtils.newBoundedExecutor(1, "nacos-config-watch-diff-");
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            Map<Path, Set<String>> watchedFiles = registerLocalFiles(watcher);
+            initialCheck(envs, threads, remotes);
+            for (EnvironmentContext env : envs) {
+                pollers.execute(() -> pollRemoteChanges(env, pollTimeout, remotes, differ));
+            }
+            getLog().info("=========开始监听：环境" + envs.size() + "个，配置" + configs.size()
+                    + "个，长轮询" + pollTimeout + "ms=========");
+            watchLocalFiles(envs, watcher, watchedFiles, durationMillis, remotes, differ);
+            differ.shutdown();
+            differ.awaitTermination(WATCH_MAX_BACKOFF_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            throw new MojoExecutionException("监听本地文件失败", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pollers.shutdownNow();
+            differ.shutdownNow();
+        }
+    }
+
+    /**
+     * 长轮询挂起时间需小于httpClient的响应超时，否则每次挂起都会超时失败
+     */
+    private long longPollTimeout(long pollTimeoutMillis) {
+        long responseTimeout = HttpClientUtils.pooledClient().getConfig().getResponseTimeout();
+        if (pollTimeoutMillis + LONG_POLL_MARGIN_MILLIS <= responseTimeout) {
+            return pollTimeoutMillis;
+        }
+        long adjusted = Math.max(LONG_POLL_MARGIN_MILLIS, responseTimeout - LONG_POLL_MARGIN_MILLIS);
+        getLog().warn("长轮询时间" + pollTimeoutMillis + "ms不小于httpClient.responseTimeout" + responseTimeout
+                + "ms，调整为" + adjusted + "ms；nacos服务端至少挂起10秒，请调大responseTimeout");
+        return adjusted;
+    }
+
+    /**
+     * 首次下载并检查所有配置，单个配置失败只输出日志
+     */
+    private void initialCheck(List<EnvironmentContext> envs, int threads, Map<String, RemoteConfig> remotes) throws InterruptedException {
+        ExecutorService executor = ExecutorUtils.newBoundedExecutor(threads, "nacos-config-watch-check-");
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (EnvironmentContext env : envs) {
+                for (MappingConfig config : configs) {
+                    futures.add(executor.submit(() -> {
+                        try {
+                            remotes.put(stateKey(env, config), fetchRemoteConfig(env, config));
+                        } catch (MojoExecutionException e) {
+                            getLog().error(env.logPrefix + e.getMessage(), e.getCause());
+                            return;
+                        }
+                        rediff(env, config, remotes);
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    getLog().error("检查失败", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 用一个环境的所有配置发起长轮询，直到线程被中断；远程配置变化时重新下载并比对。
+     * 长轮询或下载失败时按指数退避重试，token被拒绝(401/403)时在下次请求前重新登录
+     */
+    private void pollRemoteChanges(EnvironmentContext env, long pollTimeout, Map<String, RemoteConfig> remotes,
+                                   ExecutorService differ) {
+        // 长轮询提交的MD5：下载成功时为新内容的MD5，远程配置已删除时为空，与服务端一致后不再重复通知
+        Map<String, String> listened = new HashMap<>();
+        int failures = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            String reason;
+            try {
+                String server = env.router.primary();
+                Map<ConfigKey, String> md5s = new LinkedHashMap<>();
+                for (MappingConfig config : configs) {
+                    String stateKey = stateKey(env, config);
+                    RemoteConfig remote = remotes.get(stateKey);
+                    String md5 = listened.containsKey(stateKey) ? listened.get(stateKey) : remote == null ? "" : remote.getMd5();
+                    md5s.put(withServer(configKey(env, config), server), md5);
+                }
+                Set<ConfigKey> changed = NacosListenerUtils.listen(server, refreshToken(env), md5s, pollTimeout, false);
+                boolean failed = false;
+                for (ConfigKey key : changed) {
+                    failed |= !onRemoteChange(env, withServer(key, env.serverUrl), remotes, listened, differ);
+                }
+                if (!failed) {
+                    failures = 0;
+                    continue;
+                }
+                reason = "部分远程配置下载失败";
+            } catch (Exception e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                reason = e.getMessage();
+                if (isAuthFailure(httpStatus(e))) {
+                    invalidateToken(env);
+                }
+            }
+            long backoff = Math.min(WATCH_MAX_BACKOFF_MILLIS, 1000L << Math.min(failures++, 5));
+            getLog().warn(env.logPrefix + reason + "，" + backoff + "ms后重试");
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException ie) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 远程配置已变化：重新下载，再与本地文件比对；单个配置失败只输出日志，不影响同一批的其他配置
+     *
+     * @return 是否都已下载；远程配置已删除视为已处理，其他失败等下次长轮询再重新下载
+     */
+    private boolean onRemoteChange(EnvironmentContext env, ConfigKey key, Map<String, RemoteConfig> remotes,
+                                   Map<String, String> listened, ExecutorService differ) {
+        boolean downloaded = true;
+        for (MappingConfig config : configs) {
+            if (!key.equals(configKey(env, config))) {
+                continue;
+            }
+            getLog().info("=========" + env.logPrefix + "远程配置已变化：dataId：" + config.getDataId() + "=========");
+            String stateKey = stateKey(env, config);
+            try {
+                RemoteConfig remote = fetchRemoteConfig(env, config);
+                remotes.put(stateKey, remote);
+                listened.put(stateKey, remote.getMd5());
+                differ.execute(() -> rediff(env, config, remotes));
+            } catch (MojoExecutionException e) {
+                getLog().error(env.logPrefix + e.getMessage(), e.getCause());
+                // 不再与变化前的内容比对，本地文件变化时重新下载
+                remotes.remove(stateKey);
+                if (httpStatus(e) == HttpStatus.SC_NOT_FOUND) {
+                    listened.put(stateKey, "");
+                } else {
+                    downloaded = false;
+                }
+            }
+        }
+        return downloaded;
+    }
+
+    /**
+     * 异常链中的HTTP状态码，没有时返回0
+     */
+    private static int httpStatus(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpResponseException) {
+                return ((HttpResponseException) cause).getStatusCode();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 重新比对一个配置，失败只输出日志，不结束监听
+     */
+    private void rediff(EnvironmentContext env, MappingConfig config, Map<String, RemoteConfig> remotes) {
+        String stateKey = stateKey(env, config);
+        KeyIndex localYamlKeys;
+        try {
+            localYamlKeys = loadLocalKeys(config, env.configMetrics.get(config));
+        } catch (Exception e) {
+            getLog().error(env.logPrefix + "加载" + config.getConfigPath() + "失败", e);
+            return;
+        }
+        try {
+            RemoteConfig remote = remotes.get(stateKey);
+            if (remote == null) {
+                remote = fetchRemoteConfig(env, config);
+                remotes.put(stateKey, remote);
+            }
+            KeyDiffResult diffResult = diff(env, config, remote.getKeys(), localYamlKeys, valueDiff);
+            recordDiff(env, config, diffResult, valueDiff);
+        } catch (MojoExecutionException e) {
+            getLog().error(env.logPrefix + e.getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * 监听configs引用的本地文件所在的目录；编辑器保存时可能先写临时文件再改名，只监听文件本身会漏掉
+     *
+     * @param watcher 文件系统监听
+     * @return 绝对路径及引用它的configPath
+     * @throws IOException 注册失败
+     */
+    private Map<Path, Set<String>> registerLocalFiles(WatchService watcher) throws IOException {
+        Map<Path, Set<String>> files = new HashMap<>();
+        Set<Path> dirs = new HashSet<>();
+        for (MappingConfig config : configs) {
+            Path file = Paths.get(config.getConfigPath()).toAbsolutePath().normalize();
+            files.computeIfAbsent(file, k -> new LinkedHashSet<>()).add(config.getConfigPath());
+            if (dirs.add(file.getParent())) {
+                file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * 在当前线程监听本地文件，直到监听时长结束或线程被中断；文件变化后丢弃它的解析结果，只重新比对引用它的配置
+     */
+    private void watchLocalFiles(List<EnvironmentContext> envs, WatchService watcher, Map<Path, Set<String>> files,
+                                 long durationMillis, Map<String, RemoteConfig> remotes,
+                                 ExecutorService differ) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + durationMillis;
+        while (true) {
+            WatchKey key;
+            if (durationMillis > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return;
+                }
+                key = watcher.poll(remaining, TimeUnit.MILLISECONDS);
+            } else {
+                key = watcher.take();
+            }
+            Set<String> changed = new LinkedHashSet<>();
+            while (key != null) {
+                collectChangedFiles(key, files, changed);
+                key = watcher.poll(WATCH_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            for (String path : changed) {
+                getLog().info("=========本地文件已变化：" + path + "=========");
+                differ.execute(() -> localKeys.remove(path));
+                for (EnvironmentContext env : envs) {
+                    for (MappingConfig config : configs) {
+                        if (path.equals(config.getConfigPath())) {
+                            differ.execute(() -> rediff(env, config, remotes));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void collectChangedFiles(WatchKey key, Map<Path, Set<String>> files, Set<String> changed) {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // 事件过多时丢失了具体文件，目录下的文件都重新比对
+                files.forEach((file, paths) -> {
+                    if (dir.equals(file.getParent())) {
+                        changed.addAll(paths);
+                    }
+                });
+                continue;
+            }
+            Set<String> paths = files.get(dir.resolve((Path) event.context()));
+            if (paths != null) {
+                changed.addAll(paths);
+            }
+        }
+        key.reset();
+    }
+}
@@ -0,0 +1,236 @@
+package cn.aries.fang.maven.plugin.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+import cn.aries.fang.maven.plugin.diff.KeyIndex;
+import cn.aries.fang.maven.plugin.diff.LeafValue;
+import cn.aries.fang.maven.plugin.diff.NodeType;
+import cn.aries.fang.maven.plugin.diff.ValueType;
+import cn.aries.fang.maven.plugin.dto.RemoteConfig;
+import cn.aries.fang.maven.plugin.utils.FileWriteUtils;
+
+/**
+ * Description: 远程配置的离线快照
+ * <p>
+ * 一个文件保存多个配置展开后的key索引，按(环境, tenant, group, dataId)查找；不同nacos上的命名空间可能同名，标识中包含环境名称。文件格式：
+ * <pre>
+ * 文件头：魔数(int) 版本(int) 配置数(int) 导出时间(long)
+ * 目录：每个配置 标识偏移(int) 标识长度(int) 数据偏移(int) 数据长度(int)，按标识的UTF-8字节排序
+ * 数据：MD5长度(short) MD5 节点数(int)，每个节点 类型(byte) 路径长度(int) 路径 值类型(byte，-1为无)
+ * </pre>
+ * 读取时整个文件只读映射到内存，二分查找目录，只解码用到的配置。快照会被复制到其他机器，不保存值的哈希，离线比对值时只比较值类型。
+ */
+public class ConfigSnapshot {
+
+    private static final int MAGIC = 0x4E43534E;
+
+    private static final int VERSION = 4;
+
+    private static final int HEADER_BYTES = 20;
+
+    private static final int DIRECTORY_ENTRY_BYTES = 16;
+
+    private final ByteBuffer buffer;
+
+    private final int count;
+
+    private final long createdAt;
+
+    private ConfigSnapshot(ByteBuffer buffer, int count, long createdAt) {
+        this.buffer = buffer;
+        this.count = count;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * 映射快照文件
+     *
+     * @param file 快照文件
+     * @return 快照
+     * @throws IOException 文件不存在或格式不正确
+     */
+    public static ConfigSnapshot open(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("不是配置快照文件：" + file);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("不支持的配置快照版本" + buffer.getInt(4) + "：" + file);
+        }
+        int count = buffer.getInt(8);
+        if (count < 0 || HEADER_BYTES + (long) count * DIRECTORY_ENTRY_BYTES > buffer.limit()) {
+            throw new IOException("配置快照文件已损坏：" + file);
+        }
+        return new ConfigSnapshot(buffer, count, buffer.getLong(12));
+    }
+
+    /**
+     * 查找配置
+     *
+     * @param environment 环境名称
+     * @param tenant      命名空间
+     * @param group       分组
+     * @param dataId      dataId
+     * @return 远程配置，快照中不存在时返回null
+     */
+    public RemoteConfig get(String environment, String tenant, String group, String dataId) {
+        byte[] key = keyOf(environment, tenant, group, dataId);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = HEADER_BYTES + mid * DIRECTORY_ENTRY_BYTES;
+            int cmp = compare(buffer.getInt(entry), buffer.getInt(entry + 4), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return decode(buffer.getInt(entry + 8));
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 导出时间戳，单位毫秒
+     *
+     * @return 导出时间
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    private int compare(int offset, int length, byte[] key) {
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (buffer.get(offset + i) & 0xff) - (key[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private RemoteConfig decode(int offset) {
+        ByteBuffer data = buffer.duplicate();
+        data.position(offset);
+        byte[] md5 = new byte[data.getShort()];
+        data.get(md5);
+        int nodes = data.getInt();
+        KeyIndex keys = new KeyIndex(nodes);
+        NodeType[] types = NodeType.values();
+        ValueType[] valueTypes = ValueType.values();
+        for (int i = 0; i < nodes; i++) {
+            NodeType type = types[data.get()];
+            byte[] path = new byte[data.getInt()];
+            data.get(path);
+            byte valueType = data.get();
+            LeafValue value = valueType < 0 ? null : new LeafValue(valueTypes[valueType]);
+            keys.put(new String(path, StandardCharsets.UTF_8), type, value);
+        }
+        return new RemoteConfig(new String(md5, StandardCharsets.US_ASCII), keys);
+    }
+
+    private static byte[] keyOf(String environment, String tenant, String group, String dataId) {
+        return (environment + "|" + (tenant == null ? "" : tenant) + "|" + group + "|" + dataId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 快照文件的写入
+     */
+    public static class Writer {
+
+        private final Map<String, RemoteConfig> configs = new TreeMap<>();
+
+        /**
+         * 添加配置，相同标识以后添加的为准
+         *
+         * @param environment  环境名称
+         * @param tenant       命名空间
+         * @param group        分组
+         * @param dataId       dataId
+         * @param remoteConfig 远程配置
+         */
+        public synchronized void put(String environment, String tenant, String group, String dataId, RemoteConfig remoteConfig) {
+            configs.put(new String(keyOf(environment, tenant, group, dataId), StandardCharsets.UTF_8), remoteConfig);
+        }
+
+        /**
+         * 原子写入快照文件
+         *
+         * @param file 快照文件
+         * @return 配置数
+         * @throws IOException 写入异常
+         */
+        public synchronized int write(File file) throws IOException {
+            // 目录按标识的UTF-8字节排序，与读取时的二分查找一致
+            TreeMap<byte[], RemoteConfig> sorted = new TreeMap<>(ConfigSnapshot::compareBytes);
+            configs.forEach((key, remoteConfig) -> sorted.put(key.getBytes(StandardCharsets.UTF_8), remoteConfig));
+
+            ByteArrayOutputStream blob = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(blob);
+            int base = HEADER_BYTES + sorted.size() * DIRECTORY_ENTRY_BYTES;
+            ByteBuffer directory = ByteBuffer.allocate(sorted.size() * DIRECTORY_ENTRY_BYTES);
+            for (Map.Entry<byte[], RemoteConfig> entry : sorted.entrySet()) {
+                directory.putInt(base + out.size()).putInt(entry.getKey().length);
+                out.write(entry.getKey());
+                int dataOffset = out.size();
+                byte[] md5 = entry.getValue().getMd5().getBytes(StandardCharsets.US_ASCII);
+                out.writeShort(md5.length);
+                out.write(md5);
+                KeyIndex keys = entry.getValue().getKeys();
+                out.writeInt(keys.size());
+                for (Map.Entry<String, NodeType> node : keys.nodes()) {
+                    byte[] path = node.getKey().getBytes(StandardCharsets.UTF_8);
+                    out.writeByte(node.getValue().ordinal());
+                    out.writeInt(path.length);
+                    out.write(path);
+                    LeafValue value = keys.getValue(node.getKey());
+                    if (value == null) {
+                        out.writeByte(-1);
+                    } else {
+                        out.writeByte(value.getType().ordinal());
+                    }
+                }
+                directory.putInt(base + dataOffset).putInt(out.size() - dataOffset);
+            }
+            out.flush();
+
+            ByteBuffer content = ByteBuffer.allocate(base + blob.size());
+            content.putInt(MAGIC).putInt(VERSION).putInt(sorted.size()).putLong(System.currentTimeMillis());
+            content.put(directory.array());
+            content.put(blob.toByteArray());
+            FileWriteUtils.writeAtomically(file, content.array(), false);
+            return sorted.size();
+        }
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+}
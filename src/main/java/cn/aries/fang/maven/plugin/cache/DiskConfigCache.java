@@ -0,0 +1,244 @@
+package cn.aries.fang.maven.plugin.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import cn.aries.fang.maven.plugin.diff.KeyIndex;
+import cn.aries.fang.maven.plugin.dto.ConfigKey;
+import cn.aries.fang.maven.plugin.dto.RemoteConfig;
+import cn.aries.fang.maven.plugin.utils.FileWriteUtils;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Description: 跨进程的远程配置磁盘缓存
+ * <p>
+ * 同一台机器上的多次构建共用，每个配置一个文件，保存远程内容的MD5和展开后的key索引及叶子值的摘要。
+ * 文件先写临时文件再原子替换，读者不会读到写了一半的内容；同一配置未命中时锁定锁文件中该配置的区间，保证只有一个进程下载，
+ * 其余进程等待后直接读取，不同配置的下载互不等待。超过有效期的条目不再使用，总大小超过上限时按最近访问时间淘汰。
+ */
+public class DiskConfigCache {
+    private static final Logger LOG = LoggerFactory.getLogger(DiskConfigCache.class);
+
+    private static final int VERSION = 3;
+
+    private static final String SUFFIX = ".json";
+
+    private static final String LOCK_FILE = "download.lock";
+
+    /**
+     * 锁文件中的区间数：每个配置按哈希锁定其中一个字节，不同配置的下载互不等待，锁文件数量不随配置增长
+     */
+    private static final int LOCK_REGIONS = 1 << 16;
+
+    /**
+     * 等待其他进程下载的最长时间，超时后自行下载
+     */
+    private static final long LOCK_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private static final long LOCK_RETRY_MILLIS = 50;
+
+    /**
+     * 同一个JVM对同一区间重复加锁会抛出OverlappingFileLockException，进程内先按区间互斥；
+     * 下载期间一直持有，用ReentrantLock而不是synchronized，虚拟线程等待时不占用载体线程
+     */
+    private static final ConcurrentMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private final File dir;
+
+    private final long ttlMillis;
+
+    private final long maxBytes;
+
+    /**
+     * @param dir       缓存目录
+     * @param ttlMillis 有效期，单位毫秒
+     * @param maxBytes  缓存总大小上限，单位字节，不大于0时不限制
+     */
+    public DiskConfigCache(File dir, long ttlMillis, long maxBytes) {
+        this.dir = dir;
+        this.ttlMillis = ttlMillis;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 读取有效期内的缓存，命中时刷新访问时间
+     *
+     * @param key 配置标识
+     * @return 远程配置，未命中时返回null
+     */
+    public RemoteConfig get(ConfigKey key) {
+        File file = fileOf(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            JSONObject json = JSONUtil.parseObj(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            if (json.getInt("version", 0) != VERSION || !key.toString().equals(json.getStr("key"))) {
+                return null;
+            }
+            if (System.currentTimeMillis() - json.getLong("fetchedAt", 0L) > ttlMillis) {
+                return null;
+            }
+            RemoteConfig remoteConfig = new RemoteConfig(json.getStr("md5"), KeyIndexCodec.read(json, "keys", "types", "values"));
+            file.setLastModified(System.currentTimeMillis());
+            return remoteConfig;
+        } catch (Exception e) {
+            // 并发淘汰或文件损坏，按未命中处理
+            LOG.debug("读取配置磁盘缓存失败：{}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存，失败时只记录日志
+     *
+     * @param key          配置标识
+     * @param remoteConfig 远程配置
+     */
+    public void put(ConfigKey key, RemoteConfig remoteConfig) {
+        File file = fileOf(key);
+        JSONObject json = new JSONObject();
+        json.set("version", VERSION);
+        json.set("key", key.toString());
+        json.set("fetchedAt", System.currentTimeMillis());
+        json.set("md5", remoteConfig.getMd5());
+        KeyIndexCodec.write(json, "keys", "types", "values", remoteConfig.getKeys());
+        try {
+            FileWriteUtils.writeAtomically(file, json.toString().getBytes(StandardCharsets.UTF_8), true);
+        } catch (IOException e) {
+            LOG.warn("写入配置磁盘缓存失败：{}", file, e);
+        }
+    }
+
+    /**
+     * 获取远程配置，未命中时加载并写入缓存；同一配置同时只有一个进程加载，其余进程等待后读取缓存
+     *
+     * @param key    配置标识
+     * @param loader 加载方法
+     * @return 远程配置
+     * @throws Exception 加载失败，为加载方法抛出的原始异常
+     */
+    public RemoteConfig get(ConfigKey key, RemoteConfigCache.Loader loader) throws Exception {
+        RemoteConfig remoteConfig = get(key);
+        if (remoteConfig != null) {
+            return remoteConfig;
+        }
+        File lockFile = new File(dir, LOCK_FILE);
+        int region = Math.floorMod(key.hashCode(), LOCK_REGIONS);
+        ReentrantLock localLock = LOCKS.computeIfAbsent(lockFile.getAbsolutePath() + "#" + region, k -> new ReentrantLock());
+        localLock.lockInterruptibly();
+        try (FileChannel channel = openLockFile(lockFile)) {
+            FileLock lock = lock(channel, region);
+            try {
+                remoteConfig = get(key);
+                if (remoteConfig != null) {
+                    return remoteConfig;
+                }
+                remoteConfig = loader.load();
+                put(key, remoteConfig);
+                return remoteConfig;
+            } finally {
+                if (lock != null) {
+                    lock.release();
+                }
+            }
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    /**
+     * 异步获取远程配置，未命中时发起加载，完成后写入缓存；异步加载不等待其他进程
+     *
+     * @param key    配置标识
+     * @param loader 发起异步加载的方法
+     * @return 远程配置
+     */
+    public CompletableFuture<RemoteConfig> getAsync(ConfigKey key, Supplier<CompletableFuture<RemoteConfig>> loader) {
+        RemoteConfig remoteConfig = get(key);
+        if (remoteConfig != null) {
+            return CompletableFuture.completedFuture(remoteConfig);
+        }
+        CompletableFuture<RemoteConfig> loading = loader.get();
+        loading.thenAccept(loaded -> put(key, loaded));
+        return loading;
+    }
+
+    /**
+     * 淘汰过期的条目，总大小仍超过上限时从最久未访问的条目开始删除
+     */
+    public void evict() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long total = 0;
+        int evicted = 0;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+        for (File file : files) {
+            // 访问时间早于有效期的条目一定已过期
+            boolean expired = now - file.lastModified() > ttlMillis;
+            if (expired || (maxBytes > 0 && total + file.length() > maxBytes)) {
+                if (file.delete()) {
+                    evicted++;
+                }
+            } else {
+                total += file.length();
+            }
+        }
+        if (evicted > 0) {
+            LOG.debug("淘汰配置磁盘缓存{}个，剩余{}字节", evicted, total);
+        }
+    }
+
+    private File fileOf(ConfigKey key) {
+        return new File(dir, SecureUtil.sha256(key.toString()) + SUFFIX);
+    }
+
+    private static FileChannel openLockFile(File lockFile) throws IOException {
+        Files.createDirectories(lockFile.getAbsoluteFile().getParentFile().toPath());
+        return FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * 锁定配置在锁文件中的区间，超时后返回null，不加锁直接加载
+     */
+    private static FileLock lock(FileChannel channel, int region) throws InterruptedException {
+        long deadline = System.nanoTime() + LOCK_TIMEOUT_NANOS;
+        while (true) {
+            try {
+                FileLock lock = channel.tryLock(region, 1, false);
+                if (lock != null) {
+                    return lock;
+                }
+            } catch (IOException | OverlappingFileLockException e) {
+                LOG.debug("锁定配置磁盘缓存失败", e);
+                return null;
+            }
+            if (System.nanoTime() > deadline) {
+                LOG.warn("等待其他构建下载配置超时，自行下载");
+                return null;
+            }
+            Thread.sleep(LOCK_RETRY_MILLIS);
+        }
+    }
+}
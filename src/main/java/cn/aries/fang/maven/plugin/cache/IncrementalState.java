@@ -0,0 +1,221 @@
+package cn.aries.fang.maven.plugin.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import cn.aries.fang.maven.plugin.diff.KeyDiffResult;
+import cn.aries.fang.maven.plugin.diff.KeyIndex;
+import cn.aries.fang.maven.plugin.diff.NodeType;
+import cn.aries.fang.maven.plugin.diff.ValueType;
+import cn.aries.fang.maven.plugin.utils.FileWriteUtils;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Description: 增量检查的状态文件
+ * <p>
+ * 记录每个配置上一次检查时本地文件的哈希、远程内容的MD5、远程key索引和检查结果。
+ * 两边都没有变化时直接沿用上次结果；只有本地变化时用记录的远程key索引重新比对，不需要重新下载。
+ */
+public class IncrementalState {
+    private static final Logger LOG = LoggerFactory.getLogger(IncrementalState.class);
+
+    private static final int VERSION = 3;
+
+    private final File file;
+
+    private final Map<String, Entry> previous;
+
+    private final ConcurrentMap<String, Entry> current = new ConcurrentHashMap<>();
+
+    private IncrementalState(File file, Map<String, Entry> previous) {
+        this.file = file;
+        this.previous = previous;
+    }
+
+    /**
+     * 读取状态文件，文件不存在或无法解析时返回空状态
+     *
+     * @param file 状态文件
+     * @return 状态
+     */
+    public static IncrementalState load(File file) {
+        Map<String, Entry> entries = new HashMap<>();
+        if (file.isFile()) {
+            try {
+                JSONObject json = JSONUtil.parseObj(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+                if (json.getInt("version", 0) == VERSION) {
+                    JSONObject items = json.getJSONObject("entries");
+                    for (String key : items.keySet()) {
+                        entries.put(key, Entry.fromJson(items.getJSONObject(key)));
+                    }
+                }
+            } catch (Exception e) {
+                LOG.warn("读取增量检查状态失败，重新全量检查：{}", file, e);
+                entries.clear();
+            }
+        }
+        return new IncrementalState(file, entries);
+    }
+
+    /**
+     * 上一次检查的记录
+     *
+     * @param key 配置标识
+     * @return 记录，不存在时返回null
+     */
+    public Entry getPrevious(String key) {
+        return previous.get(key);
+    }
+
+    /**
+     * 记录本次检查的结果
+     *
+     * @param key   配置标识
+     * @param entry 记录
+     */
+    public void put(String key, Entry entry) {
+        current.put(key, entry);
+    }
+
+    /**
+     * 保存本次检查的结果，只保留本次检查完成的配置
+     *
+     * @throws IOException 写入异常
+     */
+    public void save() throws IOException {
+        JSONObject items = new JSONObject();
+        new TreeMap<>(current).forEach((key, entry) -> items.set(key, entry.toJson()));
+        JSONObject json = new JSONObject();
+        json.set("version", VERSION);
+        json.set("entries", items);
+        FileWriteUtils.writeAtomically(file, json.toString().getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    /**
+     * 单个配置的检查记录
+     */
+    public static class Entry {
+
+        private final String localHash;
+
+        private final String remoteMd5;
+
+        private final KeyIndex remoteKeys;
+
+        private final List<String> missingKeys;
+
+        private final List<KeyDiffResult.TypeChange> typeChanges;
+
+        /**
+         * 值的差异，未比对值时为null，沿用时需要重新比对
+         */
+        private final List<KeyDiffResult.ValueChange> valueChanges;
+
+        public Entry(String localHash, String remoteMd5, KeyIndex remoteKeys, KeyDiffResult result, boolean valuesCompared) {
+            this(localHash, remoteMd5, remoteKeys, result.getMissingKeys(), result.getTypeChanges(),
+                    valuesCompared ? result.getValueChanges() : null);
+        }
+
+        private Entry(String localHash, String remoteMd5, KeyIndex remoteKeys, List<String> missingKeys,
+                      List<KeyDiffResult.TypeChange> typeChanges, List<KeyDiffResult.ValueChange> valueChanges) {
+            this.localHash = localHash;
+            this.remoteMd5 = remoteMd5;
+            this.remoteKeys = remoteKeys;
+            this.missingKeys = missingKeys;
+            this.typeChanges = typeChanges;
+            this.valueChanges = valueChanges;
+        }
+
+        public String getLocalHash() {
+            return localHash;
+        }
+
+        public String getRemoteMd5() {
+            return remoteMd5;
+        }
+
+        public KeyIndex getRemoteKeys() {
+            return remoteKeys;
+        }
+
+        public boolean isValuesCompared() {
+            return valueChanges != null;
+        }
+
+        /**
+         * 还原上次的检查结果
+         *
+         * @return 检查结果，不含本地多余的key
+         */
+        public KeyDiffResult toDiffResult() {
+            KeyDiffResult result = new KeyDiffResult();
+            result.getMissingKeys().addAll(missingKeys);
+            result.getTypeChanges().addAll(typeChanges);
+            if (valueChanges != null) {
+                result.getValueChanges().addAll(valueChanges);
+            }
+            return result;
+        }
+
+        private JSONObject toJson() {
+            JSONArray changes = new JSONArray();
+            for (KeyDiffResult.TypeChange change : typeChanges) {
+                changes.add(new JSONObject().set("path", change.getPath())
+                        .set("remoteType", change.getRemoteType().name())
+                        .set("localType", change.getLocalType().name()));
+            }
+            JSONObject json = new JSONObject()
+                    .set("localHash", localHash)
+                    .set("remoteMd5", remoteMd5);
+            KeyIndexCodec.write(json, "remoteKeys", "remoteTypes", "remoteValues", remoteKeys);
+            if (valueChanges != null) {
+                JSONArray values = new JSONArray();
+                for (KeyDiffResult.ValueChange change : valueChanges) {
+                    values.add(new JSONObject().set("path", change.getPath())
+                            .set("kind", change.getKind().name())
+                            .set("remoteType", change.getRemoteType().name())
+                            .set("localType", change.getLocalType() == null ? "" : change.getLocalType().name()));
+                }
+                json.set("valueChanges", values);
+            }
+            return json
+                    .set("missingKeys", new JSONArray(missingKeys))
+                    .set("typeChanges", changes);
+        }
+
+        private static Entry fromJson(JSONObject json) {
+            KeyIndex remoteKeys = KeyIndexCodec.read(json, "remoteKeys", "remoteTypes", "remoteValues");
+            List<KeyDiffResult.TypeChange> typeChanges = new ArrayList<>();
+            JSONArray changes = json.getJSONArray("typeChanges");
+            for (int i = 0; i < changes.size(); i++) {
+                JSONObject change = changes.getJSONObject(i);
+                typeChanges.add(new KeyDiffResult.TypeChange(change.getStr("path"),
+                        NodeType.valueOf(change.getStr("remoteType")), NodeType.valueOf(change.getStr("localType"))));
+            }
+            List<KeyDiffResult.ValueChange> valueChanges = null;
+            JSONArray values = json.getJSONArray("valueChanges");
+            if (values != null) {
+                valueChanges = new ArrayList<>();
+                for (int i = 0; i < values.size(); i++) {
+                    JSONObject change = values.getJSONObject(i);
+                    String localType = change.getStr("localType");
+                    valueChanges.add(new KeyDiffResult.ValueChange(change.getStr("path"),
+                            KeyDiffResult.ValueChange.Kind.valueOf(change.getStr("kind")),
+                            ValueType.valueOf(change.getStr("remoteType")),
+                            localType.isEmpty() ? null : ValueType.valueOf(localType)));
+                }
+            }
+            return new Entry(json.getStr("localHash"), json.getStr("remoteMd5"), remoteKeys,
+                    json.getJSONArray("missingKeys").toList(String.class), typeChanges, valueChanges);
+        }
+    }
+}
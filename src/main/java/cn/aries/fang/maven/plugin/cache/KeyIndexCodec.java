@@ -0,0 +1,87 @@
+package cn.aries.fang.maven.plugin.cache;
+
+import java.util.List;
+import java.util.Map;
+
+import cn.aries.fang.maven.plugin.diff.KeyIndex;
+import cn.aries.fang.maven.plugin.diff.LeafValue;
+import cn.aries.fang.maven.plugin.diff.NodeType;
+import cn.aries.fang.maven.plugin.diff.ValueType;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+
+/**
+ * Description: key索引的json格式
+ * <p>
+ * 以路径数组加类型首字母串保存，保持原有顺序；叶子值的摘要只保存值类型首字母，无法确定时为空串。
+ * 值的哈希不加盐，可被离线穷举，不写入文件；旧格式中的哈希读取时丢弃。
+ */
+class KeyIndexCodec {
+
+    private KeyIndexCodec() {
+    }
+
+    /**
+     * 写入key索引
+     *
+     * @param json      目标json
+     * @param pathsName 路径数组的字段名
+     * @param typesName  类型串的字段名
+     * @param valuesName 值摘要数组的字段名
+     * @param keys       key索引
+     */
+    static void write(JSONObject json, String pathsName, String typesName, String valuesName, KeyIndex keys) {
+        JSONArray paths = new JSONArray();
+        JSONArray values = new JSONArray();
+        StringBuilder types = new StringBuilder(keys.size());
+        for (Map.Entry<String, NodeType> node : keys.nodes()) {
+            paths.add(node.getKey());
+            types.append(node.getValue().name().charAt(0));
+            LeafValue value = keys.getValue(node.getKey());
+            values.add(value == null ? "" : String.valueOf(value.getType().name().charAt(0)));
+        }
+        json.set(pathsName, paths);
+        json.set(typesName, types.toString());
+        json.set(valuesName, values);
+    }
+
+    /**
+     * 读取key索引
+     *
+     * @param json      来源json
+     * @param pathsName 路径数组的字段名
+     * @param typesName  类型串的字段名
+     * @param valuesName 值摘要数组的字段名
+     * @return key索引
+     */
+    static KeyIndex read(JSONObject json, String pathsName, String typesName, String valuesName) {
+        List<String> paths = json.getJSONArray(pathsName).toList(String.class);
+        String types = json.getStr(typesName);
+        List<String> values = json.getJSONArray(valuesName).toList(String.class);
+        KeyIndex keys = new KeyIndex(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            String value = values.get(i);
+            keys.put(paths.get(i), typeOf(types.charAt(i)), value.isEmpty() ? null
+                    : new LeafValue(valueTypeOf(value.charAt(0))));
+        }
+        return keys;
+    }
+
+    private static NodeType typeOf(char c) {
+        for (NodeType type : NodeType.values()) {
+            if (type.name().charAt(0) == c) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("未知的节点类型：" + c);
+    }
+
+    private static ValueType valueTypeOf(char c) {
+        for (ValueType type : ValueType.values()) {
+            if (type.name().charAt(0) == c) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("未知的值类型：" + c);
+    }
+}
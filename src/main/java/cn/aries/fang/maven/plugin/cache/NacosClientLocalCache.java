@@ -0,0 +1,110 @@
+package cn.aries.fang.maven.plugin.cache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import cn.aries.fang.maven.plugin.utils.NacosServerRouter;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Description: nacos客户端写在本机的配置快照和容灾文件
+ * <p>
+ * 运行中的服务通过nacos客户端拉取配置后，会在 {@code ~/nacos/config/<服务端名称>_nacos} 下保存一份快照；
+ * 运维放置的容灾文件在同一目录的data下。目录结构与nacos客户端的LocalConfigInfoProcessor一致：
+ * <pre>
+ * snapshot/{group}/{dataId}                          默认命名空间的快照
+ * snapshot-tenant/{tenant}/{group}/{dataId}          其他命名空间的快照
+ * data/config-data/{group}/{dataId}                  默认命名空间的容灾文件
+ * data/config-data-tenant/{tenant}/{group}/{dataId}  其他命名空间的容灾文件
+ * </pre>
+ * 服务端名称按客户端的规则由地址列表生成，如 {@code fixed-127.0.0.1_8848}，有命名空间时再加 {@code -namespace}。
+ */
+public class NacosClientLocalCache {
+
+    private static final String DIR_SUFFIX = "_nacos";
+
+    private final File baseDir;
+
+    /**
+     * @param baseDir nacos客户端的配置目录，默认为 ~/nacos/config
+     */
+    public NacosClientLocalCache(File baseDir) {
+        this.baseDir = baseDir;
+    }
+
+    /**
+     * 查找配置的本地文件，快照优先于容灾文件
+     *
+     * @param serverUrls nacos地址，多个用逗号分隔
+     * @param tenant     命名空间
+     * @param group      分组
+     * @param dataId     dataId
+     * @param anyServer  地址对应的目录中没有时，是否在其他服务端的目录中查找
+     * @return 本地文件，不存在时返回null
+     */
+    public File find(String serverUrls, String tenant, String group, String dataId, boolean anyServer) {
+        for (File dir : serverDirs(serverUrls, tenant, anyServer)) {
+            for (File file : candidates(dir, tenant, group, dataId)) {
+                if (file.isFile()) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 客户端按地址列表生成的服务端名称，地址去掉协议，端口的冒号换成下划线
+     *
+     * @param serverUrls nacos地址
+     * @param tenant     命名空间
+     * @return 服务端名称
+     */
+    public static String serverName(String serverUrls, String tenant) {
+        List<String> servers = new ArrayList<>();
+        for (String serverUrl : NacosServerRouter.parseServers(serverUrls)) {
+            String server = StringUtils.substringAfter(serverUrl, "://");
+            server = StringUtils.substringBefore(StringUtils.defaultIfEmpty(server, serverUrl), "/");
+            servers.add(server.replace(':', '_'));
+        }
+        String name = "fixed-" + String.join("-", servers);
+        return StringUtils.isBlank(tenant) ? name : name + "-" + tenant;
+    }
+
+    private List<File> serverDirs(String serverUrls, String tenant, boolean anyServer) {
+        List<File> dirs = new ArrayList<>();
+        File exact = new File(baseDir, serverName(serverUrls, tenant) + DIR_SUFFIX);
+        dirs.add(exact);
+        if (anyServer) {
+            File[] others = baseDir.listFiles(file -> file.isDirectory() && file.getName().endsWith(DIR_SUFFIX));
+            if (others != null) {
+                Arrays.sort(others);
+                for (File other : others) {
+                    if (!other.equals(exact)) {
+                        dirs.add(other);
+                    }
+                }
+            }
+        }
+        return dirs;
+    }
+
+    private static List<File> candidates(File dir, String tenant, String group, String dataId) {
+        if (StringUtils.isBlank(tenant)) {
+            return Arrays.asList(path(dir, "snapshot", group, dataId),
+                    path(dir, "data", "config-data", group, dataId));
+        }
+        return Arrays.asList(path(dir, "snapshot-tenant", tenant, group, dataId),
+                path(dir, "data", "config-data-tenant", tenant, group, dataId));
+    }
+
+    private static File path(File dir, String... names) {
+        File file = dir;
+        for (String name : names) {
+            file = new File(file, name);
+        }
+        return file;
+    }
+}
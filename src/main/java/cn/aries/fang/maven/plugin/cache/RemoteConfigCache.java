@@ -0,0 +1,258 @@
+package cn.aries.fang.maven.plugin.cache;
+
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+import cn.aries.fang.maven.plugin.dto.ConfigKey;
+import cn.aries.fang.maven.plugin.dto.RemoteConfig;
+import cn.aries.fang.maven.plugin.utils.CancellationScope;
+import org.apache.hc.core5.concurrent.Cancellable;
+
+/**
+ * Description: 构建会话级的远程配置缓存
+ * <p>
+ * 同一次Maven构建中的所有模块共用一个实例，相同的(serverUrl, tenant, group, dataId)只下载、解析一次。
+ * 并行构建(-T)时，同时请求同一配置的模块等待同一个进行中的请求；加载失败不缓存，下次请求重新加载。
+ * 一个模块快速失败只结束它自己的等待，所有等待的模块都取消后才中止加载。
+ */
+public class RemoteConfigCache {
+
+    private static volatile RemoteConfigCache current;
+
+    private final Object sessionKey;
+
+    private final ConcurrentMap<ConfigKey, Entry> configs = new ConcurrentHashMap<>();
+
+    private RemoteConfigCache(Object sessionKey) {
+        this.sessionKey = sessionKey;
+    }
+
+    /**
+     * 获取构建会话对应的缓存，会话变化时(如mvnd复用JVM)丢弃旧缓存
+     *
+     * @param sessionKey 构建会话标识，如会话开始时间
+     * @return 缓存
+     */
+    public static RemoteConfigCache forSession(Object sessionKey) {
+        RemoteConfigCache cache = current;
+        if (cache == null || !Objects.equals(cache.sessionKey, sessionKey)) {
+            synchronized (RemoteConfigCache.class) {
+                cache = current;
+                if (cache == null || !Objects.equals(cache.sessionKey, sessionKey)) {
+                    cache = new RemoteConfigCache(sessionKey);
+                    current = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 加载远程配置
+     */
+    @FunctionalInterface
+    public interface Loader {
+
+        /**
+         * 加载
+         *
+         * @return 远程配置
+         * @throws Exception 加载失败
+         */
+        RemoteConfig load() throws Exception;
+    }
+
+    /**
+     * 在共享的取消范围内加载远程配置
+     */
+    @FunctionalInterface
+    public interface SharedLoader {
+
+        /**
+         * 加载
+         *
+         * @param scope 共享加载的取消范围，所有等待的调用方都取消后才取消，请求应登记到该范围
+         * @return 远程配置
+         * @throws Exception 加载失败
+         */
+        RemoteConfig load(CancellationScope scope) throws Exception;
+    }
+
+    /**
+     * 获取远程配置，未缓存时在当前线程加载；同一个key同时只会有一次加载。
+     * 调用方的取消范围只中止自己的等待，所有等待的调用方都取消后才中止加载
+     *
+     * @param key    配置标识
+     * @param scope  调用方的取消范围，为null时不可取消
+     * @param loader 加载方法
+     * @return 远程配置
+     * @throws Exception 加载失败，为加载方法抛出的原始异常；调用方已取消时为CancellationException
+     */
+    public RemoteConfig get(ConfigKey key, CancellationScope scope, SharedLoader loader) throws Exception {
+        boolean[] created = {false};
+        Entry entry = join(key, created);
+        CompletableFuture<RemoteConfig> waiter = entry.waiter();
+        Cancellable cancellable = () -> waiter.cancel(false);
+        if (scope != null) {
+            scope.register(cancellable);
+        }
+        try {
+            if (created[0]) {
+                try {
+                    entry.future.complete(loader.load(entry.scope));
+                } catch (Exception | Error e) {
+                    configs.remove(key, entry);
+                    entry.future.completeExceptionally(e);
+                }
+            }
+            return waiter.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        } finally {
+            if (scope != null) {
+                scope.unregister(cancellable);
+            }
+        }
+    }
+
+    /**
+     * 异步获取远程配置，未缓存时发起加载；同一个key同时只会有一次加载。
+     * 每个调用方得到自己的future，取消只结束自己的等待，所有调用方都取消后才中止加载并移出缓存
+     *
+     * @param key    配置标识
+     * @param loader 发起异步加载的方法，参数为共享加载的取消范围
+     * @return 远程配置
+     */
+    public CompletableFuture<RemoteConfig> getAsync(ConfigKey key, Function<CancellationScope, CompletableFuture<RemoteConfig>> loader) {
+        boolean[] created = {false};
+        Entry entry = join(key, created);
+        CompletableFuture<RemoteConfig> waiter = entry.waiter();
+        if (!created[0]) {
+            return waiter;
+        }
+        CompletableFuture<RemoteConfig> loading;
+        try {
+            loading = loader.apply(entry.scope);
+        } catch (RuntimeException | Error e) {
+            loading = new CompletableFuture<>();
+            loading.completeExceptionally(e);
+        }
+        CompletableFuture<RemoteConfig> started = loading;
+        entry.scope.register(() -> started.cancel(true));
+        loading.whenComplete((remoteConfig, error) -> {
+            if (error != null) {
+                configs.remove(key, entry);
+                entry.future.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            } else {
+                entry.future.complete(remoteConfig);
+            }
+        });
+        return waiter;
+    }
+
+    /**
+     * 登记为key的等待者，没有进行中的加载或加载已被取消时新建
+     *
+     * @param key     配置标识
+     * @param created 是否新建，新建的调用方负责发起加载
+     * @return 缓存条目
+     */
+    private Entry join(ConfigKey key, boolean[] created) {
+        while (true) {
+            Entry entry = configs.get(key);
+            if (entry == null) {
+                Entry fresh = new Entry();
+                fresh.join();
+                entry = configs.putIfAbsent(key, fresh);
+                if (entry == null) {
+                    created[0] = true;
+                    return fresh;
+                }
+            }
+            if (entry.join()) {
+                return entry;
+            }
+            // 所有等待者都已取消的加载不再复用
+            configs.remove(key, entry);
+        }
+    }
+
+    /**
+     * 是否已缓存或正在加载
+     *
+     * @param key 配置标识
+     * @return 是否存在
+     */
+    public boolean contains(ConfigKey key) {
+        return configs.containsKey(key);
+    }
+
+    /**
+     * 一个配置的加载及其等待者
+     */
+    private static class Entry {
+
+        private final CompletableFuture<RemoteConfig> future = new CompletableFuture<>();
+
+        /**
+         * 共享加载的取消范围，所有等待者都取消且加载未完成时取消
+         */
+        private final CancellationScope scope = new CancellationScope();
+
+        private int waiters;
+
+        /**
+         * 登记一个等待者
+         *
+         * @return 是否登记成功，加载已被取消时返回false
+         */
+        private synchronized boolean join() {
+            if (scope.isCancelled()) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        /**
+         * 等待者取消；最后一个等待者取消时中止未完成的加载
+         */
+        private synchronized void leave() {
+            if (--waiters == 0 && !future.isDone()) {
+                scope.cancel();
+            }
+        }
+
+        /**
+         * 调用方自己的future：随加载完成，取消时只退出等待
+         */
+        private CompletableFuture<RemoteConfig> waiter() {
+            CompletableFuture<RemoteConfig> waiter = new CompletableFuture<RemoteConfig>() {
+                @Override
+                public boolean cancel(boolean mayInterruptIfRunning) {
+                    boolean cancelled = super.cancel(mayInterruptIfRunning);
+                    if (cancelled) {
+                        leave();
+                    }
+                    return cancelled;
+                }
+            };
+            future.whenComplete((remoteConfig, error) -> {
+                if (error != null) {
+                    waiter.completeExceptionally(error);
+                } else {
+                    waiter.complete(remoteConfig);
+                }
+            });
+            return waiter;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package cn.aries.fang.maven.plugin.diff;
+
+import java.util.Map;
+
+/**
+ * Description: 基于哈希索引的结构比对，时间复杂度与两边节点数之和成线性关系
+ */
+public class KeyDiffEngine {
+
+    private KeyDiffEngine() {
+    }
+
+    /**
+     * 比对远程与本地的key索引
+     *
+     * @param remote 远程配置的key索引
+     * @param local  本地配置的key索引
+     * @return 比对结果
+     */
+    public static KeyDiffResult diff(KeyIndex remote, KeyIndex local) {
+        return diff(remote, local, false);
+    }
+
+    /**
+     * 比对远程与本地的key索引，可同时比对叶子的值；值只比较类型和哈希，不需要值本身。
+     * 任一边没有值的哈希时(如从快照读回的远程索引)只比较值类型
+     *
+     * @param remote        远程配置的key索引
+     * @param local         本地配置的key索引
+     * @param compareValues 是否比对值
+     * @return 比对结果
+     */
+    public static KeyDiffResult diff(KeyIndex remote, KeyIndex local, boolean compareValues) {
+        KeyDiffResult result = new KeyDiffResult();
+        for (Map.Entry<String, NodeType> node : remote.nodes()) {
+            String path = node.getKey();
+            NodeType remoteType = node.getValue();
+            NodeType localType = local.getType(path);
+            if (remoteType.isLeaf() && (localType == null || !localType.isLeaf())) {
+                result.getMissingKeys().add(path);
+            }
+            if (localType != null && localType != remoteType) {
+                result.getTypeChanges().add(new KeyDiffResult.TypeChange(path, remoteType, localType));
+            } else if (compareValues && remoteType.isLeaf() && localType != null) {
+                diffValue(path, remote.getValue(path), local.getValue(path), result);
+            }
+        }
+        for (Map.Entry<String, NodeType> node : local.nodes()) {
+            if (node.getValue().isLeaf() && remote.getType(node.getKey()) == null) {
+                result.getExtraKeys().add(node.getKey());
+            }
+        }
+        return result;
+    }
+
+    private static void diffValue(String path, LeafValue remoteValue, LeafValue localValue, KeyDiffResult result) {
+        if (remoteValue == null) {
+            return;
+        }
+        if (localValue == null) {
+            // 本地的值来自无法确定内容的别名
+            return;
+        }
+        ValueType localType = localValue.getType();
+        KeyDiffResult.ValueChange.Kind kind;
+        boolean hashed = remoteValue.hasHash() && localValue.hasHash();
+        if (remoteValue.getType() == localType && (!hashed || remoteValue.getHash() == localValue.getHash())) {
+            return;
+        } else if (localType == ValueType.PLACEHOLDER) {
+            // 本地仍是未替换的占位符，与远程相同的占位符不报告
+            kind = KeyDiffResult.ValueChange.Kind.PLACEHOLDER;
+        } else if (remoteValue.getType() == ValueType.PLACEHOLDER) {
+            // 远程的值在运行时替换，本地已是具体的值
+            kind = KeyDiffResult.ValueChange.Kind.CHANGED;
+        } else if (remoteValue.getType() != localType) {
+            kind = KeyDiffResult.ValueChange.Kind.TYPE_MISMATCH;
+        } else {
+            kind = KeyDiffResult.ValueChange.Kind.CHANGED;
+        }
+        result.getValueChanges().add(new KeyDiffResult.ValueChange(path, kind, remoteValue.getType(), localType));
+    }
+}
@@ -0,0 +1,164 @@
+package cn.aries.fang.maven.plugin.diff;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Description: 远程配置与本地配置的结构比对结果
+ */
+public class KeyDiffResult {
+
+    /**
+     * 远程存在、本地缺失的叶子key
+     */
+    private final List<String> missingKeys = new ArrayList<>();
+
+    /**
+     * 本地存在、远程没有的叶子key
+     */
+    private final List<String> extraKeys = new ArrayList<>();
+
+    /**
+     * 两边都存在但类型不同的节点；远程为叶子、本地为映射的节点同时计入缺失key
+     */
+    private final List<TypeChange> typeChanges = new ArrayList<>();
+
+    /**
+     * 两边都为叶子但值不同的节点，只在比对值时产生，不影响门禁结果
+     */
+    private final List<ValueChange> valueChanges = new ArrayList<>();
+
+    public List<String> getMissingKeys() {
+        return missingKeys;
+    }
+
+    public List<String> getExtraKeys() {
+        return extraKeys;
+    }
+
+    public List<TypeChange> getTypeChanges() {
+        return typeChanges;
+    }
+
+    public List<ValueChange> getValueChanges() {
+        return valueChanges;
+    }
+
+    /**
+     * 门禁是否通过，只以缺失key为准
+     *
+     * @return 是否通过
+     */
+    public boolean isPassed() {
+        return missingKeys.isEmpty();
+    }
+
+    /**
+     * 类型变化的节点
+     */
+    public static class TypeChange {
+
+        private final String path;
+
+        private final NodeType remoteType;
+
+        private final NodeType localType;
+
+        public TypeChange(String path, NodeType remoteType, NodeType localType) {
+            this.path = path;
+            this.remoteType = remoteType;
+            this.localType = localType;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public NodeType getRemoteType() {
+            return remoteType;
+        }
+
+        public NodeType getLocalType() {
+            return localType;
+        }
+
+        @Override
+        public String toString() {
+            return path + "(" + remoteType + "->" + localType + ")";
+        }
+    }
+
+    /**
+     * 值不同的叶子节点
+     */
+    public static class ValueChange {
+
+        /**
+         * 值的差异类型
+         */
+        public enum Kind {
+            /**
+             * 类型相同，值不同
+             */
+            CHANGED,
+            /**
+             * 值类型不同
+             */
+            TYPE_MISMATCH,
+            /**
+             * 本地的值只有一个占位符，且与远程不同
+             */
+            PLACEHOLDER
+        }
+
+        private final String path;
+
+        private final Kind kind;
+
+        private final ValueType remoteType;
+
+        private final ValueType localType;
+
+        /**
+         * 本地的值，报告时按需提取
+         */
+        private String localValue;
+
+        public ValueChange(String path, Kind kind, ValueType remoteType, ValueType localType) {
+            this.path = path;
+            this.kind = kind;
+            this.remoteType = remoteType;
+            this.localType = localType;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public ValueType getRemoteType() {
+            return remoteType;
+        }
+
+        public ValueType getLocalType() {
+            return localType;
+        }
+
+        public String getLocalValue() {
+            return localValue;
+        }
+
+        public void setLocalValue(String localValue) {
+            this.localValue = localValue;
+        }
+
+        @Override
+        public String toString() {
+            String text = kind == Kind.TYPE_MISMATCH ? path + "(" + remoteType + "->" + localType + ")" : path;
+            return localValue == null ? text : text + "=" + localValue;
+        }
+    }
+}
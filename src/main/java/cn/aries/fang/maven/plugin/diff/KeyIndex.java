@@ -0,0 +1,142 @@
+package cn.aries.fang.maven.plugin.diff;
+
+import java.util.*;
+
+/**
+ * Description: 展开后的yaml key索引，保存每个节点路径及其类型，叶子节点另有值类型和哈希
+ */
+public class KeyIndex {
+
+    private final Map<String, NodeType> nodes;
+
+    /**
+     * 叶子节点值的摘要，只有能确定值的叶子才有
+     */
+    private final Map<String, LeafValue> values;
+
+    private int leafCount;
+
+    /**
+     * 叶子的摘要是否带值的哈希
+     */
+    private boolean valueHashes;
+
+    public KeyIndex() {
+        this.nodes = new LinkedHashMap<>();
+        this.values = new HashMap<>();
+    }
+
+    public KeyIndex(int expectedSize) {
+        int capacity = Math.max(16, (int) (expectedSize / 0.75f) + 1);
+        this.nodes = new LinkedHashMap<>(capacity);
+        this.values = new HashMap<>(capacity);
+    }
+
+    /**
+     * 记录一个节点，重复的路径以后出现的类型为准
+     *
+     * @param path 节点路径，如 spring.datasource.url
+     * @param type 节点类型
+     */
+    public void put(String path, NodeType type) {
+        put(path, type, null);
+    }
+
+    /**
+     * 记录一个节点及其值的摘要，重复的路径以后出现的为准
+     *
+     * @param path  节点路径
+     * @param type  节点类型
+     * @param value 值的摘要，无法确定时为null
+     */
+    public void put(String path, NodeType type, LeafValue value) {
+        if (value == null) {
+            values.remove(path);
+        } else {
+            values.put(path, value);
+        }
+        NodeType previous = nodes.put(path, type);
+        if (previous != null && previous.isLeaf()) {
+            leafCount--;
+        }
+        if (type.isLeaf()) {
+            leafCount++;
+        }
+    }
+
+    /**
+     * 获取节点类型
+     *
+     * @param path 节点路径
+     * @return 节点类型，不存在时返回null
+     */
+    public NodeType getType(String path) {
+        return nodes.get(path);
+    }
+
+    /**
+     * 获取叶子节点值的摘要
+     *
+     * @param path 节点路径
+     * @return 值的摘要，不存在或无法确定时返回null
+     */
+    public LeafValue getValue(String path) {
+        return values.get(path);
+    }
+
+    /**
+     * 是否包含叶子节点
+     *
+     * @param path 节点路径
+     * @return 是否包含
+     */
+    public boolean containsLeaf(String path) {
+        NodeType type = nodes.get(path);
+        return type != null && type.isLeaf();
+    }
+
+    /**
+     * 所有叶子节点的路径，按出现顺序
+     *
+     * @return 叶子节点路径
+     */
+    public List<String> leafKeys() {
+        List<String> keys = new ArrayList<>(leafCount);
+        for (Map.Entry<String, NodeType> entry : nodes.entrySet()) {
+            if (entry.getValue().isLeaf()) {
+                keys.add(entry.getKey());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 所有节点，按出现顺序
+     *
+     * @return 节点路径与类型
+     */
+    public Set<Map.Entry<String, NodeType>> nodes() {
+        return Collections.unmodifiableMap(nodes).entrySet();
+    }
+
+    /**
+     * 叶子的摘要是否带值的哈希；只在比对值时计算，从文件读回的索引没有
+     *
+     * @return 是否可以比对值
+     */
+    public boolean hasValueHashes() {
+        return valueHashes;
+    }
+
+    void setValueHashes(boolean valueHashes) {
+        this.valueHashes = valueHashes;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+}
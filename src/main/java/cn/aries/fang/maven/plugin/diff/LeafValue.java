@@ -0,0 +1,121 @@
+package cn.aries.fang.maven.plugin.diff;
+
+/**
+ * Description: 叶子节点值的摘要，只保存值类型和64位哈希，不保存值本身
+ * <p>
+ * 哈希不加盐，低熵的值(密码、token)可以被离线穷举，只在比对值时计算，只保存在内存中；
+ * 从快照、磁盘缓存等文件读回的摘要只有值类型。
+ */
+public final class LeafValue {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ValueType type;
+
+    private final long hash;
+
+    private final boolean hashed;
+
+    public LeafValue(ValueType type, long hash) {
+        this.type = type;
+        this.hash = hash;
+        this.hashed = true;
+    }
+
+    /**
+     * 只有值类型、没有哈希的摘要
+     *
+     * @param type 值类型
+     */
+    public LeafValue(ValueType type) {
+        this.type = type;
+        this.hash = 0;
+        this.hashed = false;
+    }
+
+    public ValueType getType() {
+        return type;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * 是否有值的哈希
+     *
+     * @return 没有时只能比较值类型
+     */
+    public boolean hasHash() {
+        return hashed;
+    }
+
+    /**
+     * 哈希的初始值
+     *
+     * @return 初始值
+     */
+    public static long initialHash() {
+        return FNV_OFFSET;
+    }
+
+    /**
+     * 把文本累加到哈希上(FNV-1a 64位)，按字符计算，不做编码转换
+     *
+     * @param hash 当前哈希
+     * @param text 文本
+     * @return 新的哈希
+     */
+    public static long hash(long hash, CharSequence text) {
+        for (int i = 0, n = text.length(); i < n; i++) {
+            hash = hash(hash, text.charAt(i));
+        }
+        return hash;
+    }
+
+    /**
+     * 把一个字符累加到哈希上，用作结构标记
+     *
+     * @param hash 当前哈希
+     * @param c    字符
+     * @return 新的哈希
+     */
+    public static long hash(long hash, char c) {
+        hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+        return (hash ^ (c >>> 8)) * FNV_PRIME;
+    }
+
+    /**
+     * 单个文本的哈希
+     *
+     * @param text 文本
+     * @return 哈希
+     */
+    public static long hash(CharSequence text) {
+        return hash(FNV_OFFSET, text);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LeafValue)) {
+            return false;
+        }
+        LeafValue that = (LeafValue) o;
+        return type == that.type && hash == that.hash && hashed == that.hashed;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * type.hashCode() + Long.hashCode(hash);
+    }
+
+    @Override
+    public String toString() {
+        return hashed ? type + ":" + Long.toHexString(hash) : type.toString();
+    }
+}
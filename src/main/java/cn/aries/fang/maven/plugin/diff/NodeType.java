@@ -0,0 +1,31 @@
+package cn.aries.fang.maven.plugin.diff;
+
+/**
+ * Description: yaml节点类型
+ */
+public enum NodeType {
+
+    /**
+     * 映射节点，其子节点会继续展开
+     */
+    MAP,
+
+    /**
+     * 列表节点，作为叶子节点比较
+     */
+    LIST,
+
+    /**
+     * 标量节点
+     */
+    SCALAR;
+
+    /**
+     * 是否为叶子节点；与展开规则一致，除映射外都视为叶子
+     *
+     * @return 是否为叶子节点
+     */
+    public boolean isLeaf() {
+        return this != MAP;
+    }
+}
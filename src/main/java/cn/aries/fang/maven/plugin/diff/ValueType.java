@@ -0,0 +1,32 @@
+package cn.aries.fang.maven.plugin.diff;
+
+/**
+ * Description: 叶子节点的值类型，按yaml 1.1的隐式类型解析，带引号的标量一律为字符串
+ */
+public enum ValueType {
+
+    NULL,
+
+    BOOL,
+
+    INT,
+
+    FLOAT,
+
+    STRING,
+
+    /**
+     * 整个值只有一个没有默认值的占位符，如 ${DB_PASSWORD}
+     */
+    PLACEHOLDER,
+
+    /**
+     * 列表，值为其全部内容
+     */
+    LIST,
+
+    /**
+     * 时间戳、二进制及自定义标签等其他类型
+     */
+    OTHER
+}
@@ -0,0 +1,856 @@
+package cn.aries.fang.maven.plugin.diff;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.*;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+/**
+ * Description: 基于SnakeYAML事件流的key提取器
+ * <p>
+ * 不构建完整的Map树，直接在解析事件上展开key路径，内存占用只与嵌套深度相关。
+ * 所有路径共用一个前缀缓冲区，列表整体作为叶子节点，不展开其内容；复杂key按yaml.load得到的key对象的toString展开；
+ * 多文档yaml的key合并到同一个索引中；锚点只记录其子路径，用于别名和合并key(&lt;&lt;)的展开，
+ * 列表元素等不产生key的位置上的锚点同样记录子路径，只是不写入索引。
+ * 每个叶子同时记录值类型，比对值时另记录64位哈希，列表的哈希覆盖其全部内容；值本身只在按路径提取时保留。
+ */
+public class YamlKeyExtractor {
+
+    private static final String MERGE_KEY = "<<";
+
+    private static final Resolver RESOLVER = new Resolver();
+
+    /**
+     * 没有默认值的占位符，如 ${DB_PASSWORD}；${port:8080}带默认值，视为普通字符串
+     */
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{[^:}]*}");
+
+    /**
+     * 共用的前缀缓冲区
+     */
+    private final StringBuilder path = new StringBuilder(128);
+
+    private final Deque<Frame> stack = new ArrayDeque<>();
+
+    private final Map<String, Anchor> anchors = new HashMap<>();
+
+    private final List<Anchor> recording = new ArrayList<>();
+
+    private final KeyIndex index;
+
+    /**
+     * 需要保留值的路径，为null时不保留
+     */
+    private final Set<String> capture;
+
+    private final Map<String, String> captured = new HashMap<>();
+
+    /**
+     * 是否计算叶子值的哈希
+     */
+    private final boolean hashValues;
+
+    /**
+     * 正在计算哈希的列表
+     */
+    private Frame hashing;
+
+    /**
+     * 正在读取的复杂key
+     */
+    private ValueText keyText;
+
+    /**
+     * 已分配的作用域；作用域0为写入索引的节点，列表元素各自分配新的作用域，只为其中的锚点记录子路径
+     */
+    private int scopes;
+
+    private YamlKeyExtractor(KeyIndex index, Set<String> capture, boolean hashValues) {
+        this.index = index;
+        this.capture = capture;
+        this.hashValues = hashValues;
+        index.setValueHashes(hashValues);
+    }
+
+    /**
+     * 提取yaml文本中的所有key，不计算值的哈希
+     *
+     * @param content yaml文本
+     * @return key索引
+     */
+    public static KeyIndex extract(String content) {
+        return extract(content, false);
+    }
+
+    /**
+     * 提取yaml文本中的所有key
+     *
+     * @param content    yaml文本
+     * @param hashValues 是否计算叶子值的哈希，比对值时需要
+     * @return key索引
+     */
+    public static KeyIndex extract(String content, boolean hashValues) {
+        return extract(new StringReader(content == null ? "" : content), hashValues);
+    }
+
+    /**
+     * 提取yaml输入流中的所有key，自动识别BOM，默认UTF-8，不计算值的哈希
+     *
+     * @param inputStream yaml输入流
+     * @return key索引
+     */
+    public static KeyIndex extract(InputStream inputStream) {
+        return extract(inputStream, false);
+    }
+
+    /**
+     * 提取yaml输入流中的所有key，自动识别BOM，默认UTF-8
+     *
+     * @param inputStream yaml输入流
+     * @param hashValues  是否计算叶子值的哈希
+     * @return key索引
+     */
+    public static KeyIndex extract(InputStream inputStream, boolean hashValues) {
+        return extract(new UnicodeReader(inputStream), hashValues);
+    }
+
+    /**
+     * 提取yaml字符流中的所有key，不计算值的哈希
+     *
+     * @param reader yaml字符流
+     * @return key索引
+     */
+    public static KeyIndex extract(Reader reader) {
+        return extract(reader, false);
+    }
+
+    /**
+     * 提取yaml字符流中的所有key
+     *
+     * @param reader     yaml字符流
+     * @param hashValues 是否计算叶子值的哈希
+     * @return key索引
+     */
+    public static KeyIndex extract(Reader reader, boolean hashValues) {
+        YamlKeyExtractor extractor = new YamlKeyExtractor(new KeyIndex(), null, hashValues);
+        for (Event event : newYaml().parse(reader)) {
+            extractor.onEvent(event);
+        }
+        return extractor.index;
+    }
+
+    /**
+     * 提取文件中的所有key，不计算值的哈希
+     *
+     * @param file yaml文件
+     * @return key索引
+     * @throws IOException 读取异常
+     */
+    public static KeyIndex extract(File file) throws IOException {
+        return extract(file, false);
+    }
+
+    /**
+     * 提取文件中的所有key
+     *
+     * @param file       yaml文件
+     * @param hashValues 是否计算叶子值的哈希
+     * @return key索引
+     * @throws IOException 读取异常
+     */
+    public static KeyIndex extract(File file, boolean hashValues) throws IOException {
+        try (Reader reader = new UnicodeReader(new BufferedInputStream(new FileInputStream(file)))) {
+            return extract(reader, hashValues);
+        }
+    }
+
+    /**
+     * 提取文件中指定叶子的值，标量为原文，列表按流式写法还原；用于报告值的差异，只提取需要的路径
+     *
+     * @param file  yaml文件
+     * @param paths 叶子路径
+     * @return 路径与值，文件中不存在的路径不包含在内
+     * @throws IOException 读取异常
+     */
+    public static Map<String, String> extractValues(File file, Collection<String> paths) throws IOException {
+        YamlKeyExtractor extractor = new YamlKeyExtractor(new KeyIndex(), new HashSet<>(paths), false);
+        try (Reader reader = new UnicodeReader(new BufferedInputStream(new FileInputStream(file)))) {
+            for (Event event : newYaml().parse(reader)) {
+                extractor.onEvent(event);
+            }
+        }
+        return extractor.captured;
+    }
+
+    private static Yaml newYaml() {
+        LoaderOptions loaderOptions = new LoaderOptions();
+        // 事件流解析不受文档大小影响，放开默认3MB的限制
+        loaderOptions.setCodePointLimit(Integer.MAX_VALUE);
+        return new Yaml(loaderOptions);
+    }
+
+    private void onEvent(Event event) {
+        if (hashing != null) {
+            foldListItem(event);
+        }
+        if (keyText != null) {
+            foldKey(event);
+            return;
+        }
+        switch (event.getEventId()) {
+            case DocumentStart:
+                stack.clear();
+                path.setLength(0);
+                hashing = null;
+                break;
+            case Scalar:
+                onScalar((ScalarEvent) event);
+                break;
+            case Alias:
+                onAlias((AliasEvent) event);
+                break;
+            case MappingStart:
+                onCollectionStart((NodeEvent) event, true);
+                break;
+            case SequenceStart:
+                onCollectionStart((NodeEvent) event, false);
+                break;
+            case MappingEnd:
+            case SequenceEnd:
+                onCollectionEnd();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void onScalar(ScalarEvent event) {
+        Frame frame = stack.peek();
+        if (frame == null || frame.kind != Kind.MAPPING) {
+            // 根节点为标量，或处于列表、被跳过的节点中：不产生key
+            skipAnchor(event.getAnchor(), NodeType.SCALAR, valueOf(event), event.getValue());
+            return;
+        }
+        if (frame.expectKey) {
+            startKey(frame, event.getValue(), MERGE_KEY.equals(event.getValue())
+                    && event.getScalarStyle() == DumperOptions.ScalarStyle.PLAIN);
+            return;
+        }
+        frame.expectKey = true;
+        LeafValue value = valueOf(event);
+        if (!frame.merge && put(NodeType.SCALAR, value, frame.scope)) {
+            captureValue(event.getValue());
+        }
+        startAnchor(event.getAnchor(), NodeType.SCALAR, value, event.getValue(), frame.scope);
+    }
+
+    private void onAlias(AliasEvent event) {
+        Anchor anchor = anchors.get(event.getAnchor());
+        if (anchor == null) {
+            throw new YAMLException("found undefined alias " + event.getAnchor());
+        }
+        Frame frame = stack.peek();
+        if (frame == null) {
+            return;
+        }
+        if (frame.kind == Kind.MERGE_SEQUENCE) {
+            frame.target.addMerge(anchor);
+            return;
+        }
+        if (frame.kind != Kind.MAPPING) {
+            return;
+        }
+        if (frame.expectKey) {
+            // 以别名作为key：标量取其原文，集合取锚点名
+            startKey(frame, anchor.text != null ? anchor.text : "*" + anchor.name, false);
+            return;
+        }
+        frame.expectKey = true;
+        if (frame.merge) {
+            frame.addMerge(anchor);
+            return;
+        }
+        NodeType type = anchor.type;
+        if (put(type, anchor.value, frame.scope) && anchor.text != null) {
+            captureValue(anchor.text);
+        }
+        if (type == NodeType.MAP) {
+            int length = path.length();
+            for (int i = 0; i < anchor.paths.size(); i++) {
+                path.setLength(length);
+                path.append('.').append(anchor.paths.get(i));
+                put(anchor.types.get(i), anchor.values.get(i), frame.scope);
+            }
+            path.setLength(length);
+        }
+    }
+
+    private void onCollectionStart(NodeEvent event, boolean mapping) {
+        NodeType type = mapping ? NodeType.MAP : NodeType.LIST;
+        Frame frame = stack.peek();
+        if (frame == null || frame.kind == Kind.SEQUENCE) {
+            // 根节点或列表元素：根映射展开到索引中，其余只为锚点记录子路径
+            int scope = frame == null && mapping ? 0 : ++scopes;
+            startChild(event.getAnchor(), mapping ? Kind.MAPPING : Kind.SEQUENCE, scope, true);
+            return;
+        }
+        if (frame.kind == Kind.SKIP) {
+            skipAnchor(event.getAnchor(), type, null, null);
+            stack.push(new Frame(Kind.SKIP, frame.prefixLength, frame.scope));
+            return;
+        }
+        if (frame.kind == Kind.MERGE_SEQUENCE) {
+            if (mapping) {
+                startMerged(frame.target, event.getAnchor());
+            } else {
+                skipAnchor(event.getAnchor(), type, null, null);
+                stack.push(new Frame(Kind.SKIP, frame.prefixLength, frame.scope));
+            }
+            return;
+        }
+        if (frame.expectKey) {
+            // 复杂key，按yaml.load得到的key对象的toString展开，如 [a, b]、{k=v}
+            skipAnchor(event.getAnchor(), type, null, null);
+            keyText = new ValueText("=");
+            keyText.start(mapping);
+            return;
+        }
+        frame.expectKey = true;
+        if (frame.merge) {
+            // <<: {...} 内联映射与 <<: [*a, *b] 的各项在当前映射结束时依次合并
+            if (mapping) {
+                startMerged(frame, event.getAnchor());
+            } else {
+                Frame merges = new Frame(Kind.MERGE_SEQUENCE, frame.prefixLength, frame.scope);
+                merges.target = frame;
+                stack.push(merges);
+            }
+            return;
+        }
+        if (mapping) {
+            put(type, null, frame.scope);
+        }
+        startChild(event.getAnchor(), mapping ? Kind.MAPPING : Kind.SEQUENCE, frame.scope, false);
+    }
+
+    /**
+     * 进入映射的值、列表元素或根节点；映射开始记录锚点，列表读完才能得到哈希，结束时再记录节点和锚点的值
+     */
+    private void startChild(String anchor, Kind kind, int scope, boolean item) {
+        Frame child = new Frame(kind, path.length(), scope);
+        child.item = item;
+        child.anchor = anchor;
+        if (kind == Kind.MAPPING) {
+            child.recorder = anchor == null ? null : record(anchor, scope);
+        } else if (hashing == null) {
+            child.hash = LeafValue.initialHash();
+            child.hashed = true;
+            if (scope == 0 && capture != null && capture.contains(path.toString())) {
+                child.text = new ValueText(": ");
+                child.text.start(false);
+            }
+            hashing = child;
+        }
+        stack.push(child);
+    }
+
+    /**
+     * 合并key的内联映射，在新的作用域中记录其子路径，结束时合并到目标映射
+     */
+    private void startMerged(Frame target, String anchor) {
+        path.setLength(target.prefixLength);
+        Frame merged = new Frame(Kind.MAPPING, target.prefixLength, ++scopes);
+        merged.target = target;
+        merged.recorder = record(anchor, merged.scope);
+        stack.push(merged);
+    }
+
+    private void startKey(Frame frame, String key, boolean merge) {
+        frame.expectKey = false;
+        frame.merge = merge;
+        if (!merge) {
+            path.setLength(frame.prefixLength);
+            if (frame.prefixLength > 0) {
+                path.append('.');
+            }
+            path.append(key);
+        }
+    }
+
+    private void onCollectionEnd() {
+        Frame frame = stack.peek();
+        if (frame == null) {
+            return;
+        }
+        if (frame.kind == Kind.MAPPING) {
+            if (frame.merges != null) {
+                for (Anchor anchor : frame.merges) {
+                    replayMerge(frame, anchor);
+                }
+            }
+            if (frame.recorder != null) {
+                recording.remove(frame.recorder);
+                if (frame.target != null) {
+                    frame.target.addMerge(frame.recorder);
+                }
+            }
+        }
+        stack.pop();
+        if (frame.kind == Kind.SEQUENCE) {
+            path.setLength(frame.prefixLength);
+            LeafValue value = null;
+            String text = null;
+            if (frame.hashed) {
+                hashing = null;
+                value = hashValues ? new LeafValue(ValueType.LIST, frame.hash) : new LeafValue(ValueType.LIST);
+                text = frame.text == null ? null : frame.text.toString();
+            }
+            if (!frame.item && put(NodeType.LIST, value, frame.scope) && text != null) {
+                captureValue(text);
+            }
+            startAnchor(frame.anchor, NodeType.LIST, value, text, frame.scope);
+        }
+        Frame parent = stack.peek();
+        if (parent != null) {
+            path.setLength(parent.prefixLength);
+        }
+    }
+
+    /**
+     * 复杂key中的事件，key读完后作为当前映射的key
+     */
+    private void foldKey(Event event) {
+        switch (event.getEventId()) {
+            case Scalar:
+                ScalarEvent scalar = (ScalarEvent) event;
+                skipAnchor(scalar.getAnchor(), NodeType.SCALAR, valueOf(scalar), scalar.getValue());
+                keyText.item(scalar.getValue());
+                break;
+            case Alias:
+                String name = ((AliasEvent) event).getAnchor();
+                Anchor anchor = anchors.get(name);
+                if (anchor == null) {
+                    throw new YAMLException("found undefined alias " + name);
+                }
+                keyText.item(anchor.text != null ? anchor.text : "*" + name);
+                break;
+            case MappingStart:
+            case SequenceStart:
+                boolean mapping = event.getEventId() == Event.ID.MappingStart;
+                skipAnchor(((NodeEvent) event).getAnchor(), mapping ? NodeType.MAP : NodeType.LIST, null, null);
+                keyText.start(mapping);
+                break;
+            case MappingEnd:
+            case SequenceEnd:
+                keyText.end();
+                if (keyText.isComplete()) {
+                    String key = keyText.toString();
+                    keyText = null;
+                    startKey(stack.peek(), key, false);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 合并key：锚点的子路径归属于目标映射；映射中已有的key(显式声明或先合并的)连同其子路径整体优先
+     */
+    private void replayMerge(Frame target, Anchor anchor) {
+        if (anchor.type != NodeType.MAP) {
+            return;
+        }
+        Anchor present = null;
+        if (target.scope != 0) {
+            // 不写入索引的作用域中，只有锚点需要合并后的子路径，按最内层的锚点判断key是否已存在
+            for (int i = recording.size() - 1; i >= 0 && present == null; i--) {
+                if (recording.get(i).scope == target.scope) {
+                    present = recording.get(i);
+                }
+            }
+            if (present == null) {
+                return;
+            }
+        }
+        int prefixLength = target.prefixLength;
+        String top = null;
+        boolean skip = false;
+        for (int i = 0; i < anchor.paths.size(); i++) {
+            String child = anchor.paths.get(i);
+            path.setLength(prefixLength);
+            if (prefixLength > 0) {
+                path.append('.');
+            }
+            path.append(child);
+            if (top == null || !child.startsWith(top) || child.length() == top.length()
+                    || child.charAt(top.length()) != '.') {
+                top = child;
+                skip = present == null ? index.getType(path.toString()) != null : present.contains(path);
+            }
+            if (!skip) {
+                put(anchor.types.get(i), anchor.values.get(i), target.scope);
+            }
+        }
+        path.setLength(prefixLength);
+    }
+
+    /**
+     * 记录当前路径的节点，并记录到同一作用域中正在记录的锚点
+     *
+     * @return 是否写入索引；不在作用域0时只记录到锚点
+     */
+    private boolean put(NodeType type, LeafValue value, int scope) {
+        String key = path.toString();
+        for (Anchor anchor : recording) {
+            if (anchor.scope == scope && key.length() > anchor.baseLength) {
+                anchor.add(anchor.relative(key), type, value);
+            }
+        }
+        if (scope != 0) {
+            return false;
+        }
+        index.put(key, type, value);
+        return true;
+    }
+
+    private void captureValue(String text) {
+        if (capture != null) {
+            String key = path.toString();
+            if (capture.contains(key)) {
+                captured.put(key, text);
+            }
+        }
+    }
+
+    /**
+     * 列表中的事件：比对值时累加到列表的哈希上，按路径提取值时拼接列表的原文
+     */
+    private void foldListItem(Event event) {
+        if (hashValues) {
+            hashing.hash = hashListItem(hashing.hash, event);
+        }
+        ValueText text = hashing.text;
+        if (text == null) {
+            return;
+        }
+        switch (event.getEventId()) {
+            case Scalar:
+                text.item(((ScalarEvent) event).getValue());
+                break;
+            case Alias:
+                Anchor anchor = anchors.get(((AliasEvent) event).getAnchor());
+                text.item(anchor != null && anchor.text != null ? anchor.text : "*" + ((AliasEvent) event).getAnchor());
+                break;
+            case MappingStart:
+            case SequenceStart:
+                text.start(event.getEventId() == Event.ID.MappingStart);
+                break;
+            case MappingEnd:
+            case SequenceEnd:
+                text.end();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 把列表中的事件累加到列表的哈希上，带结构标记，[a, b]与[ab]、[[a], b]不同
+     */
+    private long hashListItem(long hash, Event event) {
+        switch (event.getEventId()) {
+            case Scalar:
+                return LeafValue.hash(LeafValue.hash(LeafValue.hash(hash, 'S'), ((ScalarEvent) event).getValue()), '\0');
+            case Alias:
+                Anchor anchor = anchors.get(((AliasEvent) event).getAnchor());
+                hash = LeafValue.hash(hash, 'A');
+                if (anchor != null && anchor.value != null) {
+                    hash = LeafValue.hash(hash, Long.toHexString(anchor.value.getHash()));
+                } else {
+                    hash = LeafValue.hash(hash, ((AliasEvent) event).getAnchor());
+                }
+                return LeafValue.hash(hash, '\0');
+            case MappingStart:
+            case SequenceStart:
+                return LeafValue.hash(hash, event.getEventId() == Event.ID.MappingStart ? '{' : '[');
+            case MappingEnd:
+            case SequenceEnd:
+                return LeafValue.hash(hash, event.getEventId() == Event.ID.MappingEnd ? '}' : ']');
+            default:
+                return hash;
+        }
+    }
+
+    private LeafValue valueOf(ScalarEvent event) {
+        return hashValues ? new LeafValue(valueTypeOf(event), LeafValue.hash(event.getValue())) : new LeafValue(valueTypeOf(event));
+    }
+
+    private static ValueType valueTypeOf(ScalarEvent event) {
+        String value = event.getValue();
+        Tag tag;
+        if (event.getTag() != null && !"!".equals(event.getTag())) {
+            tag = new Tag(event.getTag());
+        } else if (event.getScalarStyle() == DumperOptions.ScalarStyle.PLAIN) {
+            tag = RESOLVER.resolve(NodeId.scalar, value, true);
+        } else {
+            tag = Tag.STR;
+        }
+        if (Tag.STR.equals(tag)) {
+            return PLACEHOLDER.matcher(value).matches() ? ValueType.PLACEHOLDER : ValueType.STRING;
+        } else if (Tag.INT.equals(tag)) {
+            return ValueType.INT;
+        } else if (Tag.FLOAT.equals(tag)) {
+            return ValueType.FLOAT;
+        } else if (Tag.BOOL.equals(tag)) {
+            return ValueType.BOOL;
+        } else if (Tag.NULL.equals(tag)) {
+            return ValueType.NULL;
+        }
+        return ValueType.OTHER;
+    }
+
+    private void startAnchor(String name, NodeType type, LeafValue value, String text, int scope) {
+        if (name != null) {
+            anchors.put(name, new Anchor(name, type, path.length(), scope, value, text));
+        }
+    }
+
+    /**
+     * 开始记录映射的子路径，匿名的锚点只用于合并key的内联映射
+     */
+    private Anchor record(String name, int scope) {
+        Anchor anchor = new Anchor(name, NodeType.MAP, path.length(), scope, null, null);
+        if (name != null) {
+            anchors.put(name, anchor);
+        }
+        recording.add(anchor);
+        return anchor;
+    }
+
+    /**
+     * 复杂key及被跳过的节点上的锚点只记录类型和标量的值，不记录子路径
+     */
+    private void skipAnchor(String name, NodeType type, LeafValue value, String text) {
+        if (name != null) {
+            anchors.put(name, new Anchor(name, type, -1, -1, value, text));
+        }
+    }
+
+    private enum Kind {
+        /**
+         * 映射，展开其key
+         */
+        MAPPING,
+        /**
+         * 列表，作为叶子节点，其中的映射只为锚点记录子路径
+         */
+        SEQUENCE,
+        /**
+         * 合并key对应的别名列表
+         */
+        MERGE_SEQUENCE,
+        /**
+         * 被跳过的节点，如合并key中的列表
+         */
+        SKIP
+    }
+
+    /**
+     * 解析栈帧，每个映射、列表对应一帧
+     */
+    private static class Frame {
+
+        private final Kind kind;
+
+        /**
+         * 当前映射在前缀缓冲区中的长度
+         */
+        private final int prefixLength;
+
+        private final int scope;
+
+        private boolean expectKey = true;
+
+        /**
+         * 当前key为合并key(<<)
+         */
+        private boolean merge;
+
+        /**
+         * 列表元素或根节点，本身没有key
+         */
+        private boolean item;
+
+        private String anchor;
+
+        /**
+         * 映射上的锚点，记录其子路径
+         */
+        private Anchor recorder;
+
+        /**
+         * 合并key的内联映射或别名列表要合并到的映射
+         */
+        private Frame target;
+
+        /**
+         * 映射结束时依次合并的锚点，先出现的优先
+         */
+        private List<Anchor> merges;
+
+        /**
+         * 列表内容的哈希，外层列表已在计算哈希时不计算
+         */
+        private long hash;
+
+        private boolean hashed;
+
+        /**
+         * 需要保留值的列表的文本
+         */
+        private ValueText text;
+
+        private Frame(Kind kind, int prefixLength, int scope) {
+            this.kind = kind;
+            this.prefixLength = prefixLength;
+            this.scope = scope;
+        }
+
+        private void addMerge(Anchor anchor) {
+            if (merges == null) {
+                merges = new ArrayList<>(2);
+            }
+            merges.add(anchor);
+        }
+    }
+
+    /**
+     * 锚点记录的子路径，相对于锚点所在节点
+     */
+    private static class Anchor {
+
+        private final String name;
+
+        private final NodeType type;
+
+        private final int baseLength;
+
+        private final int scope;
+
+        /**
+         * 锚点为标量或列表时的值摘要
+         */
+        private final LeafValue value;
+
+        private final String text;
+
+        private final List<String> paths = new ArrayList<>();
+
+        private final List<NodeType> types = new ArrayList<>();
+
+        private final List<LeafValue> values = new ArrayList<>();
+
+        /**
+         * 子路径在列表中的位置，重复的路径以后出现的为准
+         */
+        private final Map<String, Integer> positions = new HashMap<>();
+
+        private Anchor(String name, NodeType type, int baseLength, int scope, LeafValue value, String text) {
+            this.name = name;
+            this.type = type;
+            this.baseLength = baseLength;
+            this.scope = scope;
+            this.value = value;
+            this.text = text;
+        }
+
+        private String relative(String key) {
+            return baseLength == 0 ? key : key.substring(baseLength + 1);
+        }
+
+        private boolean contains(CharSequence key) {
+            return positions.containsKey(relative(key.toString()));
+        }
+
+        private void add(String path, NodeType type, LeafValue value) {
+            Integer position = positions.get(path);
+            if (position == null) {
+                positions.put(path, paths.size());
+                paths.add(path);
+                types.add(type);
+                values.add(value);
+            } else {
+                types.set(position, type);
+                values.set(position, value);
+            }
+        }
+    }
+
+    /**
+     * 集合的单行写法：列表的值为流式写法，如 [a, {k: v}, [b]]；复杂key为key对象的toString，如 [a, {k=v}]
+     */
+    private static class ValueText {
+
+        private final StringBuilder sb = new StringBuilder();
+
+        /**
+         * 映射中key与值之间的分隔符
+         */
+        private final String entrySeparator;
+
+        /**
+         * 每层集合是否为映射及已写入的元素数，映射的key和值各算一个
+         */
+        private final Deque<int[]> levels = new ArrayDeque<>();
+
+        private ValueText(String entrySeparator) {
+            this.entrySeparator = entrySeparator;
+        }
+
+        private void item(String value) {
+            separate();
+            sb.append(value);
+        }
+
+        private void start(boolean mapping) {
+            separate();
+            sb.append(mapping ? '{' : '[');
+            levels.push(new int[]{mapping ? 1 : 0, 0});
+        }
+
+        private void end() {
+            int[] level = levels.pop();
+            sb.append(level[0] == 1 ? '}' : ']');
+        }
+
+        private boolean isComplete() {
+            return levels.isEmpty();
+        }
+
+        private void separate() {
+            int[] level = levels.peek();
+            if (level == null) {
+                return;
+            }
+            if (level[1] > 0) {
+                sb.append(level[0] == 1 && level[1] % 2 == 1 ? entrySeparator : ", ");
+            }
+            level[1]++;
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package cn.aries.fang.maven.plugin.dto;
+
+import java.util.Objects;
+
+/**
+ * Description: 远程配置的唯一标识
+ */
+public class ConfigKey {
+
+    private final String serverUrl;
+
+    private final String tenant;
+
+    private final String group;
+
+    private final String dataId;
+
+    public ConfigKey(String serverUrl, String tenant, String group, String dataId) {
+        this.serverUrl = serverUrl;
+        this.tenant = tenant == null ? "" : tenant;
+        this.group = group;
+        this.dataId = dataId;
+    }
+
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public String getDataId() {
+        return dataId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ConfigKey that = (ConfigKey) o;
+        return Objects.equals(serverUrl, that.serverUrl) && Objects.equals(tenant, that.tenant)
+                && Objects.equals(group, that.group) && Objects.equals(dataId, that.dataId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(serverUrl, tenant, group, dataId);
+    }
+
+    @Override
+    public String toString() {
+        return serverUrl + "|" + tenant + "|" + group + "|" + dataId;
+    }
+}
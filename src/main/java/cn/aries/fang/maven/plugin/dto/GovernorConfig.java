@@ -0,0 +1,150 @@
+package cn.aries.fang.maven.plugin.dto;
+
+import java.util.Objects;
+
+/**
+ * Description: 请求限流配置
+ * <p>
+ * 令牌桶限制请求速率，AIMD按响应时间和429/503动态调整并发数；可选通过锁文件限制同一台机器上所有构建的总并发。
+ */
+public class GovernorConfig {
+
+    /**
+     * 每秒最多发出的请求数，0表示不限速
+     */
+    private double ratePerSecond = 0;
+
+    /**
+     * 令牌桶容量，允许的突发请求数
+     */
+    private int burst = 10;
+
+    /**
+     * 初始并发数
+     */
+    private int initialConcurrency = 8;
+
+    /**
+     * 并发数下限
+     */
+    private int minConcurrency = 1;
+
+    /**
+     * 并发数上限
+     */
+    private int maxConcurrency = 32;
+
+    /**
+     * 响应时间超过基线的倍数时视为服务端过载，减小并发数；0表示只按429/503调整
+     */
+    private double latencyTolerance = 2.0;
+
+    /**
+     * 过载时并发数乘以该比例
+     */
+    private double decreaseRatio = 0.7;
+
+    /**
+     * 同一台机器上所有构建共用的并发槽位数，通过锁文件协调；0表示不跨进程协调
+     */
+    private int crossJvmSlots = 0;
+
+    /**
+     * 锁文件目录，默认为系统临时目录下的nacos-maven-plugin/governor
+     */
+    private String lockDir;
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public void setRatePerSecond(double ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public void setBurst(int burst) {
+        this.burst = burst;
+    }
+
+    public int getInitialConcurrency() {
+        return initialConcurrency;
+    }
+
+    public void setInitialConcurrency(int initialConcurrency) {
+        this.initialConcurrency = initialConcurrency;
+    }
+
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    public void setMinConcurrency(int minConcurrency) {
+        this.minConcurrency = minConcurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    public void setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    public double getDecreaseRatio() {
+        return decreaseRatio;
+    }
+
+    public void setDecreaseRatio(double decreaseRatio) {
+        this.decreaseRatio = decreaseRatio;
+    }
+
+    public int getCrossJvmSlots() {
+        return crossJvmSlots;
+    }
+
+    public void setCrossJvmSlots(int crossJvmSlots) {
+        this.crossJvmSlots = crossJvmSlots;
+    }
+
+    public String getLockDir() {
+        return lockDir;
+    }
+
+    public void setLockDir(String lockDir) {
+        this.lockDir = lockDir;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        GovernorConfig that = (GovernorConfig) o;
+        return Double.compare(ratePerSecond, that.ratePerSecond) == 0 && burst == that.burst
+                && initialConcurrency == that.initialConcurrency && minConcurrency == that.minConcurrency
+                && maxConcurrency == that.maxConcurrency && Double.compare(latencyTolerance, that.latencyTolerance) == 0
+                && Double.compare(decreaseRatio, that.decreaseRatio) == 0 && crossJvmSlots == that.crossJvmSlots
+                && Objects.equals(lockDir, that.lockDir);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ratePerSecond, burst, initialConcurrency, minConcurrency, maxConcurrency,
+                latencyTolerance, decreaseRatio, crossJvmSlots, lockDir);
+    }
+}
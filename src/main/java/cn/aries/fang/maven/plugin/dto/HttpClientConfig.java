@@ -0,0 +1,175 @@
+package cn.aries.fang.maven.plugin.dto;
+
+import java.util.Objects;
+
+/**
+ * Description: http连接池配置，时间单位均为毫秒
+ */
+public class HttpClientConfig {
+
+    /**
+     * 最大连接数
+     */
+    private int maxTotal = 100;
+
+    /**
+     * 每个路由的最大连接数
+     */
+    private int maxPerRoute = 20;
+
+    /**
+     * 建立连接的超时时间
+     */
+    private int connectTimeout = 30000;
+
+    /**
+     * 等待响应的超时时间
+     */
+    private int responseTimeout = 30000;
+
+    /**
+     * 从连接池获取连接的超时时间
+     */
+    private int connectionRequestTimeout = 30000;
+
+    /**
+     * 服务端未返回Keep-Alive时连接的保持时间
+     */
+    private int keepAlive = 30000;
+
+    /**
+     * 空闲超过该时间的连接会被后台线程关闭
+     */
+    private int idleEvict = 30000;
+
+    /**
+     * TLS会话缓存的大小，复用会话可以省去完整握手；0表示使用JDK默认值
+     */
+    private int tlsSessionCacheSize = 0;
+
+    /**
+     * TLS会话缓存的有效期，单位秒；0表示使用JDK默认值
+     */
+    private int tlsSessionTimeout = 0;
+
+    /**
+     * 异步客户端的http协议版本策略：NEGOTIATE(https时通过ALPN协商http/2)、FORCE_HTTP_1、FORCE_HTTP_2
+     */
+    private String httpVersionPolicy = "NEGOTIATE";
+
+    /**
+     * 异步客户端的IO线程数
+     */
+    private int ioThreads = 2;
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public void setMaxPerRoute(int maxPerRoute) {
+        this.maxPerRoute = maxPerRoute;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    public void setResponseTimeout(int responseTimeout) {
+        this.responseTimeout = responseTimeout;
+    }
+
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    public int getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(int keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public int getIdleEvict() {
+        return idleEvict;
+    }
+
+    public void setIdleEvict(int idleEvict) {
+        this.idleEvict = idleEvict;
+    }
+
+    public int getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    public void setTlsSessionCacheSize(int tlsSessionCacheSize) {
+        this.tlsSessionCacheSize = tlsSessionCacheSize;
+    }
+
+    public int getTlsSessionTimeout() {
+        return tlsSessionTimeout;
+    }
+
+    public void setTlsSessionTimeout(int tlsSessionTimeout) {
+        this.tlsSessionTimeout = tlsSessionTimeout;
+    }
+
+    public String getHttpVersionPolicy() {
+        return httpVersionPolicy;
+    }
+
+    public void setHttpVersionPolicy(String httpVersionPolicy) {
+        this.httpVersionPolicy = httpVersionPolicy;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        HttpClientConfig that = (HttpClientConfig) o;
+        return maxTotal == that.maxTotal && maxPerRoute == that.maxPerRoute
+                && connectTimeout == that.connectTimeout && responseTimeout == that.responseTimeout
+                && connectionRequestTimeout == that.connectionRequestTimeout && keepAlive == that.keepAlive
+                && idleEvict == that.idleEvict && tlsSessionCacheSize == that.tlsSessionCacheSize
+                && tlsSessionTimeout == that.tlsSessionTimeout && ioThreads == that.ioThreads
+                && Objects.equals(httpVersionPolicy, that.httpVersionPolicy);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxTotal, maxPerRoute, connectTimeout, responseTimeout, connectionRequestTimeout,
+                keepAlive, idleEvict, tlsSessionCacheSize, tlsSessionTimeout, httpVersionPolicy, ioThreads);
+    }
+}
@@ -0,0 +1,78 @@
+package cn.aries.fang.maven.plugin.dto;
+
+/**
+ * Description: 多环境检查中的一个环境
+ * <p>
+ * 未配置的serverUrl、username、password、encryptPassword沿用插件的全局配置，namespace不沿用，为空时表示public。
+ */
+public class NacosEnvironment {
+
+    /**
+     * 环境名称，用于日志和报告，为空时取namespace
+     */
+    private String name;
+
+    private String serverUrl;
+
+    private String namespace;
+
+    private String username;
+
+    /**
+     * jasypt加密后的密码
+     */
+    private String password;
+
+    /**
+     * jasypt密钥
+     */
+    private String encryptPassword;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    public void setServerUrl(String serverUrl) {
+        this.serverUrl = serverUrl;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public void setNamespace(String namespace) {
+        this.namespace = namespace;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getEncryptPassword() {
+        return encryptPassword;
+    }
+
+    public void setEncryptPassword(String encryptPassword) {
+        this.encryptPassword = encryptPassword;
+    }
+}
@@ -0,0 +1,34 @@
+package cn.aries.fang.maven.plugin.dto;
+
+import cn.aries.fang.maven.plugin.diff.KeyIndex;
+
+/**
+ * Description: 已下载并展开的远程配置
+ * <p>
+ * 只保留MD5和key索引，不保留原始内容，共享缓存中的配置不会长期占用内存。
+ */
+public class RemoteConfig {
+
+    /**
+     * 内容的MD5，与nacos计算方式一致
+     */
+    private final String md5;
+
+    /**
+     * 展开后的key索引
+     */
+    private final KeyIndex keys;
+
+    public RemoteConfig(String md5, KeyIndex keys) {
+        this.md5 = md5;
+        this.keys = keys;
+    }
+
+    public String getMd5() {
+        return md5;
+    }
+
+    public KeyIndex getKeys() {
+        return keys;
+    }
+}
@@ -0,0 +1,271 @@
+package cn.aries.fang.maven.plugin.report;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import cn.aries.fang.maven.plugin.utils.FileWriteUtils;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+
+/**
+ * Description: 门禁检查的性能报告
+ * <p>
+ * 记录每个环境登录、监听探测、批量拉取的耗时以及每个配置各阶段的耗时、字节数和key数量，
+ * 汇总成配置×环境的结果矩阵；输出JSON报告和Prometheus textfile格式的指标，
+ * 两个文件都原子替换，采集端不会读到写了一半的内容。
+ */
+public class CheckReport {
+
+    /**
+     * JSON报告文件名
+     */
+    public static final String JSON_FILE = "report.json";
+
+    /**
+     * Prometheus textfile文件名
+     */
+    public static final String PROMETHEUS_FILE = "nacos-config-check.prom";
+
+    public static final String STATUS_PASSED = "passed";
+
+    public static final String STATUS_FAILED = "failed";
+
+    public static final String STATUS_ERROR = "error";
+
+    /**
+     * 快速失败时未完成检查的配置
+     */
+    public static final String STATUS_SKIPPED = "skipped";
+
+    private static final String METRIC_PREFIX = "nacos_config_check_";
+
+    private final String project;
+
+    private final long startedAt = System.currentTimeMillis();
+
+    private final long startNanos = System.nanoTime();
+
+    private final List<EnvironmentMetrics> environments = new ArrayList<>();
+
+    private long totalNanos;
+
+    private String status;
+
+    public CheckReport(String project) {
+        this.project = project;
+    }
+
+    /**
+     * 登记一个环境，报告中按登记顺序输出
+     *
+     * @param name      环境名称
+     * @param serverUrl nacos地址
+     * @param namespace 命名空间
+     * @return 环境的指标
+     */
+    public EnvironmentMetrics addEnvironment(String name, String serverUrl, String namespace) {
+        EnvironmentMetrics metrics = new EnvironmentMetrics(name, serverUrl, namespace);
+        environments.add(metrics);
+        return metrics;
+    }
+
+    public List<EnvironmentMetrics> getEnvironments() {
+        return Collections.unmodifiableList(environments);
+    }
+
+    /**
+     * 结束检查，记录总耗时
+     *
+     * @param status 检查结果：passed、failed或error
+     */
+    public void finish(String status) {
+        this.status = status;
+        this.totalNanos = System.nanoTime() - startNanos;
+    }
+
+    /**
+     * 写出JSON报告和Prometheus指标
+     *
+     * @param dir 输出目录
+     * @throws IOException 写入异常
+     */
+    public void write(File dir) throws IOException {
+        FileWriteUtils.writeAtomically(new File(dir, JSON_FILE),
+                toJson().toStringPretty().getBytes(StandardCharsets.UTF_8), false);
+        FileWriteUtils.writeAtomically(new File(dir, PROMETHEUS_FILE),
+                toPrometheus().getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    JSONObject toJson() {
+        JSONArray items = new JSONArray();
+        long fetchNanos = 0, leaseNanos = 0, remoteParseNanos = 0, localLoadNanos = 0, diffNanos = 0;
+        long remoteBytes = 0, localBytes = 0;
+        int configCount = 0, remoteKeys = 0, localKeys = 0, missingKeys = 0, extraKeys = 0, typeChanges = 0;
+        int valueChanges = 0;
+        // 矩阵：每个配置一行，每个环境一列
+        Map<String, JSONObject> matrix = new LinkedHashMap<>();
+        for (EnvironmentMetrics environment : environments) {
+            items.add(environment.toJson());
+            for (ConfigMetrics config : environment.getConfigs()) {
+                configCount++;
+                fetchNanos += config.getFetchNanos();
+                leaseNanos += config.getLeaseNanos();
+                remoteParseNanos += config.getRemoteParseNanos();
+                localLoadNanos += config.getLocalLoadNanos();
+                diffNanos += config.getDiffNanos();
+                remoteBytes += config.getRemoteBytes();
+                localBytes += config.getLocalBytes();
+                remoteKeys += config.getRemoteKeys();
+                localKeys += config.getLocalKeys();
+                missingKeys += config.getMissingKeys();
+                extraKeys += config.getExtraKeys();
+                typeChanges += config.getTypeChanges();
+                valueChanges += config.getValueChanges();
+                JSONObject row = matrix.computeIfAbsent(config.getGroup() + "|" + config.getDataId() + "|" + config.getConfigPath(),
+                        k -> new JSONObject()
+                                .set("dataId", config.getDataId())
+                                .set("group", config.getGroup())
+                                .set("configPath", config.getConfigPath())
+                                .set("environments", new JSONObject()));
+                row.getJSONObject("environments").set(environment.getName(), new JSONObject()
+                        .set("status", config.getStatus() == null ? STATUS_ERROR : config.getStatus())
+                        .set("missingKeys", config.getMissingKeys()));
+            }
+        }
+        // 各配置阶段耗时之和，并发检查时可能大于总耗时
+        JSONObject aggregate = new JSONObject()
+                .set("environmentCount", environments.size())
+                .set("configCount", configCount)
+                .set("fetchMillis", millis(fetchNanos))
+                .set("leaseMillis", millis(leaseNanos))
+                .set("remoteParseMillis", millis(remoteParseNanos))
+                .set("localLoadMillis", millis(localLoadNanos))
+                .set("diffMillis", millis(diffNanos))
+                .set("remoteBytes", remoteBytes)
+                .set("localBytes", localBytes)
+                .set("remoteKeys", remoteKeys)
+                .set("localKeys", localKeys)
+                .set("missingKeys", missingKeys)
+                .set("extraKeys", extraKeys)
+                .set("typeChanges", typeChanges)
+                .set("valueChanges", valueChanges);
+        return new JSONObject()
+                .set("project", project)
+                .set("startedAt", startedAt)
+                .set("status", status)
+                .set("totalMillis", millis(totalNanos))
+                .set("aggregate", aggregate)
+                .set("matrix", new JSONArray(matrix.values()))
+                .set("environments", items);
+    }
+
+    String toPrometheus() {
+        StringBuilder sb = new StringBuilder(2048);
+        String project = label("project", this.project);
+
+        help(sb, "duration_seconds", "gauge", "门禁检查的总耗时");
+        sample(sb, "duration_seconds", project + "," + label("phase", "total"), seconds(totalNanos));
+
+        help(sb, "passed", "gauge", "门禁检查是否通过");
+        sample(sb, "passed", project, STATUS_PASSED.equals(status) ? "1" : "0");
+
+        help(sb, "last_run_timestamp_seconds", "gauge", "门禁检查开始的时间");
+        sample(sb, "last_run_timestamp_seconds", project, String.valueOf(startedAt / 1000));
+
+        help(sb, "environment_duration_seconds", "gauge", "每个环境登录、探测、批量拉取的耗时");
+        for (EnvironmentMetrics environment : environments) {
+            String base = environmentLabels(project, environment);
+            sample(sb, "environment_duration_seconds", base + "," + label("phase", "token"), seconds(environment.getTokenNanos()));
+            sample(sb, "environment_duration_seconds", base + "," + label("phase", "login"), seconds(environment.getLoginNanos()));
+            sample(sb, "environment_duration_seconds", base + "," + label("phase", "login_lease"), seconds(environment.getLoginLeaseNanos()));
+            sample(sb, "environment_duration_seconds", base + "," + label("phase", "probe"), seconds(environment.getProbeNanos()));
+            sample(sb, "environment_duration_seconds", base + "," + label("phase", "bulk"), seconds(environment.getBulkNanos()));
+        }
+
+        help(sb, "config_passed", "gauge", "单个配置在每个环境是否通过");
+        for (EnvironmentMetrics environment : environments) {
+            String base = environmentLabels(project, environment);
+            for (ConfigMetrics config : environment.getConfigs()) {
+                sample(sb, "config_passed", configLabels(base, config), STATUS_PASSED.equals(config.getStatus()) ? "1" : "0");
+            }
+        }
+
+        help(sb, "config_duration_seconds", "gauge", "单个配置各阶段的耗时");
+        for (EnvironmentMetrics environment : environments) {
+            String base = environmentLabels(project, environment);
+            for (ConfigMetrics config : environment.getConfigs()) {
+                String labels = configLabels(base, config);
+                sample(sb, "config_duration_seconds", labels + "," + label("phase", "fetch"), seconds(config.getFetchNanos()));
+                sample(sb, "config_duration_seconds", labels + "," + label("phase", "lease"), seconds(config.getLeaseNanos()));
+                sample(sb, "config_duration_seconds", labels + "," + label("phase", "remote_parse"), seconds(config.getRemoteParseNanos()));
+                sample(sb, "config_duration_seconds", labels + "," + label("phase", "local_load"), seconds(config.getLocalLoadNanos()));
+                sample(sb, "config_duration_seconds", labels + "," + label("phase", "diff"), seconds(config.getDiffNanos()));
+            }
+        }
+
+        help(sb, "config_bytes", "gauge", "单个配置的字节数");
+        for (EnvironmentMetrics environment : environments) {
+            String base = environmentLabels(project, environment);
+            for (ConfigMetrics config : environment.getConfigs()) {
+                String labels = configLabels(base, config);
+                sample(sb, "config_bytes", labels + "," + label("side", "remote"), String.valueOf(config.getRemoteBytes()));
+                sample(sb, "config_bytes", labels + "," + label("side", "local"), String.valueOf(config.getLocalBytes()));
+            }
+        }
+
+        help(sb, "config_keys", "gauge", "单个配置的key数量");
+        for (EnvironmentMetrics environment : environments) {
+            String base = environmentLabels(project, environment);
+            for (ConfigMetrics config : environment.getConfigs()) {
+                String labels = configLabels(base, config);
+                sample(sb, "config_keys", labels + "," + label("kind", "remote"), String.valueOf(config.getRemoteKeys()));
+                sample(sb, "config_keys", labels + "," + label("kind", "local"), String.valueOf(config.getLocalKeys()));
+                sample(sb, "config_keys", labels + "," + label("kind", "missing"), String.valueOf(config.getMissingKeys()));
+                sample(sb, "config_keys", labels + "," + label("kind", "extra"), String.valueOf(config.getExtraKeys()));
+                sample(sb, "config_keys", labels + "," + label("kind", "type_changed"), String.valueOf(config.getTypeChanges()));
+                sample(sb, "config_keys", labels + "," + label("kind", "value_changed"), String.valueOf(config.getValueChanges()));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String environmentLabels(String project, EnvironmentMetrics environment) {
+        return project + "," + label("environment", environment.getName()) + "," + label("namespace", environment.getNamespace());
+    }
+
+    /**
+     * 同一个group、dataId可以映射到多个本地文件，带上config_path才能区分不同的序列
+     */
+    private static String configLabels(String base, ConfigMetrics config) {
+        return base + "," + label("data_id", config.getDataId()) + "," + label("group", config.getGroup())
+                + "," + label("config_path", config.getConfigPath())
+                + "," + label("source", config.getSource() == null ? "" : config.getSource());
+    }
+
+    private static void help(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(METRIC_PREFIX).append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(METRIC_PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, String value) {
+        sb.append(METRIC_PREFIX).append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    /**
+     * 标签值转义反斜杠、双引号和换行
+     */
+    private static String label(String name, String value) {
+        String escaped = value == null ? "" : value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return name + "=\"" + escaped + "\"";
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+    }
+
+    static double millis(long nanos) {
+        return Math.round(nanos / 1e3) / 1e3;
+    }
+}
@@ -0,0 +1,248 @@
+package cn.aries.fang.maven.plugin.report;
+
+import cn.hutool.json.JSONObject;
+
+/**
+ * Description: 单个配置检查的耗时、字节数和key数量
+ * <p>
+ * 同一个配置的各阶段依次执行，通过future或线程池提交保证可见性，字段不需要同步。
+ */
+public class ConfigMetrics {
+
+    /**
+     * 远程配置通过单个请求下载
+     */
+    public static final String SOURCE_HTTP = "http";
+
+    /**
+     * 远程配置来自批量拉取
+     */
+    public static final String SOURCE_BULK = "bulk";
+
+    /**
+     * 远程配置由同一次构建的其他模块下载
+     */
+    public static final String SOURCE_SHARED_CACHE = "shared-cache";
+
+    /**
+     * 远程配置来自同一台机器上其他构建写入的磁盘缓存
+     */
+    public static final String SOURCE_DISK_CACHE = "disk-cache";
+
+    /**
+     * 离线检查，远程配置来自快照文件
+     */
+    public static final String SOURCE_SNAPSHOT = "snapshot";
+
+    /**
+     * 远程配置来自本机nacos客户端的配置快照或容灾文件
+     */
+    public static final String SOURCE_CLIENT_CACHE = "client-cache";
+
+    /**
+     * 远程配置未变化，使用上次记录的key
+     */
+    public static final String SOURCE_INCREMENTAL = "incremental";
+
+    private final String dataId;
+
+    private final String group;
+
+    private final String configPath;
+
+    private String source;
+
+    /**
+     * 检查结果：passed、failed或skipped，未完成检查时为null
+     */
+    private String status;
+
+    private long fetchNanos;
+
+    private long leaseNanos;
+
+    private long remoteBytes;
+
+    /**
+     * 远程配置的解析耗时；同步下载时边下载边解析，包含在fetchNanos中
+     */
+    private long remoteParseNanos;
+
+    private long localBytes;
+
+    private long localLoadNanos;
+
+    private long diffNanos;
+
+    private int remoteKeys;
+
+    private int localKeys;
+
+    private int missingKeys;
+
+    private int extraKeys;
+
+    private int typeChanges;
+
+    private int valueChanges;
+
+    public ConfigMetrics(String dataId, String group, String configPath) {
+        this.dataId = dataId;
+        this.group = group;
+        this.configPath = configPath;
+    }
+
+    public String getDataId() {
+        return dataId;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public String getConfigPath() {
+        return configPath;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public long getFetchNanos() {
+        return fetchNanos;
+    }
+
+    public void setFetchNanos(long fetchNanos) {
+        this.fetchNanos = fetchNanos;
+    }
+
+    public long getLeaseNanos() {
+        return leaseNanos;
+    }
+
+    public void setLeaseNanos(long leaseNanos) {
+        this.leaseNanos = leaseNanos;
+    }
+
+    public long getRemoteBytes() {
+        return remoteBytes;
+    }
+
+    public void setRemoteBytes(long remoteBytes) {
+        this.remoteBytes = remoteBytes;
+    }
+
+    public long getRemoteParseNanos() {
+        return remoteParseNanos;
+    }
+
+    public void setRemoteParseNanos(long remoteParseNanos) {
+        this.remoteParseNanos = remoteParseNanos;
+    }
+
+    public long getLocalBytes() {
+        return localBytes;
+    }
+
+    public void setLocalBytes(long localBytes) {
+        this.localBytes = localBytes;
+    }
+
+    public long getLocalLoadNanos() {
+        return localLoadNanos;
+    }
+
+    public void setLocalLoadNanos(long localLoadNanos) {
+        this.localLoadNanos = localLoadNanos;
+    }
+
+    public long getDiffNanos() {
+        return diffNanos;
+    }
+
+    public void setDiffNanos(long diffNanos) {
+        this.diffNanos = diffNanos;
+    }
+
+    public int getRemoteKeys() {
+        return remoteKeys;
+    }
+
+    public void setRemoteKeys(int remoteKeys) {
+        this.remoteKeys = remoteKeys;
+    }
+
+    public int getLocalKeys() {
+        return localKeys;
+    }
+
+    public void setLocalKeys(int localKeys) {
+        this.localKeys = localKeys;
+    }
+
+    public int getMissingKeys() {
+        return missingKeys;
+    }
+
+    public void setMissingKeys(int missingKeys) {
+        this.missingKeys = missingKeys;
+    }
+
+    public int getExtraKeys() {
+        return extraKeys;
+    }
+
+    public void setExtraKeys(int extraKeys) {
+        this.extraKeys = extraKeys;
+    }
+
+    public int getTypeChanges() {
+        return typeChanges;
+    }
+
+    public void setTypeChanges(int typeChanges) {
+        this.typeChanges = typeChanges;
+    }
+
+    public int getValueChanges() {
+        return valueChanges;
+    }
+
+    public void setValueChanges(int valueChanges) {
+        this.valueChanges = valueChanges;
+    }
+
+    JSONObject toJson() {
+        return new JSONObject()
+                .set("dataId", dataId)
+                .set("group", group)
+                .set("configPath", configPath)
+                .set("source", source)
+                .set("status", status == null ? CheckReport.STATUS_ERROR : status)
+                .set("fetchMillis", CheckReport.millis(fetchNanos))
+                .set("leaseMillis", CheckReport.millis(leaseNanos))
+                .set("remoteParseMillis", CheckReport.millis(remoteParseNanos))
+                .set("localLoadMillis", CheckReport.millis(localLoadNanos))
+                .set("diffMillis", CheckReport.millis(diffNanos))
+                .set("remoteBytes", remoteBytes)
+                .set("localBytes", localBytes)
+                .set("remoteKeys", remoteKeys)
+                .set("localKeys", localKeys)
+                .set("missingKeys", missingKeys)
+                .set("extraKeys", extraKeys)
+                .set("typeChanges", typeChanges)
+                .set("valueChanges", valueChanges);
+    }
+}
@@ -0,0 +1,136 @@
+package cn.aries.fang.maven.plugin.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+
+/**
+ * Description: 单个环境的登录、探测、批量拉取耗时以及该环境下每个配置的指标
+ */
+public class EnvironmentMetrics {
+
+    private final String name;
+
+    private final String serverUrl;
+
+    private final String namespace;
+
+    private final List<ConfigMetrics> configs = new ArrayList<>();
+
+    private long tokenNanos;
+
+    private boolean tokenCached = true;
+
+    private long loginNanos;
+
+    private long loginLeaseNanos;
+
+    private long probeNanos;
+
+    private long bulkNanos;
+
+    EnvironmentMetrics(String name, String serverUrl, String namespace) {
+        this.name = name;
+        this.serverUrl = serverUrl;
+        this.namespace = namespace == null ? "" : namespace;
+    }
+
+    /**
+     * 登记一个配置，报告中按登记顺序输出
+     *
+     * @param dataId     dataId
+     * @param group      分组
+     * @param configPath 本地文件路径
+     * @return 配置的指标
+     */
+    public ConfigMetrics addConfig(String dataId, String group, String configPath) {
+        ConfigMetrics metrics = new ConfigMetrics(dataId, group, configPath);
+        configs.add(metrics);
+        return metrics;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public List<ConfigMetrics> getConfigs() {
+        return Collections.unmodifiableList(configs);
+    }
+
+    public long getTokenNanos() {
+        return tokenNanos;
+    }
+
+    public void setTokenNanos(long tokenNanos) {
+        this.tokenNanos = tokenNanos;
+    }
+
+    public boolean isTokenCached() {
+        return tokenCached;
+    }
+
+    public long getLoginNanos() {
+        return loginNanos;
+    }
+
+    public long getLoginLeaseNanos() {
+        return loginLeaseNanos;
+    }
+
+    /**
+     * 记录一次登录请求，未调用时视为使用了缓存的token
+     *
+     * @param loginNanos      登录请求耗时，单位纳秒
+     * @param loginLeaseNanos 登录请求等待连接的时间，单位纳秒
+     */
+    public void recordLogin(long loginNanos, long loginLeaseNanos) {
+        this.tokenCached = false;
+        this.loginNanos = loginNanos;
+        this.loginLeaseNanos = loginLeaseNanos;
+    }
+
+    public long getProbeNanos() {
+        return probeNanos;
+    }
+
+    public void setProbeNanos(long probeNanos) {
+        this.probeNanos = probeNanos;
+    }
+
+    public long getBulkNanos() {
+        return bulkNanos;
+    }
+
+    public void setBulkNanos(long bulkNanos) {
+        this.bulkNanos = bulkNanos;
+    }
+
+    JSONObject toJson() {
+        JSONArray items = new JSONArray();
+        for (ConfigMetrics config : configs) {
+            items.add(config.toJson());
+        }
+        return new JSONObject()
+                .set("name", name)
+                .set("serverUrl", serverUrl)
+                .set("namespace", namespace)
+                .set("tokenMillis", CheckReport.millis(tokenNanos))
+                .set("tokenCached", tokenCached)
+                .set("loginMillis", CheckReport.millis(loginNanos))
+                .set("loginLeaseMillis", CheckReport.millis(loginLeaseNanos))
+                .set("probeMillis", CheckReport.millis(probeNanos))
+                .set("bulkMillis", CheckReport.millis(bulkNanos))
+                .set("configs", items);
+    }
+}
@@ -0,0 +1,134 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.Digester;
+
+/**
+ * Description: 边读边计算MD5和字节数的输入流，超过上限时读取失败
+ * <p>
+ * 用于把响应体直接交给解析器，不在内存中保留完整内容；MD5与nacos对UTF-8内容的计算方式一致。
+ */
+public class BoundedDigestInputStream extends FilterInputStream {
+
+    private final long maxBytes;
+
+    private final Digester digester = new Digester(DigestAlgorithm.MD5);
+
+    private long count;
+
+    private String md5;
+
+    /**
+     * @param in       输入流
+     * @param maxBytes 最多读取的字节数，不大于0时不限制
+     */
+    public BoundedDigestInputStream(InputStream in, long maxBytes) {
+        super(in);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            digester.getDigest().update((byte) b);
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            digester.getDigest().update(b, off, n);
+            count(n);
+        }
+        return n;
+    }
+
+    /**
+     * 跳过的内容也要参与MD5计算，按读取处理
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("不支持reset");
+    }
+
+    /**
+     * 读完剩余内容，解析器提前结束时保证MD5覆盖完整内容
+     *
+     * @throws IOException 读取失败或超过上限
+     */
+    public void drain() throws IOException {
+        skip(Long.MAX_VALUE);
+    }
+
+    /**
+     * 已读取的字节数
+     *
+     * @return 字节数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 已读取内容的MD5，调用后不能继续读取
+     *
+     * @return 十六进制MD5
+     */
+    public String md5Hex() {
+        if (md5 == null) {
+            md5 = HexUtil.encodeHexStr(digester.getDigest().digest());
+        }
+        return md5;
+    }
+
+    private void count(long n) throws IOException {
+        count += n;
+        if (maxBytes > 0 && count > maxBytes) {
+            throw new LimitExceededException(maxBytes);
+        }
+    }
+
+    /**
+     * 内容超过字节数上限，换节点重试也不会成功
+     */
+    public static class LimitExceededException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public LimitExceededException(long maxBytes) {
+            super("响应体超过" + maxBytes + "字节上限");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hc.core5.concurrent.Cancellable;
+
+/**
+ * Description: 一组可以一起取消的请求
+ * <p>
+ * 请求开始时登记、结束时注销；{@link #cancel()} 中止所有已登记的请求，之后登记的请求立即中止。
+ */
+public class CancellationScope {
+
+    private final Set<Cancellable> registered = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean cancelled;
+
+    /**
+     * 登记一个请求，已取消时立即中止
+     *
+     * @param cancellable 请求
+     */
+    public void register(Cancellable cancellable) {
+        registered.add(cancellable);
+        if (cancelled && registered.remove(cancellable)) {
+            cancellable.cancel();
+        }
+    }
+
+    /**
+     * 注销已结束的请求
+     *
+     * @param cancellable 请求
+     */
+    public void unregister(Cancellable cancellable) {
+        registered.remove(cancellable);
+    }
+
+    /**
+     * 中止所有已登记的请求
+     *
+     * @return 是否为首次取消
+     */
+    public synchronized boolean cancel() {
+        if (cancelled) {
+            return false;
+        }
+        cancelled = true;
+        for (Cancellable cancellable : registered) {
+            if (registered.remove(cancellable)) {
+                cancellable.cancel();
+            }
+        }
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,76 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Description: 线程池工具类
+ */
+public class ExecutorUtils {
+    private static final Logger LOG = LoggerFactory.getLogger(ExecutorUtils.class);
+
+    private ExecutorUtils() {
+    }
+
+    /**
+     * 创建固定并发度的线程池；运行时JDK支持虚拟线程时使用虚拟线程，否则使用守护平台线程
+     *
+     * @param parallelism 并发度
+     * @param namePrefix  线程名前缀
+     * @return 线程池
+     */
+    public static ExecutorService newBoundedExecutor(int parallelism, String namePrefix) {
+        ThreadFactory threadFactory = virtualThreadFactory(namePrefix);
+        if (threadFactory == null) {
+            threadFactory = platformThreadFactory(namePrefix);
+        }
+        return Executors.newFixedThreadPool(Math.max(1, parallelism), threadFactory);
+    }
+
+    /**
+     * 创建单线程的定时调度器，使用守护平台线程，不阻止JVM退出
+     *
+     * @param namePrefix 线程名前缀
+     * @return 调度器
+     */
+    public static ScheduledExecutorService newDaemonScheduler(String namePrefix) {
+        return Executors.newSingleThreadScheduledExecutor(platformThreadFactory(namePrefix));
+    }
+
+    /**
+     * 通过反射获取虚拟线程工厂，插件以1.8编译，不能直接引用Thread.ofVirtual()
+     *
+     * @param namePrefix 线程名前缀
+     * @return 虚拟线程工厂，JDK不支持时返回null
+     */
+    private static ThreadFactory virtualThreadFactory(String namePrefix) {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (NoSuchMethodException | ClassNotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            LOG.debug("创建虚拟线程工厂失败，使用平台线程", e);
+            return null;
+        }
+    }
+
+    private static ThreadFactory platformThreadFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+/**
+ * Description: 文件写入工具类
+ */
+public class FileWriteUtils {
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+
+    private static final Set<PosixFilePermission> DEFAULT_PERMISSIONS = PosixFilePermissions.fromString("rw-r--r--");
+
+    private FileWriteUtils() {
+    }
+
+    /**
+     * 先写同目录下的临时文件再原子替换目标文件，并发的读者不会读到写了一半的内容
+     *
+     * @param file      目标文件
+     * @param content   文件内容
+     * @param ownerOnly 是否只允许当前用户读写
+     * @throws IOException 写入异常
+     */
+    public static void writeAtomically(File file, byte[] content, boolean ownerOnly) throws IOException {
+        writeAtomically(file, out -> out.write(content), ownerOnly);
+    }
+
+    /**
+     * 流式写入同目录下的临时文件，写完后原子替换目标文件；写入失败时目标文件保持不变。
+     * 临时文件创建时只有当前用户可读写，替换前按ownerOnly设置权限：不限制时沿用目标文件原有的权限，新文件为rw-r--r--
+     *
+     * @param file      目标文件
+     * @param writer    写入文件内容
+     * @param ownerOnly 是否只允许当前用户读写
+     * @throws IOException 写入异常
+     */
+    public static void writeAtomically(File file, ContentWriter writer, boolean ownerOnly) throws IOException {
+        Path dir = file.getAbsoluteFile().getParentFile().toPath();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getName(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                writer.write(out);
+            }
+            setPermissions(tmp, file.toPath(), ownerOnly);
+            try {
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void setPermissions(Path tmp, Path target, boolean ownerOnly) throws IOException {
+        if (!Files.getFileStore(tmp).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            File tmpFile = tmp.toFile();
+            tmpFile.setReadable(true, ownerOnly);
+            tmpFile.setWritable(true, true);
+            return;
+        }
+        Set<PosixFilePermission> permissions;
+        if (ownerOnly) {
+            permissions = OWNER_ONLY;
+        } else if (Files.exists(target)) {
+            permissions = Files.getPosixFilePermissions(target);
+        } else {
+            permissions = DEFAULT_PERMISSIONS;
+        }
+        Files.setPosixFilePermissions(tmp, permissions);
+    }
+    /**
+     * 文件内容的写入
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+
+        /**
+         * 写入文件内容
+         *
+         * @param out 临时文件的输出流，写入后由调用方关闭
+         * @throws IOException 写入异常
+         */
+        void write(OutputStream out) throws IOException;
+    }
+}
@@ -16,6 +16,26 @@ public class HttpClientResult {
      */
     private String content;
 
+    /**
+     * 按字节接收的响应体，前bytes个字节有效，此时content为空
+     */
+    private byte[] body;
+
+    /**
+     * 响应体字节数
+     */
+    private long bytes;
+
+    /**
+     * 请求耗时，单位纳秒，包括等待连接的时间
+     */
+    private long elapsedNanos;
+
+    /**
+     * 从连接池获取连接的等待时间，单位纳秒；异步请求不单独统计
+     */
+    private long leaseNanos;
+
     public HttpClientResult() {
     }
 
@@ -47,4 +67,36 @@ public class HttpClientResult {
     public void setContent(String content) {
         this.content = content;
     }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public void setBody(byte[] body) {
+        this.body = body;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getLeaseNanos() {
+        return leaseNanos;
+    }
+
+    public void setLeaseNanos(long leaseNanos) {
+        this.leaseNanos = leaseNanos;
+    }
 }
@@ -2,34 +2,49 @@ package cn.aries.fang.maven.plugin.utils;
 
 import java.io.*;
 import java.net.URI;
-import java.security.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import cn.aries.fang.maven.plugin.dto.GovernorConfig;
+import cn.aries.fang.maven.plugin.dto.HttpClientConfig;
 import org.apache.commons.codec.Charsets;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hc.client5.http.*;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
 import org.apache.hc.client5.http.classic.methods.*;
-import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.entity.UrlEncodedFormEntity;
 import org.apache.hc.client5.http.impl.classic.*;
-import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
-import org.apache.hc.client5.http.socket.*;
-import org.apache.hc.client5.http.ssl.*;
+import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.http.*;
-import org.apache.hc.core5.http.config.*;
 import org.apache.hc.core5.http.io.*;
 import org.apache.hc.core5.http.io.entity.*;
 import org.apache.hc.core5.http.message.*;
-import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.entity.AbstractBinAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.support.BasicResponseConsumer;
 import org.apache.hc.core5.net.URIBuilder;
-import org.apache.hc.core5.ssl.SSLContexts;
-import org.apache.hc.core5.util.*;
+import org.apache.hc.core5.net.WWWFormCodec;
+import org.apache.hc.core5.util.ByteArrayBuffer;
 import org.slf4j.*;
 
 ;
 
 /**
  * Description: httpClient工具类
+ * <p>
+ * 所有请求(包括登录)都走同一个连接池客户端，由 {@link #configure(HttpClientConfig)} 按插件参数初始化，
+ * 在同一次构建的所有模块间共用，模块结束时 {@link #release()}。配置了 {@link #configureGovernor(GovernorConfig)} 时，所有请求发出前都经过限流。
  */
 public class HttpClientUtils {
     private static final Logger LOG = LoggerFactory.getLogger(HttpClientUtils.class);
@@ -37,73 +52,101 @@ public class HttpClientUtils {
     // 编码格式。发送编码格式统一用UTF-8
     private static final String ENCODING = "UTF-8";
 
-    // 设置连接超时时间，单位毫秒。
-    private static final int CONNECT_TIMEOUT = 30000;
+    private static final Object LOCK = new Object();
+
+    /**
+     * 当前的连接池客户端，未指定客户端的请求都走它
+     */
+    private static volatile PooledHttpClient shared;
 
-    // 请求获取数据的超时时间(即响应时间)，单位毫秒。
-    private static final int SOCKET_TIMEOUT = 30000;
+    /**
+     * 按配置创建的连接池客户端，被替换的客户端在所有模块都释放后才关闭
+     */
+    private static final Map<HttpClientConfig, PooledHttpClient> clients = new HashMap<>();
 
-    protected static PoolingHttpClientConnectionManager connManager = null;
+    /**
+     * 正在使用连接池的模块数
+     */
+    private static int users;
 
-    protected static CloseableHttpClient httpPoolClient = null;
+    /**
+     * 构建会话内共用的请求限流，为null时不限流
+     */
+    private static volatile RequestGovernor governor;
 
-    protected static ConnectionKeepAliveStrategy myStrategy = new ConnectionKeepAliveStrategy() {
+    /**
+     * 按配置初始化共用的连接池客户端，并登记一个使用者，用完后调用 {@link #release()}；
+     * 同一配置的客户端只创建一次，配置不同时切换当前客户端，旧的客户端不立即关闭，其他模块进行中的请求不受影响
+     *
+     * @param config 连接池配置，为null时使用默认配置
+     * @return 连接池客户端
+     */
+    public static PooledHttpClient configure(HttpClientConfig config) {
+        HttpClientConfig target = config == null ? new HttpClientConfig() : config;
+        synchronized (LOCK) {
+            PooledHttpClient client = clients.computeIfAbsent(target, PooledHttpClient::new);
+            shared = client;
+            users++;
+            return client;
+        }
+    }
 
-        @Override
-        public TimeValue getKeepAliveDuration(HttpResponse response, HttpContext context) {
-            // Honor 'keep-alive' header
-            BasicHeaderElementIterator it = new BasicHeaderElementIterator(
-                    response.headerIterator(HttpHeaders.KEEP_ALIVE));
+    /**
+     * 释放 {@link #configure(HttpClientConfig)} 登记的使用者；没有模块在使用时关闭当前客户端以外的客户端
+     */
+    public static void release() {
+        synchronized (LOCK) {
+            if (users == 0 || --users > 0) {
+                return;
+            }
+            Iterator<PooledHttpClient> it = clients.values().iterator();
             while (it.hasNext()) {
-                HeaderElement he = it.next();
-                String param = he.getName();
-                String value = he.getValue();
-                if (value != null && "timeout".equalsIgnoreCase(param)) {
+                PooledHttpClient client = it.next();
+                if (client != shared) {
+                    it.remove();
                     try {
-                        return TimeValue.ofMilliseconds(Long.parseLong(value) * 1000);
-                    } catch(NumberFormatException ignore) {
+                        client.close();
+                    } catch (IOException e) {
+                        LOG.warn("关闭http连接池失败", e);
                     }
                 }
             }
-            return TimeValue.ofMilliseconds(30 * 1000L);
         }
+    }
 
-    };
-
-
-    static {
-        SSLConnectionSocketFactory scsf = null;
-        try {
-            scsf = new SSLConnectionSocketFactory(
-                    SSLContexts.custom().loadTrustMaterial(new TrustSelfSignedStrategy()).build(),
-                    NoopHostnameVerifier.INSTANCE);
-        } catch (NoSuchAlgorithmException | KeyStoreException | KeyManagementException e) {
-            LOG.error("创建SSL连接失败");
+    /**
+     * 按配置初始化共用的请求限流；配置与当前一致时直接复用，已发出的请求仍在原来的限流中释放。
+     * 限流在同一JVM的所有模块间共用，没有配置限流的模块沿用当前的限流，不会关闭其他模块开启的限流
+     *
+     * @param config 限流配置，为null时沿用当前的限流
+     * @return 请求限流，不限流时返回null
+     */
+    public static RequestGovernor configureGovernor(GovernorConfig config) {
+        synchronized (LOCK) {
+            RequestGovernor current = governor;
+            if (config != null && (current == null || !current.getConfig().equals(config))) {
+                governor = new RequestGovernor(config);
+            }
+            return governor;
         }
-        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
-                .register("https", scsf)
-                .register("http", new PlainConnectionSocketFactory())
-                .build();
-
-        connManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
-
-        // 将最大连接数增加到100
-        connManager.setMaxTotal(100);
-        // 将每个路由基础的连接增加到20
-        connManager.setDefaultMaxPerRoute(20);
-
-        connManager.setDefaultSocketConfig(SocketConfig.custom()
-                .setSoTimeout(Timeout.ofMilliseconds(5000))
-                .build());
+    }
 
-        try {
-            httpPoolClient = HttpClients.custom()
-                    .setKeepAliveStrategy(myStrategy)
-                    .setConnectionManager(connManager).build();
-        } catch (Exception e) {
-            LOG.error(e.getMessage(), e);
+    /**
+     * 共用的连接池客户端，未初始化时使用默认配置
+     *
+     * @return 连接池客户端
+     */
+    public static PooledHttpClient pooledClient() {
+        PooledHttpClient client = shared;
+        if (client != null) {
+            return client;
+        }
+        synchronized (LOCK) {
+            if (shared == null) {
+                shared = clients.computeIfAbsent(new HttpClientConfig(), PooledHttpClient::new);
+            }
+            return shared;
         }
-
     }
 
     /**
@@ -139,13 +182,6 @@ public class HttpClientUtils {
      * @throws Exception
      */
     public static HttpClientResult doGet(String url, Map<String, String> headers, Map<String, String> params) throws Exception {
-        // 创建httpClient对象
-        if (httpPoolClient == null) {
-            httpPoolClient = HttpClients.custom()
-                    .setKeepAliveStrategy(myStrategy)
-                    .setConnectionManager(connManager).build();
-        }
-
         // 创建访问的地址
         URIBuilder uriBuilder = new URIBuilder(url);
         if (params != null) {
@@ -155,24 +191,140 @@ public class HttpClientUtils {
             }
         }
 
-        // 创建http对象
+        // 创建http对象，超时时间使用连接池客户端的默认配置
         HttpGet httpGet = new HttpGet(uriBuilder.build());
-        /**
-         * setConnectTimeout：设置连接超时时间，单位毫秒。
-         * setConnectionRequestTimeout：设置从connect Manager(连接池)获取Connection
-         * 超时时间，单位毫秒。这个属性是新加的属性，因为目前版本是可以共享连接池的。
-         * setSocketTimeout：请求获取数据的超时时间(即响应时间)，单位毫秒。 如果访问一个接口，多少时间内无法返回数据，就直接放弃此次调用。
-         */
-        RequestConfig requestConfig = RequestConfig.custom()
-                .setConnectionRequestTimeout(Timeout.ofMilliseconds(SOCKET_TIMEOUT))
-                .setResponseTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT)).build();
-        httpGet.setConfig(requestConfig);
 
         // 设置请求头
         packageHeader(headers, httpGet);
 
         // 执行请求并获得响应结果
-        return getHttpClientResult(httpPoolClient, httpGet);
+        return getHttpClientResult(pooledClient().getHttpClient(), httpGet);
+    }
+
+    /**
+     * 发送get请求；以流的方式处理响应体，不在内存中保留完整的响应
+     *
+     * @param url 请求地址
+     * @param handler 响应体处理
+     * @param <T> 处理结果类型
+     * @return 处理结果
+     * @throws HttpResponseException 状态码不为200
+     * @throws Exception 请求或处理失败
+     */
+    public static <T> T doGetStream(String url, ResponseBodyHandler<T> handler) throws Exception {
+        return doGetStream(url, null, handler);
+    }
+
+    /**
+     * 发送get请求；以流的方式处理响应体，请求期间登记到取消范围。
+     * 等待连接的时间可在返回后通过 {@link PooledHttpClient#leaseNanos()} 获取
+     *
+     * @param url 请求地址
+     * @param scope 取消范围，为null时不可取消
+     * @param handler 响应体处理
+     * @param <T> 处理结果类型
+     * @return 处理结果
+     * @throws HttpResponseException 状态码不为200
+     * @throws Exception 请求或处理失败
+     */
+    public static <T> T doGetStream(String url, CancellationScope scope, ResponseBodyHandler<T> handler) throws Exception {
+        HttpGet httpGet = new HttpGet(url);
+        if (scope != null) {
+            scope.register(httpGet);
+        }
+        RequestGovernor.Permit permit = null;
+        try {
+            permit = acquire(scope);
+            RequestGovernor.Permit acquired = permit;
+            PooledHttpClient.resetLeaseNanos();
+            long start = System.nanoTime();
+            return pooledClient().getHttpClient().execute(httpGet, response -> {
+                // 限流按收到响应头的时间计算，不包括解析响应体
+                if (acquired != null) {
+                    acquired.release(response.getCode(), System.nanoTime() - start);
+                }
+                if (response.getCode() != HttpStatus.SC_SUCCESS) {
+                    LOG.error("requst_url_error: {}, response.status={}", url, response.getCode());
+                    EntityUtils.consume(response.getEntity());
+                    throw new HttpResponseException(response.getCode(), response.getReasonPhrase());
+                }
+                HttpEntity entity = response.getEntity();
+                try (InputStream in = entity != null ? entity.getContent() : new ByteArrayInputStream(new byte[0])) {
+                    return handler.handle(in);
+                }
+            });
+        } catch (Exception e) {
+            if (permit != null) {
+                permit.release(e);
+            }
+            throw e;
+        } finally {
+            if (scope != null) {
+                scope.unregister(httpGet);
+            }
+        }
+    }
+
+    /**
+     * 发送form提交的post请求；请求体不输出到日志，状态码不为200时抛出异常，便于换节点重试
+     *
+     * @param url 请求地址
+     * @param form 表单参数
+     * @return 响应结果
+     * @throws HttpResponseException 状态码不为200，异常信息包含响应内容
+     * @throws Exception 请求失败
+     */
+    public static HttpClientResult doPostForm(String url, Map<String, String> form) throws Exception {
+        HttpPost httpPost = new HttpPost(url);
+        List<NameValuePair> params = new ArrayList<>(form.size());
+        form.forEach((name, value) -> params.add(new BasicNameValuePair(name, value)));
+        httpPost.setEntity(new UrlEncodedFormEntity(params, StandardCharsets.UTF_8));
+        RequestGovernor.Permit permit = null;
+        try {
+            permit = acquire(null);
+            RequestGovernor.Permit acquired = permit;
+            PooledHttpClient.resetLeaseNanos();
+            long start = System.nanoTime();
+            return pooledClient().getHttpClient().execute(httpPost, response -> {
+                long elapsedNanos = System.nanoTime() - start;
+                long leaseNanos = PooledHttpClient.leaseNanos();
+                if (acquired != null) {
+                    acquired.release(response.getCode(), elapsedNanos);
+                }
+                String content = response.getEntity() != null ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : null;
+                if (response.getCode() != HttpStatus.SC_SUCCESS) {
+                    LOG.error("requst_url_error: {} {}, response.status={}", httpPost.getMethod(), httpPost.getRequestUri(), response.getCode());
+                    throw new HttpResponseException(response.getCode(), StringUtils.defaultIfBlank(content, response.getReasonPhrase()));
+                }
+                HttpClientResult result = new HttpClientResult(response.getCode(), content);
+                result.setElapsedNanos(elapsedNanos);
+                result.setLeaseNanos(leaseNanos);
+                return result;
+            });
+        } catch (Exception e) {
+            if (permit != null) {
+                permit.release(e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 响应体处理
+     *
+     * @param <T> 处理结果类型
+     */
+    @FunctionalInterface
+    public interface ResponseBodyHandler<T> {
+
+        /**
+         * 处理响应体
+         *
+         * @param body 响应体
+         * @return 处理结果
+         * @throws IOException 读取失败
+         */
+        T handle(InputStream body) throws IOException;
     }
 
     /**
@@ -194,7 +346,29 @@ public class HttpClientUtils {
      * @return
      */
     public static HttpClientResult postFormBody(String url, Map paramMap) {
-        CloseableHttpClient client = HttpClients.createDefault();
+        return postFormBody(url, null, paramMap);
+    }
+
+    /**
+     * 用户form提交；带请求头
+     * @param url 请求地址
+     * @param headers 请求头集合
+     * @param paramMap 表单参数
+     * @return
+     */
+    public static HttpClientResult postFormBody(String url, Map<String, String> headers, Map paramMap) {
+        return postFormBody(url, headers, paramMap, true);
+    }
+
+    /**
+     * 用户form提交；带请求头
+     * @param url 请求地址
+     * @param headers 请求头集合
+     * @param paramMap 表单参数
+     * @param governed 是否受请求限流控制；长轮询挂起的时间不是服务端的处理耗时，不应占用并发或计入响应时间
+     * @return
+     */
+    public static HttpClientResult postFormBody(String url, Map<String, String> headers, Map paramMap, boolean governed) {
         HttpPost httpPost =   new HttpPost(url);
         HttpClientResult result = new HttpClientResult();
         List params = new ArrayList();
@@ -210,17 +384,11 @@ public class HttpClientUtils {
             }
             httpPost.setEntity(new UrlEncodedFormEntity(params,Charsets.toCharset("UTF-8")));
             httpPost.setHeader("Content-type", "application/x-www-form-urlencoded");
+            packageHeader(headers, httpPost);
             // 执行请求并获得响应结果
-            result = getHttpClientResult(client, httpPost);
+            result = getHttpClientResult(pooledClient().getHttpClient(), httpPost, governed);
         } catch (Exception e) {
             LOG.error("postFormBody_exception", e);
-        } finally {
-            // 释放资源
-            try {
-                release(client);
-            } catch (IOException e) {
-                LOG.error("release_exception", e);
-            }
         }
         return result;
     }
@@ -260,26 +428,9 @@ public class HttpClientUtils {
      * @throws Exception
      */
     public static HttpClientResult doPost(String url, Map<String, String> headers, String params) throws Exception {
-        // 创建httpClient对象
-        if (httpPoolClient == null) {
-            httpPoolClient = HttpClients.custom()
-                    .setKeepAliveStrategy(myStrategy)
-                    .setConnectionManager(connManager).build();
-        }
-
         // 创建http对象
         HttpPost httpPost = new HttpPost(url);
         LOG.info("Executing request {} {}",httpPost.getMethod(), httpPost.getUri());
-        /**
-         * setConnectTimeout：设置连接超时时间，单位毫秒。
-         * setConnectionRequestTimeout：设置从connect Manager(连接池)获取Connection
-         * 超时时间，单位毫秒。这个属性是新加的属性，因为目前版本是可以共享连接池的。
-         * setSocketTimeout：请求获取数据的超时时间(即响应时间)，单位毫秒。 如果访问一个接口，多少时间内无法返回数据，就直接放弃此次调用。
-         */
-        RequestConfig requestConfig = RequestConfig.custom()
-                .setConnectionRequestTimeout(Timeout.ofMilliseconds(SOCKET_TIMEOUT))
-                .setResponseTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT)).build();
-        httpPost.setConfig(requestConfig);
         packageHeader(headers, httpPost);
 
         // 封装请求参数
@@ -294,7 +445,7 @@ public class HttpClientUtils {
         }
         LOG.info("requst_url:{}, request.header={},request.body:{}",url, headerStr, params);
 
-        return getHttpClientResult(httpPoolClient, httpPost);
+        return getHttpClientResult(pooledClient().getHttpClient(), httpPost);
     }
 
     /**
@@ -305,7 +456,7 @@ public class HttpClientUtils {
      * @throws Exception
      */
     public static HttpClientResult doPut(String url) throws Exception {
-        return doPut(url);
+        return doPut(url, null, null);
     }
 
     /**
@@ -318,22 +469,13 @@ public class HttpClientUtils {
      * @throws Exception
      */
     public static HttpClientResult doPut(String url,Map<String, String> headers, String params) throws Exception {
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         HttpPut httpPut = new HttpPut(url);
-        RequestConfig requestConfig = RequestConfig.custom()
-                .setConnectionRequestTimeout(Timeout.ofMilliseconds(SOCKET_TIMEOUT))
-                .setResponseTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT)).build();
-        httpPut.setConfig(requestConfig);
 
         packageHeader(headers,httpPut);
 
         packageParam(params, httpPut);
 
-        try {
-            return getHttpClientResult(httpClient, httpPut);
-        } finally {
-            release(httpClient);
-        }
+        return getHttpClientResult(pooledClient().getHttpClient(), httpPut);
     }
 
     /**
@@ -345,20 +487,7 @@ public class HttpClientUtils {
      * @throws Exception
      */
     public static HttpClientResult doPut(String url, String params) throws Exception {
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        HttpPut httpPut = new HttpPut(url);
-        RequestConfig requestConfig = RequestConfig.custom()
-                .setConnectionRequestTimeout(Timeout.ofMilliseconds(SOCKET_TIMEOUT))
-                .setResponseTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT)).build();
-        httpPut.setConfig(requestConfig);
-
-        packageParam(params, httpPut);
-
-        try {
-            return getHttpClientResult(httpClient, httpPut);
-        } finally {
-            release(httpClient);
-        }
+        return doPut(url, null, params);
     }
 
     /**
@@ -420,39 +549,92 @@ public class HttpClientUtils {
      */
     public static HttpClientResult getHttpClientResult(CloseableHttpClient httpClient, HttpUriRequestBase httpMethod)
             throws Exception {
+        return getHttpClientResult(httpClient, httpMethod, true);
+    }
+
+    /**
+     * Description: 获得响应结果
+     *
+     * @param httpClient
+     * @param httpMethod
+     * @param governed 是否受请求限流控制
+     * @return
+     * @throws Exception
+     */
+    public static HttpClientResult getHttpClientResult(CloseableHttpClient httpClient, HttpUriRequestBase httpMethod,
+                                                       boolean governed) throws Exception {
         final HttpClientResponseHandler<HttpClientResult> responseHandler = response -> {
             HttpClientResult result = new HttpClientResult();
             final int status = response.getCode();
             result.setCode(status);
             if (status >= HttpStatus.SC_SUCCESS) {
                 final HttpEntity entity = response.getEntity();
-                try {
-                    if (entity != null) {
-                        result.setContent(EntityUtils.toString(entity, ENCODING));
-                    }
-                } catch (final ParseException ex) {
-                    throw new ClientProtocolException(ex);
+                if (entity != null) {
+                    byte[] body = EntityUtils.toByteArray(entity);
+                    ContentType contentType = ContentType.parseLenient(entity.getContentType());
+                    Charset charset = contentType != null && contentType.getCharset() != null
+                            ? contentType.getCharset() : Charset.forName(ENCODING);
+                    result.setBytes(body.length);
+                    result.setContent(new String(body, charset));
                 }
             } else {
                 throw new ClientProtocolException("Unexpected response status: " + status);
             }
             return result;
         };
-        // 执行请求
-        HttpClientResult httpResponse = httpClient.execute(httpMethod, responseHandler);
+        // 执行请求，统计耗时和等待连接的时间
+        RequestGovernor.Permit permit = governed ? acquire(null) : null;
+        PooledHttpClient.resetLeaseNanos();
+        long start = System.nanoTime();
+        HttpClientResult httpResponse;
+        try {
+            httpResponse = httpClient.execute(httpMethod, responseHandler);
+        } catch (Exception e) {
+            if (permit != null) {
+                permit.release(e);
+            }
+            throw e;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        long leaseNanos = PooledHttpClient.leaseNanos();
+        if (permit != null) {
+            permit.release(httpResponse.getCode(), elapsedNanos);
+        }
 
         // 获取返回结果
         if (httpResponse != null && httpResponse.getCode() == HttpStatus.SC_SUCCESS) {
-            LOG.debug("requst_url: {}, request_body={}, response.status={}, response.content:{}",
-                    httpMethod.getUri(),
-                    httpMethod.getEntity() != null ? EntityUtils.toString(httpMethod.getEntity()) : "",
-                    httpResponse.getCode(), httpResponse.getContent());
+            httpResponse.setElapsedNanos(elapsedNanos);
+            httpResponse.setLeaseNanos(leaseNanos);
+            LOG.debug("requst_url: {} {}, request_bytes={}, response.status={}, elapsed={}ms, lease={}ms, bytes={}",
+                    httpMethod.getMethod(), httpMethod.getRequestUri(), requestBytes(httpMethod),
+                    httpResponse.getCode(), elapsedNanos / 1_000_000, leaseNanos / 1_000_000, httpResponse.getBytes());
             return httpResponse;
         } else {
-            LOG.error("requst_url_error: {}, request_body={}",
-                    httpMethod.getUri(), httpMethod.getEntity() != null ? EntityUtils.toString(httpMethod.getEntity()) : "");
+            LOG.error("requst_url_error: {} {}, request_bytes={}, response.status={}",
+                    httpMethod.getMethod(), httpMethod.getRequestUri(), requestBytes(httpMethod),
+                    httpResponse != null ? httpResponse.getCode() : null);
         }
-        return new HttpClientResult(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        // 保留实际的状态码，调用方据此区分鉴权失败、配置不存在和服务端错误
+        HttpClientResult errorResult = new HttpClientResult(httpResponse != null ? httpResponse.getCode() : HttpStatus.SC_INTERNAL_SERVER_ERROR);
+        errorResult.setElapsedNanos(elapsedNanos);
+        errorResult.setLeaseNanos(leaseNanos);
+        return errorResult;
+    }
+
+    /**
+     * 获取限流许可，未配置限流时返回null
+     */
+    private static RequestGovernor.Permit acquire(CancellationScope scope) throws InterruptedIOException {
+        RequestGovernor current = governor;
+        return current != null ? current.acquire(scope) : null;
+    }
+
+    /**
+     * 请求体的字节数，只用于日志，不读取请求体
+     */
+    private static long requestBytes(HttpUriRequestBase httpMethod) {
+        HttpEntity entity = httpMethod.getEntity();
+        return entity != null ? entity.getContentLength() : 0;
     }
 
     /**
@@ -472,11 +654,6 @@ public class HttpClientUtils {
     }
 
     public static HttpClientResult doHttpsPost(String url, Map<String, String> headers, String requestParam,String enCoding)  throws Exception {
-        if (httpPoolClient == null) {
-            httpPoolClient = HttpClients.custom()
-                    .setKeepAliveStrategy(myStrategy)
-                    .setConnectionManager(connManager).build();
-        }
         HttpPost httppost = new HttpPost(url);
         if (headers != null) {
             Set<Entry<String, String>> entrySet = headers.entrySet();
@@ -493,13 +670,7 @@ public class HttpClientUtils {
 
         httppost.setEntity(paraEntity);
 
-        // set Timeout
-        RequestConfig requestConfig = RequestConfig.custom()
-                .setConnectionRequestTimeout(Timeout.ofMilliseconds(SOCKET_TIMEOUT))
-                .setResponseTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT)).build();
-        httppost.setConfig(requestConfig);
-
-        return getHttpClientResult(httpPoolClient, httppost);
+        return getHttpClientResult(pooledClient().getHttpClient(), httppost);
     }
 
 
@@ -512,16 +683,6 @@ public class HttpClientUtils {
      */
     public static HttpClientResult doDelete(String url, Map<String, String> headers, String requestParam)
             throws Exception {
-        if (httpPoolClient == null) {
-            httpPoolClient = HttpClients.custom()
-                    .setKeepAliveStrategy(myStrategy)
-                    .setConnectionManager(connManager).build();
-        }
-
-        RequestConfig requestConfig = RequestConfig.custom()
-                .setConnectionRequestTimeout(Timeout.ofMilliseconds(SOCKET_TIMEOUT))
-                .setResponseTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT)).build();
-
         HttpUriRequestBase httpDelete = new HttpUriRequestBase("DELETE", new URI(url));
         // 设置http header
         if (headers != null) {
@@ -534,7 +695,6 @@ public class HttpClientUtils {
         //其他方法添加参数...
         StringEntity paraEntity = new StringEntity(requestParam, Charsets.toCharset(ENCODING));
         httpDelete.setEntity(paraEntity);
-        httpDelete.setConfig(requestConfig);
 
         Iterator<Header> headerNames = httpDelete.headerIterator();
 
@@ -547,10 +707,272 @@ public class HttpClientUtils {
         }
         LOG.info("request_url:{}, request.header={}, request.body:{}",url, headerStr, requestParam);
         // get http status code
-        HttpClientResult result = getHttpClientResult(httpPoolClient, httpDelete);
+        HttpClientResult result = getHttpClientResult(pooledClient().getHttpClient(), httpDelete);
         LOG.info("request未获得返回, " +
                 "request_url:{}, request.params={}, response.status={}",url, requestParam, result.getCode());
 
         return result;
     }
-}
\ No newline at end of file
+
+    /**
+     * 异步发送get请求；不带请求头
+     *
+     * @param url 请求地址
+     * @return 响应结果
+     */
+    public static CompletableFuture<HttpClientResult> doGetAsync(String url) {
+        return doGetAsync(url, null);
+    }
+
+    /**
+     * 异步发送get请求；带请求头
+     *
+     * @param url 请求地址
+     * @param headers 请求头集合
+     * @return 响应结果
+     */
+    public static CompletableFuture<HttpClientResult> doGetAsync(String url, Map<String, String> headers) {
+        SimpleRequestBuilder builder = SimpleRequestBuilder.get(url);
+        packageHeader(headers, builder);
+        return executeAsync(builder.build());
+    }
+
+    /**
+     * 异步发送get请求；响应体按字节接收，不转成字符串，超过上限时请求失败
+     *
+     * @param url 请求地址
+     * @param maxBodyBytes 响应体字节数上限，不大于0时不限制
+     * @return 响应结果，响应体见 {@link HttpClientResult#getBody()}；状态码不为200时保留实际状态码，便于判断是否重试
+     */
+    public static CompletableFuture<HttpClientResult> doGetBytesAsync(String url, long maxBodyBytes) {
+        SimpleHttpRequest request = SimpleRequestBuilder.get(url).build();
+        return executeAsync(SimpleRequestProducer.create(request),
+                new BasicResponseConsumer<>(new BoundedBytesConsumer(maxBodyBytes)),
+                response -> toHttpClientResult(request, response));
+    }
+
+    /**
+     * 异步发送post请求；带请求头和请求体
+     *
+     * @param url 请求地址
+     * @param headers 请求头集合
+     * @param body 请求体
+     * @return 响应结果
+     */
+    public static CompletableFuture<HttpClientResult> doPostAsync(String url, Map<String, String> headers, String body) {
+        SimpleRequestBuilder builder = SimpleRequestBuilder.post(url);
+        packageHeader(headers, builder);
+        if (StringUtils.isNotEmpty(body)) {
+            builder.setBody(body, ContentType.TEXT_PLAIN.withCharset(StandardCharsets.UTF_8));
+        }
+        return executeAsync(builder.build());
+    }
+
+    /**
+     * 异步form提交
+     *
+     * @param url 请求地址
+     * @param headers 请求头集合
+     * @param paramMap 表单参数
+     * @return 响应结果
+     */
+    public static CompletableFuture<HttpClientResult> postFormBodyAsync(String url, Map<String, String> headers, Map<String, String> paramMap) {
+        List<NameValuePair> params = new ArrayList<>();
+        if (paramMap != null) {
+            for (Entry<String, String> entry : paramMap.entrySet()) {
+                params.add(new BasicNameValuePair(entry.getKey(), entry.getValue()));
+            }
+        }
+        SimpleRequestBuilder builder = SimpleRequestBuilder.post(url);
+        packageHeader(headers, builder);
+        builder.setBody(WWWFormCodec.format(params, StandardCharsets.UTF_8), ContentType.APPLICATION_FORM_URLENCODED);
+        return executeAsync(builder.build());
+    }
+
+    private static void packageHeader(Map<String, String> headers, SimpleRequestBuilder builder) {
+        if (headers != null) {
+            for (Entry<String, String> entry : headers.entrySet()) {
+                builder.setHeader(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Description: 异步执行请求；取消返回的future会中止请求
+     *
+     * @param request 请求
+     * @return 响应结果，状态码不为200时与同步请求一致返回500
+     */
+    private static CompletableFuture<HttpClientResult> executeAsync(SimpleHttpRequest request) {
+        return executeAsync(SimpleRequestProducer.create(request), SimpleResponseConsumer.create(),
+                response -> toHttpClientResult(request, response));
+    }
+
+    /**
+     * Description: 异步执行请求；取消返回的future会中止请求
+     *
+     * @param requestProducer 请求
+     * @param responseConsumer 响应接收方式
+     * @param converter 转换响应结果
+     * @param <R> 响应类型
+     * @return 响应结果
+     */
+    private static <R> CompletableFuture<HttpClientResult> executeAsync(AsyncRequestProducer requestProducer,
+                                                                        AsyncResponseConsumer<R> responseConsumer,
+                                                                        Function<R, HttpClientResult> converter) {
+        CompletableFuture<HttpClientResult> result = new CompletableFuture<>();
+        RequestGovernor current = governor;
+        if (current == null) {
+            sendAsync(requestProducer, responseConsumer, converter, result, null);
+            return result;
+        }
+        // 排队等待许可时不占用调用线程，取消结果时放弃排队
+        CompletableFuture<RequestGovernor.Permit> permit = current.acquireAsync();
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) {
+                permit.cancel(false);
+            }
+        });
+        permit.whenComplete((p, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+            } else if (result.isDone()) {
+                p.release();
+            } else {
+                sendAsync(requestProducer, responseConsumer, converter, result, p);
+            }
+        });
+        return result;
+    }
+
+    private static <R> void sendAsync(AsyncRequestProducer requestProducer, AsyncResponseConsumer<R> responseConsumer,
+                                      Function<R, HttpClientResult> converter, CompletableFuture<HttpClientResult> result,
+                                      RequestGovernor.Permit permit) {
+        long start = System.nanoTime();
+        Future<R> future = pooledClient().getAsyncClient().execute(requestProducer, responseConsumer, new FutureCallback<R>() {
+            @Override
+            public void completed(R response) {
+                long elapsedNanos = System.nanoTime() - start;
+                if (permit != null) {
+                    permit.release(statusOf(response), elapsedNanos);
+                }
+                HttpClientResult httpClientResult = converter.apply(response);
+                httpClientResult.setElapsedNanos(elapsedNanos);
+                result.complete(httpClientResult);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                if (permit != null) {
+                    permit.release(ex);
+                }
+                result.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                if (permit != null) {
+                    permit.release();
+                }
+                result.cancel(false);
+            }
+        });
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) {
+                future.cancel(true);
+            }
+        });
+    }
+
+    /**
+     * 异步响应的状态码，限流需要区分429/503
+     */
+    private static int statusOf(Object response) {
+        if (response instanceof HttpResponse) {
+            return ((HttpResponse) response).getCode();
+        }
+        if (response instanceof Message && ((Message<?, ?>) response).getHead() instanceof HttpResponse) {
+            return ((HttpResponse) ((Message<?, ?>) response).getHead()).getCode();
+        }
+        return HttpStatus.SC_SUCCESS;
+    }
+
+    private static HttpClientResult toHttpClientResult(SimpleHttpRequest request, SimpleHttpResponse response) {
+        if (response.getCode() == HttpStatus.SC_SUCCESS) {
+            String content = null;
+            byte[] body = response.getBodyBytes();
+            if (body != null) {
+                ContentType contentType = response.getContentType();
+                Charset charset = contentType != null && contentType.getCharset() != null
+                        ? contentType.getCharset() : StandardCharsets.UTF_8;
+                content = new String(body, charset);
+            }
+            LOG.debug("requst_url: {}, response.status={}, response.version={}",
+                    request.getRequestUri(), response.getCode(), response.getVersion());
+            HttpClientResult result = new HttpClientResult(response.getCode(), content);
+            result.setBytes(body != null ? body.length : 0);
+            return result;
+        }
+        LOG.error("requst_url_error: {}, response.status={}", request.getRequestUri(), response.getCode());
+        return new HttpClientResult(response.getCode());
+    }
+
+    private static HttpClientResult toHttpClientResult(SimpleHttpRequest request, Message<HttpResponse, ByteArrayBuffer> response) {
+        int code = response.getHead().getCode();
+        if (code == HttpStatus.SC_SUCCESS) {
+            LOG.debug("requst_url: {}, response.status={}, response.version={}",
+                    request.getRequestUri(), code, response.getHead().getVersion());
+            ByteArrayBuffer body = response.getBody();
+            HttpClientResult result = new HttpClientResult(code);
+            result.setBody(body != null ? body.array() : new byte[0]);
+            result.setBytes(body != null ? body.length() : 0);
+            return result;
+        }
+        LOG.error("requst_url_error: {}, response.status={}", request.getRequestUri(), code);
+        return new HttpClientResult(code);
+    }
+
+    /**
+     * 按字节接收响应体，超过上限时中止；直接返回接收缓冲区，不再复制
+     */
+    private static class BoundedBytesConsumer extends AbstractBinAsyncEntityConsumer<ByteArrayBuffer> {
+
+        private final long maxBytes;
+
+        private ByteArrayBuffer buffer;
+
+        private BoundedBytesConsumer(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        protected void streamStart(ContentType contentType) {
+            buffer = new ByteArrayBuffer(8192);
+        }
+
+        @Override
+        protected int capacityIncrement() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        protected void data(ByteBuffer src, boolean endOfStream) throws IOException {
+            if (src == null) {
+                return;
+            }
+            if (maxBytes > 0 && (long) buffer.length() + src.remaining() > maxBytes) {
+                throw new BoundedDigestInputStream.LimitExceededException(maxBytes);
+            }
+            buffer.append(src);
+        }
+
+        @Override
+        protected ByteArrayBuffer generateContent() {
+            return buffer;
+        }
+
+        @Override
+        public void releaseResources() {
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jasypt.encryption.pbe.PBEStringEncryptor;
+
+/**
+ * Description: 配置文件中加密值的批量加解密
+ * <p>
+ * 与jasypt-spring-boot的约定一致，ENC(...)为密文，DEC(...)为待加密的明文。文件按行流式读取，
+ * 需要处理的行并行提交给池化的加密器，结果按原顺序流式写出，同时处理中的行数有上限，内存占用与文件大小无关；
+ * 被处理的值以外的内容，包括注释、缩进和换行符，原样保留。
+ * <p>
+ * 指定key时只处理这些key的值，yaml按缩进还原块映射的路径，properties取分隔符前的key；
+ * 未指定key时处理文件中所有的ENC(...)或DEC(...)。
+ * <p>
+ * DEC(...)的明文可以包含右括号，取到所在标量的最后一个右括号为止：标量以引号、流式集合的分隔符、行尾注释或行尾结束；
+ * 解密时写回的DEC(...)必须能按同样的规则原样取回明文，否则报错，不输出会被截断的明文。
+ */
+public class JasyptFileProcessor {
+
+    private static final Pattern ENC = Pattern.compile("ENC\\((.*?)\\)");
+
+    private static final String DEC_PREFIX = "DEC(";
+
+    /**
+     * yaml块映射中的key行：缩进、key、值
+     */
+    private static final Pattern YAML_KEY = Pattern.compile("^( *)(\"[^\"]*\"|'[^']*'|[^\\s#'\"\\-{\\[][^:#]*?)[ \\t]*:(?:[ \\t]+(.*))?$");
+
+    private static final char BOM = '\uFEFF';
+
+    /**
+     * 处理方式
+     */
+    public enum Mode {
+        /**
+         * DEC(...)及指定key的明文加密为ENC(...)
+         */
+        ENCRYPT,
+        /**
+         * ENC(...)解密为DEC(...)，可以再加密回去
+         */
+        DECRYPT,
+        /**
+         * ENC(...)用旧密钥解密后用新密钥重新加密，用于更换密钥
+         */
+        REENCRYPT
+    }
+
+    private final Mode mode;
+
+    private final PBEStringEncryptor encryptor;
+
+    private final PBEStringEncryptor newEncryptor;
+
+    private final Set<String> keys;
+
+    private final ExecutorService executor;
+
+    /**
+     * 同时处理中的行数上限
+     */
+    private final int window;
+
+    private final AtomicInteger values = new AtomicInteger();
+
+    /**
+     * @param mode         处理方式
+     * @param encryptor    加密器，重新加密时为旧密钥的加密器
+     * @param newEncryptor 新密钥的加密器，只在重新加密时使用
+     * @param keys         指定的key，为空时处理所有的ENC(...)或DEC(...)
+     * @param executor     执行加解密的线程池
+     * @param window       同时处理中的行数上限
+     */
+    public JasyptFileProcessor(Mode mode, PBEStringEncryptor encryptor, PBEStringEncryptor newEncryptor,
+                               Collection<String> keys, ExecutorService executor, int window) {
+        this.mode = mode;
+        this.encryptor = encryptor;
+        this.newEncryptor = newEncryptor;
+        this.keys = keys == null ? Collections.emptySet() : new HashSet<>(keys);
+        this.executor = executor;
+        this.window = Math.max(1, window);
+    }
+
+    /**
+     * 处理文件，结果写入输出文件；输出文件可以是输入文件本身，写完后才替换
+     *
+     * @param input      输入文件
+     * @param output     输出文件
+     * @param charset    文件编码
+     * @param properties 是否为properties文件，否则按yaml处理
+     * @param ownerOnly  输出文件是否只允许当前用户读写
+     * @return 处理的值的个数
+     * @throws IOException 读写异常
+     */
+    public int process(File input, File output, Charset charset, boolean properties, boolean ownerOnly) throws IOException {
+        values.set(0);
+        KeyLocator locator = keys.isEmpty() ? null : properties ? new PropertiesKeyLocator() : new YamlKeyLocator();
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(input), charset))) {
+            FileWriteUtils.writeAtomically(output, out -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset));
+                Deque<CompletableFuture<String>> pending = new ArrayDeque<>();
+                StringBuilder line = new StringBuilder();
+                int lineNumber = 0;
+                while (readLine(reader, line)) {
+                    lineNumber++;
+                    pending.add(submit(line.toString(), lineNumber, locator, properties));
+                    while (pending.size() > window) {
+                        writer.write(join(pending.poll()));
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    writer.write(join(pending.poll()));
+                }
+                writer.flush();
+            }, ownerOnly);
+        }
+        return values.get();
+    }
+
+    private CompletableFuture<String> submit(String line, int lineNumber, KeyLocator locator, boolean properties) {
+        int end = line.length();
+        while (end > 0 && (line.charAt(end - 1) == '\n' || line.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        int start = 0;
+        if (locator != null) {
+            int[] value = locator.locate(line, end);
+            if (value == null) {
+                return CompletableFuture.completedFuture(line);
+            }
+            start = value[0];
+            end = value[1];
+        } else if (line.indexOf(mode == Mode.ENCRYPT ? DEC_PREFIX : "ENC(") < 0) {
+            return CompletableFuture.completedFuture(line);
+        }
+        int from = start;
+        int to = end;
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return transform(line, from, to, locator != null, properties);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("第" + lineNumber + "行" + e.getMessage(), e);
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("第" + lineNumber + "行加解密失败，请检查密钥和密文", e);
+            }
+        }, executor);
+    }
+
+    /**
+     * 处理一行中[from, to)范围内的值
+     */
+    private String transform(String line, int from, int to, boolean selected, boolean properties) {
+        StringBuilder sb = new StringBuilder(line.length() + 64);
+        int last = 0;
+        if (mode == Mode.ENCRYPT) {
+            int[] match;
+            while ((match = findDec(line, last == 0 ? from : last, to, properties)) != null) {
+                sb.append(line, last, match[0]).append(convert(line.substring(match[0] + DEC_PREFIX.length(), match[1] - 1)));
+                last = match[1];
+            }
+        } else {
+            Matcher matcher = ENC.matcher(line).region(from, to);
+            while (matcher.find()) {
+                String converted = convert(matcher.group(1));
+                if (mode == Mode.DECRYPT) {
+                    checkRoundTrip(line, matcher.start(), matcher.end(), to, converted, properties);
+                }
+                sb.append(line, last, matcher.start()).append(converted);
+                last = matcher.end();
+            }
+        }
+        if (last == 0) {
+            if (!selected || mode != Mode.ENCRYPT) {
+                return line;
+            }
+            String value = unquote(line.substring(from, to));
+            if (value.startsWith("ENC(")) {
+                return line;
+            }
+            // 指定key的明文直接加密，引号一并替换
+            values.incrementAndGet();
+            return line.substring(0, from) + "ENC(" + encryptor.encrypt(value) + ")" + line.substring(to);
+        }
+        return sb.append(line, last, line.length()).toString();
+    }
+
+    /**
+     * 查找[from, to)中的下一个DEC(...)，明文取到所在标量的最后一个右括号
+     *
+     * @return DEC(...)在行中的范围，没有时返回null
+     */
+    private static int[] findDec(String line, int from, int to, boolean properties) {
+        int start = line.indexOf(DEC_PREFIX, from);
+        while (start >= 0 && start + DEC_PREFIX.length() < to) {
+            int valueStart = start + DEC_PREFIX.length();
+            int end = properties ? to : yamlScalarEnd(line, start, to);
+            int next = line.indexOf(DEC_PREFIX, valueStart);
+            if (next >= 0 && next < end) {
+                end = next;
+            }
+            int close = line.lastIndexOf(')', end - 1);
+            if (close >= valueStart) {
+                return new int[]{start, close + 1};
+            }
+            start = next;
+        }
+        return null;
+    }
+
+    /**
+     * yaml标量的结束位置：引号内到对应的引号，流式集合中到分隔符，否则到行尾注释
+     */
+    private static int yamlScalarEnd(String line, int start, int to) {
+        char quote = 0;
+        int depth = 0;
+        for (int i = 0; i < start; i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (quote == '"' && c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '[' || c == '{') {
+                depth++;
+            } else if ((c == ']' || c == '}') && depth > 0) {
+                depth--;
+            }
+        }
+        for (int i = start; i < to; i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (quote == '"' && c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    return i;
+                }
+            } else if (depth > 0 && (c == ',' || c == '[' || c == ']' || c == '{' || c == '}')) {
+                return i;
+            } else if (c == '#' && Character.isWhitespace(line.charAt(i - 1))) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * 解密写回的DEC(...)再次加密时必须取回同样的明文，否则明文会被截断，部分明文留在文件中
+     */
+    private static void checkRoundTrip(String line, int start, int end, int to, String replacement, boolean properties) {
+        boolean lineBreak = replacement.indexOf('\n') >= 0 || replacement.indexOf('\r') >= 0;
+        String written = line.substring(0, start) + replacement + line.substring(end);
+        int[] match = lineBreak ? null : findDec(written, start, to + replacement.length() - (end - start), properties);
+        if (match == null || match[0] != start || match[1] != start + replacement.length()) {
+            throw new IllegalArgumentException("的明文包含换行、引号、注释或流式集合的分隔符，写成DEC(...)后无法原样加密回去，请手动处理");
+        }
+    }
+
+    private String convert(String value) {
+        values.incrementAndGet();
+        switch (mode) {
+            case ENCRYPT:
+                return "ENC(" + encryptor.encrypt(value) + ")";
+            case DECRYPT:
+                return "DEC(" + encryptor.decrypt(value) + ")";
+            default:
+                return "ENC(" + newEncryptor.encrypt(encryptor.decrypt(value)) + ")";
+        }
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.charAt(0) == '\'' && value.charAt(value.length() - 1) == '\'') {
+            return value.substring(1, value.length() - 1).replace("''", "'");
+        }
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            return value.substring(1, value.length() - 1).replace("\\\"", "\"").replace("\\\\", "\\");
+        }
+        return value;
+    }
+
+    private static String join(CompletableFuture<String> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 读取一行，保留换行符
+     *
+     * @return 是否读到内容
+     */
+    private static boolean readLine(Reader reader, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int c;
+        while ((c = reader.read()) >= 0) {
+            line.append((char) c);
+            if (c == '\n') {
+                break;
+            }
+            if (c == '\r') {
+                reader.mark(1);
+                int next = reader.read();
+                if (next == '\n') {
+                    line.append('\n');
+                } else if (next >= 0) {
+                    reader.reset();
+                }
+                break;
+            }
+        }
+        return line.length() > 0;
+    }
+
+    /**
+     * 按顺序读取每一行，定位指定key的值
+     */
+    private interface KeyLocator {
+
+        /**
+         * @param line 行内容
+         * @param end  去掉换行符后的长度
+         * @return 指定key的值在行中的范围，不是指定key时返回null
+         */
+        int[] locate(String line, int end);
+    }
+
+    /**
+     * yaml只还原块映射的路径，列表项及流式写法中的key不处理
+     */
+    private class YamlKeyLocator implements KeyLocator {
+
+        private final Deque<Integer> indents = new ArrayDeque<>();
+
+        private final Deque<String> names = new ArrayDeque<>();
+
+        /**
+         * 多行文本所在key的缩进，其内容的缩进更大
+         */
+        private int blockIndent = -1;
+
+        @Override
+        public int[] locate(String line, int end) {
+            int offset = line.length() > 0 && line.charAt(0) == BOM ? 1 : 0;
+            String content = line.substring(offset, end);
+            String trimmed = content.trim();
+            if (blockIndent >= 0) {
+                if (trimmed.isEmpty() || indentOf(content) > blockIndent) {
+                    return null;
+                }
+                blockIndent = -1;
+            }
+            if (content.startsWith("---") || content.startsWith("...")) {
+                indents.clear();
+                names.clear();
+                return null;
+            }
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                return null;
+            }
+            Matcher matcher = YAML_KEY.matcher(content);
+            if (!matcher.matches()) {
+                return null;
+            }
+            int indent = matcher.group(1).length();
+            while (!indents.isEmpty() && indents.peekLast() >= indent) {
+                indents.pollLast();
+                names.pollLast();
+            }
+            String key = unquote(matcher.group(2));
+            String path = names.isEmpty() ? key : String.join(".", names) + "." + key;
+            String value = matcher.group(3);
+            if (value == null || value.trim().isEmpty() || value.startsWith("#")) {
+                indents.addLast(indent);
+                names.addLast(key);
+                return null;
+            }
+            if (value.startsWith("|") || value.startsWith(">")) {
+                blockIndent = indent;
+                return null;
+            }
+            if (!keys.contains(path)) {
+                return null;
+            }
+            int start = offset + matcher.start(3);
+            return new int[]{start, start + valueLength(value)};
+        }
+
+        /**
+         * 值的长度，不含行尾注释和空白
+         */
+        private int valueLength(String value) {
+            char quote = value.charAt(0);
+            if (quote == '\'' || quote == '"') {
+                for (int i = 1; i < value.length(); i++) {
+                    if (value.charAt(i) == quote && (quote == '\'' || value.charAt(i - 1) != '\\')) {
+                        if (quote == '\'' && i + 1 < value.length() && value.charAt(i + 1) == '\'') {
+                            i++;
+                            continue;
+                        }
+                        return i + 1;
+                    }
+                }
+                return value.length();
+            }
+            int comment = value.indexOf(" #");
+            int length = comment < 0 ? value.length() : comment;
+            while (length > 0 && Character.isWhitespace(value.charAt(length - 1))) {
+                length--;
+            }
+            return length;
+        }
+
+        private int indentOf(String content) {
+            int i = 0;
+            while (i < content.length() && content.charAt(i) == ' ') {
+                i++;
+            }
+            return i;
+        }
+    }
+
+    /**
+     * properties取第一个未转义的分隔符前的key，续行不处理
+     */
+    private class PropertiesKeyLocator implements KeyLocator {
+
+        private boolean continuation;
+
+        @Override
+        public int[] locate(String line, int end) {
+            boolean continued = continuation;
+            int backslashes = 0;
+            for (int i = end - 1; i >= 0 && line.charAt(i) == '\\'; i--) {
+                backslashes++;
+            }
+            continuation = backslashes % 2 == 1;
+            if (continued) {
+                return null;
+            }
+            int start = line.length() > 0 && line.charAt(0) == BOM ? 1 : 0;
+            while (start < end && Character.isWhitespace(line.charAt(start))) {
+                start++;
+            }
+            if (start == end || line.charAt(start) == '#' || line.charAt(start) == '!') {
+                return null;
+            }
+            int i = start;
+            while (i < end) {
+                char c = line.charAt(i);
+                if (c == '\\') {
+                    i += 2;
+                    continue;
+                }
+                if (c == '=' || c == ':' || Character.isWhitespace(c)) {
+                    break;
+                }
+                i++;
+            }
+            String key = line.substring(start, Math.min(i, end));
+            while (i < end && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            if (i < end && (line.charAt(i) == '=' || line.charAt(i) == ':')) {
+                i++;
+            }
+            while (i < end && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            if (continuation || i == end || !keys.contains(key)) {
+                return null;
+            }
+            return new int[]{i, end};
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jasypt.encryption.pbe.PBEStringEncryptor;
+import org.jasypt.encryption.pbe.PooledPBEStringEncryptor;
+
+/**
+ * Description: jasypt加解密工具类
+ * <p>
+ * PBE每次加解密都要按随机盐重新派生密钥，单个加密器内部串行执行；
+ * 这里按密钥缓存池化的加密器，池大小等于CPU核数，多个线程可以同时加解密。
+ */
+public class JasyptUtils {
+
+    /**
+     * 与jasypt-spring-boot的默认配置保持一致
+     */
+    public static final String ALGORITHM = "PBEWithMD5AndDES";
+
+    private static final ConcurrentMap<String, PBEStringEncryptor> ENCRYPTORS = new ConcurrentHashMap<>();
+
+    private JasyptUtils() {
+    }
+
+    /**
+     * 获取密钥对应的共用加密器，线程安全
+     *
+     * @param password jasypt密钥
+     * @return 加密器
+     */
+    public static PBEStringEncryptor encryptor(String password) {
+        return ENCRYPTORS.computeIfAbsent(password,
+                key -> newEncryptor(key, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * 创建池化的加密器
+     *
+     * @param password jasypt密钥
+     * @param poolSize 池大小，即可以同时执行的加解密数
+     * @return 加密器
+     */
+    public static PooledPBEStringEncryptor newEncryptor(String password, int poolSize) {
+        PooledPBEStringEncryptor encryptor = new PooledPBEStringEncryptor();
+        encryptor.setPassword(password);
+        encryptor.setAlgorithm(ALGORITHM);
+        encryptor.setPoolSize(Math.max(1, poolSize));
+        return encryptor;
+    }
+
+    /**
+     * 加密
+     *
+     * @param password jasypt密钥
+     * @param message  明文
+     * @return 密文
+     */
+    public static String encrypt(String password, String message) {
+        return encryptor(password).encrypt(message);
+    }
+
+    /**
+     * 解密
+     *
+     * @param password         jasypt密钥
+     * @param encryptedMessage 密文
+     * @return 明文
+     */
+    public static String decrypt(String password, String encryptedMessage) {
+        return encryptor(password).decrypt(encryptedMessage);
+    }
+}
@@ -0,0 +1,207 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import cn.aries.fang.maven.plugin.dto.ConfigKey;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Description: 按命名空间批量拉取nacos配置
+ * <p>
+ * 优先使用配置查询接口(search=accurate)分页拉取，第一页之后的分页并发请求；
+ * 查询接口不可用时使用导出接口(export=true)一次下载命名空间的zip包。
+ * 只保留需要的配置，不需要的配置内容直接丢弃；超过字节数上限的配置不保留，逐个下载时报错。
+ */
+public class NacosBulkConfigUtils {
+
+    private static final String CONFIGS_PATH = "/nacos/v1/cs/configs";
+
+    /**
+     * 导出zip包中的元数据文件，以.开头
+     */
+    private static final String META_PREFIX = ".";
+
+    /**
+     * 分页结果中每项的元数据等额外字节数
+     */
+    private static final long PAGE_ITEM_OVERHEAD = 4096;
+
+    private NacosBulkConfigUtils() {
+    }
+
+    /**
+     * 通过配置查询接口分页拉取配置
+     *
+     * @param serverUrl nacos地址
+     * @param token     nacos token
+     * @param tenant    命名空间，空表示public
+     * @param group     分组，空表示所有分组
+     * @param pageSize  每页条数
+     * @param maxConfigBytes 单个配置的字节数上限，不大于0时不限制
+     * @param wanted    需要的配置
+     * @return 拉取到的配置内容，不包含服务端不存在和超过上限的配置
+     * @throws Exception 请求失败或服务端不支持
+     */
+    public static Map<ConfigKey, String> search(String serverUrl, String token, String tenant, String group,
+                                                int pageSize, long maxConfigBytes, Set<ConfigKey> wanted) throws Exception {
+        Map<ConfigKey, String> contents = new HashMap<>();
+        long maxPageBytes = maxPageBytes(pageSize, maxConfigBytes);
+        JSONObject firstPage = parsePage(HttpClientUtils.doGetBytesAsync(
+                searchUrl(serverUrl, token, tenant, group, 1, pageSize), maxPageBytes).get());
+        int pages = firstPage.getInt("pagesAvailable", 1);
+        collect(serverUrl, tenant, firstPage, maxConfigBytes, wanted, contents);
+        if (pages <= 1 || contents.size() == wanted.size()) {
+            return contents;
+        }
+        List<CompletableFuture<HttpClientResult>> futures = new ArrayList<>(pages - 1);
+        for (int pageNo = 2; pageNo <= pages; pageNo++) {
+            futures.add(HttpClientUtils.doGetBytesAsync(searchUrl(serverUrl, token, tenant, group, pageNo, pageSize), maxPageBytes));
+        }
+        try {
+            for (CompletableFuture<HttpClientResult> future : futures) {
+                collect(serverUrl, tenant, parsePage(future.get()), maxConfigBytes, wanted, contents);
+            }
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return contents;
+    }
+
+    /**
+     * 通过导出接口下载命名空间的zip包，zip中每个配置的路径为 group/dataId
+     *
+     * @param serverUrl nacos地址
+     * @param token     nacos token
+     * @param tenant    命名空间，空表示public
+     * @param group     分组，空表示所有分组
+     * @param maxConfigBytes 单个配置的字节数上限，不大于0时不限制
+     * @param wanted    需要的配置
+     * @return 拉取到的配置内容，不包含服务端不存在和超过上限的配置
+     * @throws Exception 请求失败或服务端不支持
+     */
+    public static Map<ConfigKey, String> export(String serverUrl, String token, String tenant, String group,
+                                                long maxConfigBytes, Set<ConfigKey> wanted) throws Exception {
+        String url = serverUrl + CONFIGS_PATH + "?export=true&tenant=" + encode(tenant) + "&group=" + encode(group)
+                + (StringUtils.isEmpty(token) ? "" : "&accessToken=" + encode(token));
+        return HttpClientUtils.doGetStream(url, body -> {
+            Map<ConfigKey, String> contents = new HashMap<>();
+            boolean zip = false;
+            try (ZipInputStream zipIn = new ZipInputStream(body, StandardCharsets.UTF_8)) {
+                ZipEntry entry;
+                while ((entry = zipIn.getNextEntry()) != null) {
+                    zip = true;
+                    String name = entry.getName();
+                    int slash = name.indexOf('/');
+                    if (entry.isDirectory() || name.startsWith(META_PREFIX) || slash <= 0) {
+                        continue;
+                    }
+                    ConfigKey key = new ConfigKey(serverUrl, tenant, name.substring(0, slash), name.substring(slash + 1));
+                    if (wanted.contains(key)) {
+                        String content = readEntry(zipIn, maxConfigBytes);
+                        if (content != null) {
+                            contents.put(key, content);
+                        }
+                    }
+                }
+            }
+            if (!zip) {
+                throw new IOException("导出接口未返回zip包");
+            }
+            return contents;
+        });
+    }
+
+    /**
+     * 读取zip包中的一个配置，不关闭zip流
+     *
+     * @return 配置内容，超过上限时返回null
+     */
+    private static String readEntry(ZipInputStream zipIn, long maxConfigBytes) throws IOException {
+        BoundedDigestInputStream in = new BoundedDigestInputStream(zipIn, maxConfigBytes);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        } catch (BoundedDigestInputStream.LimitExceededException e) {
+            // 剩余部分由getNextEntry跳过
+            return null;
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 一页结果的字节数上限：转义后的内容最多约为原来的两倍，另加每项的元数据
+     */
+    private static long maxPageBytes(int pageSize, long maxConfigBytes) {
+        if (maxConfigBytes <= 0) {
+            return 0;
+        }
+        long itemBytes = maxConfigBytes > (Long.MAX_VALUE - PAGE_ITEM_OVERHEAD) / 2
+                ? Long.MAX_VALUE : maxConfigBytes * 2 + PAGE_ITEM_OVERHEAD;
+        return itemBytes > Long.MAX_VALUE / Math.max(pageSize, 1) ? Long.MAX_VALUE : itemBytes * Math.max(pageSize, 1);
+    }
+
+    private static String searchUrl(String serverUrl, String token, String tenant, String group, int pageNo, int pageSize) {
+        return serverUrl + CONFIGS_PATH + "?search=accurate&dataId=&group=" + encode(group) + "&tenant=" + encode(tenant)
+                + "&pageNo=" + pageNo + "&pageSize=" + pageSize
+                + (StringUtils.isEmpty(token) ? "" : "&accessToken=" + encode(token));
+    }
+
+    private static JSONObject parsePage(HttpClientResult result) throws IOException {
+        String body = result.getBody() == null ? null
+                : new String(result.getBody(), 0, (int) result.getBytes(), StandardCharsets.UTF_8);
+        if (result.getCode() != 200 || !JSONUtil.isTypeJSONObject(body)) {
+            throw new IOException("配置查询接口不可用，HTTP Status: " + result.getCode());
+        }
+        JSONObject page = JSONUtil.parseObj(body);
+        if (!page.containsKey("pageItems")) {
+            throw new IOException("配置查询接口未返回pageItems");
+        }
+        return page;
+    }
+
+    private static void collect(String serverUrl, String tenant, JSONObject page, long maxConfigBytes,
+                                Set<ConfigKey> wanted, Map<ConfigKey, String> contents) throws IOException {
+        JSONArray items = page.getJSONArray("pageItems");
+        if (items == null) {
+            return;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            JSONObject item = items.getJSONObject(i);
+            ConfigKey key = new ConfigKey(serverUrl, tenant, item.getStr("group"), item.getStr("dataId"));
+            if (!wanted.contains(key)) {
+                continue;
+            }
+            if (!item.containsKey("content")) {
+                // 部分版本的查询接口不返回配置内容
+                throw new IOException("配置查询接口未返回content");
+            }
+            String content = item.getStr("content", "");
+            if (maxConfigBytes <= 0 || content.getBytes(StandardCharsets.UTF_8).length <= maxConfigBytes) {
+                contents.put(key, content);
+            }
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(StringUtils.defaultString(value), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import cn.aries.fang.maven.plugin.dto.MappingConfig;
+import org.apache.commons.lang3.StringUtils;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+/**
+ * Description: 从Spring的bootstrap、application文件中发现服务使用的nacos配置
+ * <p>
+ * 每个扫描目录视为一个模块的资源目录，读取目录及其config子目录下的 application、bootstrap 文件(yml、yaml、properties)，
+ * bootstrap优先，profile文件优先于默认文件；多文档yaml中 spring.profiles、spring.config.activate.on-profile
+ * 与激活的profile不符的文档忽略。按spring-cloud-alibaba的规则推导dataId：
+ * <pre>
+ * spring.cloud.nacos.config.shared-configs[n]、shared-dataids   共享配置
+ * spring.cloud.nacos.config.extension-configs[n]、ext-config[n] 扩展配置
+ * ${prefix}、${prefix}.${file-extension}、${prefix}-${profile}.${file-extension}  应用配置，prefix默认为spring.application.name
+ * spring.config.import 中的 nacos:dataId?group=xxx
+ * </pre>
+ * key按Spring的宽松绑定比较，data-id、dataId、data_id等写法等价；${key:default}占位符按已读取的配置和系统属性解析。
+ * 本地文件为扫描目录中与dataId同名的yaml文件，同一模块的文件优先；多个模块的相同group和dataId只保留一个。
+ */
+public class NacosConfigDiscovery {
+
+    private static final String CONFIG_PREFIX = "spring.cloud.nacos.config.";
+
+    private static final String DEFAULT_GROUP = "DEFAULT_GROUP";
+
+    private static final List<String> SPRING_FILES = Arrays.asList("application", "bootstrap");
+
+    private static final List<String> SPRING_EXTENSIONS = Arrays.asList("properties", "yml", "yaml");
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}:]+)(?::([^}]*))?}");
+
+    private final List<String> profiles;
+
+    private final List<String> unmatched = new ArrayList<>();
+
+    /**
+     * @param profiles 激活的profile，为空时使用配置文件中的spring.profiles.active
+     */
+    public NacosConfigDiscovery(List<String> profiles) {
+        this.profiles = profiles == null ? Collections.emptyList() : profiles;
+    }
+
+    /**
+     * 并行扫描目录并推导配置
+     *
+     * @param dirs     资源目录，按顺序决定同名文件和重复配置的优先级
+     * @param executor 扫描线程池
+     * @return 有本地yaml文件的配置，相同group和dataId只保留第一个
+     * @throws IOException 扫描或解析失败
+     */
+    public List<MappingConfig> discover(List<File> dirs, ExecutorService executor) throws IOException {
+        List<Future<Module>> futures = new ArrayList<>(dirs.size());
+        for (File dir : dirs) {
+            futures.add(executor.submit(() -> scan(dir)));
+        }
+        List<Module> modules = new ArrayList<>(dirs.size());
+        try {
+            for (Future<Module> future : futures) {
+                modules.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("扫描被中断", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        // 所有模块的文件，模块顺序在前的优先
+        Map<String, Path> allFiles = new HashMap<>();
+        for (Module module : modules) {
+            module.files.forEach(allFiles::putIfAbsent);
+        }
+        Map<String, MappingConfig> discovered = new LinkedHashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (Module module : modules) {
+            for (String[] candidate : module.candidates) {
+                String key = candidate[0] + "/" + candidate[1];
+                if (discovered.containsKey(key)) {
+                    continue;
+                }
+                Path file = isYaml(candidate[1]) ? module.files.getOrDefault(candidate[1], allFiles.get(candidate[1])) : null;
+                if (file == null) {
+                    missing.add(key);
+                    continue;
+                }
+                MappingConfig config = new MappingConfig();
+                config.setGroup(candidate[0]);
+                config.setDataId(candidate[1]);
+                config.setConfigPath(file.toString());
+                discovered.put(key, config);
+            }
+        }
+        missing.removeAll(discovered.keySet());
+        unmatched.addAll(missing);
+        return new ArrayList<>(discovered.values());
+    }
+
+    /**
+     * 推导出来但没有本地yaml文件的配置，格式为 group/dataId
+     */
+    public List<String> getUnmatched() {
+        return unmatched;
+    }
+
+    /**
+     * 扫描一个资源目录：索引其中的文件并读取Spring配置
+     */
+    private Module scan(File dir) throws IOException {
+        Module module = new Module();
+        if (!dir.isDirectory()) {
+            return module;
+        }
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            for (Path path : paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                module.files.putIfAbsent(path.getFileName().toString(), path);
+            }
+        }
+        List<File> locations = Arrays.asList(dir, new File(dir, "config"));
+        Map<String, String> properties = new HashMap<>();
+        List<Map<String, String>> profileDocuments = new ArrayList<>();
+        for (String name : SPRING_FILES) {
+            for (File location : locations) {
+                load(location, name, properties, profileDocuments);
+            }
+        }
+        List<String> active = profiles.isEmpty() ? split(resolve(properties, "spring.profiles.active")) : profiles;
+        for (Map<String, String> document : profileDocuments) {
+            if (!Collections.disjoint(active, split(document.get(canonical("spring.config.activate.on-profile"))))
+                    || !Collections.disjoint(active, split(document.get(canonical("spring.profiles"))))) {
+                properties.putAll(document);
+            }
+        }
+        for (String profile : active) {
+            for (String name : SPRING_FILES) {
+                for (File location : locations) {
+                    load(location, name + "-" + profile, properties, null);
+                }
+            }
+        }
+        module.candidates = candidates(properties, active);
+        return module;
+    }
+
+    /**
+     * 按spring-cloud-alibaba的加载顺序推导 group、dataId
+     */
+    private static List<String[]> candidates(Map<String, String> properties, List<String> profiles) {
+        List<String[]> candidates = new ArrayList<>();
+        if ("false".equalsIgnoreCase(resolve(properties, CONFIG_PREFIX + "enabled"))) {
+            return candidates;
+        }
+        String group = StringUtils.defaultIfBlank(resolve(properties, CONFIG_PREFIX + "group"), DEFAULT_GROUP);
+        for (String dataId : split(resolve(properties, CONFIG_PREFIX + "shared-dataids"))) {
+            candidates.add(new String[]{DEFAULT_GROUP, dataId});
+        }
+        indexed(properties, CONFIG_PREFIX + "shared-configs", candidates);
+        indexed(properties, CONFIG_PREFIX + "ext-config", candidates);
+        indexed(properties, CONFIG_PREFIX + "extension-configs", candidates);
+        String prefix = StringUtils.firstNonBlank(resolve(properties, CONFIG_PREFIX + "prefix"),
+                resolve(properties, CONFIG_PREFIX + "name"), resolve(properties, "spring.application.name"));
+        if (StringUtils.isNotBlank(prefix)) {
+            String extension = StringUtils.defaultIfBlank(resolve(properties, CONFIG_PREFIX + "file-extension"), "properties");
+            candidates.add(new String[]{group, prefix});
+            candidates.add(new String[]{group, prefix + "." + extension});
+            for (String profile : profiles) {
+                candidates.add(new String[]{group, prefix + "-" + profile + "." + extension});
+            }
+        }
+        List<String> imports = new ArrayList<>(split(resolve(properties, "spring.config.import")));
+        for (int i = 0; properties.containsKey(canonical("spring.config.import[" + i + "]")); i++) {
+            imports.add(resolve(properties, "spring.config.import[" + i + "]"));
+        }
+        for (String location : imports) {
+            String value = StringUtils.removeStart(location.trim(), "optional:");
+            if (value.startsWith("nacos:")) {
+                String dataId = StringUtils.substringBefore(value.substring("nacos:".length()), "?");
+                String query = StringUtils.substringAfter(value, "?");
+                String importGroup = group;
+                for (String param : StringUtils.split(query, '&')) {
+                    if (param.startsWith("group=")) {
+                        importGroup = param.substring("group=".length());
+                    }
+                }
+                candidates.add(new String[]{importGroup, dataId});
+            }
+        }
+        candidates.removeIf(candidate -> StringUtils.isBlank(candidate[1]) || candidate[1].contains("${"));
+        return candidates;
+    }
+
+    /**
+     * shared-configs[n]、extension-configs[n]等列表，每项的group默认为DEFAULT_GROUP
+     */
+    private static void indexed(Map<String, String> properties, String name, List<String[]> candidates) {
+        for (int i = 0; ; i++) {
+            String item = name + "[" + i + "]";
+            String dataId = resolve(properties, item + ".data-id");
+            if (dataId == null) {
+                return;
+            }
+            candidates.add(new String[]{StringUtils.defaultIfBlank(resolve(properties, item + ".group"), DEFAULT_GROUP), dataId});
+        }
+    }
+
+    /**
+     * 读取一个Spring配置文件；带profile条件的yaml文档放入profileDocuments，为null时忽略条件直接合并
+     */
+    private static void load(File dir, String name, Map<String, String> properties,
+                             List<Map<String, String>> profileDocuments) throws IOException {
+        for (String extension : SPRING_EXTENSIONS) {
+            File file = new File(dir, name + "." + extension);
+            if (!file.isFile()) {
+                continue;
+            }
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                if ("properties".equals(extension)) {
+                    Properties props = new Properties();
+                    props.load(reader);
+                    props.forEach((key, value) -> properties.put(canonical(key.toString()), value.toString()));
+                    continue;
+                }
+                Yaml yaml = new Yaml(new SafeConstructor(new LoaderOptions()));
+                for (Object document : yaml.loadAll(reader)) {
+                    Map<String, String> flat = new HashMap<>();
+                    flatten("", document, flat);
+                    boolean conditional = flat.containsKey(canonical("spring.config.activate.on-profile"))
+                            || flat.containsKey(canonical("spring.profiles"));
+                    if (conditional && profileDocuments != null) {
+                        profileDocuments.add(flat);
+                    } else {
+                        properties.putAll(flat);
+                    }
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("解析" + file + "失败", e);
+            }
+        }
+    }
+
+    private static void flatten(String path, Object node, Map<String, String> flat) {
+        if (node instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+                String key = String.valueOf(entry.getKey());
+                flatten(path.isEmpty() ? key : path + "." + key, entry.getValue(), flat);
+            }
+        } else if (node instanceof List) {
+            List<?> list = (List<?>) node;
+            for (int i = 0; i < list.size(); i++) {
+                flatten(path + "[" + i + "]", list.get(i), flat);
+            }
+        } else if (node != null && !path.isEmpty()) {
+            flat.put(canonical(path), String.valueOf(node));
+        }
+    }
+
+    /**
+     * 读取配置并解析占位符，不存在时返回null
+     */
+    private static String resolve(Map<String, String> properties, String name) {
+        String value = properties.get(canonical(name));
+        return value == null ? null : resolvePlaceholders(properties, value, 0);
+    }
+
+    private static String resolvePlaceholders(Map<String, String> properties, String value, int depth) {
+        if (depth > 8 || !value.contains("${")) {
+            return value;
+        }
+        Matcher matcher = PLACEHOLDER.matcher(value);
+        StringBuffer sb = new StringBuffer();
+        while (matcher.find()) {
+            String name = matcher.group(1).trim();
+            String replacement = properties.get(canonical(name));
+            if (replacement == null) {
+                replacement = System.getProperty(name, matcher.group(2));
+            }
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement == null
+                    ? matcher.group() : resolvePlaceholders(properties, replacement, depth + 1)));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Spring宽松绑定的统一形式：小写，去掉 - 和 _
+     */
+    private static String canonical(String name) {
+        return name.toLowerCase(Locale.ROOT).replace("-", "").replace("_", "");
+    }
+
+    private static List<String> split(String value) {
+        if (StringUtils.isBlank(value)) {
+            return Collections.emptyList();
+        }
+        List<String> values = new ArrayList<>();
+        for (String item : StringUtils.split(value, ',')) {
+            if (StringUtils.isNotBlank(item)) {
+                values.add(item.trim());
+            }
+        }
+        return values;
+    }
+
+    private static boolean isYaml(String dataId) {
+        return dataId.endsWith(".yml") || dataId.endsWith(".yaml");
+    }
+
+    /**
+     * 一个资源目录的扫描结果
+     */
+    private static class Module {
+
+        /**
+         * 文件名 -> 路径，同名时取路径排序在前的
+         */
+        private final Map<String, Path> files = new HashMap<>();
+
+        /**
+         * 推导出的 group、dataId
+         */
+        private List<String[]> candidates = Collections.emptyList();
+    }
+}
@@ -0,0 +1,116 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.*;
+
+import cn.aries.fang.maven.plugin.dto.ConfigKey;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.client5.http.HttpResponseException;
+
+/**
+ * Description: nacos配置监听接口(/nacos/v1/cs/configs/listener)工具类
+ * <p>
+ * 请求体为 Listening-Configs=dataId^2group^2md5[^2tenant]^1...，
+ * 响应为URL编码的变化配置列表 dataId^2group[^2tenant]^1...，其中^1、^2分别为\u0001、\u0002。
+ */
+public class NacosListenerUtils {
+
+    private static final char WORD_SEPARATOR = '\u0002';
+
+    private static final char LINE_SEPARATOR = '\u0001';
+
+    private static final String LISTENER_PATH = "/nacos/v1/cs/configs/listener";
+
+    private NacosListenerUtils() {
+    }
+
+    /**
+     * 比对配置MD5，立即返回内容已变化的配置，不挂起等待
+     *
+     * @param serverUrl nacos地址
+     * @param token     nacos token
+     * @param md5s      配置及本地已知的MD5
+     * @return 内容已变化的配置
+     * @throws Exception 请求失败
+     */
+    public static Set<ConfigKey> probe(String serverUrl, String token, Map<ConfigKey, String> md5s) throws Exception {
+        return listen(serverUrl, token, md5s, 30000L, true);
+    }
+
+    /**
+     * 监听配置变化
+     *
+     * @param serverUrl   nacos地址
+     * @param token       nacos token
+     * @param md5s        配置及本地已知的MD5
+     * @param timeout     长轮询挂起时间，单位毫秒
+     * @param noHangUp    没有变化时是否立即返回
+     * @return 内容已变化的配置
+     * @throws Exception 请求失败，状态码不为200时为HttpResponseException
+     */
+    public static Set<ConfigKey> listen(String serverUrl, String token, Map<ConfigKey, String> md5s,
+                                        long timeout, boolean noHangUp) throws Exception {
+        if (md5s.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Long-Pulling-Timeout", String.valueOf(timeout));
+        if (noHangUp) {
+            headers.put("Long-Pulling-Timeout-No-Hangup", "true");
+        }
+        Map<String, String> body = new HashMap<>();
+        body.put("Listening-Configs", encode(md5s));
+        String url = serverUrl + LISTENER_PATH + (StringUtils.isEmpty(token) ? "" : "?accessToken=" + token);
+        // 挂起等待的长轮询不受请求限流控制，否则会长期占用并发并拉高响应时间
+        HttpClientResult result = HttpClientUtils.postFormBody(url, headers, body, noHangUp);
+        if (result.getCode() != 200) {
+            throw new HttpResponseException(result.getCode(), "监听nacos配置失败，HTTP Status: " + result.getCode());
+        }
+        return decode(serverUrl, result.getContent());
+    }
+
+    /**
+     * 编码监听的配置
+     *
+     * @param md5s 配置及本地已知的MD5
+     * @return Listening-Configs
+     */
+    public static String encode(Map<ConfigKey, String> md5s) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<ConfigKey, String> entry : md5s.entrySet()) {
+            ConfigKey key = entry.getKey();
+            sb.append(key.getDataId()).append(WORD_SEPARATOR)
+                    .append(key.getGroup()).append(WORD_SEPARATOR)
+                    .append(StringUtils.defaultString(entry.getValue()));
+            if (StringUtils.isNotEmpty(key.getTenant())) {
+                sb.append(WORD_SEPARATOR).append(key.getTenant());
+            }
+            sb.append(LINE_SEPARATOR);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解码变化的配置
+     *
+     * @param serverUrl nacos地址
+     * @param response  监听接口的响应
+     * @return 变化的配置
+     * @throws UnsupportedEncodingException 编码异常
+     */
+    public static Set<ConfigKey> decode(String serverUrl, String response) throws UnsupportedEncodingException {
+        if (StringUtils.isBlank(response)) {
+            return Collections.emptySet();
+        }
+        Set<ConfigKey> changed = new LinkedHashSet<>();
+        String decoded = URLDecoder.decode(response.trim(), "UTF-8");
+        for (String line : StringUtils.split(decoded, LINE_SEPARATOR)) {
+            String[] words = StringUtils.splitPreserveAllTokens(line, WORD_SEPARATOR);
+            if (words.length >= 2) {
+                changed.add(new ConfigKey(serverUrl, words.length > 2 ? words[2] : "", words[1], words[0]));
+            }
+        }
+        return changed;
+    }
+}
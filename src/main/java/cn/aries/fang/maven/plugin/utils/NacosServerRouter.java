@@ -0,0 +1,408 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.core5.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Description: nacos集群的客户端负载均衡
+ * <p>
+ * serverUrl可以配置多个地址，用逗号分隔。按EWMA记录每个节点的响应时间，优先请求最快的健康节点；
+ * 连接失败、超时或返回5xx/429时把节点暂时隔离，带抖动退避后换下一个节点重试。
+ * 开启对冲时，GET请求超过近期响应时间的指定分位数仍未返回，向另一个节点再发一次，先成功的结果生效，另一个请求取消。
+ * 节点的统计按地址在同一次构建的所有模块间共用。
+ */
+public class NacosServerRouter {
+    private static final Logger LOG = LoggerFactory.getLogger(NacosServerRouter.class);
+
+    /**
+     * EWMA的平滑系数，越大越偏向最近的响应时间
+     */
+    private static final double ALPHA = 0.3;
+
+    /**
+     * 计算分位数时每个节点保留的样本数
+     */
+    private static final int SAMPLE_WINDOW = 128;
+
+    /**
+     * 样本少于该数量时使用默认的对冲延迟
+     */
+    private static final int MIN_HEDGE_SAMPLES = 8;
+
+    private static final long DEFAULT_HEDGE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private static final long MIN_ISOLATION_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final long MAX_ISOLATION_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private static final ConcurrentMap<String, Node> NODES = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService SCHEDULER = ExecutorUtils.newDaemonScheduler("nacos-router-");
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    private final int retries;
+
+    private final long backoffMillis;
+
+    private final int hedgePercentile;
+
+    /**
+     * @param serverUrls      nacos地址，多个用逗号分隔
+     * @param retries         失败后的重试次数
+     * @param backoffMillis   重试的基础退避时间，单位毫秒
+     * @param hedgePercentile 对冲请求的分位数，不大于0或只有一个地址时不对冲
+     */
+    public NacosServerRouter(String serverUrls, int retries, long backoffMillis, int hedgePercentile) {
+        for (String serverUrl : parseServers(serverUrls)) {
+            nodes.add(NODES.computeIfAbsent(serverUrl, Node::new));
+        }
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("未配置nacos地址");
+        }
+        this.retries = Math.max(0, retries);
+        this.backoffMillis = Math.max(0, backoffMillis);
+        this.hedgePercentile = Math.min(hedgePercentile, 100);
+    }
+
+    /**
+     * 解析逗号分隔的nacos地址，去掉末尾的斜杠
+     *
+     * @param serverUrls nacos地址
+     * @return 地址列表
+     */
+    public static List<String> parseServers(String serverUrls) {
+        List<String> servers = new ArrayList<>();
+        if (serverUrls != null) {
+            for (String serverUrl : serverUrls.split(",")) {
+                serverUrl = StringUtils.removeEnd(serverUrl.trim(), "/");
+                if (!serverUrl.isEmpty() && !servers.contains(serverUrl)) {
+                    servers.add(serverUrl);
+                }
+            }
+        }
+        return servers;
+    }
+
+    /**
+     * 当前最优的节点，用于已有降级方案、不需要重试的请求
+     *
+     * @return 节点地址
+     */
+    public String primary() {
+        return candidates().get(0).url;
+    }
+
+    /**
+     * 同步执行请求，失败时换节点重试
+     *
+     * @param call  请求，参数为节点地址
+     * @param scope 取消范围，已取消时不再重试，为null时不检查
+     * @param <T>   结果类型
+     * @return 请求结果
+     * @throws Exception 所有重试都失败，或失败不可重试
+     */
+    public <T> T execute(ServerCall<T> call, CancellationScope scope) throws Exception {
+        List<Node> candidates = candidates();
+        for (int attempt = 0; ; attempt++) {
+            Node node = candidates.get(attempt % candidates.size());
+            long start = System.nanoTime();
+            try {
+                T result = call.call(node.url);
+                node.success(System.nanoTime() - start);
+                return result;
+            } catch (Exception e) {
+                if (!isRetryable(e) || (scope != null && scope.isCancelled())) {
+                    throw e;
+                }
+                node.failure();
+                if (attempt >= retries) {
+                    throw e;
+                }
+                long backoff = backoffMillis(attempt + 1);
+                LOG.warn("请求nacos节点{}失败：{}，{}ms后第{}次重试", node.url, e.getMessage(), backoff, attempt + 1);
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * 异步发送GET请求，失败时换节点重试；开启对冲时慢请求会向另一个节点再发一次
+     *
+     * @param pathAndQuery 请求路径和参数，不含nacos地址
+     * @param maxBodyBytes 响应体字节数上限
+     * @return 响应结果，取消时中止所有正在进行的请求
+     */
+    public CompletableFuture<HttpClientResult> getAsync(String pathAndQuery, long maxBodyBytes) {
+        CompletableFuture<HttpClientResult> result = new CompletableFuture<>();
+        new AsyncAttempt(result, candidates(), 0, pathAndQuery, maxBodyBytes).start();
+        return result;
+    }
+
+    /**
+     * 是否会发送对冲请求
+     *
+     * @return 开启对冲且有多个地址
+     */
+    public boolean isHedging() {
+        return hedgePercentile > 0 && nodes.size() > 1;
+    }
+
+    /**
+     * 健康节点按EWMA从快到慢排在前面，还没有样本的节点优先尝试；隔离中的节点按解除隔离的时间排在后面
+     */
+    private List<Node> candidates() {
+        List<Node> candidates = new ArrayList<>(nodes);
+        // 打乱后再稳定排序，响应时间相同的节点之间分摊请求
+        Collections.shuffle(candidates, ThreadLocalRandom.current());
+        long now = System.nanoTime();
+        candidates.sort((a, b) -> {
+            boolean aHealthy = a.isHealthy(now);
+            boolean bHealthy = b.isHealthy(now);
+            if (aHealthy != bHealthy) {
+                return aHealthy ? -1 : 1;
+            }
+            if (!aHealthy) {
+                return Long.compare(a.isolatedUntil, b.isolatedUntil);
+            }
+            return Double.compare(a.ewmaNanos, b.ewmaNanos);
+        });
+        return candidates;
+    }
+
+    /**
+     * 全抖动退避：在0到基础时间×2^(次数-1)之间随机
+     */
+    private long backoffMillis(int retry) {
+        if (backoffMillis == 0) {
+            return 0;
+        }
+        long max = backoffMillis << Math.min(retry - 1, 10);
+        return ThreadLocalRandom.current().nextLong(max + 1);
+    }
+
+    /**
+     * 对冲延迟：所有节点近期响应时间的分位数
+     */
+    private long hedgeDelayNanos() {
+        List<Long> samples = new ArrayList<>();
+        for (Node node : nodes) {
+            node.copySamples(samples);
+        }
+        if (samples.size() < MIN_HEDGE_SAMPLES) {
+            return DEFAULT_HEDGE_DELAY_NANOS;
+        }
+        Collections.sort(samples);
+        int index = (int) Math.ceil(hedgePercentile / 100.0 * samples.size()) - 1;
+        return samples.get(Math.max(0, Math.min(index, samples.size() - 1)));
+    }
+
+    /**
+     * 连接失败、超时、5xx和429可以换节点重试；请求被中止、超过字节数上限、4xx、解析失败不重试
+     */
+    private static boolean isRetryable(Throwable e) {
+        if (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        if (e instanceof HttpResponseException) {
+            return isRetryable(((HttpResponseException) e).getStatusCode());
+        }
+        if (e instanceof BoundedDigestInputStream.LimitExceededException) {
+            return false;
+        }
+        if (e instanceof InterruptedIOException) {
+            return e instanceof SocketTimeoutException || e instanceof ConnectTimeoutException;
+        }
+        return e instanceof IOException;
+    }
+
+    private static boolean isRetryable(int code) {
+        return code >= HttpStatus.SC_SERVER_ERROR || code == HttpStatus.SC_TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * 请求，参数为节点地址
+     *
+     * @param <T> 结果类型
+     */
+    @FunctionalInterface
+    public interface ServerCall<T> {
+
+        /**
+         * 向指定节点发送请求
+         *
+         * @param serverUrl 节点地址
+         * @return 请求结果
+         * @throws Exception 请求失败
+         */
+        T call(String serverUrl) throws Exception;
+    }
+
+    /**
+     * 一轮异步请求：先发给最优节点，开启对冲时超过对冲延迟再发给下一个节点；本轮都失败后退避进入下一轮
+     */
+    private class AsyncAttempt {
+
+        private final CompletableFuture<HttpClientResult> result;
+
+        private final List<Node> candidates;
+
+        private final int attempt;
+
+        private final String pathAndQuery;
+
+        private final long maxBodyBytes;
+
+        private final List<CompletableFuture<HttpClientResult>> requests = new ArrayList<>();
+
+        private int pending;
+
+        private boolean settled;
+
+        private AsyncAttempt(CompletableFuture<HttpClientResult> result, List<Node> candidates, int attempt,
+                             String pathAndQuery, long maxBodyBytes) {
+            this.result = result;
+            this.candidates = candidates;
+            this.attempt = attempt;
+            this.pathAndQuery = pathAndQuery;
+            this.maxBodyBytes = maxBodyBytes;
+        }
+
+        private void start() {
+            result.whenComplete((r, e) -> cancelAll());
+            send(candidates.get(attempt % candidates.size()));
+            if (isHedging()) {
+                Node hedge = candidates.get((attempt + 1) % candidates.size());
+                SCHEDULER.schedule(() -> {
+                    if (!result.isDone() && !isSettled()) {
+                        LOG.debug("请求nacos节点超过对冲延迟，向{}发送对冲请求：{}", hedge.url, pathAndQuery);
+                        send(hedge);
+                    }
+                }, hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private synchronized boolean isSettled() {
+            return settled;
+        }
+
+        private void send(Node node) {
+            CompletableFuture<HttpClientResult> request;
+            synchronized (this) {
+                if (settled) {
+                    return;
+                }
+                pending++;
+                request = HttpClientUtils.doGetBytesAsync(node.url + pathAndQuery, maxBodyBytes);
+                requests.add(request);
+            }
+            request.whenComplete((response, error) -> onComplete(node, response, error));
+        }
+
+        private void onComplete(Node node, HttpClientResult response, Throwable error) {
+            boolean failed = error != null || isRetryable(response.getCode());
+            if (!failed) {
+                node.success(response.getElapsedNanos());
+                result.complete(response);
+                return;
+            }
+            boolean retryable = error == null || isRetryable(error);
+            if (retryable && !result.isDone()) {
+                node.failure();
+            }
+            synchronized (this) {
+                if (--pending > 0) {
+                    return;
+                }
+                settled = true;
+            }
+            if (result.isDone()) {
+                return;
+            }
+            if (!retryable || attempt >= retries) {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(response);
+                }
+                return;
+            }
+            long backoff = backoffMillis(attempt + 1);
+            LOG.warn("请求nacos节点{}失败：{}，{}ms后第{}次重试", node.url,
+                    error != null ? error.getMessage() : "HTTP Status: " + response.getCode(), backoff, attempt + 1);
+            SCHEDULER.schedule(() -> new AsyncAttempt(result, candidates, attempt + 1, pathAndQuery, maxBodyBytes).start(),
+                    backoff, TimeUnit.MILLISECONDS);
+        }
+
+        private void cancelAll() {
+            List<CompletableFuture<HttpClientResult>> toCancel;
+            synchronized (this) {
+                settled = true;
+                toCancel = new ArrayList<>(requests);
+            }
+            toCancel.forEach(request -> request.cancel(true));
+        }
+    }
+
+    /**
+     * 单个节点的响应时间和健康状态
+     */
+    private static class Node {
+
+        private final String url;
+
+        private final long[] samples = new long[SAMPLE_WINDOW];
+
+        private int sampleCount;
+
+        private int nextSample;
+
+        private volatile double ewmaNanos = -1;
+
+        private volatile long isolatedUntil;
+
+        private int failures;
+
+        private Node(String url) {
+            this.url = url;
+        }
+
+        private synchronized void success(long nanos) {
+            ewmaNanos = ewmaNanos < 0 ? nanos : ALPHA * nanos + (1 - ALPHA) * ewmaNanos;
+            samples[nextSample] = nanos;
+            nextSample = (nextSample + 1) % SAMPLE_WINDOW;
+            sampleCount = Math.min(sampleCount + 1, SAMPLE_WINDOW);
+            failures = 0;
+            isolatedUntil = 0;
+        }
+
+        /**
+         * 隔离时间随连续失败次数翻倍，最长30秒
+         */
+        private synchronized void failure() {
+            failures++;
+            long isolation = Math.min(MAX_ISOLATION_NANOS, MIN_ISOLATION_NANOS << Math.min(failures - 1, 5));
+            isolatedUntil = System.nanoTime() + isolation;
+        }
+
+        private boolean isHealthy(long now) {
+            return isolatedUntil == 0 || now - isolatedUntil >= 0;
+        }
+
+        private synchronized void copySamples(List<Long> target) {
+            for (int i = 0; i < sampleCount; i++) {
+                target.add(samples[i]);
+            }
+        }
+    }
+}
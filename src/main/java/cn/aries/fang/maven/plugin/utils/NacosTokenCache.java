@@ -0,0 +1,205 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import cn.aries.fang.maven.plugin.dto.NacosLoginResp;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Description: nacos accessToken缓存
+ * <p>
+ * 按 serverUrl + username 缓存登录得到的token，有效期取自登录响应的tokenTtl。
+ * 内存缓存在同一次Maven构建的所有模块间共享；可选的磁盘缓存让同一台机器上的多次构建共用token。
+ * token在过期前refreshAhead毫秒即视为失效，重新登录。
+ */
+public class NacosTokenCache {
+    private static final Logger LOG = LoggerFactory.getLogger(NacosTokenCache.class);
+
+    private static final ConcurrentMap<String, CachedToken> TOKENS = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<String, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private NacosTokenCache() {
+    }
+
+    /**
+     * 登录nacos
+     *
+     * @param <E> 登录异常类型
+     */
+    @FunctionalInterface
+    public interface Login<E extends Exception> {
+
+        /**
+         * 登录
+         *
+         * @return 登录响应
+         * @throws E 登录失败
+         */
+        NacosLoginResp login() throws E;
+    }
+
+    /**
+     * 获取token，缓存中没有或即将过期时登录；同一个key同时只会有一次登录
+     *
+     * @param serverUrl    nacos地址
+     * @param username     用户名
+     * @param diskDir      磁盘缓存目录，为null时只使用内存缓存
+     * @param refreshAhead 提前刷新的时间，单位毫秒
+     * @param login        登录方法
+     * @param <E>          登录异常类型
+     * @return token
+     * @throws E 登录失败
+     */
+    public static <E extends Exception> String getToken(String serverUrl, String username, File diskDir,
+                                                        long refreshAhead, Login<E> login) throws E {
+        String key = serverUrl + "|" + username;
+        CachedToken cached = TOKENS.get(key);
+        if (cached != null && cached.isValid(refreshAhead)) {
+            return cached.accessToken;
+        }
+        synchronized (LOCKS.computeIfAbsent(key, k -> new Object())) {
+            cached = TOKENS.get(key);
+            if (cached != null && cached.isValid(refreshAhead)) {
+                return cached.accessToken;
+            }
+            File file = diskFile(diskDir, key);
+            cached = readFromDisk(file);
+            if (cached != null && cached.isValid(refreshAhead)) {
+                LOG.debug("使用磁盘缓存的nacos token：{}", file);
+                TOKENS.put(key, cached);
+                return cached.accessToken;
+            }
+
+            NacosLoginResp resp = login.login();
+            long ttlSeconds = parseTtl(resp.getTokenTtl());
+            if (ttlSeconds > 0) {
+                cached = new CachedToken(resp.getAccessToken(), System.currentTimeMillis() + ttlSeconds * 1000L);
+                TOKENS.put(key, cached);
+                writeToDisk(file, cached);
+            }
+            return resp.getAccessToken();
+        }
+    }
+
+    /**
+     * 使缓存的token失效，同时删除磁盘缓存，避免下次又读到被服务端拒绝的token
+     *
+     * @param serverUrl nacos地址
+     * @param username  用户名
+     * @param diskDir   磁盘缓存目录，为null时只使用内存缓存
+     */
+    public static void invalidate(String serverUrl, String username, File diskDir) {
+        invalidate(serverUrl, username, diskDir, null);
+    }
+
+    /**
+     * 使被服务端拒绝的token失效；缓存中已是重新登录得到的其他token时不处理
+     *
+     * @param serverUrl     nacos地址
+     * @param username      用户名
+     * @param diskDir       磁盘缓存目录，为null时只使用内存缓存
+     * @param rejectedToken 被拒绝的token，为null时无条件失效
+     */
+    public static void invalidate(String serverUrl, String username, File diskDir, String rejectedToken) {
+        String key = serverUrl + "|" + username;
+        synchronized (LOCKS.computeIfAbsent(key, k -> new Object())) {
+            File file = diskFile(diskDir, key);
+            CachedToken cached = TOKENS.get(key);
+            if (cached == null) {
+                cached = readFromDisk(file);
+            }
+            if (rejectedToken != null && cached != null && !rejectedToken.equals(cached.accessToken)) {
+                return;
+            }
+            TOKENS.remove(key);
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file.toPath());
+                } catch (IOException e) {
+                    LOG.warn("删除token缓存失败：{}", file, e);
+                }
+            }
+        }
+    }
+
+    private static File diskFile(File diskDir, String key) {
+        return diskDir == null ? null : new File(diskDir, SecureUtil.sha256(key) + ".json");
+    }
+
+    private static long parseTtl(String tokenTtl) {
+        if (StringUtils.isBlank(tokenTtl)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(tokenTtl.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("无法解析tokenTtl：{}，不缓存token", tokenTtl);
+            return 0;
+        }
+    }
+
+    private static CachedToken readFromDisk(File file) {
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        try {
+            JSONObject json = JSONUtil.parseObj(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            String accessToken = json.getStr("accessToken");
+            Long expireAt = json.getLong("expireAt");
+            if (StringUtils.isEmpty(accessToken) || expireAt == null) {
+                return null;
+            }
+            return new CachedToken(accessToken, expireAt);
+        } catch (Exception e) {
+            LOG.debug("读取token缓存失败：{}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * 文件只对当前用户可读写
+     */
+    private static void writeToDisk(File file, CachedToken token) {
+        if (file == null) {
+            return;
+        }
+        try {
+            JSONObject json = new JSONObject();
+            json.set("accessToken", token.accessToken);
+            json.set("expireAt", token.expireAt);
+            FileWriteUtils.writeAtomically(file, json.toString().getBytes(StandardCharsets.UTF_8), true);
+        } catch (IOException e) {
+            LOG.warn("写入token缓存失败：{}", file, e);
+        }
+    }
+
+    private static class CachedToken {
+
+        private final String accessToken;
+
+        /**
+         * 过期时间戳，单位毫秒
+         */
+        private final long expireAt;
+
+        private CachedToken(String accessToken, long expireAt) {
+            this.accessToken = accessToken;
+            this.expireAt = expireAt;
+        }
+
+        private boolean isValid(long refreshAhead) {
+            return System.currentTimeMillis() < expireAt - refreshAhead;
+        }
+    }
+}
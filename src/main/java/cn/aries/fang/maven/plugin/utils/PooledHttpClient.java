@@ -0,0 +1,301 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import javax.net.ssl.SSLContext;
+
+import cn.aries.fang.maven.plugin.dto.HttpClientConfig;
+import org.apache.hc.client5.http.ConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
+import org.apache.hc.client5.http.socket.PlainConnectionSocketFactory;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
+import org.apache.hc.client5.http.ssl.TrustSelfSignedStrategy;
+import org.apache.hc.core5.http.HeaderElement;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.config.Registry;
+import org.apache.hc.core5.http.config.RegistryBuilder;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.http.message.BasicHeaderElementIterator;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Description: 按配置创建的http连接池客户端
+ * <p>
+ * 所有请求共用同一个连接池和SSLContext，连接和TLS会话都可以复用。
+ * 异步客户端在第一次使用时创建，与同步客户端共用配置和SSLContext，https时可通过ALPN协商http/2多路复用。
+ */
+public class PooledHttpClient implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(PooledHttpClient.class);
+
+    private final HttpClientConfig config;
+
+    private final SSLContext sslContext;
+
+    private final PoolingHttpClientConnectionManager connManager;
+
+    private final CloseableHttpClient httpClient;
+
+    private final RequestConfig requestConfig;
+
+    private volatile CloseableHttpAsyncClient asyncClient;
+
+    /**
+     * 当前线程累计的等待连接时间，单位纳秒
+     */
+    private static final ThreadLocal<long[]> LEASE_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    public PooledHttpClient(HttpClientConfig config) {
+        this.config = config;
+        this.sslContext = createSslContext(config);
+
+        SSLConnectionSocketFactory scsf = sslContext == null ? SSLConnectionSocketFactory.getSocketFactory()
+                : new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE);
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("https", scsf)
+                .register("http", new PlainConnectionSocketFactory())
+                .build();
+
+        connManager = new TimedConnectionManager(socketFactoryRegistry);
+        connManager.setMaxTotal(config.getMaxTotal());
+        connManager.setDefaultMaxPerRoute(config.getMaxPerRoute());
+        connManager.setDefaultSocketConfig(SocketConfig.custom()
+                .setSoTimeout(Timeout.ofMilliseconds(config.getResponseTimeout()))
+                .build());
+        connManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(config.getConnectTimeout()))
+                .setSocketTimeout(Timeout.ofMilliseconds(config.getResponseTimeout()))
+                .build());
+
+        /*
+         * setConnectionRequestTimeout：从连接池获取连接的超时时间
+         * setResponseTimeout：请求获取数据的超时时间(即响应时间)，多少时间内无法返回数据，就直接放弃此次调用。
+         */
+        requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(config.getConnectionRequestTimeout()))
+                .setResponseTimeout(Timeout.ofMilliseconds(config.getResponseTimeout()))
+                .build();
+
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connManager)
+                .setKeepAliveStrategy(keepAliveStrategy(config.getKeepAlive()))
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(config.getIdleEvict()))
+                .build();
+    }
+
+    /**
+     * 信任自签名证书；配置了TLS会话缓存时调整其大小和有效期
+     */
+    private static SSLContext createSslContext(HttpClientConfig config) {
+        try {
+            SSLContext sslContext = SSLContexts.custom().loadTrustMaterial(new TrustSelfSignedStrategy()).build();
+            if (config.getTlsSessionCacheSize() > 0) {
+                sslContext.getClientSessionContext().setSessionCacheSize(config.getTlsSessionCacheSize());
+            }
+            if (config.getTlsSessionTimeout() > 0) {
+                sslContext.getClientSessionContext().setSessionTimeout(config.getTlsSessionTimeout());
+            }
+            return sslContext;
+        } catch (GeneralSecurityException e) {
+            LOG.error("创建SSL连接失败", e);
+            return null;
+        }
+    }
+
+    /**
+     * 优先使用响应头Keep-Alive中的timeout
+     */
+    private static ConnectionKeepAliveStrategy keepAliveStrategy(long defaultKeepAlive) {
+        return (response, context) -> {
+            BasicHeaderElementIterator it = new BasicHeaderElementIterator(
+                    response.headerIterator(HttpHeaders.KEEP_ALIVE));
+            while (it.hasNext()) {
+                HeaderElement he = it.next();
+                String param = he.getName();
+                String value = he.getValue();
+                if (value != null && "timeout".equalsIgnoreCase(param)) {
+                    try {
+                        return TimeValue.ofMilliseconds(Long.parseLong(value) * 1000);
+                    } catch (NumberFormatException ignore) {
+                    }
+                }
+            }
+            return TimeValue.ofMilliseconds(defaultKeepAlive);
+        };
+    }
+
+    /**
+     * 解析异步客户端的http协议版本策略，忽略大小写，未配置时为NEGOTIATE
+     *
+     * @param policy 策略名称
+     * @return http协议版本策略
+     * @throws IllegalArgumentException 不支持的策略
+     */
+    public static HttpVersionPolicy versionPolicyOf(String policy) {
+        if (policy == null || policy.trim().isEmpty()) {
+            return HttpVersionPolicy.NEGOTIATE;
+        }
+        String name = policy.trim().toUpperCase(Locale.ROOT);
+        for (HttpVersionPolicy value : HttpVersionPolicy.values()) {
+            if (value.name().equals(name)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("不支持的httpVersionPolicy：" + policy + "，可选"
+                + Arrays.toString(HttpVersionPolicy.values()));
+    }
+
+    public HttpClientConfig getConfig() {
+        return config;
+    }
+
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    public PoolingHttpClientConnectionManager getConnManager() {
+        return connManager;
+    }
+
+    public CloseableHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    public RequestConfig getRequestConfig() {
+        return requestConfig;
+    }
+
+    /**
+     * 异步客户端，第一次使用时创建并启动
+     *
+     * @return 异步客户端
+     */
+    public CloseableHttpAsyncClient getAsyncClient() {
+        CloseableHttpAsyncClient client = asyncClient;
+        if (client != null) {
+            return client;
+        }
+        synchronized (this) {
+            if (asyncClient == null) {
+                asyncClient = createAsyncClient();
+                asyncClient.start();
+            }
+            return asyncClient;
+        }
+    }
+
+    private CloseableHttpAsyncClient createAsyncClient() {
+        ClientTlsStrategyBuilder tlsStrategy = ClientTlsStrategyBuilder.create();
+        if (sslContext != null) {
+            tlsStrategy.setSslContext(sslContext).setHostnameVerifier(NoopHostnameVerifier.INSTANCE);
+        }
+        return HttpAsyncClients.custom()
+                .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                        .setTlsStrategy(tlsStrategy.build())
+                        .setMaxConnTotal(config.getMaxTotal())
+                        .setMaxConnPerRoute(config.getMaxPerRoute())
+                        .setDefaultConnectionConfig(ConnectionConfig.custom()
+                                .setConnectTimeout(Timeout.ofMilliseconds(config.getConnectTimeout()))
+                                .setSocketTimeout(Timeout.ofMilliseconds(config.getResponseTimeout()))
+                                .build())
+                        .setDefaultTlsConfig(TlsConfig.custom()
+                                .setVersionPolicy(versionPolicyOf(config.getHttpVersionPolicy()))
+                                .build())
+                        .build())
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(Math.max(1, config.getIoThreads()))
+                        .setSoTimeout(Timeout.ofMilliseconds(config.getResponseTimeout()))
+                        .build())
+                .setH2Config(H2Config.custom().setPushEnabled(false).build())
+                .setKeepAliveStrategy(keepAliveStrategy(config.getKeepAlive()))
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(config.getIdleEvict()))
+                .build();
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close(CloseMode.GRACEFUL);
+        CloseableHttpAsyncClient client = asyncClient;
+        if (client != null) {
+            client.close(CloseMode.GRACEFUL);
+        }
+    }
+
+    /**
+     * 清零当前线程累计的等待连接时间
+     */
+    static void resetLeaseNanos() {
+        LEASE_NANOS.get()[0] = 0;
+    }
+
+    /**
+     * 当前线程自上次清零以来等待连接的时间，同步请求开始时清零
+     *
+     * @return 等待时间，单位纳秒
+     */
+    public static long leaseNanos() {
+        return LEASE_NANOS.get()[0];
+    }
+
+    /**
+     * 统计等待连接时间的连接池；同步客户端在发起请求的线程上获取连接，按线程累计
+     */
+    private static class TimedConnectionManager extends PoolingHttpClientConnectionManager {
+
+        private TimedConnectionManager(Registry<ConnectionSocketFactory> socketFactoryRegistry) {
+            super(socketFactoryRegistry);
+        }
+
+        @Override
+        public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+            LeaseRequest leaseRequest = super.lease(id, route, requestTimeout, state);
+            return new LeaseRequest() {
+                @Override
+                public ConnectionEndpoint get(Timeout timeout) throws InterruptedException, ExecutionException, TimeoutException {
+                    long start = System.nanoTime();
+                    try {
+                        return leaseRequest.get(timeout);
+                    } finally {
+                        LEASE_NANOS.get()[0] += System.nanoTime() - start;
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return leaseRequest.cancel();
+                }
+            };
+        }
+    }
+}
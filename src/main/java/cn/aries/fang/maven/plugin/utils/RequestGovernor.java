@@ -0,0 +1,406 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import cn.aries.fang.maven.plugin.dto.GovernorConfig;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Description: 请求限流
+ * <p>
+ * 发请求前依次获取：令牌桶中的令牌(限制速率)、并发许可(限制同时进行的请求数)、可选的跨进程槽位(锁文件)。
+ * 并发数按AIMD调整：返回429/503、读取超时或响应时间明显高于基线时按比例减小，其余成功请求每轮加1。
+ * 获取许可不阻塞调用线程，排队的请求在许可释放后由调度线程继续发出。
+ */
+public class RequestGovernor {
+    private static final Logger LOG = LoggerFactory.getLogger(RequestGovernor.class);
+
+    /**
+     * 短期响应时间EWMA的平滑系数
+     */
+    private static final double ALPHA = 0.2;
+
+    /**
+     * 基线响应时间向较慢样本回升的系数，避免一次极快的响应让基线永久偏低
+     */
+    private static final double BASELINE_DRIFT = 0.01;
+
+    /**
+     * 两次减小并发数的最小间隔，同一批过载的响应只减一次
+     */
+    private static final long MIN_DECREASE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * 跨进程槽位都被占用时重新尝试的间隔，单位毫秒
+     */
+    private static final long SLOT_RETRY_MILLIS = 50;
+
+    /**
+     * 本进程已持有的槽位文件，同一个JVM对同一文件重复加锁会抛出OverlappingFileLockException
+     */
+    private static final Set<String> HELD_SLOTS = ConcurrentHashMap.newKeySet();
+
+    private static final ScheduledExecutorService SCHEDULER = ExecutorUtils.newDaemonScheduler("nacos-governor-");
+
+    private final GovernorConfig config;
+
+    private final File lockDir;
+
+    private final Deque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+
+    private double limit;
+
+    private int inFlight;
+
+    private double tokens;
+
+    private long lastRefillNanos = System.nanoTime();
+
+    private long lastDecreaseNanos;
+
+    private double baselineNanos;
+
+    private double recentNanos;
+
+    /**
+     * @param config 限流配置
+     */
+    public RequestGovernor(GovernorConfig config) {
+        this.config = config;
+        int min = Math.max(1, config.getMinConcurrency());
+        int max = Math.max(min, config.getMaxConcurrency());
+        this.limit = Math.min(max, Math.max(min, config.getInitialConcurrency()));
+        this.tokens = Math.max(1, config.getBurst());
+        this.lockDir = StringUtils.isNotBlank(config.getLockDir()) ? new File(config.getLockDir())
+                : new File(System.getProperty("java.io.tmpdir"), "nacos-maven-plugin/governor");
+    }
+
+    public GovernorConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * 当前的并发上限
+     *
+     * @return 并发上限
+     */
+    public synchronized int currentLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * 获取发送请求的许可，阻塞到获取成功；等待期间登记到取消范围
+     *
+     * @param scope 取消范围，为null时不可取消
+     * @return 许可，请求结束后必须释放
+     * @throws InterruptedIOException 等待时被中断或取消
+     */
+    public Permit acquire(CancellationScope scope) throws InterruptedIOException {
+        CompletableFuture<Permit> future = acquireAsync();
+        Cancellable cancellable = () -> future.cancel(false);
+        if (scope != null) {
+            scope.register(cancellable);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            if (!future.cancel(false)) {
+                future.thenAccept(Permit::release);
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待请求许可时被中断");
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("请求已取消");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            if (scope != null) {
+                scope.unregister(cancellable);
+            }
+        }
+    }
+
+    /**
+     * 异步获取发送请求的许可；取消返回的future会放弃排队
+     *
+     * @return 许可，请求结束后必须释放
+     */
+    public CompletableFuture<Permit> acquireAsync() {
+        CompletableFuture<Permit> future = new CompletableFuture<>();
+        long waitNanos = reserveToken();
+        if (waitNanos > 0) {
+            SCHEDULER.schedule(() -> acquireConcurrency(future), waitNanos, TimeUnit.NANOSECONDS);
+        } else {
+            acquireConcurrency(future);
+        }
+        return future;
+    }
+
+    /**
+     * 从令牌桶预订一个令牌，令牌不足时预支，返回需要等待的时间
+     */
+    private synchronized long reserveToken() {
+        double rate = config.getRatePerSecond();
+        if (rate <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        tokens = Math.min(Math.max(1, config.getBurst()), tokens + (now - lastRefillNanos) * rate / 1e9);
+        lastRefillNanos = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+    }
+
+    private void acquireConcurrency(CompletableFuture<Permit> future) {
+        synchronized (this) {
+            if (future.isDone()) {
+                return;
+            }
+            if (inFlight >= (int) limit) {
+                waiters.add(future);
+                return;
+            }
+            inFlight++;
+        }
+        acquireSlot(future);
+    }
+
+    /**
+     * 已获得并发许可，再获取跨进程槽位；槽位都被占用时稍后重试
+     */
+    private void acquireSlot(CompletableFuture<Permit> future) {
+        Slot slot = null;
+        if (config.getCrossJvmSlots() > 0) {
+            if (future.isDone()) {
+                releaseConcurrency();
+                return;
+            }
+            slot = tryLockSlot();
+            if (slot == null) {
+                long jitter = ThreadLocalRandom.current().nextLong(SLOT_RETRY_MILLIS);
+                SCHEDULER.schedule(() -> acquireSlot(future), SLOT_RETRY_MILLIS + jitter, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        Permit permit = new Permit(slot);
+        if (!future.complete(permit)) {
+            // 等待期间已取消
+            permit.release();
+        }
+    }
+
+    private Slot tryLockSlot() {
+        if (!lockDir.isDirectory() && !lockDir.mkdirs() && !lockDir.isDirectory()) {
+            LOG.warn("创建限流锁文件目录失败：{}，不做跨进程限流", lockDir);
+            return Slot.NONE;
+        }
+        int slots = config.getCrossJvmSlots();
+        int offset = ThreadLocalRandom.current().nextInt(slots);
+        for (int i = 0; i < slots; i++) {
+            File file = new File(lockDir, "slot-" + (offset + i) % slots + ".lock");
+            String key = file.getAbsolutePath();
+            if (!HELD_SLOTS.add(key)) {
+                continue;
+            }
+            FileChannel channel = null;
+            try {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock lock = channel.tryLock();
+                if (lock != null) {
+                    return new Slot(key, channel, lock);
+                }
+            } catch (IOException | OverlappingFileLockException e) {
+                LOG.debug("锁定限流槽位{}失败", file, e);
+            }
+            closeQuietly(channel);
+            HELD_SLOTS.remove(key);
+        }
+        return null;
+    }
+
+    private void releaseConcurrency() {
+        signal(false, 0);
+    }
+
+    /**
+     * 请求结束，按结果调整并发上限，并把空出的许可交给排队的请求
+     */
+    private void signal(boolean overloaded, long latencyNanos) {
+        Deque<CompletableFuture<Permit>> granted = new ArrayDeque<>();
+        synchronized (this) {
+            inFlight--;
+            if (latencyNanos > 0) {
+                overloaded |= observeLatency(latencyNanos);
+            }
+            int min = Math.max(1, config.getMinConcurrency());
+            int max = Math.max(min, config.getMaxConcurrency());
+            long now = System.nanoTime();
+            if (overloaded) {
+                if (now - lastDecreaseNanos > Math.max(MIN_DECREASE_INTERVAL_NANOS, (long) recentNanos)) {
+                    lastDecreaseNanos = now;
+                    double previous = limit;
+                    limit = Math.max(min, limit * config.getDecreaseRatio());
+                    LOG.debug("nacos响应变慢或过载，并发上限{}→{}", (int) previous, (int) limit);
+                }
+            } else if (latencyNanos > 0) {
+                limit = Math.min(max, limit + 1 / limit);
+            }
+            while (inFlight < (int) limit && !waiters.isEmpty()) {
+                CompletableFuture<Permit> waiter = waiters.poll();
+                if (!waiter.isDone()) {
+                    inFlight++;
+                    granted.add(waiter);
+                }
+            }
+        }
+        for (CompletableFuture<Permit> waiter : granted) {
+            SCHEDULER.execute(() -> acquireSlot(waiter));
+        }
+    }
+
+    /**
+     * 记录成功请求的响应时间，返回近期响应时间是否超过基线的容忍倍数
+     */
+    private boolean observeLatency(long latencyNanos) {
+        recentNanos = recentNanos == 0 ? latencyNanos : ALPHA * latencyNanos + (1 - ALPHA) * recentNanos;
+        if (baselineNanos == 0 || latencyNanos < baselineNanos) {
+            baselineNanos = latencyNanos;
+        } else {
+            baselineNanos += BASELINE_DRIFT * (latencyNanos - baselineNanos);
+        }
+        double tolerance = config.getLatencyTolerance();
+        return tolerance > 0 && recentNanos > tolerance * baselineNanos;
+    }
+
+    /**
+     * 状态码是否表示服务端过载
+     *
+     * @param status 状态码
+     * @return 是否过载
+     */
+    public static boolean isOverloaded(int status) {
+        return status == HttpStatus.SC_TOO_MANY_REQUESTS || status == HttpStatus.SC_SERVICE_UNAVAILABLE;
+    }
+
+    /**
+     * 请求异常是否表示服务端过载
+     *
+     * @param e 异常
+     * @return 是否过载
+     */
+    public static boolean isOverloaded(Throwable e) {
+        return e instanceof SocketTimeoutException;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.debug("关闭限流锁文件失败", e);
+            }
+        }
+    }
+
+    /**
+     * 发送请求的许可，只能释放一次
+     */
+    public class Permit {
+
+        private final Slot slot;
+
+        private boolean released;
+
+        private Permit(Slot slot) {
+            this.slot = slot;
+        }
+
+        /**
+         * 请求成功返回
+         *
+         * @param status       状态码
+         * @param latencyNanos 响应时间，单位纳秒
+         */
+        public void release(int status, long latencyNanos) {
+            boolean overloaded = isOverloaded(status);
+            release(overloaded, overloaded ? 0 : latencyNanos);
+        }
+
+        /**
+         * 请求失败
+         *
+         * @param e 异常
+         */
+        public void release(Throwable e) {
+            release(isOverloaded(e), 0);
+        }
+
+        /**
+         * 请求未发出或被取消，不影响并发上限
+         */
+        public void release() {
+            release(false, 0);
+        }
+
+        private void release(boolean overloaded, long latencyNanos) {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            if (slot != null) {
+                slot.release();
+            }
+            signal(overloaded, latencyNanos);
+        }
+    }
+
+    /**
+     * 跨进程槽位，进程退出时操作系统自动释放文件锁
+     */
+    private static class Slot {
+
+        private static final Slot NONE = new Slot(null, null, null);
+
+        private final String key;
+
+        private final FileChannel channel;
+
+        private final FileLock lock;
+
+        private Slot(String key, FileChannel channel, FileLock lock) {
+            this.key = key;
+            this.channel = channel;
+            this.lock = lock;
+        }
+
+        private void release() {
+            if (lock == null) {
+                return;
+            }
+            try {
+                lock.release();
+            } catch (IOException e) {
+                LOG.debug("释放限流槽位失败", e);
+            }
+            closeQuietly(channel);
+            HELD_SLOTS.remove(key);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package cn.aries.fang.maven.plugin;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.aries.fang.maven.plugin.dto.MappingConfig;
+import cn.aries.fang.maven.plugin.stub.StubMojos;
+import cn.aries.fang.maven.plugin.stub.StubNacosServer;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static cn.aries.fang.maven.plugin.stub.StubMojos.get;
+import static cn.aries.fang.maven.plugin.stub.StubMojos.set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Description: nacos-config-check在模拟服务端上的负载测试
+ * <p>
+ * 执行门禁检查，记录耗时、请求数和堆内存峰值，结果追加到 target/nacos-load-test.csv。
+ * 默认按200个dataId的规模运行，只断言请求数；系统属性loadtest为true(mvn -Ploadtest test)时按2000个dataId运行，
+ * 并按预算断言耗时和内存，预算可通过系统属性调整：
+ * loadtest.maxMillis(单次检查的最长耗时，默认60000)、loadtest.maxHeapMegabytes(堆内存峰值，默认512)。
+ */
+public class NacosConfigCheckLoadTest {
+
+    private static final int KEYS_PER_CONFIG = 50;
+
+    private static final int VALUE_BYTES = 32;
+
+    /**
+     * 是否按完整规模运行并断言耗时和内存
+     */
+    private static final boolean LOAD_TEST = Boolean.getBoolean("loadtest");
+
+    private static final int MAX_DATA_IDS = LOAD_TEST ? 2000 : 200;
+
+    private static final long MAX_MILLIS = Long.getLong("loadtest.maxMillis", 60000L);
+
+    private static final long MAX_HEAP_BYTES = Long.getLong("loadtest.maxHeapMegabytes", 512L) * 1024 * 1024;
+
+    private static final File RESULT_FILE = new File("target", "nacos-load-test.csv");
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private StubNacosServer stub;
+
+    private File localFile;
+
+    @Before
+    public void setUp() throws IOException {
+        stub = StubNacosServer.start();
+        String content = StubNacosServer.yaml(KEYS_PER_CONFIG, VALUE_BYTES);
+        for (int i = 0; i < MAX_DATA_IDS; i++) {
+            stub.putConfig("", "DEFAULT_GROUP", dataId(i), content);
+        }
+        localFile = temp.newFile("application.yaml");
+        Files.write(localFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    public void requestsScaleLinearlyWithDataIds() throws Exception {
+        List<LoadResult> results = new ArrayList<>();
+        int[] scales = LOAD_TEST ? new int[]{1, 10, 100, 1000, MAX_DATA_IDS} : new int[]{1, 10, 100, MAX_DATA_IDS};
+        for (int dataIds : scales) {
+            LoadResult result = run("single-" + dataIds, newMojo(dataIds, 16));
+            assertEquals("每个dataId下载一次", dataIds, stub.requests(StubNacosServer.CONFIG));
+            assertTrue("同一服务端只登录一次", stub.requests(StubNacosServer.LOGIN) <= 1);
+            results.add(result);
+        }
+        if (!LOAD_TEST) {
+            return;
+        }
+        LoadResult small = results.get(2);
+        LoadResult large = results.get(results.size() - 1);
+        // 单个配置的耗时不应随配置数增长，预留4倍余量吸收预热和调度的抖动
+        assertTrue("单个配置耗时随配置数增长：" + small + " -> " + large,
+                large.nanosPerConfig() <= small.nanosPerConfig() * 4 + 1_000_000);
+    }
+
+    @Test
+    public void bulkFetchRequestsOnePagePerPageSize() throws Exception {
+        NacosConfigCheckMojo mojo = newMojo(MAX_DATA_IDS, 8);
+        set(mojo, "bulkFetch", true);
+        run("bulk-search-" + MAX_DATA_IDS, mojo);
+        assertEquals(MAX_DATA_IDS / 200, stub.requests(StubNacosServer.SEARCH));
+        assertEquals(0, stub.requests(StubNacosServer.CONFIG));
+    }
+
+    @Test
+    public void bulkFetchFallsBackToExport() throws Exception {
+        stub.setSearchEnabled(false);
+        NacosConfigCheckMojo mojo = newMojo(MAX_DATA_IDS, 8);
+        set(mojo, "bulkFetch", true);
+        run("bulk-export-" + MAX_DATA_IDS, mojo);
+        assertEquals(1, stub.requests(StubNacosServer.SEARCH));
+        assertEquals(1, stub.requests(StubNacosServer.EXPORT));
+        assertEquals(0, stub.requests(StubNacosServer.CONFIG));
+    }
+
+    @Test
+    public void bulkFetchLeavesOversizedConfigsToSingleDownloads() throws Exception {
+        long maxConfigBytes = localFile.length();
+        String oversized = new String(Files.readAllBytes(localFile.toPath()), StandardCharsets.UTF_8) + "extra: 1\n";
+        stub.putConfig("", "DEFAULT_GROUP", dataId(0), oversized);
+        for (boolean search : new boolean[]{true, false}) {
+            stub.setSearchEnabled(search);
+            NacosConfigCheckMojo mojo = newMojo(MAX_DATA_IDS, 8);
+            set(mojo, "bulkFetch", true);
+            set(mojo, "maxConfigBytes", maxConfigBytes);
+            try {
+                run("bulk-oversized-" + MAX_DATA_IDS, mojo);
+                fail("超过上限的配置应检查失败");
+            } catch (MojoExecutionException e) {
+                // 超过上限的配置不在批量结果中，逐个下载时报错
+            }
+            assertEquals(search ? 0 : 1, stub.requests(StubNacosServer.EXPORT));
+            assertEquals(1, stub.requests(StubNacosServer.CONFIG));
+        }
+    }
+
+    @Test
+    public void slowResponsesAreFetchedConcurrently() throws Exception {
+        int dataIds = 200;
+        long latencyMillis = 20;
+        stub.setLatencyMillis(latencyMillis);
+        LoadResult result = run("latency-" + latencyMillis + "ms-" + dataIds, newMojo(dataIds, 16));
+        assertEquals(dataIds, stub.requests(StubNacosServer.CONFIG));
+        if (!LOAD_TEST) {
+            return;
+        }
+        long sequentialMillis = dataIds * latencyMillis;
+        assertTrue("16并发下耗时应明显小于串行耗时" + sequentialMillis + "ms：" + result,
+                result.millis < sequentialMillis / 4);
+    }
+
+    @Test
+    public void injectedErrorsAreRetried() throws Exception {
+        int dataIds = MAX_DATA_IDS / 4;
+        stub.setErrors(503, 20, 1);
+        run("errors-503-" + dataIds, newMojo(dataIds, 16));
+        assertTrue(stub.injectedErrors() > 0);
+        assertEquals(dataIds + stub.injectedErrors(), stub.requests(StubNacosServer.CONFIG));
+    }
+
+    @Test
+    public void incrementalRerunOnlyProbesListener() throws Exception {
+        NacosConfigCheckMojo first = newMojo(MAX_DATA_IDS, 16);
+        enableIncremental(first);
+        run("incremental-first-" + MAX_DATA_IDS, first);
+        assertEquals(MAX_DATA_IDS, stub.requests(StubNacosServer.CONFIG));
+
+        NacosConfigCheckMojo second = newMojo(MAX_DATA_IDS, 16);
+        enableIncremental(second);
+        run("incremental-rerun-" + MAX_DATA_IDS, second);
+        assertEquals(1, stub.requests(StubNacosServer.LISTENER));
+        assertEquals(0, stub.requests(StubNacosServer.CONFIG));
+    }
+
+    @Test
+    public void expiredTokenIsRenewedByLoggingInAgain() throws Exception {
+        stub.setLatencyMillis(50);
+        stub.setTokenValidMillis(200);
+        newMojo(20, 1).execute();
+        // token失效后重新登录并重试被拒绝的下载，门禁照常通过
+        assertTrue(stub.requests(StubNacosServer.LOGIN) > 1);
+        assertTrue(stub.requests(StubNacosServer.CONFIG) > 20);
+    }
+
+    private void enableIncremental(NacosConfigCheckMojo mojo) throws Exception {
+        set(mojo, "incremental", true);
+        set(mojo, "stateFile", new File(temp.getRoot(), "state.json"));
+    }
+
+    /**
+     * 执行一次检查，记录耗时、请求数和堆内存峰值，完整规模时按预算断言
+     */
+    private LoadResult run(String scenario, NacosConfigCheckMojo mojo) throws Exception {
+        stub.resetRequests();
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        int dataIds = ((List<?>) get(mojo, "configs")).size();
+        long start = System.nanoTime();
+        mojo.execute();
+        long nanos = System.nanoTime() - start;
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+        LoadResult result = new LoadResult(scenario, dataIds, nanos, stub.totalRequests(), peakHeap);
+        record(result);
+        if (!LOAD_TEST) {
+            return result;
+        }
+        assertTrue("耗时超出预算" + MAX_MILLIS + "ms：" + result, result.millis <= MAX_MILLIS);
+        assertTrue("堆内存峰值超出预算" + (MAX_HEAP_BYTES >> 20) + "MB：" + result, peakHeap <= MAX_HEAP_BYTES);
+        return result;
+    }
+
+    private static void record(LoadResult result) throws IOException {
+        boolean header = !RESULT_FILE.isFile();
+        RESULT_FILE.getParentFile().mkdirs();
+        try (PrintWriter out = new PrintWriter(new FileWriter(RESULT_FILE, true))) {
+            if (header) {
+                out.println("scenario,dataIds,millis,requests,peakHeapMegabytes");
+            }
+            out.println(result.scenario + "," + result.dataIds + "," + result.millis + "," + result.requests + ","
+                    + (result.peakHeapBytes >> 20));
+        }
+    }
+
+    /**
+     * 按Maven注入参数的方式创建插件，未列出的参数与@Parameter的默认值一致
+     */
+    private NacosConfigCheckMojo newMojo(int dataIds, int parallelism) throws Exception {
+        NacosConfigCheckMojo mojo = new NacosConfigCheckMojo();
+        mojo.setLog(new QuietLog());
+        List<MappingConfig> configs = new ArrayList<>(dataIds);
+        for (int i = 0; i < dataIds; i++) {
+            configs.add(StubMojos.config(dataId(i), localFile));
+        }
+        StubMojos.connect(mojo, stub, configs, parallelism);
+        set(mojo, "sharedCache", false);
+        set(mojo, "clientCacheValidate", true);
+        set(mojo, "configCacheTtlSeconds", 60L);
+        set(mojo, "configCacheMaxMegabytes", 64L);
+        set(mojo, "bulkFetchPageSize", 200);
+        set(mojo, "report", false);
+        set(mojo, "projectArtifactId", "load-test");
+        return mojo;
+    }
+
+    private static String dataId(int i) {
+        return "app-" + i + ".yaml";
+    }
+
+    /**
+     * 只输出警告和错误，避免上千个配置的检查日志淹没测试输出
+     */
+    private static class QuietLog extends SystemStreamLog {
+
+        @Override
+        public boolean isInfoEnabled() {
+            return false;
+        }
+
+        @Override
+        public void info(CharSequence content) {
+        }
+
+        @Override
+        public void info(CharSequence content, Throwable error) {
+        }
+
+        @Override
+        public void info(Throwable error) {
+        }
+    }
+
+    private static class LoadResult {
+
+        private final String scenario;
+
+        private final int dataIds;
+
+        private final long millis;
+
+        private final long nanos;
+
+        private final int requests;
+
+        private final long peakHeapBytes;
+
+        private LoadResult(String scenario, int dataIds, long nanos, int requests, long peakHeapBytes) {
+            this.scenario = scenario;
+            this.dataIds = dataIds;
+            this.nanos = nanos;
+            this.millis = nanos / 1_000_000;
+            this.requests = requests;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+
+        private long nanosPerConfig() {
+            return nanos / dataIds;
+        }
+
+        @Override
+        public String toString() {
+            return scenario + "：dataIds=" + dataIds + "，耗时=" + millis + "ms，请求数=" + requests
+                    + "，堆内存峰值=" + (peakHeapBytes >> 20) + "MB";
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package cn.aries.fang.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import cn.aries.fang.maven.plugin.stub.RecordingLog;
+import cn.aries.fang.maven.plugin.stub.StubMojos;
+import cn.aries.fang.maven.plugin.stub.StubNacosServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Description: nacos-config-publish在模拟服务端上的测试
+ */
+public class NacosConfigPublishMojoTest {
+
+    private static final String GROUP = "DEFAULT_GROUP";
+
+    private static final String CONTENT = "a: 1\nb: 2\n";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private StubNacosServer stub;
+
+    private File localFile;
+
+    @Before
+    public void setUp() throws IOException {
+        stub = StubNacosServer.start();
+        stub.putConfig("", GROUP, "same.yaml", CONTENT);
+        stub.putConfig("", GROUP, "changed.yaml", "a: 0\n");
+        localFile = temp.newFile("application.yaml");
+        Files.write(localFile.toPath(), CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    public void unchangedConfigIsSkipped() throws Exception {
+        newMojo("same.yaml").execute();
+        assertEquals(1, stub.requests(StubNacosServer.LISTENER));
+        assertEquals(0, stub.requests(StubNacosServer.PUBLISH));
+    }
+
+    @Test
+    public void changedAndMissingConfigsArePublished() throws Exception {
+        newMojo("same.yaml", "changed.yaml", "missing.yaml").execute();
+        assertEquals(2, stub.requests(StubNacosServer.PUBLISH));
+        assertEquals(0, stub.requests(StubNacosServer.CONFIG));
+        assertEquals(CONTENT, stub.getConfig("", GROUP, "changed.yaml"));
+        assertEquals(CONTENT, stub.getConfig("", GROUP, "missing.yaml"));
+    }
+
+    @Test
+    public void listenerFailureFallsBackToDownloads() throws Exception {
+        stub.setListenerEnabled(false);
+        newMojo("same.yaml", "changed.yaml", "missing.yaml").execute();
+        // 逐个下载比对MD5，远程不存在的配置(404)同样发布
+        assertEquals(3, stub.requests(StubNacosServer.CONFIG));
+        assertEquals(2, stub.requests(StubNacosServer.PUBLISH));
+        assertEquals(CONTENT, stub.getConfig("", GROUP, "missing.yaml"));
+    }
+
+    @Test
+    public void dryRunPublishesNothing() throws Exception {
+        NacosConfigPublishMojo mojo = newMojo("changed.yaml", "missing.yaml");
+        StubMojos.set(mojo, "dryRun", true);
+        mojo.execute();
+        assertEquals(0, stub.requests(StubNacosServer.PUBLISH));
+        assertNull(stub.getConfig("", GROUP, "missing.yaml"));
+    }
+
+    private NacosConfigPublishMojo newMojo(String... dataIds) throws Exception {
+        NacosConfigPublishMojo mojo = new NacosConfigPublishMojo();
+        mojo.setLog(new RecordingLog());
+        StubMojos.connect(mojo, stub, Arrays.stream(dataIds)
+                .map(dataId -> StubMojos.config(dataId, localFile))
+                .collect(Collectors.toList()), 2);
+        return mojo;
+    }
+}
@@ -0,0 +1,113 @@
+package cn.aries.fang.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import cn.aries.fang.maven.plugin.stub.RecordingLog;
+import cn.aries.fang.maven.plugin.stub.StubMojos;
+import cn.aries.fang.maven.plugin.stub.StubNacosServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static cn.aries.fang.maven.plugin.stub.StubMojos.set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Description: nacos-config-watch在模拟服务端上的测试
+ */
+public class NacosConfigWatchMojoTest {
+
+    private static final String CONTENT = "a: 1\nb: 2\n";
+
+    private static final long WAIT_MILLIS = 10000;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final RecordingLog log = new RecordingLog();
+
+    private StubNacosServer stub;
+
+    private File localFile;
+
+    @Before
+    public void setUp() throws IOException {
+        stub = StubNacosServer.start();
+        stub.putConfig("", "DEFAULT_GROUP", "app-a.yaml", CONTENT);
+        stub.putConfig("", "DEFAULT_GROUP", "app-b.yaml", CONTENT);
+        localFile = temp.newFile("application.yaml");
+        write(localFile, CONTENT);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        stub.close();
+    }
+
+    @Test
+    public void remoteChangesAreCheckedPerConfig() throws Exception {
+        Future<?> watching = executor.submit(() -> {
+            newMojo(4).execute();
+            return null;
+        });
+        assertTrue(log.await("开始监听", WAIT_MILLIS));
+        assertEquals(2, log.count("检查通过"));
+
+        // 同一批变化中一个配置已被删除，不影响另一个配置的重新比对
+        stub.removeConfig("", "DEFAULT_GROUP", "app-a.yaml");
+        stub.putConfig("", "DEFAULT_GROUP", "app-b.yaml", CONTENT + "c: 3\n");
+        assertTrue(log.await("app-b.yaml以下key缺失：\nc", WAIT_MILLIS));
+        assertTrue(log.await("dataId:app-a.yaml，HTTP Status: 404", WAIT_MILLIS));
+
+        watching.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        // 已删除的配置记录为空MD5，长轮询不再反复通知、重复下载
+        assertEquals(4, stub.requests(StubNacosServer.CONFIG));
+        assertEquals(1, stub.requests(StubNacosServer.LOGIN));
+    }
+
+    @Test
+    public void localChangesAreRecheckedWithoutDownloading() throws Exception {
+        Future<?> watching = executor.submit(() -> {
+            newMojo(3).execute();
+            return null;
+        });
+        assertTrue(log.await("开始监听", WAIT_MILLIS));
+
+        write(localFile, "a: 1\n");
+        assertTrue(log.await("本地文件已变化", WAIT_MILLIS));
+        assertTrue(log.await("app-a.yaml以下key缺失：\nb", WAIT_MILLIS));
+        assertTrue(log.await("app-b.yaml以下key缺失：\nb", WAIT_MILLIS));
+
+        watching.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        // 与上次下载的远程配置比对，不重新下载
+        assertEquals(2, stub.requests(StubNacosServer.CONFIG));
+    }
+
+    private NacosConfigWatchMojo newMojo(long durationSeconds) throws Exception {
+        NacosConfigWatchMojo mojo = new NacosConfigWatchMojo();
+        mojo.setLog(log);
+        StubMojos.connect(mojo, stub, Arrays.asList(StubMojos.config("app-a.yaml", localFile),
+                StubMojos.config("app-b.yaml", localFile)), 2);
+        set(mojo, "pollTimeoutMillis", 1000L);
+        set(mojo, "durationSeconds", durationSeconds);
+        return mojo;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
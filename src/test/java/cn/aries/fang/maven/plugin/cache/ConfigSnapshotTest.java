@@ -0,0 +1,67 @@
+package cn.aries.fang.maven.plugin.cache;
+
+import java.io.File;
+import java.io.IOException;
+
+import cn.aries.fang.maven.plugin.diff.ValueType;
+import cn.aries.fang.maven.plugin.diff.YamlKeyExtractor;
+import cn.aries.fang.maven.plugin.dto.RemoteConfig;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Description: 配置快照写入与查找的测试
+ */
+public class ConfigSnapshotTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void sameNamespaceOnDifferentEnvironments() throws IOException {
+        ConfigSnapshot.Writer writer = new ConfigSnapshot.Writer();
+        writer.put("prod-a", "prod", "DEFAULT_GROUP", "app.yaml", remote("md5-a", "a: 1\n"));
+        writer.put("prod-b", "prod", "DEFAULT_GROUP", "app.yaml", remote("md5-b", "b: 1\n"));
+        File file = temp.newFile();
+
+        assertEquals(2, writer.write(file));
+
+        ConfigSnapshot snapshot = ConfigSnapshot.open(file);
+        assertEquals("md5-a", snapshot.get("prod-a", "prod", "DEFAULT_GROUP", "app.yaml").getMd5());
+        assertEquals("[a]", snapshot.get("prod-a", "prod", "DEFAULT_GROUP", "app.yaml").getKeys().leafKeys().toString());
+        assertEquals("md5-b", snapshot.get("prod-b", "prod", "DEFAULT_GROUP", "app.yaml").getMd5());
+        assertNull(snapshot.get("prod-c", "prod", "DEFAULT_GROUP", "app.yaml"));
+    }
+
+    @Test
+    public void nullAndEmptyTenantAreTheSame() throws IOException {
+        ConfigSnapshot.Writer writer = new ConfigSnapshot.Writer();
+        writer.put("default", null, "DEFAULT_GROUP", "app.yaml", remote("md5", "a: 1\n"));
+        File file = temp.newFile();
+        writer.write(file);
+
+        assertEquals("md5", ConfigSnapshot.open(file).get("default", "", "DEFAULT_GROUP", "app.yaml").getMd5());
+    }
+
+    @Test
+    public void valueHashesAreNotWritten() throws IOException {
+        ConfigSnapshot.Writer writer = new ConfigSnapshot.Writer();
+        writer.put("default", "", "DEFAULT_GROUP", "app.yaml", new RemoteConfig("md5", YamlKeyExtractor.extract("password: secret\n", true)));
+        File file = temp.newFile();
+        writer.write(file);
+
+        RemoteConfig remote = ConfigSnapshot.open(file).get("default", "", "DEFAULT_GROUP", "app.yaml");
+        assertEquals(ValueType.STRING, remote.getKeys().getValue("password").getType());
+        assertFalse(remote.getKeys().getValue("password").hasHash());
+        assertFalse(remote.getKeys().hasValueHashes());
+    }
+
+    private static RemoteConfig remote(String md5, String content) {
+        return new RemoteConfig(md5, YamlKeyExtractor.extract(content));
+    }
+}
@@ -0,0 +1,87 @@
+package cn.aries.fang.maven.plugin.cache;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.aries.fang.maven.plugin.diff.YamlKeyExtractor;
+import cn.aries.fang.maven.plugin.dto.ConfigKey;
+import cn.aries.fang.maven.plugin.dto.RemoteConfig;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Description: 磁盘缓存按配置加锁下载的测试
+ */
+public class DiskConfigCacheTest {
+
+    private static final ConfigKey SLOW = new ConfigKey("http://nacos:8848", "dev", "DEFAULT_GROUP", "slow.yaml");
+
+    private static final ConfigKey FAST = new ConfigKey("http://nacos:8848", "dev", "DEFAULT_GROUP", "fast.yaml");
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void slowDownloadDoesNotBlockOtherConfigs() throws Exception {
+        assertNotEquals(Math.floorMod(SLOW.hashCode(), 1 << 16), Math.floorMod(FAST.hashCode(), 1 << 16));
+        DiskConfigCache cache = new DiskConfigCache(temp.getRoot(), TimeUnit.MINUTES.toMillis(1), 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<RemoteConfig> slow = executor.submit(() -> cache.get(SLOW, () -> {
+            started.countDown();
+            release.await();
+            return remote("a: 1\n");
+        }));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        // 另一个配置在慢下载进行中直接加载，不等待
+        RemoteConfig fast = remote("b: 2\n");
+        assertSame(fast, executor.submit(() -> cache.get(FAST, () -> fast)).get(1, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertEquals(1, slow.get(1, TimeUnit.SECONDS).getKeys().getLeafCount());
+    }
+
+    @Test
+    public void sameConfigIsLoadedOnce() throws Exception {
+        DiskConfigCache cache = new DiskConfigCache(temp.getRoot(), TimeUnit.MINUTES.toMillis(1), 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        RemoteConfigCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            release.await();
+            return remote("a: 1\n");
+        };
+        Future<RemoteConfig> first = executor.submit(() -> cache.get(SLOW, loader));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        Future<RemoteConfig> second = executor.submit(() -> cache.get(SLOW, loader));
+
+        release.countDown();
+        assertEquals(first.get(1, TimeUnit.SECONDS).getMd5(), second.get(1, TimeUnit.SECONDS).getMd5());
+        assertEquals(1, loads.get());
+    }
+
+    private static RemoteConfig remote(String content) {
+        return new RemoteConfig("md5-" + content.hashCode(), YamlKeyExtractor.extract(content));
+    }
+}
@@ -0,0 +1,140 @@
+package cn.aries.fang.maven.plugin.cache;
+
+import java.util.Date;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.aries.fang.maven.plugin.diff.YamlKeyExtractor;
+import cn.aries.fang.maven.plugin.dto.ConfigKey;
+import cn.aries.fang.maven.plugin.dto.RemoteConfig;
+import cn.aries.fang.maven.plugin.utils.CancellationScope;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Description: 模块间共享加载时一个模块取消不影响其他模块的测试
+ */
+public class RemoteConfigCacheTest {
+
+    private static final ConfigKey KEY = new ConfigKey("http://nacos:8848", "dev", "DEFAULT_GROUP", "app.yaml");
+
+    private final RemoteConfigCache cache = RemoteConfigCache.forSession(new Date(System.nanoTime()));
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void asyncWaiterCancelDoesNotAbortOthers() throws Exception {
+        CompletableFuture<RemoteConfig> loading = new CompletableFuture<>();
+        CompletableFuture<RemoteConfig> first = cache.getAsync(KEY, scope -> loading);
+        CompletableFuture<RemoteConfig> second = cache.getAsync(KEY, scope -> {
+            throw new AssertionError("不应重复加载");
+        });
+
+        assertTrue(first.cancel(true));
+        assertFalse(loading.isCancelled());
+
+        RemoteConfig remote = remote();
+        loading.complete(remote);
+        assertSame(remote, second.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void asyncLoadCancelledWhenAllWaitersCancel() {
+        CompletableFuture<RemoteConfig> loading = new CompletableFuture<>();
+        CompletableFuture<RemoteConfig> first = cache.getAsync(KEY, scope -> loading);
+        CompletableFuture<RemoteConfig> second = cache.getAsync(KEY, scope -> loading);
+
+        first.cancel(true);
+        second.cancel(true);
+
+        assertTrue(loading.isCancelled());
+        assertFalse(cache.contains(KEY));
+    }
+
+    @Test
+    public void syncWaiterCancelDoesNotAbortOthers() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        CancellationScope[] shared = new CancellationScope[1];
+        RemoteConfig remote = remote();
+        RemoteConfigCache.SharedLoader loader = scope -> {
+            loads.incrementAndGet();
+            shared[0] = scope;
+            started.countDown();
+            release.await();
+            return remote;
+        };
+
+        CancellationScope firstScope = new CancellationScope();
+        Future<RemoteConfig> first = executor.submit(() -> cache.get(KEY, firstScope, loader));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        // 第二个模块已快速失败：只结束自己的等待，不中止进行中的加载
+        CancellationScope secondScope = new CancellationScope();
+        secondScope.cancel();
+        Future<RemoteConfig> second = executor.submit(() -> cache.get(KEY, secondScope, loader));
+        try {
+            second.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof CancellationException);
+        }
+        assertFalse(shared[0].isCancelled());
+
+        release.countDown();
+        assertSame(remote, first.get(1, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void syncLoadCancelledWhenAllWaitersCancel() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CancellationScope[] shared = new CancellationScope[1];
+        CancellationScope caller = new CancellationScope();
+        Future<RemoteConfig> first = executor.submit(() -> cache.get(KEY, caller, scope -> {
+            shared[0] = scope;
+            CountDownLatch aborted = new CountDownLatch(1);
+            scope.register(() -> {
+                aborted.countDown();
+                return true;
+            });
+            started.countDown();
+            assertTrue(aborted.await(1, TimeUnit.SECONDS));
+            throw new IllegalStateException("请求已中止");
+        }));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        caller.cancel();
+
+        try {
+            first.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof CancellationException);
+        }
+        assertTrue(shared[0].isCancelled());
+        assertFalse(cache.contains(KEY));
+    }
+
+    private static RemoteConfig remote() {
+        return new RemoteConfig("md5", YamlKeyExtractor.extract("a: 1\n"));
+    }
+}
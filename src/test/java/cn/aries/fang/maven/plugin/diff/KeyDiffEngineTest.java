@@ -0,0 +1,68 @@
+package cn.aries.fang.maven.plugin.diff;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Description: 值比对的测试
+ */
+public class KeyDiffEngineTest {
+
+    @Test
+    public void samePlaceholderIsNotReported() {
+        assertTrue(valueChanges("password: ${DB_PASSWORD}\n", "password: ${DB_PASSWORD}\n").isEmpty());
+    }
+
+    @Test
+    public void localPlaceholderIsReported() {
+        List<KeyDiffResult.ValueChange> changes = valueChanges("password: secret\n", "password: ${DB_PASSWORD}\n");
+        assertEquals(1, changes.size());
+        assertEquals(KeyDiffResult.ValueChange.Kind.PLACEHOLDER, changes.get(0).getKind());
+
+        changes = valueChanges("password: ${DB_PASSWORD}\n", "password: ${PASSWORD}\n");
+        assertEquals(KeyDiffResult.ValueChange.Kind.PLACEHOLDER, changes.get(0).getKind());
+    }
+
+    @Test
+    public void remotePlaceholderWithLocalValueIsChanged() {
+        List<KeyDiffResult.ValueChange> changes = valueChanges("port: ${PORT}\n", "port: 8080\n");
+        assertEquals(1, changes.size());
+        assertEquals(KeyDiffResult.ValueChange.Kind.CHANGED, changes.get(0).getKind());
+    }
+
+    @Test
+    public void typeMismatchAndChange() {
+        List<KeyDiffResult.ValueChange> changes = valueChanges("a: 1\nb: x\nc: [1, 2]\n", "a: '1'\nb: y\nc: [1, 2]\n");
+        assertEquals(2, changes.size());
+        assertEquals(KeyDiffResult.ValueChange.Kind.TYPE_MISMATCH, changes.get(0).getKind());
+        assertEquals(KeyDiffResult.ValueChange.Kind.CHANGED, changes.get(1).getKind());
+    }
+
+    @Test
+    public void valuesAreNotHashedUnlessRequested() {
+        KeyIndex keys = YamlKeyExtractor.extract("password: secret\nhosts: [a, b]\n");
+        assertFalse(keys.hasValueHashes());
+        assertFalse(keys.getValue("password").hasHash());
+        assertFalse(keys.getValue("hosts").hasHash());
+        assertTrue(YamlKeyExtractor.extract("password: secret\n", true).getValue("password").hasHash());
+    }
+
+    @Test
+    public void withoutHashesOnlyTypesAreCompared() {
+        KeyIndex remote = YamlKeyExtractor.extract("a: x\nb: 1\n");
+        KeyIndex local = YamlKeyExtractor.extract("a: y\nb: '1'\n", true);
+        List<KeyDiffResult.ValueChange> changes = KeyDiffEngine.diff(remote, local, true).getValueChanges();
+        assertEquals(1, changes.size());
+        assertEquals("b", changes.get(0).getPath());
+        assertEquals(KeyDiffResult.ValueChange.Kind.TYPE_MISMATCH, changes.get(0).getKind());
+    }
+
+    private static List<KeyDiffResult.ValueChange> valueChanges(String remote, String local) {
+        return KeyDiffEngine.diff(YamlKeyExtractor.extract(remote, true), YamlKeyExtractor.extract(local, true), true).getValueChanges();
+    }
+}
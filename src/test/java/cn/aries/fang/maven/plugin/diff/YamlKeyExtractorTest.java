@@ -0,0 +1,110 @@
+package cn.aries.fang.maven.plugin.diff;
+
+import java.util.*;
+
+import org.junit.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Description: 事件流提取的key与yaml.load后展开Map得到的key对比
+ */
+public class YamlKeyExtractorTest {
+
+    @Test
+    public void plainMappingsAndLists() {
+        assertSameKeys("spring:\n  datasource:\n    url: jdbc:mysql://db\n    password: ${DB_PASSWORD}\n"
+                + "  profiles: [dev, test]\nserver:\n  port: 8080\nempty: {}\nnothing:\n");
+    }
+
+    @Test
+    public void anchorOnListItem() {
+        assertSameKeys("a:\n  - &i {x: 1}\nb: *i\n");
+    }
+
+    @Test
+    public void anchorOnNestedListItem() {
+        assertSameKeys("a:\n  - - &i\n      x: 1\n      y: {z: 2}\n  - b\nb: *i\nc:\n  <<: *i\n  w: 3\n");
+    }
+
+    @Test
+    public void anchorOnMergeValue() {
+        assertSameKeys("child:\n  <<: &b {x: 1}\nother: *b\n");
+    }
+
+    @Test
+    public void anchorOnMergeSequenceItem() {
+        assertSameKeys("base: &a {x: 1}\nchild:\n  <<: [*a, &b {y: 2}]\nother: *b\n");
+    }
+
+    @Test
+    public void mergeKeepsExplicitKeys() {
+        assertSameKeys("base: &a {x: 1, y: {z: 1}}\nchild:\n  y: 2\n  <<: *a\nother:\n  <<: *a\n  y: 3\n");
+    }
+
+    @Test
+    public void inlineMergeOverriddenLater() {
+        assertSameKeys("child:\n  <<: {x: 1, y: {z: 1}}\n  y: 2\nlist:\n  - &i\n    <<: {y: {z: 1}}\n    y: 2\nother: *i\n");
+    }
+
+    @Test
+    public void anchorContainingMerge() {
+        assertSameKeys("base: &a {x: 1}\nlist:\n  - &b\n    <<: *a\n    y: 2\nother:\n  <<: *b\n");
+    }
+
+    @Test
+    public void aliasOfListAndScalar() {
+        assertSameKeys("hosts: &h [a, b]\nport: &p 8080\ncopy:\n  hosts: *h\n  port: *p\n"
+                + "items:\n  - &l [1, 2]\nlist: *l\n");
+    }
+
+    @Test
+    public void rootSequenceAnchors() {
+        assertSameKeys("- &i {x: 1}\n- *i\n");
+    }
+
+    @Test
+    public void complexKeys() {
+        assertSameKeys("? [a, b]\n: v\n? {k: v}\n: {x: 1}\nm:\n  ? [c, [d]]\n  : w\n");
+    }
+
+    @Test
+    public void aliasAsKey() {
+        assertSameKeys("name: &n app\nkeys:\n  *n : 1\n");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void undefinedAlias() {
+        YamlKeyExtractor.extract("a: *missing\n");
+    }
+
+    private static void assertSameKeys(String content) {
+        Set<String> expected = new TreeSet<>(loadKeys(content));
+        Set<String> actual = new TreeSet<>(YamlKeyExtractor.extract(content).leafKeys());
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * 提取器替换之前的实现：yaml.load后递归展开Map，非Map的值为叶子
+     */
+    private static List<String> loadKeys(String content) {
+        Object root = new Yaml().load(content);
+        List<String> keys = new ArrayList<>();
+        if (root instanceof Map) {
+            flatten((Map<?, ?>) root, keys, "");
+        }
+        return keys;
+    }
+
+    private static void flatten(Map<?, ?> map, List<String> keys, String parentKey) {
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            String currentKey = parentKey.isEmpty() ? String.valueOf(entry.getKey()) : parentKey + "." + entry.getKey();
+            if (entry.getValue() instanceof Map) {
+                flatten((Map<?, ?>) entry.getValue(), keys, currentKey);
+            } else {
+                keys.add(currentKey);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package cn.aries.fang.maven.plugin.report;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Description: Prometheus指标的序列不重复的测试
+ */
+public class CheckReportTest {
+
+    @Test
+    public void sameDataIdWithTwoLocalFilesHasDistinctSeries() {
+        CheckReport report = new CheckReport("demo");
+        EnvironmentMetrics environment = report.addEnvironment("dev", "http://nacos:8848", "dev");
+        environment.addConfig("app.yaml", "DEFAULT_GROUP", "module-a/app.yaml").setStatus(CheckReport.STATUS_PASSED);
+        environment.addConfig("app.yaml", "DEFAULT_GROUP", "module-b/app.yaml").setStatus(CheckReport.STATUS_FAILED);
+        report.finish(CheckReport.STATUS_FAILED);
+
+        Set<String> series = new HashSet<>();
+        for (String line : report.toPrometheus().split("\n")) {
+            if (!line.startsWith("#")) {
+                String name = line.substring(0, line.lastIndexOf(' '));
+                assertTrue("重复的序列：" + name, series.add(name));
+            }
+        }
+        assertTrue(report.toPrometheus().contains("config_path=\"module-b/app.yaml\""));
+    }
+}
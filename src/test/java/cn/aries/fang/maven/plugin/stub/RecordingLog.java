@@ -0,0 +1,86 @@
+package cn.aries.fang.maven.plugin.stub;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * Description: 记录mojo输出的日志，测试按内容断言；info不输出到控制台
+ */
+public class RecordingLog extends SystemStreamLog {
+
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+
+    @Override
+    public boolean isInfoEnabled() {
+        return true;
+    }
+
+    @Override
+    public void info(CharSequence content) {
+        messages.add(String.valueOf(content));
+    }
+
+    @Override
+    public void info(CharSequence content, Throwable error) {
+        messages.add(String.valueOf(content));
+    }
+
+    @Override
+    public void warn(CharSequence content) {
+        messages.add(String.valueOf(content));
+        super.warn(content);
+    }
+
+    @Override
+    public void warn(CharSequence content, Throwable error) {
+        messages.add(String.valueOf(content));
+        super.warn(content, error);
+    }
+
+    @Override
+    public void error(CharSequence content) {
+        messages.add(String.valueOf(content));
+        super.error(content);
+    }
+
+    @Override
+    public void error(CharSequence content, Throwable error) {
+        messages.add(String.valueOf(content));
+        super.error(content, error);
+    }
+
+    /**
+     * 包含该内容的日志条数
+     */
+    public int count(String fragment) {
+        int count = 0;
+        for (String message : messages) {
+            if (message.contains(fragment)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 等待包含该内容的日志出现
+     *
+     * @param fragment      日志内容
+     * @param timeoutMillis 最长等待时间，单位毫秒
+     * @return 是否已出现
+     * @throws InterruptedException 等待被中断
+     */
+    public boolean await(String fragment, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (count(fragment) == 0) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+}
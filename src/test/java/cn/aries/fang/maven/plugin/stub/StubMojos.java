@@ -0,0 +1,83 @@
+package cn.aries.fang.maven.plugin.stub;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.List;
+
+import cn.aries.fang.maven.plugin.AbstractNacosMojo;
+import cn.aries.fang.maven.plugin.dto.HttpClientConfig;
+import cn.aries.fang.maven.plugin.dto.MappingConfig;
+import cn.aries.fang.maven.plugin.utils.JasyptUtils;
+
+/**
+ * Description: 连接模拟服务端的mojo，按Maven注入参数的方式通过反射设置字段
+ */
+public final class StubMojos {
+
+    public static final String JASYPT_PASSWORD = "4df98cad061444e6adb3a703876ec01b";
+
+    private StubMojos() {
+    }
+
+    /**
+     * 设置各个goal共用的连接、登录和重试参数
+     *
+     * @param mojo        mojo
+     * @param stub        模拟服务端
+     * @param configs     配置列表
+     * @param parallelism 并发数
+     * @param <T>         mojo类型
+     * @return mojo
+     * @throws Exception 设置字段失败
+     */
+    public static <T extends AbstractNacosMojo> T connect(T mojo, StubNacosServer stub, List<MappingConfig> configs,
+                                                          int parallelism) throws Exception {
+        HttpClientConfig httpClient = new HttpClientConfig();
+        httpClient.setMaxPerRoute(Math.max(httpClient.getMaxPerRoute(), parallelism));
+        set(mojo, "encryptPassword", JASYPT_PASSWORD);
+        set(mojo, "serverUrl", stub.getServerUrl());
+        set(mojo, "username", "nacos");
+        set(mojo, "password", JasyptUtils.encrypt(JASYPT_PASSWORD, "nacos"));
+        set(mojo, "namespace", "");
+        set(mojo, "configs", configs);
+        set(mojo, "parallelism", parallelism);
+        set(mojo, "tokenRefreshAheadSeconds", 300L);
+        set(mojo, "httpClient", httpClient);
+        set(mojo, "retries", 2);
+        set(mojo, "retryBackoffMillis", 20L);
+        set(mojo, "maxConfigBytes", 10485760L);
+        set(mojo, "projectArtifactId", "stub-test");
+        return mojo;
+    }
+
+    /**
+     * 默认分组的配置
+     */
+    public static MappingConfig config(String dataId, File localFile) {
+        MappingConfig config = new MappingConfig();
+        config.setDataId(dataId);
+        config.setConfigPath(localFile.getPath());
+        return config;
+    }
+
+    public static void set(Object target, String name, Object value) throws Exception {
+        field(target, name).set(target, value);
+    }
+
+    public static Object get(Object target, String name) throws Exception {
+        return field(target, name).get(target);
+    }
+
+    private static Field field(Object target, String name) throws NoSuchFieldException {
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e) {
+                // 继续查找父类
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+}
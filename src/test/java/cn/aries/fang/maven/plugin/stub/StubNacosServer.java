@@ -0,0 +1,516 @@
+package cn.aries.fang.maven.plugin.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Description: 进程内的nacos模拟服务端
+ * <p>
+ * 实现插件用到的登录、单个配置下载、发布、配置查询(search=accurate)、导出(export=true)和监听接口，
+ * 可以注入响应延迟、按dataId注入错误状态码、让token提前失效，并按接口统计请求数。
+ * 监听接口按请求头的超时时间挂起，不像真实服务端那样至少挂起10秒。
+ */
+public class StubNacosServer implements Closeable {
+
+    public static final String LOGIN = "login";
+
+    public static final String CONFIG = "config";
+
+    public static final String SEARCH = "search";
+
+    public static final String EXPORT = "export";
+
+    public static final String LISTENER = "listener";
+
+    public static final String PUBLISH = "publish";
+
+    private static final char WORD_SEPARATOR = '\u0002';
+
+    private static final char LINE_SEPARATOR = '\u0001';
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    /**
+     * tenant|group|dataId -> 配置内容
+     */
+    private final ConcurrentMap<String, String> configs = new ConcurrentHashMap<>();
+
+    /**
+     * token -> 签发时间
+     */
+    private final ConcurrentMap<String, Long> tokens = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+    /**
+     * 每个dataId已注入的错误次数
+     */
+    private final ConcurrentMap<String, AtomicInteger> injectedErrors = new ConcurrentHashMap<>();
+
+    private final AtomicInteger tokenSequence = new AtomicInteger();
+
+    private final Object changeLock = new Object();
+
+    private volatile String username = "nacos";
+
+    private volatile String password = "nacos";
+
+    private volatile long latencyMillis;
+
+    private volatile int errorStatus = 503;
+
+    private volatile int errorPercent;
+
+    private volatile int errorAttempts = 1;
+
+    private volatile long tokenValidMillis;
+
+    private volatile boolean searchEnabled = true;
+
+    private volatile int loginStatus = 200;
+
+    private volatile boolean listenerEnabled = true;
+
+    private StubNacosServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * 在本机随机端口启动
+     *
+     * @return 模拟服务端
+     * @throws IOException 启动失败
+     */
+    public static StubNacosServer start() throws IOException {
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(64, runnable -> {
+            Thread thread = new Thread(runnable, "stub-nacos-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        StubNacosServer stub = new StubNacosServer(httpServer, executor);
+        httpServer.createContext("/nacos/v1/auth/users/login", stub::handleLogin);
+        httpServer.createContext("/nacos/v1/cs/configs/listener", stub::handleListener);
+        httpServer.createContext("/nacos/v1/cs/configs", stub::handleConfigs);
+        httpServer.setExecutor(executor);
+        httpServer.start();
+        return stub;
+    }
+
+    public String getServerUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * 发布配置，唤醒挂起中的监听请求
+     */
+    public void putConfig(String tenant, String group, String dataId, String content) {
+        configs.put(key(tenant, group, dataId), content);
+        synchronized (changeLock) {
+            changeLock.notifyAll();
+        }
+    }
+
+    /**
+     * 删除配置，唤醒挂起中的监听请求
+     */
+    public void removeConfig(String tenant, String group, String dataId) {
+        configs.remove(key(tenant, group, dataId));
+        synchronized (changeLock) {
+            changeLock.notifyAll();
+        }
+    }
+
+    public void setCredentials(String username, String password) {
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * 配置下载、查询和导出接口的固定响应延迟
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * 按dataId注入错误：dataId哈希取模100小于percent的配置，前attempts次下载返回status
+     *
+     * @param status   状态码
+     * @param percent  注入错误的配置比例，0~100
+     * @param attempts 每个配置连续出错的次数
+     */
+    public void setErrors(int status, int percent, int attempts) {
+        this.errorStatus = status;
+        this.errorPercent = percent;
+        this.errorAttempts = attempts;
+        injectedErrors.clear();
+    }
+
+    /**
+     * token签发后的有效时间，超过后返回403；0表示不失效。登录响应中的tokenTtl不变，模拟服务端提前吊销
+     */
+    public void setTokenValidMillis(long tokenValidMillis) {
+        this.tokenValidMillis = tokenValidMillis;
+    }
+
+    /**
+     * 登录接口固定返回的状态码，非200时不签发token，模拟登录节点故障
+     */
+    public void setLoginStatus(int loginStatus) {
+        this.loginStatus = loginStatus;
+    }
+
+    /**
+     * 关闭后监听接口返回500，模拟监听接口不可用
+     */
+    public void setListenerEnabled(boolean listenerEnabled) {
+        this.listenerEnabled = listenerEnabled;
+    }
+
+    /**
+     * 当前的配置内容，不存在时返回null
+     */
+    public String getConfig(String tenant, String group, String dataId) {
+        return configs.get(key(tenant, group, dataId));
+    }
+
+    /**
+     * 关闭后配置查询接口返回400，模拟不支持search=accurate的旧版本服务端
+     */
+    public void setSearchEnabled(boolean searchEnabled) {
+        this.searchEnabled = searchEnabled;
+    }
+
+    /**
+     * 接口的请求数，包括失败的请求
+     */
+    public int requests(String endpoint) {
+        AtomicInteger count = requests.get(endpoint);
+        return count == null ? 0 : count.get();
+    }
+
+    public int totalRequests() {
+        return requests.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    public void resetRequests() {
+        requests.clear();
+    }
+
+    /**
+     * 已注入的错误次数
+     */
+    public int injectedErrors() {
+        return injectedErrors.values().stream().mapToInt(count -> Math.min(count.get(), errorAttempts)).sum();
+    }
+
+    /**
+     * 生成指定叶子数量的yaml，每20个叶子一个映射，每个值约valueBytes字节
+     *
+     * @param keys       叶子数量
+     * @param valueBytes 每个值的字节数
+     * @return yaml文本
+     */
+    public static String yaml(int keys, int valueBytes) {
+        StringBuilder yaml = new StringBuilder(keys * (valueBytes + 24));
+        String padding = StringUtils.repeat('x', Math.max(0, valueBytes - 8));
+        for (int i = 0; i < keys; i++) {
+            if (i % 20 == 0) {
+                yaml.append("node").append(i / 20).append(":\n");
+            }
+            yaml.append("  key").append(i).append(": v").append(padding).append(i).append('\n');
+        }
+        return yaml.toString();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleLogin(HttpExchange exchange) throws IOException {
+        count(LOGIN);
+        if (loginStatus != 200) {
+            send(exchange, loginStatus, "login unavailable");
+            return;
+        }
+        Map<String, String> form = parseForm(readBody(exchange));
+        if (!username.equals(form.get("username")) || !password.equals(form.get("password"))) {
+            send(exchange, 403, "unknown user!");
+            return;
+        }
+        String token = "stub-token-" + tokenSequence.incrementAndGet();
+        tokens.put(token, System.currentTimeMillis());
+        JSONObject resp = new JSONObject();
+        resp.set("accessToken", token);
+        resp.set("tokenTtl", 18000);
+        resp.set("globalAdmin", true);
+        resp.set("username", username);
+        send(exchange, 200, resp.toString());
+    }
+
+    private void handleConfigs(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseForm(exchange.getRequestURI().getRawQuery());
+        if ("POST".equals(exchange.getRequestMethod())) {
+            handlePublish(exchange, query);
+            return;
+        }
+        String endpoint = query.containsKey("search") ? SEARCH : query.containsKey("export") ? EXPORT : CONFIG;
+        count(endpoint);
+        if (!isAuthorized(query.get("accessToken"))) {
+            send(exchange, 403, "token invalid!");
+            return;
+        }
+        sleep(latencyMillis);
+        String tenant = StringUtils.defaultString(query.get("tenant"));
+        switch (endpoint) {
+            case SEARCH:
+                handleSearch(exchange, tenant, query);
+                return;
+            case EXPORT:
+                handleExport(exchange, tenant, query.get("group"));
+                return;
+            default:
+                String dataId = query.get("dataId");
+                if (shouldFail(dataId)) {
+                    send(exchange, errorStatus, "injected error");
+                    return;
+                }
+                String content = configs.get(key(tenant, query.get("group"), dataId));
+                if (content == null) {
+                    send(exchange, 404, "config data not exist");
+                    return;
+                }
+                send(exchange, 200, content);
+        }
+    }
+
+    private void handlePublish(HttpExchange exchange, Map<String, String> query) throws IOException {
+        count(PUBLISH);
+        Map<String, String> form = parseForm(readBody(exchange));
+        if (!isAuthorized(query.get("accessToken"))) {
+            send(exchange, 403, "token invalid!");
+            return;
+        }
+        putConfig(form.get("tenant"), form.get("group"), form.get("dataId"), form.get("content"));
+        send(exchange, 200, "true");
+    }
+
+    private void handleSearch(HttpExchange exchange, String tenant, Map<String, String> query) throws IOException {
+        if (!searchEnabled) {
+            send(exchange, 400, "Required parameter 'dataId' is not present");
+            return;
+        }
+        int pageNo = Integer.parseInt(StringUtils.defaultIfEmpty(query.get("pageNo"), "1"));
+        int pageSize = Integer.parseInt(StringUtils.defaultIfEmpty(query.get("pageSize"), "100"));
+        List<String[]> items = matching(tenant, query.get("group"));
+        JSONArray pageItems = new JSONArray();
+        for (int i = (pageNo - 1) * pageSize; i < Math.min(items.size(), pageNo * pageSize); i++) {
+            String[] item = items.get(i);
+            JSONObject json = new JSONObject();
+            json.set("tenant", tenant);
+            json.set("group", item[0]);
+            json.set("dataId", item[1]);
+            json.set("content", item[2]);
+            json.set("md5", SecureUtil.md5(item[2]));
+            pageItems.add(json);
+        }
+        JSONObject page = new JSONObject();
+        page.set("totalCount", items.size());
+        page.set("pageNumber", pageNo);
+        page.set("pagesAvailable", (items.size() + pageSize - 1) / pageSize);
+        page.set("pageItems", pageItems);
+        send(exchange, 200, page.toString());
+    }
+
+    private void handleExport(HttpExchange exchange, String tenant, String group) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(buffer, StandardCharsets.UTF_8)) {
+            for (String[] item : matching(tenant, group)) {
+                zip.putNextEntry(new ZipEntry(item[0] + "/" + item[1]));
+                zip.write(item[2].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            zip.putNextEntry(new ZipEntry(".meta.yml"));
+            zip.closeEntry();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/zip");
+        send(exchange, 200, buffer.toByteArray());
+    }
+
+    private void handleListener(HttpExchange exchange) throws IOException {
+        count(LISTENER);
+        Map<String, String> query = parseForm(exchange.getRequestURI().getRawQuery());
+        Map<String, String> form = parseForm(readBody(exchange));
+        if (!listenerEnabled) {
+            send(exchange, 500, "listener unavailable");
+            return;
+        }
+        if (!isAuthorized(query.get("accessToken"))) {
+            send(exchange, 403, "token invalid!");
+            return;
+        }
+        Map<String, String> md5s = new LinkedHashMap<>();
+        for (String line : StringUtils.split(StringUtils.defaultString(form.get("Listening-Configs")), LINE_SEPARATOR)) {
+            String[] words = StringUtils.splitPreserveAllTokens(line, WORD_SEPARATOR);
+            String tenant = words.length > 3 ? words[3] : "";
+            md5s.put(words[0] + WORD_SEPARATOR + words[1] + (tenant.isEmpty() ? "" : WORD_SEPARATOR + tenant),
+                    key(tenant, words[1], words[0]) + LINE_SEPARATOR + words[2]);
+        }
+        List<String> changed = changed(md5s);
+        if (changed.isEmpty() && !"true".equals(exchange.getRequestHeaders().getFirst("Long-Pulling-Timeout-No-Hangup"))) {
+            long timeout = Long.parseLong(StringUtils.defaultIfEmpty(
+                    exchange.getRequestHeaders().getFirst("Long-Pulling-Timeout"), "30000"));
+            long deadline = System.currentTimeMillis() + Math.max(0, timeout - 500);
+            synchronized (changeLock) {
+                while (changed.isEmpty() && System.currentTimeMillis() < deadline) {
+                    try {
+                        changeLock.wait(Math.max(1, deadline - System.currentTimeMillis()));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    changed = changed(md5s);
+                }
+            }
+        }
+        StringBuilder response = new StringBuilder();
+        for (String line : changed) {
+            response.append(line).append(LINE_SEPARATOR);
+        }
+        send(exchange, 200, URLEncoder.encode(response.toString(), "UTF-8"));
+    }
+
+    /**
+     * 内容MD5与客户端不同的配置，不存在的配置MD5为空
+     */
+    private List<String> changed(Map<String, String> md5s) {
+        List<String> changed = new ArrayList<>();
+        md5s.forEach((line, keyAndMd5) -> {
+            String content = configs.get(StringUtils.substringBefore(keyAndMd5, String.valueOf(LINE_SEPARATOR)));
+            String md5 = content == null ? "" : SecureUtil.md5(content);
+            if (!md5.equals(StringUtils.substringAfter(keyAndMd5, String.valueOf(LINE_SEPARATOR)))) {
+                changed.add(line);
+            }
+        });
+        return changed;
+    }
+
+    /**
+     * 命名空间中的配置，每项为 group、dataId、content，按group、dataId排序
+     */
+    private List<String[]> matching(String tenant, String group) {
+        List<String[]> items = new ArrayList<>();
+        configs.forEach((key, content) -> {
+            String[] parts = StringUtils.splitPreserveAllTokens(key, '|');
+            if (parts[0].equals(tenant) && (StringUtils.isEmpty(group) || parts[1].equals(group))) {
+                items.add(new String[]{parts[1], parts[2], content});
+            }
+        });
+        items.sort((a, b) -> a[0].equals(b[0]) ? a[1].compareTo(b[1]) : a[0].compareTo(b[0]));
+        return items;
+    }
+
+    private boolean isAuthorized(String token) {
+        Long issuedAt = token == null ? null : tokens.get(token);
+        return issuedAt != null && (tokenValidMillis <= 0 || System.currentTimeMillis() - issuedAt <= tokenValidMillis);
+    }
+
+    private boolean shouldFail(String dataId) {
+        if (errorPercent <= 0 || dataId == null || Math.floorMod(dataId.hashCode(), 100) >= errorPercent) {
+            return false;
+        }
+        return injectedErrors.computeIfAbsent(dataId, k -> new AtomicInteger()).getAndIncrement() < errorAttempts;
+    }
+
+    private void count(String endpoint) {
+        requests.computeIfAbsent(endpoint, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private static String key(String tenant, String group, String dataId) {
+        return StringUtils.defaultString(tenant) + "|" + StringUtils.defaultIfEmpty(group, "DEFAULT_GROUP") + "|" + dataId;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                body.write(buffer, 0, n);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> parseForm(String encoded) throws UnsupportedEncodingException {
+        Map<String, String> form = new HashMap<>();
+        if (StringUtils.isEmpty(encoded)) {
+            return form;
+        }
+        for (String pair : StringUtils.split(encoded, '&')) {
+            String name = StringUtils.substringBefore(pair, "=");
+            String value = pair.contains("=") ? StringUtils.substringAfter(pair, "=") : "";
+            form.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return form;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        if (!exchange.getResponseHeaders().containsKey("Content-Type")) {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain;charset=UTF-8");
+        }
+        send(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
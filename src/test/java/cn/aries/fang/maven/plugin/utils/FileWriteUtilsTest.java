@@ -0,0 +1,64 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Description: 原子写入后文件权限的测试
+ */
+public class FileWriteUtilsTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+    }
+
+    @Test
+    public void existingPermissionsSurvive() throws IOException {
+        File file = temp.newFile("application.yml");
+        Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString("rw-r-----"));
+
+        FileWriteUtils.writeAtomically(file, "a: 1\n".getBytes(StandardCharsets.UTF_8), false);
+
+        assertEquals("rw-r-----", permissions(file));
+        assertEquals("a: 1\n", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void newFileIsWorldReadable() throws IOException {
+        File file = new File(temp.getRoot(), "report/nacos-config-check.prom");
+
+        FileWriteUtils.writeAtomically(file, new byte[0], false);
+
+        assertEquals("rw-r--r--", permissions(file));
+    }
+
+    @Test
+    public void ownerOnlyRestrictsPermissions() throws IOException {
+        File file = temp.newFile("token.json");
+        Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString("rw-r--r--"));
+
+        FileWriteUtils.writeAtomically(file, new byte[0], true);
+
+        assertEquals("rw-------", permissions(file));
+    }
+
+    private static String permissions(File file) throws IOException {
+        return PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath()));
+    }
+}
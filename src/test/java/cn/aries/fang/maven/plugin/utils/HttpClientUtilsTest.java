@@ -0,0 +1,43 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import cn.aries.fang.maven.plugin.dto.HttpClientConfig;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Description: 多个模块使用不同连接池配置时客户端的复用与关闭测试
+ */
+public class HttpClientUtilsTest {
+
+    @Test
+    public void replacedClientStaysOpenWhileInUse() {
+        HttpClientConfig a = config(11);
+        HttpClientConfig b = config(12);
+        PooledHttpClient first = HttpClientUtils.configure(a);
+        PooledHttpClient second = HttpClientUtils.configure(b);
+        try {
+            // 切换配置不关闭仍在使用的客户端，相同配置复用同一个客户端
+            assertSame(first, HttpClientUtils.configure(a));
+            HttpClientUtils.release();
+            assertSame(second, HttpClientUtils.configure(b));
+            HttpClientUtils.release();
+        } finally {
+            HttpClientUtils.release();
+            HttpClientUtils.release();
+        }
+        // 所有模块释放后只保留当前客户端
+        assertSame(second, HttpClientUtils.configure(b));
+        HttpClientUtils.release();
+        PooledHttpClient reopened = HttpClientUtils.configure(a);
+        HttpClientUtils.release();
+        assertNotSame(first, reopened);
+    }
+
+    private static HttpClientConfig config(int maxPerRoute) {
+        HttpClientConfig config = new HttpClientConfig();
+        config.setMaxPerRoute(maxPerRoute);
+        return config;
+    }
+}
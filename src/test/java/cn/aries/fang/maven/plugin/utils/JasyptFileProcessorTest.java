@@ -0,0 +1,121 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jasypt.encryption.pbe.PBEStringEncryptor;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Description: DEC(...)中含右括号等字符时的加解密测试
+ */
+public class JasyptFileProcessorTest {
+
+    private static final String PASSWORD = "test-password";
+
+    private static final Pattern ENC = Pattern.compile("ENC\\(([^)]*)\\)");
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final PBEStringEncryptor encryptor = JasyptUtils.newEncryptor(PASSWORD, 2);
+
+    private final ExecutorService executor = ExecutorUtils.newBoundedExecutor(2, "jasypt-test-");
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void encryptsWholeValueUpToLastParenthesis() throws IOException {
+        String encrypted = process(JasyptFileProcessor.Mode.ENCRYPT,
+                "a: DEC(pa)ss)\nb: 'DEC(x) y)' # note (old)\nc: DEC(v) # (comment)\nd: [DEC(p)1), DEC(q)]\n", false);
+
+        assertFalse(encrypted.contains("DEC("));
+        assertEquals("[pa)ss, x) y, v, p)1, q]", decryptAll(encrypted));
+        assertTrue(encrypted.contains("# note (old)\n"));
+        assertTrue(encrypted.contains("# (comment)\n"));
+    }
+
+    @Test
+    public void propertiesValueRunsToEndOfLine() throws IOException {
+        String encrypted = process(JasyptFileProcessor.Mode.ENCRYPT, "secret=DEC(a)b(c))\n", true);
+
+        assertEquals("[a)b(c)]", decryptAll(encrypted));
+    }
+
+    @Test
+    public void decryptedValueWithParenthesisRoundTrips() throws IOException {
+        String original = "a: ENC(" + encryptor.encrypt("pa)ss") + ")\n";
+
+        String decrypted = process(JasyptFileProcessor.Mode.DECRYPT, original, false);
+        assertEquals("a: DEC(pa)ss)\n", decrypted);
+        assertEquals("[pa)ss]", decryptAll(process(JasyptFileProcessor.Mode.ENCRYPT, decrypted, false)));
+    }
+
+    @Test
+    public void rejectsDecryptedValueThatCannotRoundTrip() throws IOException {
+        String original = "a: 'ENC(" + encryptor.encrypt("it's") + ")'\nb: ENC(" + encryptor.encrypt("x #y") + ")\n";
+        File input = write(original);
+        try {
+            newProcessor(JasyptFileProcessor.Mode.DECRYPT).process(input, input, StandardCharsets.UTF_8, false, false);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("第1行"));
+        }
+        assertEquals(original, new String(Files.readAllBytes(input.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void inPlaceKeepsFilePermissions() throws IOException {
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        File input = write("a: DEC(secret)\n");
+        Files.setPosixFilePermissions(input.toPath(), PosixFilePermissions.fromString("rw-r--r--"));
+
+        newProcessor(JasyptFileProcessor.Mode.ENCRYPT).process(input, input, StandardCharsets.UTF_8, false, false);
+
+        assertEquals("rw-r--r--", PosixFilePermissions.toString(Files.getPosixFilePermissions(input.toPath())));
+    }
+
+    private String process(JasyptFileProcessor.Mode mode, String content, boolean properties) throws IOException {
+        File input = write(content);
+        newProcessor(mode).process(input, input, StandardCharsets.UTF_8, properties, false);
+        return new String(Files.readAllBytes(input.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private JasyptFileProcessor newProcessor(JasyptFileProcessor.Mode mode) {
+        return new JasyptFileProcessor(mode, encryptor, null, null, executor, 16);
+    }
+
+    private File write(String content) throws IOException {
+        File file = temp.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private String decryptAll(String content) {
+        StringBuilder sb = new StringBuilder("[");
+        Matcher matcher = ENC.matcher(content);
+        while (matcher.find()) {
+            sb.append(sb.length() > 1 ? ", " : "").append(encryptor.decrypt(matcher.group(1)));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,131 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import cn.aries.fang.maven.plugin.dto.MappingConfig;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Description: 从Spring配置文件推导nacos配置的测试
+ */
+public class NacosConfigDiscoveryTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void sharedAndExtensionConfigs() throws IOException {
+        File dir = temp.newFolder("order");
+        write(dir, "bootstrap.yml", "spring:\n"
+                + "  application:\n"
+                + "    name: order\n"
+                + "  cloud:\n"
+                + "    nacos:\n"
+                + "      config:\n"
+                + "        file-extension: yaml\n"
+                + "        group: ORDER\n"
+                + "        shared-configs:\n"
+                + "          - data-id: common.yaml\n"
+                + "        extension-configs:\n"
+                + "          - dataId: redis.yaml\n"
+                + "            group: INFRA\n");
+        write(dir, "common.yaml", "a: 1\n");
+        write(dir, "redis.yaml", "a: 1\n");
+        write(dir, "order.yaml", "a: 1\n");
+
+        NacosConfigDiscovery discovery = new NacosConfigDiscovery(null);
+        List<MappingConfig> configs = discovery.discover(Collections.singletonList(dir), executor);
+
+        assertEquals(Arrays.asList("DEFAULT_GROUP/common.yaml", "INFRA/redis.yaml", "ORDER/order.yaml"), keys(configs));
+        // 没有扩展名的prefix不是yaml，没有本地文件
+        assertEquals(Collections.singletonList("ORDER/order"), discovery.getUnmatched());
+    }
+
+    @Test
+    public void onlyActiveProfileDocumentsApply() throws IOException {
+        File dir = temp.newFolder("pay");
+        write(dir, "application.yml", "spring:\n"
+                + "  application:\n"
+                + "    name: pay\n"
+                + "  profiles:\n"
+                + "    active: dev\n"
+                + "  cloud.nacos.config.file-extension: yaml\n"
+                + "---\n"
+                + "spring:\n"
+                + "  config.activate.on-profile: dev\n"
+                + "  cloud.nacos.config.group: DEV_GROUP\n"
+                + "---\n"
+                + "spring:\n"
+                + "  config.activate.on-profile: prod\n"
+                + "  cloud.nacos.config.group: PROD_GROUP\n");
+        write(dir, "pay.yaml", "a: 1\n");
+        write(dir, "pay-dev.yaml", "a: 1\n");
+
+        List<MappingConfig> active = new NacosConfigDiscovery(null).discover(Collections.singletonList(dir), executor);
+        assertEquals(Arrays.asList("DEV_GROUP/pay.yaml", "DEV_GROUP/pay-dev.yaml"), keys(active));
+
+        // 指定的profile优先于spring.profiles.active
+        NacosConfigDiscovery prod = new NacosConfigDiscovery(Collections.singletonList("prod"));
+        assertEquals(Collections.singletonList("PROD_GROUP/pay.yaml"), keys(prod.discover(Collections.singletonList(dir), executor)));
+        assertTrue(prod.getUnmatched().contains("PROD_GROUP/pay-prod.yaml"));
+    }
+
+    @Test
+    public void sameConfigAcrossModulesIsKeptOnce() throws IOException {
+        File a = temp.newFolder("module-a");
+        File b = temp.newFolder("module-b");
+        String bootstrap = "spring:\n"
+                + "  application:\n"
+                + "    name: %s\n"
+                + "  cloud:\n"
+                + "    nacos:\n"
+                + "      config:\n"
+                + "        file-extension: yaml\n"
+                + "        shared-configs[0].data-id: common.yaml\n";
+        write(a, "bootstrap.yml", String.format(bootstrap, "a"));
+        write(b, "bootstrap.yml", String.format(bootstrap, "b"));
+        write(a, "a.yaml", "a: 1\n");
+        write(b, "b.yaml", "a: 1\n");
+        // 只有模块b有共享配置的文件，模块a引用时使用其他模块的文件
+        write(b, "common.yaml", "a: 1\n");
+
+        List<MappingConfig> configs = new NacosConfigDiscovery(null).discover(Arrays.asList(a, b), executor);
+
+        assertEquals(Arrays.asList("DEFAULT_GROUP/common.yaml", "DEFAULT_GROUP/a.yaml", "DEFAULT_GROUP/b.yaml"), keys(configs));
+        assertEquals(new File(b, "common.yaml").getPath(), configs.get(0).getConfigPath());
+    }
+
+    private static List<String> keys(List<MappingConfig> configs) {
+        List<String> keys = new ArrayList<>(configs.size());
+        for (MappingConfig config : configs) {
+            keys.add(config.getGroup() + "/" + config.getDataId());
+        }
+        return keys;
+    }
+
+    private static void write(File dir, String name, String content) throws IOException {
+        Files.write(new File(dir, name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,65 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import cn.aries.fang.maven.plugin.dto.ConfigKey;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Description: 监听接口请求体编码与响应解码的测试
+ */
+public class NacosListenerUtilsTest {
+
+    private static final String SERVER_URL = "http://127.0.0.1:8848";
+
+    @Test
+    public void decodeReturnsKeysOfEncodedRequest() throws Exception {
+        Map<ConfigKey, String> md5s = new LinkedHashMap<>();
+        md5s.put(new ConfigKey(SERVER_URL, "", "DEFAULT_GROUP", "app.yaml"), "md5-1");
+        md5s.put(new ConfigKey(SERVER_URL, "dev", "SHARED", "common.yaml"), "");
+        md5s.put(new ConfigKey(SERVER_URL, "dev", "DEFAULT_GROUP", "a b&c=d.yaml"), "md5-3");
+
+        Set<ConfigKey> decoded = NacosListenerUtils.decode(SERVER_URL, respond(NacosListenerUtils.encode(md5s)));
+
+        assertEquals(md5s.keySet(), decoded);
+    }
+
+    @Test
+    public void decodeKeepsGroupAndDataIdApart() throws Exception {
+        String response = URLEncoder.encode("app.yaml\u0002DEFAULT_GROUP\u0002dev\u0001", "UTF-8");
+
+        Set<ConfigKey> decoded = NacosListenerUtils.decode(SERVER_URL, response);
+
+        ConfigKey key = decoded.iterator().next();
+        assertEquals("app.yaml", key.getDataId());
+        assertEquals("DEFAULT_GROUP", key.getGroup());
+        assertEquals("dev", key.getTenant());
+    }
+
+    @Test
+    public void decodeBlankResponse() throws Exception {
+        assertTrue(NacosListenerUtils.decode(SERVER_URL, "").isEmpty());
+        assertEquals(Collections.emptySet(), NacosListenerUtils.decode(SERVER_URL, "  \n"));
+    }
+
+    /**
+     * 按nacos服务端的方式，把请求中的每个配置去掉MD5后作为变化列表返回
+     */
+    private static String respond(String listeningConfigs) throws Exception {
+        Set<String> lines = new LinkedHashSet<>();
+        for (String line : StringUtils.split(listeningConfigs, '\u0001')) {
+            String[] words = StringUtils.splitPreserveAllTokens(line, '\u0002');
+            lines.add(words[0] + '\u0002' + words[1] + (words.length > 3 ? '\u0002' + words[3] : ""));
+        }
+        return URLEncoder.encode(StringUtils.join(lines, '\u0001') + '\u0001', "UTF-8");
+    }
+}
@@ -0,0 +1,92 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import cn.aries.fang.maven.plugin.dto.HttpClientConfig;
+import cn.aries.fang.maven.plugin.stub.StubNacosServer;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Description: 节点返回5xx时隔离并换节点重试的测试
+ */
+public class NacosServerRouterTest {
+
+    private static final String LOGIN_PATH = "/nacos/v1/auth/users/login";
+
+    @Test
+    public void failingNodeIsIsolatedAndRequestFailsOver() throws Exception {
+        // 节点统计按地址全局共用，每个测试使用独立的地址
+        String bad = "http://bad-" + System.nanoTime() + ":8848";
+        String good = "http://good-" + System.nanoTime() + ":8848";
+        // 先让正常节点有响应时间样本，没有样本的故障节点会被优先尝试
+        new NacosServerRouter(good, 0, 0, 0).execute(server -> server, null);
+
+        NacosServerRouter router = new NacosServerRouter(bad + "," + good, 2, 0, 0);
+        List<String> called = new CopyOnWriteArrayList<>();
+        NacosServerRouter.ServerCall<String> call = server -> {
+            called.add(server);
+            if (server.equals(bad)) {
+                throw new HttpResponseException(503, "unavailable");
+            }
+            return server;
+        };
+
+        assertEquals(good, router.execute(call, null));
+        assertEquals(2, called.size());
+        assertEquals(bad, called.get(0));
+
+        // 故障节点隔离期间排在后面，不再先请求它
+        called.clear();
+        assertEquals(good, router.execute(call, null));
+        assertEquals(1, called.size());
+        assertEquals(good, router.primary());
+    }
+
+    @Test
+    public void clientErrorsAreNotRetried() throws Exception {
+        String first = "http://first-" + System.nanoTime() + ":8848";
+        String second = "http://second-" + System.nanoTime() + ":8848";
+        NacosServerRouter router = new NacosServerRouter(first + "," + second, 2, 0, 0);
+        List<String> called = new CopyOnWriteArrayList<>();
+        try {
+            router.execute(server -> {
+                called.add(server);
+                throw new HttpResponseException(403, "forbidden");
+            }, null);
+            fail();
+        } catch (HttpResponseException e) {
+            assertEquals(403, e.getStatusCode());
+        }
+        assertEquals(1, called.size());
+    }
+
+    @Test
+    public void loginFailsOverWhenNodeReturns5xx() throws Exception {
+        HttpClientUtils.configure(new HttpClientConfig());
+        try (StubNacosServer down = StubNacosServer.start(); StubNacosServer up = StubNacosServer.start()) {
+            down.setLoginStatus(500);
+            NacosServerRouter router = new NacosServerRouter(down.getServerUrl() + "," + up.getServerUrl(), 2, 0, 0);
+            Map<String, String> form = new HashMap<>();
+            form.put("username", "nacos");
+            form.put("password", "nacos");
+            for (int i = 0; i < 3; i++) {
+                HttpClientResult result = router.execute(server -> HttpClientUtils.doPostForm(server + LOGIN_PATH, form), null);
+                assertEquals(200, result.getCode());
+                assertTrue(result.getContent().contains("accessToken"));
+            }
+            // 返回500的节点隔离后不再被请求
+            assertEquals(3, up.requests(StubNacosServer.LOGIN));
+            assertTrue(down.requests(StubNacosServer.LOGIN) <= 1);
+        } finally {
+            HttpClientUtils.release();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package cn.aries.fang.maven.plugin.utils;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import cn.aries.fang.maven.plugin.dto.GovernorConfig;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Description: 请求限流按AIMD调整并发上限的测试
+ */
+public class RequestGovernorTest {
+
+    private static final long LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void overloadStatusDecreasesLimitAndSuccessRecovers() throws Exception {
+        RequestGovernor governor = new RequestGovernor(config(10, 0));
+
+        governor.acquire(null).release(429, LATENCY_NANOS);
+        assertEquals(5, governor.currentLimit());
+        // 同一批过载的响应只减一次
+        governor.acquire(null).release(503, LATENCY_NANOS);
+        assertEquals(5, governor.currentLimit());
+
+        // 成功的请求每轮加1，直到上限
+        for (int i = 0; i < 6; i++) {
+            governor.acquire(null).release(200, LATENCY_NANOS);
+        }
+        assertEquals(6, governor.currentLimit());
+        for (int i = 0; i < 100; i++) {
+            governor.acquire(null).release(200, LATENCY_NANOS);
+        }
+        assertEquals(10, governor.currentLimit());
+    }
+
+    @Test
+    public void readTimeoutDecreasesLimit() throws Exception {
+        RequestGovernor governor = new RequestGovernor(config(8, 0));
+        governor.acquire(null).release(new SocketTimeoutException("Read timed out"));
+        assertEquals(4, governor.currentLimit());
+        // 其他失败和未发出的请求不影响并发上限
+        Thread.sleep(150);
+        governor.acquire(null).release(new IllegalStateException("parse error"));
+        governor.acquire(null).release();
+        assertEquals(4, governor.currentLimit());
+    }
+
+    @Test
+    public void slowResponsesDecreaseLimit() throws Exception {
+        RequestGovernor governor = new RequestGovernor(config(8, 2.0));
+        for (int i = 0; i < 5; i++) {
+            governor.acquire(null).release(200, LATENCY_NANOS);
+        }
+        assertEquals(8, governor.currentLimit());
+        for (int i = 0; i < 10 && governor.currentLimit() == 8; i++) {
+            governor.acquire(null).release(200, LATENCY_NANOS * 10);
+        }
+        assertEquals(4, governor.currentLimit());
+    }
+
+    @Test
+    public void requestsQueueAtLimit() throws Exception {
+        RequestGovernor governor = new RequestGovernor(config(1, 0));
+        RequestGovernor.Permit first = governor.acquire(null);
+        CompletableFuture<RequestGovernor.Permit> second = governor.acquireAsync();
+        assertFalse(second.isDone());
+
+        first.release(200, LATENCY_NANOS);
+        RequestGovernor.Permit granted = second.get(1, TimeUnit.SECONDS);
+        assertTrue(second.isDone());
+        granted.release();
+    }
+
+    private static GovernorConfig config(int concurrency, double latencyTolerance) {
+        GovernorConfig config = new GovernorConfig();
+        config.setInitialConcurrency(concurrency);
+        config.setMaxConcurrency(concurrency);
+        config.setMinConcurrency(1);
+        config.setDecreaseRatio(0.5);
+        config.setLatencyTolerance(latencyTolerance);
+        return config;
+    }
+}